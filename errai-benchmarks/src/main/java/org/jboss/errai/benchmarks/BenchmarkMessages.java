@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.io.AbstractByteWriteAdapter;
+import org.jboss.errai.marshalling.client.Marshalling;
+
+/**
+ * The messages and payloads shared by the benchmarks.
+ */
+public final class BenchmarkMessages {
+  public static final String SUBJECT = "BenchmarkService";
+
+  private static final String TEXT = "The quick brown fox jumps over the lazy dog";
+
+  private BenchmarkMessages() {
+  }
+
+  /**
+   * Creates a committed message to the {@link #SUBJECT}.
+   *
+   * @param values
+   *     the number of strings in the list part of the message, which determines the size of the message. A message
+   *     with one value is about 200 bytes long once encoded.
+   */
+  public static Message newMessage(final int values) {
+    final List<String> list = new ArrayList<String>(values);
+    for (int i = 0; i < values; i++) {
+      list.add(TEXT + " " + i);
+    }
+
+    final Message message = CommandMessage.create()
+        .toSubject(SUBJECT)
+        .command("Update")
+        .set("Id", 42L)
+        .set("Data", TEXT)
+        .set("Values", list);
+    message.commit();
+    return message;
+  }
+
+  /**
+   * Returns the JSON a client receives from a poll carrying the given number of messages.
+   */
+  public static String newPollResponse(final int messages, final int values) {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < messages; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(Marshalling.toJSON(newMessage(values).getParts()));
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * A write adapter which only counts the bytes read from a buffer.
+   */
+  public static class CountingWriteAdapter extends AbstractByteWriteAdapter {
+    private long count;
+
+    @Override
+    public void write(final byte b) throws IOException {
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] b) throws IOException {
+      count += b.length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    public long getCount() {
+      return count;
+    }
+  }
+}
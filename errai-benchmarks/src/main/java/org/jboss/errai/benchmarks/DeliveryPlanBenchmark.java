@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.DeliveryPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures dispatching a message to the local subscribers of a subject through its {@link DeliveryPlan}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DeliveryPlanBenchmark {
+  @Param({"1", "4", "16"})
+  public int subscribers;
+
+  private final CountingCallback callback = new CountingCallback();
+  private DeliveryPlan plan;
+  private Message message;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    plan = DeliveryPlan.newDeliveryPlan(callback);
+    for (int i = 1; i < subscribers; i++) {
+      plan = plan.newDeliveryPlanWith(callback);
+    }
+    message = BenchmarkMessages.newMessage(1);
+  }
+
+  @Benchmark
+  public long deliver() {
+    plan.deliver(message);
+    return callback.calls;
+  }
+
+  private static class CountingCallback implements MessageCallback {
+    private long calls;
+
+    @Override
+    public void callback(final Message message) {
+      calls++;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
+import org.jboss.errai.bus.server.service.ErraiService;
+import org.jboss.errai.bus.server.service.ErraiServiceConfiguratorImpl;
+import org.jboss.errai.bus.server.service.ErraiServiceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of building messages and sending them through a server bus running in this VM to its local
+ * subscribers, from one thread and from four threads at once. The bus is configured by the
+ * <tt>ErraiService.properties</tt> of this module and delivers on the sending thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class InVmBusThroughputBenchmark {
+  @Param({"1", "8"})
+  public int subscribers;
+
+  private final LongAdder received = new LongAdder();
+  private ErraiService service;
+  private ServerMessageBus bus;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    service = ErraiServiceFactory.create(new ErraiServiceConfiguratorImpl());
+    bus = service.getBus();
+
+    for (int i = 0; i < subscribers; i++) {
+      bus.subscribe(BenchmarkMessages.SUBJECT, new MessageCallback() {
+        @Override
+        public void callback(final Message message) {
+          received.increment();
+        }
+      });
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    service.stopService();
+  }
+
+  @Benchmark
+  public void send() {
+    sendMessage();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void sendConcurrently() {
+    sendMessage();
+  }
+
+  private void sendMessage() {
+    MessageBuilder.createMessage()
+        .toSubject(BenchmarkMessages.SUBJECT)
+        .signalling()
+        .with("Data", "The quick brown fox jumps over the lazy dog")
+        .noErrorHandling()
+        .sendNowWith(bus);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.server.JSONByteStreamDecoder;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding the JSON of incoming messages, with the reader-based {@link JSONStreamDecoder} and, for
+ * comparison, the {@link JSONByteStreamDecoder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class JSONStreamDecoderBenchmark {
+  /**
+   * The number of messages in the payload.
+   */
+  @Param({"1", "32"})
+  public int messages;
+
+  private ByteArrayInputStream payload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    MappingContextSingleton.get();
+
+    payload = new ByteArrayInputStream(BenchmarkMessages.newPollResponse(messages, 4).getBytes("UTF-8"));
+  }
+
+  @Benchmark
+  public EJValue decode() throws IOException {
+    payload.reset();
+    return JSONStreamDecoder.decode(payload);
+  }
+
+  @Benchmark
+  public EJValue decodeBytes() throws IOException {
+    payload.reset();
+    return JSONByteStreamDecoder.decode(payload);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.io.AbstractRPCMethodCallback;
+import org.jboss.errai.bus.server.io.MethodHandleInvoker;
+import org.jboss.errai.bus.server.io.ServiceInstanceProvider;
+import org.jboss.errai.bus.server.io.ValueReplyRPCEndpointCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures invoking an RPC endpoint from its message, reflectively and through a bound {@link MethodHandleInvoker},
+ * for endpoints with one, two and five parameters (the last one is invoked with a spread array).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RPCInvocationBenchmark {
+  @Param({"reflective", "methodhandle"})
+  public String invoker;
+
+  @Param({"negate", "concat", "sum"})
+  public String endpoint;
+
+  private AbstractRPCMethodCallback callback;
+  private Message message;
+
+  public interface Calculator {
+    int negate(int a);
+
+    String concat(String a, String b);
+
+    long sum(int a, int b, int c, int d, int e);
+  }
+
+  public static class CalculatorImpl implements Calculator {
+    @Override
+    public int negate(final int a) {
+      return -a;
+    }
+
+    @Override
+    public String concat(final String a, final String b) {
+      return a + b;
+    }
+
+    @Override
+    public long sum(final int a, final int b, final int c, final int d, final int e) {
+      return a + b + c + d + e;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    final Calculator calculator = new CalculatorImpl();
+    final ServiceInstanceProvider provider = new ServiceInstanceProvider() {
+      @Override
+      public Object get(final Message message) {
+        return calculator;
+      }
+    };
+
+    final Object[] parms;
+    final Method method;
+    if ("negate".equals(endpoint)) {
+      method = Calculator.class.getMethod("negate", int.class);
+      parms = new Object[]{7};
+    }
+    else if ("concat".equals(endpoint)) {
+      method = Calculator.class.getMethod("concat", String.class, String.class);
+      parms = new Object[]{"foo", "bar"};
+    }
+    else {
+      method = Calculator.class.getMethod("sum", int.class, int.class, int.class, int.class, int.class);
+      parms = new Object[]{1, 2, 3, 4, 5};
+    }
+
+    callback = new ValueReplyRPCEndpointCallback(provider, method,
+        "methodhandle".equals(invoker) ? MethodHandleInvoker.create(method) : null, null);
+    message = CommandMessage.create().set("MethodParms", Arrays.asList(parms));
+  }
+
+  @Benchmark
+  public Object invoke() {
+    return callback.invokeMethodFromMessage(message);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.errai.benchmarks.model.Order;
+import org.jboss.errai.benchmarks.model.OrderLine;
+import org.jboss.errai.marshalling.client.Marshalling;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.ServerMarshalling;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures marshalling a portable type to JSON and back on the server, with the generated marshallers applications
+ * use in production and, for comparison, with the dynamic marshallers.
+ * <p/>
+ * The marshallers are chosen once per JVM, which is fine as JMH runs each parameter combination in forks of its own.
+ * If the generated marshallers aren't on the classpath, they are generated and compiled before the measurement
+ * starts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ServerMarshallingBenchmark {
+  @Param({"generated", "dynamic"})
+  public String marshallers;
+
+  /**
+   * The number of lines of the order.
+   */
+  @Param({"1", "50"})
+  public int lines;
+
+  private Order order;
+  private byte[] json;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final boolean generated = "generated".equals(marshallers);
+    System.setProperty("errai.marshalling.use_static_marshallers", String.valueOf(generated));
+    System.setProperty("errai.marshalling.force_static_marshallers", String.valueOf(generated));
+    MappingContextSingleton.get();
+
+    order = new Order();
+    order.setId(4711);
+    order.setCustomer("ACME Corporation");
+    order.setPlaced(new Date(1420070400000L));
+    order.setStatus(Order.Status.OPEN);
+    for (int i = 0; i < lines; i++) {
+      order.getLines().add(new OrderLine("Product " + i, i + 1, 9.99 * i));
+    }
+
+    json = Marshalling.toJSON(order).getBytes("UTF-8");
+
+    final Order decoded = ServerMarshalling.fromJSON(new ByteArrayInputStream(json), Order.class);
+    if (decoded.getLines().size() != lines) {
+      throw new IllegalStateException("order did not survive the round-trip: " + new String(json, "UTF-8"));
+    }
+  }
+
+  @Benchmark
+  public String toJSON() {
+    return Marshalling.toJSON(order);
+  }
+
+  @Benchmark
+  public Order fromJSON() throws IOException {
+    return ServerMarshalling.fromJSON(new ByteArrayInputStream(json), Order.class);
+  }
+
+  @Benchmark
+  public Order roundTrip() throws IOException {
+    final byte[] encoded = Marshalling.toJSON(order).getBytes("UTF-8");
+    return ServerMarshalling.fromJSON(new ByteArrayInputStream(encoded), Order.class);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.errai.bus.server.io.buffers.Buffer;
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.LockFreeTransmissionBuffer;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing to and reading from the transmission buffer, uncontended and with 1, 4, 16 and 64 threads writing
+ * to the color a single thread reads, which is what a busy message queue looks like. JMH cannot parameterize the
+ * number of threads in a group, so every producer count is a group of its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class TransmissionBufferBenchmark {
+  @Param({"locking", "lockfree"})
+  public String implementation;
+
+  @Param({"128", "1024"})
+  public int writeSize;
+
+  private Buffer buffer;
+  private BufferColor color;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final int segmentSize = 32;
+    final int segments = 65536;
+    if ("lockfree".equals(implementation)) {
+      buffer = LockFreeTransmissionBuffer.create(segmentSize, segments);
+    }
+    else {
+      buffer = TransmissionBuffer.create(segmentSize, segments);
+    }
+    color = BufferColor.getNewColor();
+  }
+
+  @State(Scope.Thread)
+  public static class Writer {
+    private ByteArrayInputStream payload;
+    private int size;
+
+    @Setup(Level.Trial)
+    public void setUp(final TransmissionBufferBenchmark benchmark) {
+      final byte[] data = new byte[benchmark.writeSize];
+      Arrays.fill(data, (byte) 'a');
+      payload = new ByteArrayInputStream(data);
+      size = data.length;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Reader {
+    private final BenchmarkMessages.CountingWriteAdapter adapter = new BenchmarkMessages.CountingWriteAdapter();
+  }
+
+  @Benchmark
+  public long write(final Writer writer) throws IOException {
+    writer.payload.reset();
+    return buffer.write(writer.size, writer.payload, color);
+  }
+
+  @Benchmark
+  @Group("producers1")
+  @GroupThreads(1)
+  public long producers1Write(final Writer writer) throws IOException {
+    return contendedWrite(writer);
+  }
+
+  @Benchmark
+  @Group("producers1")
+  @GroupThreads(1)
+  public boolean producers1Read(final Reader reader) throws IOException {
+    return contendedRead(reader);
+  }
+
+  @Benchmark
+  @Group("producers4")
+  @GroupThreads(4)
+  public long producers4Write(final Writer writer) throws IOException {
+    return contendedWrite(writer);
+  }
+
+  @Benchmark
+  @Group("producers4")
+  @GroupThreads(1)
+  public boolean producers4Read(final Reader reader) throws IOException {
+    return contendedRead(reader);
+  }
+
+  @Benchmark
+  @Group("producers16")
+  @GroupThreads(16)
+  public long producers16Write(final Writer writer) throws IOException {
+    return contendedWrite(writer);
+  }
+
+  @Benchmark
+  @Group("producers16")
+  @GroupThreads(1)
+  public boolean producers16Read(final Reader reader) throws IOException {
+    return contendedRead(reader);
+  }
+
+  @Benchmark
+  @Group("producers64")
+  @GroupThreads(64)
+  public long producers64Write(final Writer writer) throws IOException {
+    return contendedWrite(writer);
+  }
+
+  @Benchmark
+  @Group("producers64")
+  @GroupThreads(1)
+  public boolean producers64Read(final Reader reader) throws IOException {
+    return contendedRead(reader);
+  }
+
+  private long contendedWrite(final Writer writer) throws IOException {
+    writer.payload.reset();
+    return buffer.write(writer.size, writer.payload, color);
+  }
+
+  private boolean contendedRead(final Reader reader) throws IOException {
+    return buffer.read(reader.adapter, color);
+  }
+}
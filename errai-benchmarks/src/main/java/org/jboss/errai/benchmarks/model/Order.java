@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * A typical application entity: a few scalar fields and a list of nested portable objects.
+ */
+@Portable
+public class Order {
+  public enum Status {
+    OPEN, SHIPPED, CANCELLED
+  }
+
+  private long id;
+  private String customer;
+  private Date placed;
+  private Status status;
+  private List<OrderLine> lines = new ArrayList<OrderLine>();
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(final long id) {
+    this.id = id;
+  }
+
+  public String getCustomer() {
+    return customer;
+  }
+
+  public void setCustomer(final String customer) {
+    this.customer = customer;
+  }
+
+  public Date getPlaced() {
+    return placed;
+  }
+
+  public void setPlaced(final Date placed) {
+    this.placed = placed;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(final Status status) {
+    this.status = status;
+  }
+
+  public List<OrderLine> getLines() {
+    return lines;
+  }
+
+  public void setLines(final List<OrderLine> lines) {
+    this.lines = lines;
+  }
+}
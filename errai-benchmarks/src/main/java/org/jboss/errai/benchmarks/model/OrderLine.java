@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.benchmarks.model;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+@Portable
+public class OrderLine {
+  private String product;
+  private int quantity;
+  private double price;
+
+  public OrderLine() {
+  }
+
+  public OrderLine(final String product, final int quantity, final double price) {
+    this.product = product;
+    this.quantity = quantity;
+    this.price = price;
+  }
+
+  public String getProduct() {
+    return product;
+  }
+
+  public void setProduct(final String product) {
+    this.product = product;
+  }
+
+  public int getQuantity() {
+    return quantity;
+  }
+
+  public void setQuantity(final int quantity) {
+    this.quantity = quantity;
+  }
+
+  public double getPrice() {
+    return price;
+  }
+
+  public void setPrice(final double price) {
+    this.price = price;
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.websocket.jsr356.channel;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the output of a message queue through the asynchronous remote endpoint of a WebSocket session, so that the
+ * bus thread delivering a message never waits for the network.
+ * <p/>
+ * A WebSocket session can only send one message at a time. While a frame is being sent, further writes are
+ * coalesced: every write is a JSON array of messages, and the arrays written in the meantime are merged into a single
+ * array, which goes out as one frame once the previous send has completed. The number of writes which have been
+ * accepted but not yet sent is capped, so a client which stops reading fails fast instead of piling up memory.
+ */
+public class AsyncWebSocketSender implements SendHandler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncWebSocketSender.class.getName());
+
+  /**
+   * Writes are not merged into a frame which has already reached this size (in characters).
+   */
+  static final int MAX_FRAME_SIZE = 64 * 1024;
+
+  private final Session session;
+  private final int maxInFlight;
+
+  private final Object lock = new Object();
+  private final Deque<Frame> pending = new ArrayDeque<Frame>();
+  private Frame sending;
+  private int inFlight;
+  private volatile Throwable failure;
+
+  /**
+   * @param session
+   *     the WebSocket session to send to.
+   * @param maxInFlight
+   *     the maximum number of writes which have been accepted but not yet sent.
+   */
+  public AsyncWebSocketSender(final Session session, final int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("at least one write has to be allowed in flight: " + maxInFlight);
+    }
+
+    this.session = session;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Queues the given JSON payload for sending, and starts sending it right away unless another frame is being sent.
+   *
+   * @param data
+   *     the JSON payload.
+   *
+   * @throws IOException
+   *     if a previous send has failed, or if too many writes are in flight.
+   */
+  public void write(final String data) throws IOException {
+    final Frame frame;
+    synchronized (lock) {
+      if (failure != null) {
+        throw new IOException("websocket send failed for session: " + session.getId(), failure);
+      }
+      if (inFlight >= maxInFlight) {
+        throw new IOException("too many websocket writes in flight for session: " + session.getId());
+      }
+
+      inFlight++;
+      enqueue(data);
+
+      if (sending != null) {
+        return;
+      }
+      frame = sending = pending.poll();
+    }
+
+    send(frame);
+  }
+
+  /**
+   * Returns true if no send has failed so far.
+   */
+  public boolean isHealthy() {
+    return failure == null;
+  }
+
+  /**
+   * Returns the number of writes which have been accepted but not yet sent.
+   */
+  public int getInFlightCount() {
+    synchronized (lock) {
+      return inFlight;
+    }
+  }
+
+  private void enqueue(final String data) {
+    final Frame last = pending.peekLast();
+    if (last != null && last.merge(data)) {
+      return;
+    }
+    pending.add(new Frame(data));
+  }
+
+  private void send(final Frame frame) {
+    try {
+      session.getAsyncRemote().sendText(frame.json.toString(), this);
+    }
+    catch (Throwable t) {
+      onResult(new SendResult(t));
+    }
+  }
+
+  @Override
+  public void onResult(final SendResult result) {
+    final Frame next;
+    synchronized (lock) {
+      inFlight -= sending.writes;
+
+      if (!result.isOK()) {
+        failure = result.getException();
+        pending.clear();
+        inFlight = 0;
+        sending = null;
+        LOGGER.debug("websocket send failed for session: {}", session.getId(), failure);
+        return;
+      }
+
+      next = sending = pending.poll();
+    }
+
+    if (next != null) {
+      send(next);
+    }
+  }
+
+  private static boolean isArray(final CharSequence data) {
+    return data.length() >= 2 && data.charAt(0) == '[' && data.charAt(data.length() - 1) == ']';
+  }
+
+  private static boolean isEmptyArray(final CharSequence data) {
+    return data.length() == 2 && isArray(data);
+  }
+
+  /**
+   * The JSON array of messages going out as one frame.
+   */
+  private static class Frame {
+    private final StringBuilder json;
+    private int writes = 1;
+
+    private Frame(final String data) {
+      this.json = new StringBuilder(data);
+    }
+
+    /**
+     * Appends the messages of the given JSON array to the array of this frame.
+     *
+     * @return false if either is not a JSON array, or if this frame is already full.
+     */
+    private boolean merge(final String data) {
+      if (!isArray(json) || !isArray(data) || json.length() >= MAX_FRAME_SIZE) {
+        return false;
+      }
+
+      if (isEmptyArray(json)) {
+        json.setLength(0);
+        json.append(data);
+      }
+      else if (!isEmptyArray(data)) {
+        json.setCharAt(json.length() - 1, ',');
+        json.append(data, 1, data.length());
+      }
+      writes++;
+      return true;
+    }
+  }
+}
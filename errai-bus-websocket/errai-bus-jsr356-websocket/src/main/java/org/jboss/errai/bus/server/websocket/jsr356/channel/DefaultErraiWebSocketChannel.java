@@ -21,6 +21,7 @@ import org.jboss.errai.bus.client.api.SessionEndEvent;
 import org.jboss.errai.bus.client.api.SessionEndListener;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.server.io.MessageFactory;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.service.ErraiServiceSingleton;
 import org.jboss.errai.bus.server.servlet.websocket.WebSocketNegotiationHandler;
@@ -42,6 +43,10 @@ import java.util.Map;
  * Handler for websocket messages for both receiving and sending. There is one
  * instance for each {@link javax.websocket.Session} and each one has a relation
  * to its {@link javax.servlet.http.HttpSession}.
+ * <p/>
+ * If {@link ErraiConfigAttribs#WEBSOCKET_SERVLET_ASYNC_SEND} is enabled, writes
+ * are handed to an {@link AsyncWebSocketSender} instead of blocking the
+ * delivering thread.
  * 
  * @author Michel Werren
  */
@@ -57,6 +62,8 @@ public class DefaultErraiWebSocketChannel implements ErraiWebSocketChannel {
 
   protected QueueSession queueSession = null;
 
+  protected final AsyncWebSocketSender asyncSender;
+
   public DefaultErraiWebSocketChannel(Session session, HttpSession httpSession) {
     this.session = session;
     this.httpSession = httpSession;
@@ -68,6 +75,14 @@ public class DefaultErraiWebSocketChannel implements ErraiWebSocketChannel {
       throw new IllegalStateException(
               "Errai Bus should be initialized at this time. Default servlet configured?");
     }
+
+    if (ErraiConfigAttribs.WEBSOCKET_SERVLET_ASYNC_SEND.getBoolean(erraiService.getConfiguration())) {
+      asyncSender = new AsyncWebSocketSender(session,
+              ErraiConfigAttribs.WEBSOCKET_SERVLET_MAX_IN_FLIGHT.getInt(erraiService.getConfiguration()));
+    }
+    else {
+      asyncSender = null;
+    }
   }
 
   public void doErraiMessage(final String message) {
@@ -116,12 +131,17 @@ public class DefaultErraiWebSocketChannel implements ErraiWebSocketChannel {
 
   @Override
   public boolean isConnected() {
-    return session.isOpen();
+    return session.isOpen() && (asyncSender == null || asyncSender.isHealthy());
   }
 
   @Override
   public void write(String data) throws IOException {
-    session.getBasicRemote().sendText(data);
+    if (asyncSender != null) {
+      asyncSender.write(data);
+    }
+    else {
+      session.getBasicRemote().sendText(data);
+    }
   }
 
   @Override
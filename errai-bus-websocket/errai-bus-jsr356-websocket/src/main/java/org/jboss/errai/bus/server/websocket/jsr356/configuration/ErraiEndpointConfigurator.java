@@ -17,13 +17,17 @@
 package org.jboss.errai.bus.server.websocket.jsr356.configuration;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jboss.errai.bus.server.io.PayloadCompression;
 import org.jboss.errai.bus.server.websocket.jsr356.filter.FilterLookup;
 
 import javax.servlet.http.HttpSession;
+import javax.websocket.Extension;
 import javax.websocket.HandshakeResponse;
 import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.ServerEndpointConfig;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 
@@ -46,6 +50,26 @@ public class ErraiEndpointConfigurator extends ServerEndpointConfig.Configurator
     applyWebsocketFilters(request);
   }
 
+  /**
+   * The container implements the <tt>permessage-deflate</tt> extension itself (if it supports it at all), so all
+   * that's decided here is whether it may be negotiated: not if bus payload compression is disabled.
+   */
+  @Override
+  public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested) {
+    final List<Extension> negotiated = super.getNegotiatedExtensions(installed, requested);
+    if (PayloadCompression.isEnabled()) {
+      return negotiated;
+    }
+
+    final List<Extension> uncompressed = new ArrayList<Extension>(negotiated.size());
+    for (final Extension extension : negotiated) {
+      if (!PayloadCompression.PERMESSAGE_DEFLATE.equals(extension.getName())) {
+        uncompressed.add(extension);
+      }
+    }
+    return uncompressed;
+  }
+
   /**
    * Applies the {@link javax.servlet.http.HttpSession} to the configuration.
    * 
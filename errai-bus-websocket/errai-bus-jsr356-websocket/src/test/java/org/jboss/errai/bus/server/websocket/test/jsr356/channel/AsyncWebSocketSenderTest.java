@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.websocket.test.jsr356.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.jboss.errai.bus.server.websocket.jsr356.channel.AsyncWebSocketSender;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsyncWebSocketSenderTest {
+
+  @Mock
+  private Session wsSession;
+
+  @Mock
+  private RemoteEndpoint.Async remote;
+
+  private AsyncWebSocketSender sender;
+
+  @Before
+  public void setup() {
+    when(wsSession.getAsyncRemote()).thenReturn(remote);
+    sender = new AsyncWebSocketSender(wsSession, 3);
+  }
+
+  @Test
+  public void writesAreCoalescedWhileFrameIsInFlight() throws Exception {
+    sender.write("[{\"a\":1}]");
+    sender.write("[{\"b\":2}]");
+    sender.write("[]");
+
+    verify(remote).sendText("[{\"a\":1}]", sender);
+    assertEquals(3, sender.getInFlightCount());
+
+    sender.onResult(new SendResult());
+    verify(remote).sendText("[{\"b\":2}]", sender);
+    assertEquals(2, sender.getInFlightCount());
+
+    sender.onResult(new SendResult());
+    assertEquals(0, sender.getInFlightCount());
+
+    sender.write("[{\"c\":3}]");
+    sender.write("[{\"d\":4}]");
+    sender.write("[{\"e\":5}]");
+    sender.onResult(new SendResult());
+
+    verify(remote).sendText("[{\"d\":4},{\"e\":5}]", sender);
+  }
+
+  @Test
+  public void writeFailsOnceTooManyWritesAreInFlight() throws Exception {
+    sender.write("[{\"a\":1}]");
+    sender.write("[{\"b\":2}]");
+    sender.write("[{\"c\":3}]");
+
+    try {
+      sender.write("[{\"d\":4}]");
+      fail("expected the write to be rejected");
+    }
+    catch (IOException e) {
+      // expected
+    }
+
+    sender.onResult(new SendResult());
+    verify(remote).sendText("[{\"b\":2},{\"c\":3}]", sender);
+
+    sender.write("[{\"d\":4}]");
+    sender.onResult(new SendResult());
+    verify(remote).sendText("[{\"d\":4}]", sender);
+    assertTrue(sender.isHealthy());
+  }
+
+  @Test
+  public void failedSendDiscardsPendingWrites() throws Exception {
+    sender.write("[{\"a\":1}]");
+    sender.write("[{\"b\":2}]");
+
+    sender.onResult(new SendResult(new IOException("connection reset")));
+    assertFalse(sender.isHealthy());
+    assertEquals(0, sender.getInFlightCount());
+    verify(remote, times(1)).sendText(any(String.class), any(SendHandler.class));
+
+    try {
+      sender.write("[{\"c\":3}]");
+      fail("expected the write to fail");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+}
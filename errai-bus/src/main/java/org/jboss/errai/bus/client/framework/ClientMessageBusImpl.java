@@ -59,6 +59,7 @@ import org.jboss.errai.bus.client.framework.transports.WebsocketHandler;
 import org.jboss.errai.bus.client.protocols.BusCommand;
 import org.jboss.errai.bus.client.util.BusToolsCli;
 import org.jboss.errai.bus.client.util.ManagementConsole;
+import org.jboss.errai.bus.client.util.SubjectPatterns;
 import org.jboss.errai.common.client.api.Assert;
 import org.jboss.errai.common.client.api.extension.InitVotes;
 import org.jboss.errai.common.client.protocols.MessageParts;
@@ -258,6 +259,12 @@ public class ClientMessageBusImpl implements ClientMessageBus {
   private final Map<String, List<MessageCallback>> localSubscriptions = new HashMap<>();
   private final Map<String, List<MessageCallback>> shadowSubscriptions = new HashMap<>();
 
+  /**
+   * The subjects of {@link #subscriptions} and {@link #localSubscriptions} which are patterns, see
+   * {@link SubjectPatterns}.
+   */
+  private final List<String> patternSubscriptions = new ArrayList<>();
+
   private final Map<String, MessageCallback> remotes = new HashMap<>();
 
   private final List<TransportErrorHandler> transportErrorHandlers = new ArrayList<>();
@@ -265,6 +272,8 @@ public class ClientMessageBusImpl implements ClientMessageBus {
   private final List<Runnable> deferredSubscriptions = new ArrayList<>();
   private final List<Message> deferredMessages = new ArrayList<>();
 
+  private final MessageBatcher messageBatcher = new MessageBatcher(this);
+
   private final List<BusLifecycleListener> lifecycleListeners = new ArrayList<>();
 
   private BusState state = BusState.UNINITIALIZED;
@@ -534,6 +543,7 @@ public class ClientMessageBusImpl implements ClientMessageBus {
           .set(MessageParts.PriorityProcessing, "1"));
     }
 
+    deferredMessages.addAll(messageBatcher.drain());
     deferredMessages.addAll(transportHandler.stop(true));
   }
 
@@ -807,11 +817,18 @@ public class ClientMessageBusImpl implements ClientMessageBus {
 
         if (subscriptions.containsKey(subject)) {
           deliverToSubscriptions(subscriptions, subject, message);
+          delivered = true;
         }
         else if (localSubscriptions.containsKey(subject)) {
           deliverToSubscriptions(localSubscriptions, subject, message);
+          delivered = true;
         }
-        else if (!delivered) {
+
+        if (deliverToPatternSubscriptions(subject, message)) {
+          delivered = true;
+        }
+
+        if (!delivered) {
           if (shadowSubscriptions.containsKey(subject)) {
             deliverToSubscriptions(shadowSubscriptions, subject, message);
           }
@@ -840,6 +857,37 @@ public class ClientMessageBusImpl implements ClientMessageBus {
         cb.callback(msg);
       }
     }
+    deliverToPatternSubscriptions(subject, msg);
+  }
+
+  /**
+   * Delivers the given message to the subscriptions to the patterns matching its subject.
+   *
+   * @return true if the subject matched any pattern.
+   */
+  private boolean deliverToPatternSubscriptions(final String subject, final Message message) {
+    if (patternSubscriptions.isEmpty() || SubjectPatterns.isPattern(subject)) {
+      return false;
+    }
+
+    boolean matched = false;
+    for (final String pattern : new ArrayList<>(patternSubscriptions)) {
+      if (SubjectPatterns.matches(pattern, subject)) {
+        matched |= deliverToPattern(subscriptions.get(pattern), message);
+        matched |= deliverToPattern(localSubscriptions.get(pattern), message);
+      }
+    }
+    return matched;
+  }
+
+  private static boolean deliverToPattern(final List<MessageCallback> callbacks, final Message message) {
+    if (callbacks == null || callbacks.isEmpty()) {
+      return false;
+    }
+    for (final MessageCallback cb : new ArrayList<>(callbacks)) {
+      cb.callback(message);
+    }
+    return true;
   }
 
   public boolean callErrorHandler(final Message message, final Throwable t) {
@@ -863,17 +911,42 @@ public class ClientMessageBusImpl implements ClientMessageBus {
       return;
     }
 
-    transportHandler.transmit(Collections.singletonList(message));
+    messageBatcher.send(message);
+  }
+
+  /**
+   * Marks the given subject as latest-value-wins: of the messages to this subject waiting to be transmitted to the
+   * server, only the latest one is sent. See {@link MessageBatcher}.
+   *
+   * @param subject
+   *     the subject to mark.
+   * @param latestValueWins
+   *     true to mark the subject, false to remove the mark.
+   */
+  public void setLatestValueWins(final String subject, final boolean latestValueWins) {
+    messageBatcher.setLatestValueWins(subject, latestValueWins);
+  }
+
+  public MessageBatcher getMessageBatcher() {
+    return messageBatcher;
   }
 
   private void addSubscriptionEntry(final String subject, final MessageCallback reference) {
+    addPatternSubscription(subject);
     _addCallbackEntry(subscriptions, subject, reference);
   }
 
   private void addLocalSubscriptionEntry(final String subject, final MessageCallback reference) {
+    addPatternSubscription(subject);
     _addCallbackEntry(localSubscriptions, subject, reference);
   }
 
+  private void addPatternSubscription(final String subject) {
+    if (!patternSubscriptions.contains(subject) && SubjectPatterns.isPattern(subject)) {
+      patternSubscriptions.add(subject);
+    }
+  }
+
   private static void _addCallbackEntry(final Map<String, List<MessageCallback>> subscriptions,
                                         final String subject,
                                         final MessageCallback reference) {
@@ -888,6 +961,11 @@ public class ClientMessageBusImpl implements ClientMessageBus {
 
   private void removeSubscriptionTopic(final String subject) {
     subscriptions.remove(subject);
+
+    final List<MessageCallback> localCallbacks = localSubscriptions.get(subject);
+    if (localCallbacks == null || localCallbacks.isEmpty()) {
+      patternSubscriptions.remove(subject);
+    }
   }
 
   private static void deliverToSubscriptions(final Map<String, List<MessageCallback>> subscriptions,
@@ -1152,6 +1230,10 @@ public class ClientMessageBusImpl implements ClientMessageBus {
     properties.clear();
   }
 
+  String getProperty(final String name) {
+    return properties.get(name);
+  }
+
   private boolean isProperty(final String name, final String value) {
     return properties.containsKey(name) && properties.get(name).equals(value);
   }
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.client.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.framework.transports.TransportHandler;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Coalesces the messages the client bus sends to the server into batches, so that a burst of messages goes out in
+ * one transmission instead of one transmission per message.
+ * <p/>
+ * By default a batch collects all messages sent in the same turn of the browser event loop. A longer window can be
+ * configured with the {@link #BATCH_WINDOW_MS} bus property. A batch is transmitted early once it holds as many
+ * messages as the batch size allows: the {@link #BATCH_SIZE} bus property, scaled up with the round trip time
+ * measured by the current transport, since the slower the link the more there is to gain from fewer transmissions.
+ * <p/>
+ * Subjects can be marked as <em>latest-value-wins</em> (see {@link #setLatestValueWins(String, boolean)}). Of the
+ * messages to such a subject that are waiting in the same batch only the latest is transmitted; the superseded ones
+ * are dropped without notice. This is meant for state updates like cursor positions or presence, and must not be
+ * used for subjects whose messages expect a reply.
+ * <p/>
+ * Messages marked for priority processing, and messages carrying
+ * {@link TransportHandler#EXTRA_URI_PARMS_RESOURCE extra URI parameters}, are never held back.
+ */
+public class MessageBatcher {
+  /**
+   * The bus property for the time in milliseconds messages are collected for before they are transmitted. A value of
+   * <tt>0</tt> (the default) collects the messages sent during the current turn of the event loop.
+   */
+  public static final String BATCH_WINDOW_MS = "errai.bus.batch_window_ms";
+
+  /**
+   * The bus property for the number of messages a batch holds on a fast link. Defaults to <tt>16</tt>. A value of
+   * <tt>1</tt> or less turns batching off.
+   */
+  public static final String BATCH_SIZE = "errai.bus.batch_size";
+
+  private static final int DEFAULT_BATCH_SIZE = 16;
+
+  /**
+   * The round trip time, in milliseconds, up to which the batch size isn't scaled.
+   */
+  private static final int REFERENCE_LATENCY_MS = 50;
+
+  /**
+   * The largest factor the batch size is scaled by on slow links.
+   */
+  private static final int MAX_LATENCY_SCALE = 8;
+
+  private static final Logger logger = LoggerFactory.getLogger(MessageBatcher.class);
+
+  private final ClientMessageBusImpl messageBus;
+
+  /**
+   * The messages waiting to be transmitted, in the order they were sent. Superseded latest-value-wins messages are
+   * replaced by <tt>null</tt> so the positions recorded in {@link #latestValuePositions} stay valid.
+   */
+  private final List<Message> pending = new ArrayList<Message>();
+  private int pendingCount = 0;
+
+  private final Set<String> latestValueWinsSubjects = new HashSet<String>();
+  private final Map<String, Integer> latestValuePositions = new HashMap<String, Integer>();
+
+  private boolean flushScheduled = false;
+
+  private final Scheduler.ScheduledCommand flushCommand = new Scheduler.ScheduledCommand() {
+    @Override
+    public void execute() {
+      if (flushScheduled) {
+        flush();
+      }
+    }
+  };
+
+  private final Timer flushTimer = new Timer() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  private int supersededMessages = 0;
+  private int transmittedBatches = 0;
+
+  public MessageBatcher(final ClientMessageBusImpl messageBus) {
+    this.messageBus = messageBus;
+  }
+
+  /**
+   * Marks the given subject as latest-value-wins, or removes the mark.
+   */
+  public void setLatestValueWins(final String subject, final boolean latestValueWins) {
+    if (latestValueWins) {
+      latestValueWinsSubjects.add(subject);
+    }
+    else {
+      latestValueWinsSubjects.remove(subject);
+    }
+  }
+
+  public boolean isLatestValueWins(final String subject) {
+    return latestValueWinsSubjects.contains(subject);
+  }
+
+  /**
+   * Queues the given message for transmission to the server.
+   */
+  public void send(final Message message) {
+    if (message.hasResource(TransportHandler.EXTRA_URI_PARMS_RESOURCE)) {
+      flush();
+      transmit(Collections.singletonList(message));
+      return;
+    }
+
+    final int batchSize = getBatchSize();
+    if (message.hasPart(MessageParts.PriorityProcessing) || batchSize <= 1) {
+      add(message);
+      flush();
+      return;
+    }
+
+    add(message);
+
+    if (pendingCount >= batchSize) {
+      flush();
+    }
+    else if (!flushScheduled) {
+      flushScheduled = true;
+
+      final int window = getIntProperty(BATCH_WINDOW_MS, 0);
+      if (window > 0) {
+        flushTimer.schedule(window);
+      }
+      else {
+        Scheduler.get().scheduleFinally(flushCommand);
+      }
+    }
+  }
+
+  private void add(final Message message) {
+    final String subject = message.getSubject();
+    if (subject != null && latestValueWinsSubjects.contains(subject)) {
+      final Integer superseded = latestValuePositions.put(subject, pending.size());
+      if (superseded != null) {
+        pending.set(superseded, null);
+        pendingCount--;
+        supersededMessages++;
+      }
+    }
+
+    pending.add(message);
+    pendingCount++;
+  }
+
+  /**
+   * Transmits all waiting messages now.
+   */
+  public void flush() {
+    final List<Message> batch = drain();
+    if (!batch.isEmpty()) {
+      transmittedBatches++;
+      transmit(batch);
+    }
+  }
+
+  /**
+   * Removes all waiting messages without transmitting them.
+   *
+   * @return the messages that were waiting, in the order they were sent.
+   */
+  public List<Message> drain() {
+    if (flushScheduled) {
+      flushScheduled = false;
+      flushTimer.cancel();
+    }
+
+    if (pendingCount == 0) {
+      pending.clear();
+      latestValuePositions.clear();
+      return Collections.emptyList();
+    }
+
+    final List<Message> batch = new ArrayList<Message>(pendingCount);
+    for (final Message message : pending) {
+      if (message != null) {
+        batch.add(message);
+      }
+    }
+
+    pending.clear();
+    pendingCount = 0;
+    latestValuePositions.clear();
+    return batch;
+  }
+
+  private void transmit(final List<Message> messages) {
+    logger.trace("transmitting batch of {} message(s)", messages.size());
+    messageBus.getTransportHandler().transmit(messages);
+  }
+
+  /**
+   * Returns the number of messages a batch may hold before it is transmitted: the configured batch size, scaled
+   * with the round trip time last measured by the current transport.
+   */
+  public int getBatchSize() {
+    final int batchSize = getIntProperty(BATCH_SIZE, DEFAULT_BATCH_SIZE);
+    if (batchSize <= 1) {
+      return batchSize;
+    }
+
+    final int latency = messageBus.getTransportHandler().getStatistics().getMeasuredLatency();
+    if (latency <= REFERENCE_LATENCY_MS) {
+      return batchSize;
+    }
+
+    return batchSize * Math.min(MAX_LATENCY_SCALE, latency / REFERENCE_LATENCY_MS);
+  }
+
+  private int getIntProperty(final String name, final int defaultValue) {
+    final String value = messageBus.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    }
+    catch (NumberFormatException e) {
+      logger.warn("ignoring invalid value for bus property " + name + ": " + value);
+      return defaultValue;
+    }
+  }
+
+  public int getPendingMessages() {
+    return pendingCount;
+  }
+
+  /**
+   * Returns the number of latest-value-wins messages that were dropped because a newer message to the same subject
+   * superseded them.
+   */
+  public int getSupersededMessages() {
+    return supersededMessages;
+  }
+
+  public int getTransmittedBatches() {
+    return transmittedBatches;
+  }
+}
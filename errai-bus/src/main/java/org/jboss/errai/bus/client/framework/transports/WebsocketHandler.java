@@ -308,7 +308,8 @@ public class WebsocketHandler implements TransportHandler, TransportStatistics {
 
   @Override
   public int getMeasuredLatency() {
-    return -1;
+    // websocket frames aren't answered, so report the round trip time last measured over HTTP
+    return longPollingTransport.getMeasuredLatency();
   }
 
   @Override
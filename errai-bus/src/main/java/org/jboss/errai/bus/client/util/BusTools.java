@@ -32,6 +32,7 @@ public class BusTools {
     s.add("AuthorizationService");
     s.add("AuthenticationService");
     s.add("ServerEchoService");
+    s.add("ServerMetricsService");
 
     s.add("ClientBus");
     s.add(DefaultErrorCallback.CLIENT_ERROR_SUBJECT);
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.client.util;
+
+/**
+ * Matches subjects against subscription patterns, on the client and on the server.
+ * <p/>
+ * Subjects are hierarchical, with their tokens separated by dots, like <tt>Orders.EU.Created</tt>. In a pattern a
+ * <tt>*</tt> token stands for exactly one token, and a <tt>&gt;</tt> as the last token stands for one or more
+ * tokens: <tt>Orders.*.Created</tt> and <tt>Orders.&gt;</tt> both match <tt>Orders.EU.Created</tt>. A subject
+ * without wildcard tokens is not a pattern.
+ */
+public final class SubjectPatterns {
+  private static final String SEPARATOR = "\\.";
+  private static final String ONE_TOKEN = "*";
+  private static final String REMAINING_TOKENS = ">";
+
+  private SubjectPatterns() {
+  }
+
+  public static String[] tokenize(final String subject) {
+    return subject.split(SEPARATOR);
+  }
+
+  public static boolean isOneToken(final String token) {
+    return ONE_TOKEN.equals(token);
+  }
+
+  public static boolean isRemainingTokens(final String token) {
+    return REMAINING_TOKENS.equals(token);
+  }
+
+  /**
+   * Returns true if the given subject contains a wildcard token.
+   */
+  public static boolean isPattern(final String subject) {
+    if (subject.indexOf('*') == -1 && subject.indexOf('>') == -1) {
+      return false;
+    }
+
+    final String[] tokens = tokenize(subject);
+    for (int i = 0; i < tokens.length; i++) {
+      if (isOneToken(tokens[i]) || (i == tokens.length - 1 && isRemainingTokens(tokens[i]))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given pattern starts with a wildcard token, like <tt>&gt;</tt> or <tt>*.Created</tt>, so
+   * that it matches subjects of any service.
+   */
+  public static boolean isRootPattern(final String pattern) {
+    final String[] tokens = tokenize(pattern);
+    return tokens.length == 0 || isOneToken(tokens[0]) || (tokens.length == 1 && isRemainingTokens(tokens[0]));
+  }
+
+  /**
+   * Returns true if the given subject matches the given pattern.
+   */
+  public static boolean matches(final String pattern, final String subject) {
+    final String[] patternTokens = tokenize(pattern);
+    final String[] subjectTokens = tokenize(subject);
+
+    for (int i = 0; i < patternTokens.length; i++) {
+      if (i == patternTokens.length - 1 && isRemainingTokens(patternTokens[i])) {
+        return subjectTokens.length > i;
+      }
+      if (i == subjectTokens.length) {
+        return false;
+      }
+      if (!isOneToken(patternTokens[i]) && !patternTokens[i].equals(subjectTokens[i])) {
+        return false;
+      }
+    }
+    return patternTokens.length == subjectTokens.length;
+  }
+}
@@ -18,6 +18,7 @@ package org.jboss.errai.bus.server;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
@@ -42,6 +43,24 @@ public class DeliveryPlan {
     return new DeliveryPlan(new MessageCallback[]{callback});
   }
 
+  /**
+   * Creates a delivery plan delivering to all the callbacks of the given plans.
+   */
+  public static DeliveryPlan combine(final List<DeliveryPlan> plans) {
+    int size = 0;
+    for (final DeliveryPlan plan : plans) {
+      size += plan.deliverTo.length;
+    }
+
+    final MessageCallback[] deliverTo = new MessageCallback[size];
+    int offset = 0;
+    for (final DeliveryPlan plan : plans) {
+      System.arraycopy(plan.deliverTo, 0, deliverTo, offset, plan.deliverTo.length);
+      offset += plan.deliverTo.length;
+    }
+    return new DeliveryPlan(deliverTo);
+  }
+
   public void deliver(final Message m) {
     for (final MessageCallback callback : deliverTo) {
       callback.callback(m);
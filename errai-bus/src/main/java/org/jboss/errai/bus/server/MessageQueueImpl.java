@@ -27,15 +27,18 @@ import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.api.QueueActivationCallback;
 import org.jboss.errai.bus.server.io.BufferDeliveryHandler;
+import org.jboss.errai.bus.server.io.BufferHelper;
 import org.jboss.errai.bus.server.io.Buffered;
 import org.jboss.errai.bus.server.io.ByteWriteAdapter;
 import org.jboss.errai.bus.server.io.Cleanable;
 import org.jboss.errai.bus.server.io.DirectChannel;
 import org.jboss.errai.bus.server.io.MessageDeliveryHandler;
+import org.jboss.errai.bus.server.io.MultiMessageFilter;
+import org.jboss.errai.bus.server.io.PageUtil;
+import org.jboss.errai.bus.server.io.SlowConsumerPolicy;
 import org.jboss.errai.bus.server.io.Wakeable;
 import org.jboss.errai.bus.server.io.buffers.Buffer;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
-import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
 import org.slf4j.Logger;
 
 /**
@@ -43,6 +46,9 @@ import org.slf4j.Logger;
  * that can be stored, transmitted and those which timeout. The <tt>MessageQueue</tt> is implemented using a
  * {@link java.util.concurrent.LinkedBlockingQueue} to store the messages, and a <tt>ServerMessageBus</tt> to send the
  * messages.
+ * <p/>
+ * If a high watermark is set, the queue becomes congested once that many messages are waiting for the client, and
+ * hands control over to its {@link SlowConsumerPolicy} until the client has drained it down to the low watermark.
  */
 public class MessageQueueImpl implements MessageQueue {
   private final QueueSession session;
@@ -56,20 +62,50 @@ public class MessageQueueImpl implements MessageQueue {
   private volatile QueueActivationCallback activationCallback;
   private volatile long timeout;
 
-  private final TransmissionBuffer buffer;
+  private final Buffer buffer;
   private final BufferColor bufferColor;
 
   private final Object activationLock = new Object();
   private final Object pageLock = new Object();
   private final AtomicInteger messageCount = new AtomicInteger();
 
+  private final int highWatermark;
+  private final int lowWatermark;
+  private final SlowConsumerPolicy slowConsumerPolicy;
+  private final Object backpressureLock = new Object();
+  private volatile boolean congested = false;
+
   private static final Logger log = getLogger(MessageQueueImpl.class);
 
-  public MessageQueueImpl(final TransmissionBuffer buffer, final QueueSession session, final int timeoutSecs) {
+  public MessageQueueImpl(final Buffer buffer, final QueueSession session, final int timeoutSecs) {
+    this(buffer, session, timeoutSecs, 0, 0, null);
+  }
+
+  /**
+   * @param highWatermark
+   *     the number of waiting messages at which the queue becomes congested. 0 disables backpressure.
+   * @param lowWatermark
+   *     the number of waiting messages the client has to drain the queue down to before it is no longer congested.
+   * @param slowConsumerPolicy
+   *     the policy in control of the queue while it is congested.
+   */
+  public MessageQueueImpl(final Buffer buffer,
+                          final QueueSession session,
+                          final int timeoutSecs,
+                          final int highWatermark,
+                          final int lowWatermark,
+                          final SlowConsumerPolicy slowConsumerPolicy) {
+    if (highWatermark > 0 && (slowConsumerPolicy == null || lowWatermark >= highWatermark)) {
+      throw new IllegalArgumentException("a high watermark requires a slow consumer policy and a lower low watermark");
+    }
+
     this.buffer = buffer;
     this.session = session;
     this.bufferColor = BufferColor.getNewColorFromHead(buffer);
     this.timeout = (timeoutSecs * 1000);
+    this.highWatermark = highWatermark;
+    this.lowWatermark = lowWatermark;
+    this.slowConsumerPolicy = slowConsumerPolicy;
   }
 
   @Override
@@ -78,8 +114,17 @@ public class MessageQueueImpl implements MessageQueue {
       throw new QueueUnavailableException("queue is not available");
     }
 
+    if (pagedOut) {
+      return readInPageData(stream);
+    }
+
     if (deliveryHandler instanceof Buffered) {
-      return ((Buffered) deliveryHandler).copyFromBuffer(this, stream);
+      try {
+        return ((Buffered) deliveryHandler).copyFromBuffer(this, stream);
+      }
+      finally {
+        relieveIfDrained();
+      }
     }
     else {
       // this can happen during the hand off to WebSockets.
@@ -95,8 +140,17 @@ public class MessageQueueImpl implements MessageQueue {
       throw new QueueUnavailableException("queue is not available");
     }
 
+    if (pagedOut) {
+      return readInPageData(stream);
+    }
+
     if (deliveryHandler instanceof Buffered) {
-      return ((Buffered) deliveryHandler).copyFromBuffer(timeUnit, time, this, stream);
+      try {
+        return ((Buffered) deliveryHandler).copyFromBuffer(timeUnit, time, this, stream);
+      }
+      finally {
+        relieveIfDrained();
+      }
     }
     else {
       // this can happen during the hand off to WebSockets.
@@ -106,6 +160,16 @@ public class MessageQueueImpl implements MessageQueue {
     return false;
   }
 
+  /**
+   * Transmits the messages paged out to disk, which are older than anything still waiting in the buffer.
+   */
+  private boolean readInPageData(final ByteWriteAdapter stream) throws IOException {
+    PageUtil.readInPageFile(this, stream, new MultiMessageFilter());
+
+    relieveIfDrained();
+    return true;
+  }
+
   /**
    * Inserts the specified message into the queue, and returns true if it was successful
    *
@@ -120,9 +184,96 @@ public class MessageQueueImpl implements MessageQueue {
       throw new QueueUnavailableException("queue is not available");
     }
 
+    if (congested) {
+      synchronized (backpressureLock) {
+        if (congested) {
+          return slowConsumerPolicy.offer(this, message);
+        }
+      }
+    }
+
     return deliveryHandler.deliver(this, message);
   }
 
+  @Override
+  public boolean offerShared(final long sequence) {
+    if (!bufferColor.isSharedDataVisible(sequence)) {
+      return false;
+    }
+
+    // messages only wait in the buffer if the client has to poll for them.
+    if (deliveryHandler instanceof Buffered) {
+      incrementMessageCount();
+    }
+    wake();
+    return true;
+  }
+
+  @Override
+  public boolean offerEncoded(final byte[] payload) throws IOException {
+    if (!queueRunning) {
+      throw new QueueUnavailableException("queue is not available");
+    }
+
+    if (congested) {
+      return false;
+    }
+
+    BufferHelper.write(buffer, bufferColor, payload);
+
+    if (deliveryHandler instanceof Buffered) {
+      incrementMessageCount();
+    }
+    wake();
+    return true;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return messageCount.get();
+  }
+
+  @Override
+  public boolean isCongested() {
+    return congested;
+  }
+
+  private void reachedHighWatermark() {
+    synchronized (backpressureLock) {
+      if (!queueRunning || messageCount.get() < highWatermark) {
+        return;
+      }
+
+      congested = true;
+      try {
+        slowConsumerPolicy.onHighWatermark(this);
+      }
+      catch (IOException e) {
+        log.warn("slow consumer policy failed for session: " + session.getSessionId(), e);
+      }
+    }
+  }
+
+  private void relieveIfDrained() {
+    if (!congested || messageCount.get() > lowWatermark) {
+      return;
+    }
+
+    synchronized (backpressureLock) {
+      if (!congested || messageCount.get() > lowWatermark) {
+        return;
+      }
+
+      congested = false;
+      try {
+        slowConsumerPolicy.onLowWatermark(this);
+      }
+      catch (IOException e) {
+        log.warn("slow consumer policy failed for session: " + session.getSessionId(), e);
+      }
+    }
+  }
+
   @Override
   public long getCurrentBufferSequenceNumber() {
     return bufferColor.getSequence().get();
@@ -244,6 +395,7 @@ public class MessageQueueImpl implements MessageQueue {
     if (deliveryHandler instanceof Cleanable) {
       ((Cleanable) deliveryHandler).clean(this);
     }
+    PageUtil.discardPageData(this);
   }
 
   /**
@@ -303,7 +455,11 @@ public class MessageQueueImpl implements MessageQueue {
 
   @Override
   public int incrementMessageCount() {
-    return messageCount.incrementAndGet();
+    final int depth = messageCount.incrementAndGet();
+    if (highWatermark > 0 && depth >= highWatermark) {
+      reachedHighWatermark();
+    }
+    return depth;
   }
 
   @Override
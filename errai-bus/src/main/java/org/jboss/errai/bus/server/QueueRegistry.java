@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.server.api.MessageQueue;
+
+/**
+ * The registry of the message queues of the server bus, and of the sessions they belong to.
+ * <p/>
+ * Lookups, registrations and removals don't lock: the maps are concurrent, and removals are conditional, so a queue
+ * which is being closed can't remove the registration of the queue that replaced it. Operations which have to be
+ * atomic for one session, like the handshake replacing the queue of a session, synchronize on the
+ * {@link #getLock(QueueSession) lock of the session}. The locks are striped by the hash of the session id, so
+ * handshakes of different sessions don't wait for each other, even when a great number of clients reconnect at
+ * once.
+ * <p/>
+ * For every queue the registry also keeps the subjects it has subscribed to, so that closing a queue only has to
+ * visit the remote subscriptions of that queue instead of all of them.
+ */
+public class QueueRegistry {
+  private final Object[] locks;
+  private final int lockMask;
+
+  private final ConcurrentMap<QueueSession, MessageQueue> queues;
+  private final ConcurrentMap<String, QueueSession> sessions;
+  private final ConcurrentMap<MessageQueue, Set<QueueSession>> sessionsByQueue;
+  private final ConcurrentMap<MessageQueue, Set<String>> subjectsByQueue;
+
+  public QueueRegistry() {
+    this(Runtime.getRuntime().availableProcessors() * 8);
+  }
+
+  /**
+   * @param stripes
+   *     the number of session locks. Rounded up to a power of two.
+   */
+  public QueueRegistry(final int stripes) {
+    int size = 16;
+    while (size < stripes) {
+      size <<= 1;
+    }
+
+    locks = new Object[size];
+    for (int i = 0; i < size; i++) {
+      locks[i] = new Object();
+    }
+    lockMask = size - 1;
+
+    queues = new ConcurrentHashMap<QueueSession, MessageQueue>(1024, 0.75f, size);
+    sessions = new ConcurrentHashMap<String, QueueSession>(1024, 0.75f, size);
+    sessionsByQueue = new ConcurrentHashMap<MessageQueue, Set<QueueSession>>(1024, 0.75f, size);
+    subjectsByQueue = new ConcurrentHashMap<MessageQueue, Set<String>>(1024, 0.75f, size);
+  }
+
+  /**
+   * Returns the lock guarding the queue of the given session.
+   */
+  public Object getLock(final QueueSession session) {
+    int h = session.getSessionId().hashCode();
+    h ^= (h >>> 16);
+    return locks[h & lockMask];
+  }
+
+  public int getStripeCount() {
+    return locks.length;
+  }
+
+  /**
+   * Registers the queue of the given session, replacing any previous queue of the session.
+   */
+  public void addQueue(final QueueSession session, final MessageQueue queue) {
+    sessionsOf(queue).add(session);
+    queues.put(session, queue);
+    sessions.put(session.getSessionId(), session);
+  }
+
+  /**
+   * Registers the queue of <tt>oldSession</tt> as the queue of <tt>newSession</tt> as well.
+   */
+  public void addAlias(final QueueSession oldSession, final QueueSession newSession) {
+    final MessageQueue queue = queues.get(oldSession);
+    sessions.put(newSession.getSessionId(), oldSession);
+    if (queue != null) {
+      sessionsOf(queue).add(newSession);
+      queues.put(newSession, queue);
+    }
+  }
+
+  private Set<QueueSession> sessionsOf(final MessageQueue queue) {
+    Set<QueueSession> set = sessionsByQueue.get(queue);
+    if (set == null) {
+      final Set<QueueSession> newSet = Collections.newSetFromMap(new ConcurrentHashMap<QueueSession, Boolean>(4));
+      set = sessionsByQueue.putIfAbsent(queue, newSet);
+      if (set == null) {
+        set = newSet;
+      }
+    }
+    return set;
+  }
+
+  /**
+   * Removes all registrations of the given queue. Sessions which were given a new queue in the meantime keep it.
+   *
+   * @return true if the queue was registered.
+   */
+  public boolean removeQueue(final MessageQueue queue) {
+    Set<QueueSession> registered = sessionsByQueue.remove(queue);
+    if (registered == null) {
+      registered = Collections.singleton(queue.getSession());
+    }
+
+    boolean removed = false;
+    for (final QueueSession session : registered) {
+      if (queues.remove(session, queue)) {
+        removed = true;
+      }
+    }
+
+    // a session id stays registered if its session has been given a new queue.
+    for (final QueueSession session : registered) {
+      final QueueSession mapped = sessions.get(session.getSessionId());
+      if (mapped != null && !queues.containsKey(mapped)) {
+        sessions.remove(session.getSessionId(), mapped);
+      }
+    }
+    return removed;
+  }
+
+  public MessageQueue getQueue(final QueueSession session) {
+    return queues.get(session);
+  }
+
+  public QueueSession getSession(final String sessionId) {
+    return sessions.get(sessionId);
+  }
+
+  /**
+   * Returns the live map of sessions to queues. Removing a queue from it doesn't clean up its other registrations;
+   * {@link #removeQueue(MessageQueue)} still has to be called for the queue.
+   */
+  public Map<QueueSession, MessageQueue> getQueues() {
+    return queues;
+  }
+
+  public int getQueueCount() {
+    return queues.size();
+  }
+
+  /**
+   * Records that the given queue has subscribed to the given subject.
+   */
+  public void addSubject(final MessageQueue queue, final String subject) {
+    Set<String> subjects = subjectsByQueue.get(queue);
+    if (subjects == null) {
+      final Set<String> newSubjects = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(16));
+      subjects = subjectsByQueue.putIfAbsent(queue, newSubjects);
+      if (subjects == null) {
+        subjects = newSubjects;
+      }
+    }
+    subjects.add(subject);
+  }
+
+  /**
+   * Returns a copy of the subjects the given queue has subscribed to. Subjects it has unsubscribed from since may be
+   * included.
+   */
+  public Set<String> getSubjects(final MessageQueue queue) {
+    final Set<String> subjects = subjectsByQueue.get(queue);
+    return subjects == null ? Collections.<String>emptySet() : new HashSet<String>(subjects);
+  }
+
+  /**
+   * Forgets and returns the subjects the given queue has subscribed to.
+   */
+  public Set<String> removeSubjects(final MessageQueue queue) {
+    final Set<String> subjects = subjectsByQueue.remove(queue);
+    return subjects == null ? Collections.<String>emptySet() : subjects;
+  }
+
+  public void clear() {
+    queues.clear();
+    sessions.clear();
+    sessionsByQueue.clear();
+    subjectsByQueue.clear();
+  }
+}
@@ -26,9 +26,11 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -37,6 +39,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -51,6 +54,7 @@ import org.jboss.errai.bus.client.api.SubscribeListener;
 import org.jboss.errai.bus.client.api.Subscription;
 import org.jboss.errai.bus.client.api.UnsubscribeListener;
 import org.jboss.errai.bus.client.api.base.Capabilities;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
 import org.jboss.errai.bus.client.api.base.ConversationMessage;
 import org.jboss.errai.bus.client.api.base.MessageBuilder;
 import org.jboss.errai.bus.client.api.base.NoSubscribersToDeliverTo;
@@ -60,6 +64,7 @@ import org.jboss.errai.bus.client.framework.BuiltInServices;
 import org.jboss.errai.bus.client.framework.SubscriptionEvent;
 import org.jboss.errai.bus.client.protocols.BusCommand;
 import org.jboss.errai.bus.client.util.BusTools;
+import org.jboss.errai.bus.client.util.SubjectPatterns;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.api.QueueCloseEvent;
 import org.jboss.errai.bus.server.api.QueueClosedListener;
@@ -67,10 +72,17 @@ import org.jboss.errai.bus.server.api.ServerMessageBus;
 import org.jboss.errai.bus.server.cluster.ClusteringProvider;
 import org.jboss.errai.bus.server.io.BufferHelper;
 import org.jboss.errai.bus.server.io.PageUtil;
+import org.jboss.errai.bus.server.io.PayloadCompression;
+import org.jboss.errai.bus.server.io.SlowConsumerPolicies;
+import org.jboss.errai.bus.server.io.SlowConsumerPolicy;
+import org.jboss.errai.bus.server.io.buffers.Buffer;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.LockFreeTransmissionBuffer;
 import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
 import org.jboss.errai.bus.server.io.websockets.WebSocketServerHandler;
 import org.jboss.errai.bus.server.io.websockets.WebSocketTokenManager;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
+import org.jboss.errai.bus.server.metrics.ServerBusMetrics;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
@@ -79,6 +91,7 @@ import org.jboss.errai.bus.server.util.SecureHashUtil;
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.common.client.protocols.Resources;
 import org.jboss.errai.common.server.api.ErraiBootstrapFailure;
+import org.jboss.errai.marshalling.server.ServerMarshalling;
 import org.slf4j.Logger;
 
 import com.google.inject.AbstractModule;
@@ -94,16 +107,20 @@ import com.google.inject.Singleton;
  */
 @Singleton
 public class ServerMessageBusImpl implements ServerMessageBus {
-  private final TransmissionBuffer transmissionbuffer;
+  private final Buffer transmissionbuffer;
 
-  private final Map<String, DeliveryPlan> subscriptions = new ConcurrentHashMap<String, DeliveryPlan>();
+  private final ConcurrentMap<String, DeliveryPlan> subscriptions = new ConcurrentHashMap<String, DeliveryPlan>();
   private final Set<String> globalSubscriptions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
-  private final Map<String, RemoteMessageCallback> remoteSubscriptions = new ConcurrentHashMap<String, RemoteMessageCallback>();
+  private final ConcurrentMap<String, RemoteMessageCallback> remoteSubscriptions = new ConcurrentHashMap<String, RemoteMessageCallback>();
 
-  private final Map<QueueSession, MessageQueue> messageQueues = new ConcurrentHashMap<QueueSession, MessageQueue>();
+  /**
+   * The subscriptions to wildcard subjects, which are also kept in {@link #subscriptions} by their pattern.
+   */
+  private final SubjectTrie subjectTrie = new SubjectTrie();
+
+  private final QueueRegistry queueRegistry = new QueueRegistry();
 
   private final Map<MessageQueue, List<Message>> deferredQueue = new ConcurrentHashMap<MessageQueue, List<Message>>();
-  private final Map<String, QueueSession> sessionLookup = new ConcurrentHashMap<String, QueueSession>();
   private final Map<String, ClusterWaitEntry> deadLetter = new ConcurrentHashMap<String, ClusterWaitEntry>();
 
   private final List<SubscribeListener> subscribeListeners = new ArrayList<SubscribeListener>();
@@ -121,10 +138,14 @@ public class ServerMessageBusImpl implements ServerMessageBus {
   private final boolean hostedModeTesting;
   private final boolean doLongPolling;
   private final int messageQueueTimeoutSecs;
+  private final int messageQueueHighWatermark;
+  private final int messageQueueLowWatermark;
+  private final Class<? extends SlowConsumerPolicy> slowConsumerPolicy;
   private final boolean sseEnabled;
   private final boolean webSocketServlet;
   private final boolean webSocketServer;
   private final boolean useSecureWebsocket;
+  private final ServerBusMetrics metrics;
 
   private final boolean clustering;
   private final ClusteringProvider clusteringProvider;
@@ -141,6 +162,12 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     this.hostedModeTesting = ErraiConfigAttribs.HOSTED_MODE_TESTING.getBoolean(config);
     this.doLongPolling = !hostedModeTesting && ErraiConfigAttribs.DO_LONG_POLL.getBoolean(config);
     this.messageQueueTimeoutSecs = ErraiConfigAttribs.MESSAGE_QUEUE_TIMEOUT_SECS.getInt(config);
+    this.messageQueueHighWatermark = ErraiConfigAttribs.MESSAGE_QUEUE_HIGH_WATERMARK.getInt(config);
+    final Integer lowWatermark = ErraiConfigAttribs.MESSAGE_QUEUE_LOW_WATERMARK.getInt(config);
+    this.messageQueueLowWatermark = lowWatermark != null ? lowWatermark : messageQueueHighWatermark / 2;
+    this.slowConsumerPolicy = messageQueueHighWatermark > 0
+        ? SlowConsumerPolicies.getPolicyClass(ErraiConfigAttribs.MESSAGE_QUEUE_SLOW_CONSUMER_POLICY.get(config))
+        : null;
     this.sseEnabled = ErraiConfigAttribs.ENABLE_SSE_SUPPORT.getBoolean(config);
     this.webSocketServer = ErraiConfigAttribs.ENABLE_WEB_SOCKET_SERVER.getBoolean(config);
 
@@ -196,24 +223,57 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       directAlloc = false;
     }
 
-    TransmissionBuffer buffer;
+    final String bufferImpl = ErraiConfigAttribs.BUS_BUFFER_IMPLEMENTATION.get(config);
+    final boolean lockFree;
+    if ("lockfree".equals(bufferImpl)) {
+      lockFree = true;
+    }
+    else if ("locking".equals(bufferImpl)) {
+      lockFree = false;
+    }
+    else {
+      throw new ErraiBootstrapFailure("unrecognized option for property: "
+          + ErraiConfigAttribs.BUS_BUFFER_IMPLEMENTATION.getAttributeName());
+    }
+
+    Buffer buffer;
     if (directAlloc) {
       try {
-        buffer = TransmissionBuffer.createDirect(segmentSize, segmentCount);
+        buffer = createBuffer(lockFree, true, segmentSize, segmentCount);
       }
       catch (OutOfMemoryError e) {
         log.warn("could not allocate direct memory buffer. insufficient direct memory. increase the direct memory " +
             "buffer size with the JVM argument: -XX:MaxDirectMemorySize=<size>");
         log.warn("falling back to a heap allocated buffer.");
-        buffer = TransmissionBuffer.create(segmentSize, segmentCount);
+        buffer = createBuffer(lockFree, false, segmentSize, segmentCount);
       }
     }
     else {
-      buffer = TransmissionBuffer.create(segmentSize, segmentCount);
+      buffer = createBuffer(lockFree, false, segmentSize, segmentCount);
     }
 
     transmissionbuffer = buffer;
 
+    final String jsonDecoder = ErraiConfigAttribs.BUS_JSON_DECODER.get(config);
+    if ("bytes".equals(jsonDecoder)) {
+      ServerMarshalling.setUseByteStreamDecoder(true);
+    }
+    else if ("stream".equals(jsonDecoder)) {
+      ServerMarshalling.setUseByteStreamDecoder(false);
+    }
+    else {
+      throw new ErraiBootstrapFailure("unrecognized option for property: "
+          + ErraiConfigAttribs.BUS_JSON_DECODER.getAttributeName());
+    }
+
+    PayloadCompression.configure(ErraiConfigAttribs.BUS_ENABLE_COMPRESSION.getBoolean(config),
+        ErraiConfigAttribs.BUS_COMPRESSION_THRESHOLD.getInt(config));
+
+    PageUtil.configure(ErraiConfigAttribs.BUS_PAGE_SEGMENT_SIZE.getInt(config));
+
+    BusMetrics.configure(ErraiConfigAttribs.BUS_ENABLE_METRICS.getBoolean(config),
+        ErraiConfigAttribs.BUS_METRICS_SAMPLE_RATE.getInt(config));
+
     /**
      * Define the default ServerBus service used for intrabus communication.
      */
@@ -224,6 +284,15 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
     scheduler.scheduleAtFixedRate(new HousekeeeperRunnable(), 8, 8, TimeUnit.SECONDS);
 
+    if (BusMetrics.isEnabled()) {
+      metrics = new ServerBusMetrics(this);
+      subscribeLocal(ErraiService.SERVER_METRICS_SERVICE, metrics);
+      metrics.start(scheduler);
+    }
+    else {
+      metrics = null;
+    }
+
     try {
       clustering = ErraiConfigAttribs.ENABLE_CLUSTERING.getBoolean(config);
       final String clusteringProviderCls = ErraiConfigAttribs.CLUSTERING_PROVIDER.get(config);
@@ -242,9 +311,22 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     }
   }
 
+  private static Buffer createBuffer(final boolean lockFree,
+                                     final boolean direct,
+                                     final int segmentSize,
+                                     final int segmentCount) {
+    if (lockFree) {
+      return direct ? LockFreeTransmissionBuffer.createDirect(segmentSize, segmentCount)
+          : LockFreeTransmissionBuffer.create(segmentSize, segmentCount);
+    }
+    else {
+      return direct ? TransmissionBuffer.createDirect(segmentSize, segmentCount)
+          : TransmissionBuffer.create(segmentSize, segmentCount);
+    }
+  }
+
   private void addQueue(final QueueSession session, final MessageQueue queue) {
-    messageQueues.put(session, queue);
-    sessionLookup.put(session.getSessionId(), session);
+    queueRegistry.addQueue(session, queue);
   }
 
   /**
@@ -257,7 +339,8 @@ public class ServerMessageBusImpl implements ServerMessageBus {
   }
 
   /**
-   * Sends a message globally to all subscriptions containing the same subject as the specified message.
+   * Sends a message globally to all subscriptions containing the same subject as the specified message, or a
+   * pattern matching it.
    *
    * @param message
    *     - The message to be sent.
@@ -268,8 +351,10 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     message.commit();
     final String subject = message.getSubject();
 
-    if (!subscriptions.containsKey(subject) && !subscriptions.containsKey("local:".concat(subject))
-            && !remoteSubscriptions.containsKey(subject)) {
+    final DeliveryPlan globalPlan = getDeliveryPlan(subject);
+    final DeliveryPlan plan = globalPlan != null ? globalPlan : getDeliveryPlan("local:".concat(subject));
+
+    if (plan == null && !remoteSubscriptions.containsKey(subject)) {
 
       delayOrFail(message, new Runnable() {
         @Override
@@ -287,17 +372,44 @@ public class ServerMessageBusImpl implements ServerMessageBus {
             message.getResource(QueueSession.class, Resources.Session.name()).getSessionId(), message);
       }
       else {
-        if (subscriptions.containsKey(subject)) {
+        if (globalPlan != null) {
           busMonitor.notifyInBusMessage(message);
         }
       }
     }
 
-    if (subscriptions.containsKey(subject)) {
-      subscriptions.get(subject).deliver(message);
+    BusMetrics.countRouted(subject, message.isFlagSet(RoutingFlag.FromRemote));
+
+    if (plan != null) {
+      plan.deliver(message);
     }
-    else if (subscriptions.containsKey("local:".concat(subject))) {
-      subscriptions.get("local:".concat(subject)).deliver(message);
+  }
+
+  /**
+   * Returns the delivery plan of the given subject, including the subscriptions to the patterns matching it.
+   */
+  private DeliveryPlan getDeliveryPlan(final String subject) {
+    final DeliveryPlan plan = subscriptions.get(subject);
+    if (subjectTrie.isEmpty() || SubjectTrie.isPattern(subject)) {
+      return plan;
+    }
+
+    final DeliveryPlan patternPlan = subjectTrie.resolve(subject);
+    if (patternPlan == null) {
+      return plan;
+    }
+    return plan == null ? patternPlan : DeliveryPlan.combine(Arrays.asList(plan, patternPlan));
+  }
+
+  /**
+   * Brings the trie up to date with the delivery plan of the given subject, if it is a pattern. Called after every
+   * change to {@link #subscriptions}; the plan is read under the lock of the trie, so that the last update wins.
+   */
+  private void updatePattern(final String subject) {
+    if (SubjectTrie.isPattern(subject)) {
+      synchronized (subjectTrie) {
+        subjectTrie.put(subject, subscriptions.get(subject));
+      }
     }
   }
 
@@ -366,6 +478,61 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     }
   }
 
+  @Override
+  public void multicast(final Message message, final Collection<String> sessionIds) {
+    message.commit();
+    message.setFlag(RoutingFlag.NonGlobalRouting);
+
+    final String subject = message.getSubject();
+    byte[] payload = null;
+    int shared = 0;
+
+    for (final String sessionId : sessionIds) {
+      final QueueSession session = queueRegistry.getSession(sessionId);
+      final MessageQueue queue = session == null ? null : getQueue(session);
+      if (queue == null) {
+        // the client may be connected to another member of the cluster.
+        send(createMessageForSession(message, sessionId));
+        continue;
+      }
+
+      if (queue.isInitialized() && isAnyoneListening(queue, subject)) {
+        try {
+          if (payload == null) {
+            payload = BufferHelper.encode(message);
+          }
+
+          if (queue.offerEncoded(payload)) {
+            if (isMonitor()) {
+              busMonitor.notifyOutgoingMessageToRemote(sessionId, message);
+            }
+            shared++;
+            continue;
+          }
+        }
+        catch (QueueUnavailableException e) {
+          closeQueue(queue);
+          continue;
+        }
+        catch (IOException e) {
+          throw new RuntimeException("transmission error", e);
+        }
+      }
+
+      // congested queues, and queues which aren't ready for the message yet, get it like any message to one client.
+      // It's a copy, as deferred and retried deliveries keep state in the message.
+      send(queue, createMessageForSession(message, sessionId), true);
+    }
+
+    BusMetrics.countToRemote(subject, shared);
+  }
+
+  private static Message createMessageForSession(final Message message, final String sessionId) {
+    final Map<String, Object> parts = new HashMap<String, Object>(message.getParts());
+    parts.put(MessageParts.SessionID.name(), sessionId);
+    return CommandMessage.createWithParts(parts);
+  }
+
   /**
    * Parses the message appropriately and enqueues it for delivery
    *
@@ -398,6 +565,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       if (isMonitor()) {
         busMonitor.notifyOutgoingMessageToRemote(queue.getSession().getSessionId(), message);
       }
+      BusMetrics.countToRemote(message.getSubject(), 1);
 
       enqueueForDelivery(queue, message);
     }
@@ -412,7 +580,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
   private void forwardToCluster(final Message message, final Runnable timeoutCallback) {
     if (clustering && message.hasPart(MessageParts.SessionID)) {
       final String sessionId = message.get(String.class, MessageParts.SessionID);
-      if (!sessionLookup.containsKey(sessionId) && !BusTools.isReservedName(message.getSubject())) {
+      if (queueRegistry.getSession(sessionId) == null && !BusTools.isReservedName(message.getSubject())) {
         final byte[] hashBytes = new byte[16];
         random.nextBytes(hashBytes);
         final String messageId = message.getSubject() + SecureHashUtil.hashToHexString(hashBytes);
@@ -502,7 +670,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
    */
   @Override
   public MessageQueue getQueue(final QueueSession session) {
-    return messageQueues.get(session);
+    return queueRegistry.getQueue(session);
   }
 
   /**
@@ -524,14 +692,18 @@ public class ServerMessageBusImpl implements ServerMessageBus {
    */
   @Override
   public void closeQueue(final MessageQueue queue) {
-    messageQueues.values().remove(queue);
-    sessionLookup.values().remove(queue.getSession());
-
-    for (Iterator<RemoteMessageCallback> iterator = remoteSubscriptions.values().iterator(); iterator.hasNext(); ) {
-      final RemoteMessageCallback cb = iterator.next();
-      cb.removeQueue(queue);
-      if (cb.getQueueCount() == 0) {
-        iterator.remove();
+    // a queue which has been replaced doesn't give up the session.
+    if (queueRegistry.removeQueue(queue) && clustering) {
+      clusteringProvider.sessionDetached(queue.getSession().getSessionId());
+    }
+
+    for (final String subject : queueRegistry.removeSubjects(queue)) {
+      final RemoteMessageCallback cb = remoteSubscriptions.get(subject);
+      if (cb != null) {
+        cb.removeQueue(queue);
+        if (cb.retireIfUnused() && remoteSubscriptions.remove(subject, cb)) {
+          removeRetiredFromDeliveryPlan(subject, cb);
+        }
       }
     }
 
@@ -581,26 +753,53 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       throw new NullPointerException("message callback cannot but null");
     }
 
-    DeliveryPlan plan = subscriptions.get(subject);
-
-    if (plan == null) {
-      subscriptions.put(subject, plan = DeliveryPlan.newDeliveryPlan(receiver));
-    }
-    else {
-      subscriptions.put(subject, plan.newDeliveryPlanWith(receiver));
+    DeliveryPlan plan;
+    do {
+      plan = subscriptions.get(subject);
+      if (plan == null) {
+        plan = DeliveryPlan.newDeliveryPlan(receiver);
+        if (subscriptions.putIfAbsent(subject, plan) == null) {
+          updatePattern(subject);
+          return plan;
+        }
+      }
+      else if (subscriptions.replace(subject, plan, plan.newDeliveryPlanWith(receiver))) {
+        updatePattern(subject);
+        return plan;
+      }
     }
+    while (true);
+  }
 
-    return plan;
+  /**
+   * Removes a retired remote callback from the delivery plan of its subject, without notifying the unsubscribe
+   * listeners: the subject is still subscribed to if the callback has been replaced in the meantime.
+   */
+  private void removeRetiredFromDeliveryPlan(final String subject, final RemoteMessageCallback receiver) {
+    DeliveryPlan plan;
+    do {
+      plan = subscriptions.get(subject);
+      if (plan == null || !plan.getDeliverTo().contains(receiver)) {
+        return;
+      }
+    }
+    while (!subscriptions.replace(subject, plan, plan.newDeliveryPlanWithOut(receiver)));
+    updatePattern(subject);
   }
 
   private DeliveryPlan removeFromDeliveryPlan(final String subject, final MessageCallback receiver) {
-    final DeliveryPlan plan = subscriptions.get(subject);
-
-    if (plan != null) {
-      subscriptions.put(subject, plan.newDeliveryPlanWithOut(receiver));
-      fireUnsubscribeListeners(
-          new SubscriptionEvent(false, "InBus", plan.getTotalReceivers(), false, subject));
+    DeliveryPlan plan;
+    do {
+      plan = subscriptions.get(subject);
+      if (plan == null) {
+        return null;
+      }
     }
+    while (!subscriptions.replace(subject, plan, plan.newDeliveryPlanWithOut(receiver)));
+
+    updatePattern(subject);
+    fireUnsubscribeListeners(
+        new SubscriptionEvent(false, "InBus", plan.getTotalReceivers(), false, subject));
 
     return plan;
   }
@@ -625,24 +824,37 @@ public class ServerMessageBusImpl implements ServerMessageBus {
   public void remoteSubscribe(final QueueSession sessionContext, final MessageQueue queue, final String subject) {
     if (subject == null) return;
 
-    boolean isNew = false;
+    if (SubjectPatterns.isPattern(subject) && SubjectPatterns.isRootPattern(subject)) {
+      // a client may only subscribe to the subjects of one service by pattern, not to every message on the bus.
+      log.warn("refused remote subscription of session " + sessionContext.getSessionId() + " to pattern: " + subject);
+      return;
+    }
+
+    boolean isNew;
 
     RemoteMessageCallback rmc;
-    synchronized (remoteSubscriptions) {
+    do {
+      isNew = false;
       rmc = remoteSubscriptions.get(subject);
       if (rmc == null) {
-        rmc = new RemoteMessageCallback(!broadcastExclusionSet.contains(subject), subject);
-        rmc.addQueue(queue);
-
-        isNew = true;
-
-        remoteSubscriptions.put(subject, rmc);
-        createOrAddDeliveryPlan(subject, rmc);
-      }
-      else if (!rmc.contains(queue)) {
-        rmc.addQueue(queue);
+        final RemoteMessageCallback newRmc = new RemoteMessageCallback(!broadcastExclusionSet.contains(subject), subject);
+        rmc = remoteSubscriptions.putIfAbsent(subject, newRmc);
+        if (rmc == null) {
+          rmc = newRmc;
+          isNew = true;
+        }
+        else {
+          newRmc.release();
+        }
       }
+      // a callback which lost its last queue is retired and replaced; subscribe to its replacement instead.
+    }
+    while (!rmc.addQueue(queue));
+
+    if (isNew) {
+      createOrAddDeliveryPlan(subject, rmc);
     }
+    queueRegistry.addSubject(queue, subject);
 
     fireSubscribeListeners(
         new SubscriptionEvent(true, sessionContext.getSessionId(), rmc.getQueueCount(), isNew, subject)
@@ -655,28 +867,57 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     private final Set<MessageQueue> queues = Collections.newSetFromMap(new ConcurrentHashMap<MessageQueue, Boolean>());
     private final boolean broadcastable;
 
+    /**
+     * The subscriber-group color shared by all queues subscribed to this subject, or null if the subject is not
+     * broadcastable or no group color was left.
+     */
+    private final BufferColor groupColor;
+
     private final AtomicInteger totalBroadcasted = new AtomicInteger();
 
+    /**
+     * The number of subscribed queues, or -1 once this callback has been retired.
+     */
+    private final AtomicInteger subscribers = new AtomicInteger();
+
     public RemoteMessageCallback(final boolean broadcastable, final String svc) {
       this.broadcastable = broadcastable;
       this.svc = svc;
+      this.groupColor = broadcastable ? BufferColor.getNewGroupColor() : null;
+      if (broadcastable && groupColor == null) {
+        log.warn("no subscriber-group color left for " + svc + ": messages to some of its subscribers are encoded per queue");
+      }
     }
 
     @Override
     public void callback(final Message message) {
       // do not pipeline if this message is addressed to a specified session.
-      if (broadcastable && !message.isFlagSet(RoutingFlag.NonGlobalRouting) && queues.size() == messageQueues.size()) {
-        // all queues are listening to this subject. therefore we can save memory and time by
-        // writing to the broadcast color on the buffer
+      final int queueCount = queues.size();
+      final boolean allQueues = queueCount == queueRegistry.getQueueCount();
+
+      if (broadcastable && !message.isFlagSet(RoutingFlag.NonGlobalRouting)
+          && (allQueues || (groupColor != null && queueCount > 1))) {
+        // if all queues are listening to this subject, we can save memory and time by writing to the
+        // broadcast color on the buffer. otherwise, we write once to the subscriber-group color for this
+        // subject, which is visible to every subscribed queue, instead of encoding the message per queue.
+        final BufferColor color = allQueues ? BufferColor.getAllBuffersColor() : groupColor;
 
         try {
           if (queues.isEmpty()) return;
 
-          BufferHelper.encodeAndWrite(transmissionbuffer, BufferColor.getAllBuffersColor(), message);
+          final long sequence = BufferHelper.encodeAndWrite(transmissionbuffer, color, message);
 
+          int shared = 0;
           for (final MessageQueue q : queues) {
-            q.wake();
+            if (q.offerShared(sequence)) {
+              shared++;
+            }
+            else {
+              // the queue is congested and no longer sees shared data, so its slow consumer policy gets the message.
+              send(q, message, true);
+            }
           }
+          BusMetrics.countToRemote(message.getSubject(), shared);
 
           if (log.isDebugEnabled() && totalBroadcasted.incrementAndGet() % 1000 == 0) {
             log.debug(totalBroadcasted.get() + " messages have been broadcasted to service: " + svc);
@@ -701,12 +942,62 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       }
     }
 
-    public void addQueue(final MessageQueue queue) {
-      queues.add(queue);
+    /**
+     * Subscribes the given queue to this callback's subject.
+     *
+     * @return false if this callback has been retired, in which case the queue has to be subscribed to the callback
+     *         that replaced it.
+     */
+    public boolean addQueue(final MessageQueue queue) {
+      int count;
+      do {
+        count = subscribers.get();
+        if (count < 0) {
+          return false;
+        }
+      }
+      while (!subscribers.compareAndSet(count, count + 1));
+
+      if (queues.add(queue)) {
+        if (groupColor != null) {
+          queue.getBufferColor().joinGroup(groupColor, transmissionbuffer.getHeadSequence());
+        }
+      }
+      else {
+        subscribers.decrementAndGet();
+      }
+      return true;
     }
 
     public void removeQueue(final MessageQueue queue) {
-      queues.remove(queue);
+      if (queues.remove(queue)) {
+        subscribers.decrementAndGet();
+        if (groupColor != null) {
+          queue.getBufferColor().leaveGroup(groupColor);
+        }
+      }
+    }
+
+    /**
+     * Retires this callback if no queue is subscribed to it. A retired callback accepts no more queues.
+     *
+     * @return true if this callback was retired.
+     */
+    boolean retireIfUnused() {
+      if (subscribers.compareAndSet(0, -1)) {
+        release();
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Gives the group color of this callback back, once it won't write with it anymore.
+     */
+    void release() {
+      if (groupColor != null) {
+        BufferColor.releaseGroupColor(groupColor);
+      }
     }
 
     public Collection<MessageQueue> getQueues() {
@@ -733,11 +1024,11 @@ public class ServerMessageBusImpl implements ServerMessageBus {
    *     - the subject to unsubscribe from
    */
   public void remoteUnsubscribe(final QueueSession sessionContext, final MessageQueue queue, final String subject) {
-    if (!remoteSubscriptions.containsKey(subject)) {
+    final RemoteMessageCallback rmc = remoteSubscriptions.get(subject);
+    if (rmc == null) {
       return;
     }
 
-    final RemoteMessageCallback rmc = remoteSubscriptions.get(subject);
     rmc.removeQueue(queue);
 
     try {
@@ -761,6 +1052,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       throw new IllegalArgumentException("Attempt to modify lockdown service: " + subject);
 
     subscriptions.remove(subject);
+    updatePattern(subject);
     globalSubscriptions.remove(subject);
 
     fireUnsubscribeListeners(new SubscriptionEvent(false, null, 0, false, subject));
@@ -782,18 +1074,53 @@ public class ServerMessageBusImpl implements ServerMessageBus {
   private boolean isAnyoneListening(final MessageQueue queue, final String subject) {
     return (subject.endsWith(":RespondTo:RPC") || subject.endsWith(":Errors:RPC")
         || subscriptions.containsKey(subject) || (remoteSubscriptions.containsKey(subject)
-        && remoteSubscriptions.get(subject).contains(queue)));
+        && remoteSubscriptions.get(subject).contains(queue))
+        || (!subjectTrie.isEmpty() && subjectTrie.resolve(subject) != null));
+  }
+
+  private MessageQueueImpl createQueue(final QueueSession session) {
+    if (messageQueueHighWatermark > 0) {
+      return new MessageQueueImpl(transmissionbuffer, session, messageQueueTimeoutSecs, messageQueueHighWatermark,
+          messageQueueLowWatermark, SlowConsumerPolicies.newInstance(slowConsumerPolicy));
+    }
+    return new MessageQueueImpl(transmissionbuffer, session, messageQueueTimeoutSecs);
+  }
+
+  @Override
+  public boolean isCongested(final String sessionId) {
+    final QueueSession session = queueRegistry.getSession(sessionId);
+    if (session == null) {
+      return false;
+    }
+
+    final MessageQueue queue = getQueue(session);
+    return queue != null && queue.isCongested();
   }
 
   @Override
   public boolean hasRemoteSubscriptions(final String subject) {
-    return remoteSubscriptions.containsKey(subject);
+    return remoteSubscriptions.containsKey(subject) || hasRemotePatternSubscription(null, subject);
   }
 
   @Override
   public boolean hasRemoteSubscription(final String sessionId, final String subject) {
-    return remoteSubscriptions.containsKey(subject) && remoteSubscriptions.get(subject)
-        .contains(getQueueBySession(sessionId));
+    final MessageQueue queue = getQueueBySession(sessionId);
+    return (remoteSubscriptions.containsKey(subject) && remoteSubscriptions.get(subject).contains(queue))
+        || hasRemotePatternSubscription(queue, subject);
+  }
+
+  /**
+   * Returns true if the given queue, or any queue if it is null, has subscribed to a pattern matching the given
+   * subject.
+   */
+  private boolean hasRemotePatternSubscription(final MessageQueue queue, final String subject) {
+    for (final String pattern : subjectTrie.getMatchingPatterns(subject)) {
+      final RemoteMessageCallback rmc = remoteSubscriptions.get(pattern);
+      if (rmc != null && (queue == null || rmc.contains(queue))) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private void fireSubscribeListeners(final SubscriptionEvent event) {
@@ -893,13 +1220,12 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
   @Override
   public void associateNewQueue(final QueueSession oldSession, final QueueSession newSession) {
-    sessionLookup.put(newSession.getSessionId(), oldSession);
-    messageQueues.put(newSession, getQueue(oldSession));
+    queueRegistry.addAlias(oldSession, newSession);
   }
 
   @Override
   public MessageQueue getQueueBySession(final String sessionId) {
-    final QueueSession session = sessionLookup.get(sessionId);
+    final QueueSession session = queueRegistry.getSession(sessionId);
     if (session == null) {
       throw new QueueUnavailableException("no queue for sessionId=" + sessionId);
     }
@@ -908,7 +1234,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
   @Override
   public QueueSession getSessionBySessionId(final String id) {
-    return sessionLookup.get(id);
+    return queueRegistry.getSession(id);
   }
 
   /**
@@ -918,7 +1244,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
    */
   @Override
   public Map<QueueSession, MessageQueue> getMessageQueues() {
-    return messageQueues;
+    return queueRegistry.getQueues();
   }
 
   /**
@@ -956,7 +1282,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     }
     this.busMonitor = monitor;
 
-    for (final Map.Entry<QueueSession, MessageQueue> entry : messageQueues.entrySet()) {
+    for (final Map.Entry<QueueSession, MessageQueue> entry : queueRegistry.getQueues().entrySet()) {
       busMonitor.notifyQueueAttached(entry.getKey().getSessionId(), entry.getValue());
     }
 
@@ -990,17 +1316,22 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
   @Override
   public void stop() {
-    for (final MessageQueue queue : messageQueues.values()) {
+    for (final MessageQueue queue : queueRegistry.getQueues().values()) {
       queue.stopQueue();
     }
 
     scheduler.shutdown();
 
+    if (metrics != null) {
+      metrics.stop();
+    }
+
     transmissionbuffer.clear();
     subscriptions.clear();
+    subjectTrie.clear();
     remoteSubscriptions.clear();
     deferredQueue.clear();
-    sessionLookup.clear();
+    queueRegistry.clear();
   }
 
   public void finishInit() {
@@ -1021,7 +1352,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     public void callback(final Message message) {
       try {
         final QueueSession session = getSession(message);
-        MessageQueueImpl queue = (MessageQueueImpl) messageQueues.get(session);
+        MessageQueueImpl queue = (MessageQueueImpl) queueRegistry.getQueue(session);
 
         switch (BusCommand.valueOf(message.getCommandType())) {
           case Heartbeat:
@@ -1044,7 +1375,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
               }
             }
             else {
-              remoteSubscribe(session, messageQueues.get(session),
+              remoteSubscribe(session, queueRegistry.getQueue(session),
                   message.get(String.class, MessageParts.Subject));
             }
 
@@ -1060,7 +1391,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
           case Disconnect:
             if (queue == null) return;
 
-            synchronized (messageQueues) {
+            synchronized (queueRegistry.getLock(session)) {
               queue.stopQueue();
               closeQueue(queue);
               session.endSession();
@@ -1072,19 +1403,19 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
           case Associate: {
             List<Message> deferred = null;
-            synchronized (messageQueues) {
-              if (messageQueues.containsKey(session)) {
-                final MessageQueue q = messageQueues.get(session);
+            synchronized (queueRegistry.getLock(session)) {
+              final MessageQueue q = queueRegistry.getQueue(session);
+              if (q != null) {
                 synchronized (q) {
                   if (deferredQueue.containsKey(q)) {
                     deferred = deferredQueue.remove(q);
                   }
                 }
 
-                messageQueues.get(session).stopQueue();
+                q.stopQueue();
               }
 
-              queue = new MessageQueueImpl(transmissionbuffer, session, messageQueueTimeoutSecs);
+              queue = createQueue(session);
 
               addQueue(session, queue);
 
@@ -1103,6 +1434,10 @@ public class ServerMessageBusImpl implements ServerMessageBus {
               busMonitor.notifyQueueAttached(session.getSessionId(), queue);
             }
 
+            if (clustering) {
+              clusteringProvider.sessionAttached(session.getSessionId());
+            }
+
             final Message msg = ConversationMessage.create(message)
                 .toSubject(BuiltInServices.ClientBus.name())
                 .command(BusCommand.FinishAssociation);
@@ -1204,7 +1539,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     long highSegBytes = 0;
 
 
-    for (final MessageQueue q : messageQueues.values()) {
+    for (final MessageQueue q : queueRegistry.getQueues().values()) {
       activeTails++;
       final long seq = q.getCurrentBufferSequenceNumber();
       if (lowTail == -1) {
@@ -1255,7 +1590,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
     @Override
     public void onUnsubscribe(final SubscriptionEvent event) {
       if (event.isLocalOnly() || event.isRemote() || event.getSubject().startsWith("local:")) return;
-      if (messageQueues.isEmpty()) return;
+      if (queueRegistry.getQueueCount() == 0) return;
 
       MessageBuilder.createMessage()
           .toSubject(BuiltInServices.ClientBus.name())
@@ -1279,7 +1614,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
 
       while (!houseKeepingPerformed) {
         try {
-          final Iterator<MessageQueue> iter = ServerMessageBusImpl.this.messageQueues.values().iterator();
+          final Iterator<MessageQueue> iter = queueRegistry.getQueues().values().iterator();
           MessageQueue q;
           while (iter.hasNext()) {
             if ((q = iter.next()).isStale()) {
@@ -1305,7 +1640,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       }
 
       for (final MessageQueue ref : endSessions) {
-        for (final String subject : new HashSet<String>(ServerMessageBusImpl.this.remoteSubscriptions.keySet())) {
+        for (final String subject : queueRegistry.getSubjects(ref)) {
           ServerMessageBusImpl.this.remoteUnsubscribe(ref.getSession(), ref, subject);
         }
 
@@ -1389,6 +1724,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
       if (removeFromDeliveryPlan(subject, receiver).getTotalReceivers() == 0) {
         globalSubscriptions.remove(subject);
         subscriptions.remove(subject);
+        updatePattern(subject);
       }
       else {
         boolean nonRemote = true;
@@ -1401,6 +1737,7 @@ public class ServerMessageBusImpl implements ServerMessageBus {
         if (nonRemote) {
           globalSubscriptions.remove(subject);
           subscriptions.remove(subject);
+          updatePattern(subject);
         }
       }
     }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.errai.bus.client.util.SubjectPatterns;
+
+/**
+ * The wildcard subscriptions of the server bus, indexed by the tokens of their subjects. See {@link SubjectPatterns}
+ * for the syntax of the patterns. A subject without wildcard tokens is subscribed to by its exact name.
+ * <p/>
+ * Resolving a subject walks the trie once; the combined {@link DeliveryPlan} of all the matching patterns is then
+ * cached for that subject until the wildcard subscriptions change. Lookups don't lock. Updates are rare and
+ * synchronize on the trie.
+ */
+public class SubjectTrie {
+  /**
+   * The maximum number of resolved subjects cached, so that subjects made up per entity can't exhaust the heap.
+   */
+  private static final int MAX_RESOLVED = 16384;
+
+  /**
+   * Cached for subjects matching no pattern.
+   */
+  private static final DeliveryPlan NO_MATCH = new DeliveryPlan();
+
+  private final Node root = new Node();
+  private volatile int patternCount;
+  private volatile ConcurrentMap<String, DeliveryPlan> resolved = new ConcurrentHashMap<String, DeliveryPlan>();
+
+  private static class Node {
+    private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>();
+    private volatile Node oneToken;
+    private volatile Node remainingTokens;
+    private volatile String pattern;
+    private volatile DeliveryPlan plan;
+
+    private Node getChild(final String token) {
+      if (SubjectPatterns.isOneToken(token)) {
+        return oneToken;
+      }
+      if (SubjectPatterns.isRemainingTokens(token)) {
+        return remainingTokens;
+      }
+      return children.get(token);
+    }
+
+    private void setChild(final String token, final Node child) {
+      if (SubjectPatterns.isOneToken(token)) {
+        oneToken = child;
+      }
+      else if (SubjectPatterns.isRemainingTokens(token)) {
+        remainingTokens = child;
+      }
+      else if (child == null) {
+        children.remove(token);
+      }
+      else {
+        children.put(token, child);
+      }
+    }
+
+    private boolean hasChildren() {
+      return oneToken != null || remainingTokens != null || !children.isEmpty();
+    }
+  }
+
+  /**
+   * Returns true if the given subject contains a wildcard token.
+   */
+  public static boolean isPattern(final String subject) {
+    return SubjectPatterns.isPattern(subject);
+  }
+
+  public boolean isEmpty() {
+    return patternCount == 0;
+  }
+
+  /**
+   * Sets the delivery plan of the given pattern.
+   *
+   * @param pattern
+   *     the pattern.
+   * @param plan
+   *     the delivery plan, or null or an empty plan to remove the pattern.
+   */
+  public synchronized void put(final String pattern, final DeliveryPlan plan) {
+    final String[] tokens = SubjectPatterns.tokenize(pattern);
+    final boolean remove = plan == null || plan.getTotalReceivers() == 0;
+
+    Node node = root;
+    final List<Node> path = new ArrayList<Node>(tokens.length);
+    for (final String token : tokens) {
+      Node child = node.getChild(token);
+      if (child == null) {
+        if (remove) {
+          return;
+        }
+        child = new Node();
+        node.setChild(token, child);
+      }
+      path.add(node);
+      node = child;
+    }
+
+    if (remove) {
+      if (node.plan != null) {
+        node.plan = null;
+        node.pattern = null;
+        patternCount--;
+        prune(path, tokens);
+      }
+    }
+    else {
+      if (node.plan == null) {
+        patternCount++;
+      }
+      node.pattern = pattern;
+      node.plan = plan;
+    }
+
+    resolved = new ConcurrentHashMap<String, DeliveryPlan>();
+  }
+
+  public synchronized void clear() {
+    root.children.clear();
+    root.oneToken = null;
+    root.remainingTokens = null;
+    patternCount = 0;
+    resolved = new ConcurrentHashMap<String, DeliveryPlan>();
+  }
+
+  private static void prune(final List<Node> path, final String[] tokens) {
+    for (int i = tokens.length - 1; i >= 0; i--) {
+      final Node parent = path.get(i);
+      final Node child = parent.getChild(tokens[i]);
+      if (child.plan != null || child.hasChildren()) {
+        return;
+      }
+      parent.setChild(tokens[i], null);
+    }
+  }
+
+  /**
+   * Returns the combined delivery plan of the patterns matching the given subject, or null if none match.
+   */
+  public DeliveryPlan resolve(final String subject) {
+    // an update replaces the cache after changing the trie, so a plan resolved concurrently with an update is put
+    // into the discarded cache.
+    final ConcurrentMap<String, DeliveryPlan> cache = resolved;
+
+    DeliveryPlan plan = cache.get(subject);
+    if (plan == null) {
+      final List<DeliveryPlan> plans = new ArrayList<DeliveryPlan>();
+      for (final Node node : match(subject)) {
+        final DeliveryPlan nodePlan = node.plan;
+        if (nodePlan != null) {
+          plans.add(nodePlan);
+        }
+      }
+      plan = plans.isEmpty() ? NO_MATCH : DeliveryPlan.combine(plans);
+
+      if (cache.size() >= MAX_RESOLVED) {
+        cache.clear();
+      }
+      cache.put(subject, plan);
+    }
+
+    return plan == NO_MATCH ? null : plan;
+  }
+
+  /**
+   * Returns the patterns matching the given subject.
+   */
+  public List<String> getMatchingPatterns(final String subject) {
+    if (isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    final List<String> patterns = new ArrayList<String>();
+    for (final Node node : match(subject)) {
+      final String pattern = node.pattern;
+      if (pattern != null) {
+        patterns.add(pattern);
+      }
+    }
+    return patterns;
+  }
+
+  private List<Node> match(final String subject) {
+    final List<Node> matches = new ArrayList<Node>();
+    match(root, SubjectPatterns.tokenize(subject), 0, matches);
+    return matches;
+  }
+
+  private static void match(final Node node, final String[] tokens, final int index, final List<Node> matches) {
+    if (index == tokens.length) {
+      if (node.plan != null) {
+        matches.add(node);
+      }
+      return;
+    }
+
+    final Node exact = node.getChild(tokens[index]);
+    if (exact != null) {
+      match(exact, tokens, index + 1, matches);
+    }
+
+    final Node oneToken = node.oneToken;
+    if (oneToken != null && oneToken != exact) {
+      match(oneToken, tokens, index + 1, matches);
+    }
+
+    final Node remaining = node.remainingTokens;
+    if (remaining != null && remaining != exact && remaining.plan != null) {
+      matches.add(remaining);
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.jboss.errai.bus.client.util.ErrorHelper.handleMessageDeliveryFailure;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.client.api.messaging.RequestDispatcher;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiService;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The <tt>VirtualThreadDispatcher</tt> delivers every message on a virtual thread of its own if the JVM supports
+ * them (Java 21 and up). Unlike the {@link AsyncDispatcher}, services which block (on a database or a remote call, for
+ * instance) don't tie up a fixed pool of workers, so there is no delivery queue to saturate. On older JVMs messages
+ * are delivered by a fixed pool of platform threads with a bounded delivery queue, sized like the worker pool and
+ * the delivery queue of the {@link AsyncDispatcher} (<tt>errai.async.thread_pool_size</tt> and
+ * <tt>errai.async.delivery.queue_size</tt>). When the queue is full, the message is delivered on the calling
+ * thread, which is the saturation policy of the {@link AsyncDispatcher}.
+ * <p/>
+ * Messages from the same session are delivered one at a time, in the order they were dispatched. Messages from
+ * different sessions are delivered concurrently. The number of concurrent deliveries to a subject can be limited
+ * with {@link ErraiConfigAttribs#DISPATCHER_SUBJECT_CONCURRENCY} and
+ * {@link ErraiConfigAttribs#DISPATCHER_DEFAULT_SUBJECT_CONCURRENCY}. A delivery over the limit does not hold on to
+ * its thread: it is put aside, together with the rest of its session's messages, and dispatched again once a
+ * delivery to the subject finishes.
+ * <p/>
+ * Messages marked for priority processing are delivered on the calling thread, as with the {@link AsyncDispatcher}.
+ */
+@Singleton
+public class VirtualThreadDispatcher implements RequestDispatcher {
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadDispatcher.class);
+
+  private final ErraiService service;
+  private final ExecutorService executor;
+  private final boolean virtualThreads;
+
+  private final ConcurrentMap<String, SessionLane> lanes = new ConcurrentHashMap<String, SessionLane>();
+
+  private final Map<String, SubjectLimit> subjectLimits;
+  private final int defaultSubjectLimit;
+  private final ConcurrentMap<String, SubjectLimit> defaultLimits = new ConcurrentHashMap<String, SubjectLimit>();
+
+  @Inject
+  public VirtualThreadDispatcher(final ErraiService service) {
+    this.service = service;
+
+    ExecutorService virtualExecutor = null;
+    try {
+      virtualExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (NoSuchMethodException e) {
+      // pre-Java 21 JVM.
+    }
+    catch (Exception e) {
+      log.warn("could not create virtual thread executor", e);
+    }
+
+    final ErraiServiceConfigurator config = service.getConfiguration();
+
+    this.virtualThreads = virtualExecutor != null;
+    if (virtualThreads) {
+      this.executor = virtualExecutor;
+    }
+    else {
+      final int poolSize = config.hasProperty(WorkerFactory.CONFIG_ASYNC_THREAD_POOL_SIZE)
+          ? Integer.parseInt(config.getProperty(WorkerFactory.CONFIG_ASYNC_THREAD_POOL_SIZE))
+          : WorkerFactory.DEFAULT_THREAD_POOL_SIZE;
+      final int queueSize = config.hasProperty(WorkerFactory.CONFIG_ASYNC_DELIVERY_QUEUE_SIZE)
+          ? Integer.parseInt(config.getProperty(WorkerFactory.CONFIG_ASYNC_DELIVERY_QUEUE_SIZE))
+          : WorkerFactory.DEFAULT_DELIVERY_QUEUE_SIZE;
+      final ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>(queueSize);
+      this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, queue,
+          new DispatchThreadFactory(), new CallerRunsOnSaturation());
+      BusMetrics.setDispatcherQueue(queue);
+    }
+
+    final Map<String, SubjectLimit> limits = new HashMap<String, SubjectLimit>();
+    for (final Map.Entry<String, Integer> entry : parseSubjectLimits(
+        ErraiConfigAttribs.DISPATCHER_SUBJECT_CONCURRENCY.get(config)).entrySet()) {
+      limits.put(entry.getKey(), new SubjectLimit(entry.getValue()));
+    }
+    this.subjectLimits = limits;
+    final Integer defaultLimit = ErraiConfigAttribs.DISPATCHER_DEFAULT_SUBJECT_CONCURRENCY.getInt(config);
+    this.defaultSubjectLimit = defaultLimit == null ? 0 : defaultLimit;
+
+    log.info("dispatching on " + (virtualThreads ? "virtual threads" : "platform threads (virtual threads unsupported)")
+        + "; subject concurrency limits: " + subjectLimits.keySet()
+        + (defaultSubjectLimit > 0 ? "; default limit: " + defaultSubjectLimit : ""));
+
+    service.addShutdownHook(new Runnable() {
+      @Override
+      public void run() {
+        executor.shutdownNow();
+      }
+    });
+  }
+
+  /**
+   * Parses subject limits of the form <tt>Subject1=4,Subject2=16</tt>.
+   */
+  static Map<String, Integer> parseSubjectLimits(final String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    final Map<String, Integer> limits = new HashMap<String, Integer>();
+    for (final String entry : value.split(",")) {
+      final int separator = entry.lastIndexOf('=');
+      if (separator == -1) {
+        throw new IllegalArgumentException("invalid subject concurrency limit (expected subject=limit): " + entry);
+      }
+
+      final int limit = Integer.parseInt(entry.substring(separator + 1).trim());
+      if (limit < 1) {
+        throw new IllegalArgumentException("subject concurrency limit must be at least 1: " + entry);
+      }
+      limits.put(entry.substring(0, separator).trim(), limit);
+    }
+    return limits;
+  }
+
+  public boolean isUsingVirtualThreads() {
+    return virtualThreads;
+  }
+
+  @Override
+  public void dispatchGlobal(final Message message) throws InterruptedException {
+    if (message.hasPart(MessageParts.PriorityProcessing)) {
+      try {
+        service.getBus().sendGlobal(message);
+      }
+      catch (Throwable t) {
+        if (message.getErrorCallback() != null) {
+          if (!message.getErrorCallback().error(message, t)) {
+            return;
+          }
+        }
+        else {
+          log.error("error delivering priority message to subject: " + message.getSubject(), t);
+        }
+      }
+    }
+    else {
+      submit(message);
+    }
+  }
+
+  @Override
+  public void dispatch(final Message message) throws InterruptedException {
+    message.setFlag(RoutingFlag.NonGlobalRouting);
+    submit(message);
+  }
+
+  private void submit(final Message message) {
+    final QueueSession session = message.getResource(QueueSession.class, "Session");
+    if (session == null) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          deliver(message, this);
+        }
+      });
+      return;
+    }
+
+    final String sessionId = session.getSessionId();
+    while (true) {
+      SessionLane lane = lanes.get(sessionId);
+      if (lane == null) {
+        final SessionLane newLane = new SessionLane(sessionId);
+        lane = lanes.putIfAbsent(sessionId, newLane);
+        if (lane == null) {
+          lane = newLane;
+        }
+      }
+
+      // a lane which ran empty retires; its successor picks up the session.
+      if (lane.offer(message)) {
+        return;
+      }
+    }
+  }
+
+  private SubjectLimit getLimit(final String subject) {
+    final SubjectLimit limit = subjectLimits.get(subject);
+    if (limit != null || defaultSubjectLimit <= 0) {
+      return limit;
+    }
+
+    SubjectLimit defaultLimit = defaultLimits.get(subject);
+    if (defaultLimit == null) {
+      final SubjectLimit newLimit = new SubjectLimit(defaultSubjectLimit);
+      defaultLimit = defaultLimits.putIfAbsent(subject, newLimit);
+      if (defaultLimit == null) {
+        defaultLimit = newLimit;
+      }
+    }
+    return defaultLimit;
+  }
+
+  /**
+   * Delivers the given message, unless its subject is at its concurrency limit.
+   *
+   * @param retry
+   *     the task to execute again once a delivery to the subject has finished, if the message can't be delivered
+   *     now.
+   *
+   * @return false if the message was not delivered because its subject is at its limit.
+   */
+  private boolean deliver(final Message message, final Runnable retry) {
+    final SubjectLimit limit = getLimit(message.getSubject());
+    if (limit != null && !limit.tryAcquire(retry)) {
+      return false;
+    }
+
+    try {
+      deliverToBus(message);
+    }
+    finally {
+      if (limit != null) {
+        limit.release();
+      }
+    }
+    return true;
+  }
+
+  private void deliverToBus(final Message message) {
+    final MessageBus bus = service.getBus();
+    try {
+      Worker.deliverToBus(bus, message);
+    }
+    catch (QueueUnavailableException e) {
+      log.debug("queue not available", e);
+    }
+    catch (Throwable e) {
+      message.setResource("Exception", e.getCause());
+      handleMessageDeliveryFailure(bus, message, "Error calling remote service: " + message.getSubject(), e, false);
+    }
+  }
+
+  /**
+   * The deliveries to one subject which are running, and the tasks waiting for one of them to finish.
+   */
+  private class SubjectLimit {
+    private final int limit;
+    private final Queue<Runnable> waiting = new ArrayDeque<Runnable>();
+    private int running;
+
+    private SubjectLimit(final int limit) {
+      this.limit = limit;
+    }
+
+    /**
+     * @return false if the subject is at its limit, in which case the given task is executed again by
+     *     {@link #release()}.
+     */
+    synchronized boolean tryAcquire(final Runnable retry) {
+      if (running < limit) {
+        running++;
+        return true;
+      }
+      waiting.add(retry);
+      return false;
+    }
+
+    void release() {
+      final Runnable next;
+      synchronized (this) {
+        running--;
+        next = waiting.poll();
+      }
+
+      if (next != null) {
+        try {
+          executor.execute(next);
+        }
+        catch (RejectedExecutionException e) {
+          log.debug("dispatcher shut down; dropping delivery waiting for a subject limit", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * The messages of one session waiting for delivery. A lane delivers its messages one after another on a single
+   * task, and retires once it runs empty. A lane whose next message is over its subject's limit gives up its thread
+   * and is executed again once a delivery to that subject finishes.
+   */
+  private class SessionLane implements Runnable {
+    private final String sessionId;
+    private final Queue<Message> pending = new ArrayDeque<Message>();
+    private boolean running;
+    private boolean retired;
+
+    private SessionLane(final String sessionId) {
+      this.sessionId = sessionId;
+    }
+
+    /**
+     * @return false if this lane has retired and the message has to be offered to its successor.
+     */
+    boolean offer(final Message message) {
+      synchronized (this) {
+        if (retired) {
+          return false;
+        }
+
+        pending.add(message);
+        if (running) {
+          return true;
+        }
+        running = true;
+      }
+
+      executor.execute(this);
+      return true;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        final Message message;
+        synchronized (this) {
+          message = pending.peek();
+          if (message == null) {
+            running = false;
+            retired = true;
+            lanes.remove(sessionId, this);
+            return;
+          }
+        }
+
+        // messages are only removed here, so the head is still the same message.
+        if (!deliver(message, this)) {
+          return;
+        }
+
+        synchronized (this) {
+          pending.poll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Delivers on the calling thread when the delivery queue of the platform thread pool is full, like the
+   * {@link AsyncDispatcher} does.
+   */
+  private static class CallerRunsOnSaturation implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("dispatcher is shut down");
+      }
+
+      BusMetrics.countDispatcherSaturation();
+      r.run();
+    }
+  }
+
+  private static class DispatchThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread thread = new Thread(r, "Errai Dispatch Thread-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import org.jboss.errai.bus.client.api.RoutingFlag;
 import org.jboss.errai.bus.client.api.base.MessageDeliveryFailure;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.util.ErrorHelper;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
 import org.slf4j.Logger;
@@ -34,12 +35,12 @@ import java.util.concurrent.locks.LockSupport;
  * The <tt>WorkerFactory</tt> maintains a pool of <tt>Worker</tt>s, and takes care of running and terminating them
  */
 public class WorkerFactory {
-  private static final int DEFAULT_DELIVERY_QUEUE_SIZE = 100;
-  private static final int DEFAULT_THREAD_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+  static final int DEFAULT_DELIVERY_QUEUE_SIZE = 100;
+  static final int DEFAULT_THREAD_POOL_SIZE = Runtime.getRuntime().availableProcessors();
 
-  private static final String CONFIG_ASYNC_THREAD_POOL_SIZE = "errai.async.thread_pool_size";
+  static final String CONFIG_ASYNC_THREAD_POOL_SIZE = "errai.async.thread_pool_size";
   private static final String CONFIG_ASYNC_WORKER_TIMEOUT = "errai.async.worker.timeout";
-  private static final String CONFIG_ASYNC_DELIVERY_QUEUE_SIZE = "errai.async.delivery.queue_size";
+  static final String CONFIG_ASYNC_DELIVERY_QUEUE_SIZE = "errai.async.delivery.queue_size";
 
   private Worker[] workerPool;
 
@@ -80,6 +81,7 @@ public class WorkerFactory {
     }
 
     this.messages = new ArrayBlockingQueue<Message>(deliveryQueueSize);
+    BusMetrics.setDispatcherQueue(messages);
 
     log.debug("initializing async worker pools (poolSize: " + poolSize + "; workerTimeout: " + workerTimeout + ")");
 
@@ -126,6 +128,7 @@ public class WorkerFactory {
       return;
     }
     else {
+      BusMetrics.countDispatcherSaturation();
       switch (saturationPolicy) {
         case CallerRuns:
           svc.getBus().sendGlobal(m);
@@ -148,6 +151,7 @@ public class WorkerFactory {
       return;
     }
     else {
+      BusMetrics.countDispatcherSaturation();
       switch (saturationPolicy) {
         case CallerRuns:
           svc.getBus().send(m);
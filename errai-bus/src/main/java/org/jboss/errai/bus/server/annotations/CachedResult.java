@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indicates that the results of the annotated method of a {@link Remote} interface can be cached by the server.
+ * <p>
+ * The server keeps the marshalled results of the method, keyed by its arguments, and answers calls with the same
+ * arguments from the cache until the entry expires or is invalidated. Only use it for methods whose results depend on
+ * nothing but their arguments (and the session, see {@link #perSession()}), like lookups of reference data or
+ * configuration:
+ * <pre>
+ *     {@code @Remote}
+ *     public interface CountryService {
+ *       {@code @CachedResult(ttl = 10, unit = TimeUnit.MINUTES, invalidateOn = "CountriesChanged")}
+ *       List&lt;Country&gt; getCountries(String language);
+ *     }
+ * </pre>
+ * The cache of a method is cleared whenever a message is sent on the server to one of the {@link #invalidateOn()}
+ * subjects, or, with Errai CDI, whenever one of the {@link #invalidateOnEvents()} events is fired.
+ * <p>
+ * Every server keeps a cache of its own, and invalidations are not sent to the other members of a cluster. A member
+ * which didn't receive the invalidating message or event itself answers from its cache until its entries expire, so
+ * keep {@link #ttl()} short enough for the results to be acceptable for that long in a cluster.
+ * <p>
+ * Only calls from clients are cached. Methods returning <tt>void</tt> or a {@code CallableFuture} are never cached.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CachedResult {
+  /**
+   * The time after which a cached result expires, in {@link #unit()}s.
+   */
+  long ttl() default 5;
+
+  TimeUnit unit() default TimeUnit.MINUTES;
+
+  /**
+   * The maximum number of results cached for the method. The least recently used ones are evicted first.
+   */
+  int maxEntries() default 1000;
+
+  /**
+   * If true, results are cached per session rather than shared by all clients.
+   */
+  boolean perSession() default false;
+
+  /**
+   * The local bus subjects which clear the cache when a message is sent to them.
+   */
+  String[] invalidateOn() default {};
+
+  /**
+   * The CDI event types which clear the cache when they are fired.
+   */
+  Class<?>[] invalidateOnEvents() default {};
+}
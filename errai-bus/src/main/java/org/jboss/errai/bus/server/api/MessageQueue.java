@@ -35,6 +35,41 @@ public interface MessageQueue {
 
   boolean offer(Message message) throws IOException;
 
+  /**
+   * Notifies the queue of a message which has been written once to the buffer for all the queues subscribed to its
+   * subject, rather than offered to each of them.
+   *
+   * @param sequence
+   *     the buffer sequence the message was written at.
+   *
+   * @return false if the message is hidden from this queue because it is congested, in which case the message has
+   *         to be {@link #offer(Message) offered} to it individually.
+   */
+  boolean offerShared(long sequence);
+
+  /**
+   * Writes a message which has been encoded once for several queues, rather than for each of them, to this queue.
+   *
+   * @param payload
+   *     the message encoded by {@link org.jboss.errai.bus.server.io.BufferHelper#encode(Message)}.
+   *
+   * @return false if this queue is congested, in which case the message has to be {@link #offer(Message) offered}
+   *         to it individually, so that its slow consumer policy gets the message.
+   */
+  boolean offerEncoded(byte[] payload) throws IOException;
+
+  /**
+   * Returns the number of messages waiting in the buffer to be transmitted to the client.
+   */
+  int getQueueDepth();
+
+  /**
+   * Returns true if the number of messages waiting for the client has reached the high watermark, and the client has
+   * not yet drained them down to the low watermark. Producers should slow down or shed load while the queue of a
+   * client is congested.
+   */
+  boolean isCongested();
+
   long getCurrentBufferSequenceNumber();
 
   void wake();
@@ -43,6 +43,16 @@ public interface ServerMessageBus extends MessageBus {
    */
   public MessageQueue getQueue(QueueSession session);
 
+  /**
+   * Sends the message to the clients with the specified session ids. Unlike sending a message with a
+   * {@link org.jboss.errai.common.client.protocols.MessageParts#SessionID} to each client, this encodes the message
+   * only once, however many clients it is sent to.
+   *
+   * @param message - the message to send. It must not contain a session id.
+   * @param sessionIds - the session ids of the clients to send the message to
+   */
+  public void multicast(Message message, Collection<String> sessionIds);
+
   /**
    * Closes the queue associated with the <tt>sessionId</tt>
    *
@@ -96,6 +106,16 @@ public interface ServerMessageBus extends MessageBus {
 
   public MessageQueue getQueueBySession(String id);
 
+  /**
+   * Returns true if the client with the specified session is not keeping up with the messages sent to it, and its
+   * queue has reached the high watermark. Producers sending to this client should slow down or shed load until it
+   * has drained its queue. See {@link MessageQueue#isCongested()}.
+   *
+   * @param sessionId - the session id of the client
+   * @return true if the queue of the client is congested, false if it isn't or if there is no such queue
+   */
+  public boolean isCongested(String sessionId);
+
   public QueueSession getSessionBySessionId(String id);
 
   public void associateNewQueue(QueueSession oldSession, QueueSession newSession);
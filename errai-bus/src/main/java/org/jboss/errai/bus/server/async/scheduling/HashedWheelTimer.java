@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.async.scheduling;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jboss.errai.bus.server.async.TimedTask;
+import org.slf4j.Logger;
+
+/**
+ * A hashed timing wheel holding the scheduled tasks of a {@link PooledExecutorService}.
+ * <p/>
+ * The wheel is an array of buckets, each covering one tick. A task is put into the bucket of the tick its deadline
+ * falls into, along with the number of turns of the wheel left until then. Scheduling and cancelling a task only
+ * append to a lock-free queue, so both are O(1) no matter how many tasks are outstanding; the timer thread moves
+ * them in and out of their buckets once per tick. On every tick the timer thread visits a single bucket and hands
+ * the tasks which are due to the {@link ExpiryHandler}.
+ * <p/>
+ * Tasks are handed off at most one tick late, so the tick should be small compared to the delays used. The bus
+ * schedules session timeouts, heartbeats and RPC expirations, which are all measured in seconds.
+ */
+public class HashedWheelTimer {
+  private static final Logger log = getLogger(HashedWheelTimer.class);
+
+  public static final long DEFAULT_TICK_MILLIS = 10;
+  public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+  /**
+   * The maximum number of new tasks moved into the wheel per tick, so that a flood of new tasks can't delay the
+   * expiry of the ones already scheduled.
+   */
+  private static final int MAX_ADDITIONS_PER_TICK = 100000;
+
+  /**
+   * Receives the tasks which are due.
+   */
+  public interface ExpiryHandler {
+    void expired(TimedTask task) throws InterruptedException;
+  }
+
+  private final long tickMillis;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final ExpiryHandler handler;
+
+  private final Queue<Timeout> additions = new ConcurrentLinkedQueue<Timeout>();
+  private final Queue<Timeout> cancellations = new ConcurrentLinkedQueue<Timeout>();
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final TimerThread timerThread = new TimerThread();
+
+  private volatile long startTime;
+
+  /**
+   * The number of ticks since the start of the timer. Only accessed by the timer thread.
+   */
+  private long tick;
+
+  public HashedWheelTimer(final ExpiryHandler handler) {
+    this(handler, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+  }
+
+  /**
+   * @param handler
+   *     receives the tasks which are due, on the timer thread.
+   * @param tickMillis
+   *     the duration of a tick in milliseconds.
+   * @param wheelSize
+   *     the number of buckets. Rounded up to a power of two.
+   */
+  public HashedWheelTimer(final ExpiryHandler handler, final long tickMillis, final int wheelSize) {
+    if (tickMillis < 1) {
+      throw new IllegalArgumentException("tick must be at least 1 millisecond: " + tickMillis);
+    }
+
+    int size = 1;
+    while (size < wheelSize) {
+      size <<= 1;
+    }
+
+    this.handler = handler;
+    this.tickMillis = tickMillis;
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * Schedules the given task to be handed to the {@link ExpiryHandler} once the given time has been reached.
+   *
+   * @param task
+   *     the task.
+   * @param deadline
+   *     the time in milliseconds, as returned by {@link System#currentTimeMillis()}.
+   *
+   * @return the handle to cancel the task with.
+   */
+  public Timeout schedule(final TimedTask task, final long deadline) {
+    final Timeout timeout = new Timeout(task, deadline);
+    pending.incrementAndGet();
+    additions.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Returns the number of tasks which have been scheduled and have neither expired nor been cancelled.
+   */
+  public int getPendingCount() {
+    return pending.get();
+  }
+
+  public void start() {
+    startTime = System.currentTimeMillis();
+    timerThread.start();
+  }
+
+  public void stop() {
+    timerThread.requestStop();
+  }
+
+  private void removeCancelled() {
+    Timeout timeout;
+    while ((timeout = cancellations.poll()) != null) {
+      if (timeout.bucket != null) {
+        timeout.bucket.remove(timeout);
+      }
+    }
+  }
+
+  private void transferAdditions() {
+    for (int i = 0; i < MAX_ADDITIONS_PER_TICK; i++) {
+      final Timeout timeout = additions.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.state != Timeout.PENDING) {
+        continue;
+      }
+
+      final long deadlineTick = (timeout.deadline - startTime) / tickMillis;
+      timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+
+      // tasks which are already due go into the current bucket.
+      wheel[(int) (Math.max(deadlineTick, tick) & mask)].add(timeout);
+    }
+  }
+
+  private void expire(final Bucket bucket, final long deadline) throws InterruptedException {
+    Timeout timeout = bucket.head;
+    while (timeout != null) {
+      final Timeout next = timeout.next;
+
+      if (timeout.state == Timeout.CANCELLED) {
+        bucket.remove(timeout);
+      }
+      else if (timeout.remainingRounds > 0) {
+        timeout.remainingRounds--;
+      }
+      else if (timeout.deadline <= deadline) {
+        bucket.remove(timeout);
+        if (timeout.expire()) {
+          try {
+            handler.expired(timeout.task);
+          }
+          catch (InterruptedException e) {
+            throw e;
+          }
+          catch (Throwable t) {
+            log.error("error handing off scheduled task", t);
+          }
+        }
+      }
+
+      timeout = next;
+    }
+  }
+
+  /**
+   * The handle of a task scheduled with a {@link HashedWheelTimer}.
+   */
+  public final class Timeout {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final TimedTask task;
+    private final long deadline;
+    volatile int state = PENDING;
+
+    // owned by the timer thread.
+    private long remainingRounds;
+    private Bucket bucket;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(final TimedTask task, final long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the task, unless it has already expired.
+     *
+     * @return true if the task was cancelled before it expired.
+     */
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+        return false;
+      }
+
+      pending.decrementAndGet();
+      cancellations.add(this);
+      return true;
+    }
+
+    private boolean expire() {
+      if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+        return false;
+      }
+
+      pending.decrementAndGet();
+      return true;
+    }
+
+    public boolean isExpired() {
+      return state == EXPIRED;
+    }
+
+    public boolean isCancelled() {
+      return state == CANCELLED;
+    }
+  }
+
+  private static final AtomicIntegerFieldUpdater<Timeout> STATE
+      = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+  /**
+   * The timeouts of one tick of the wheel, as a doubly linked list. Only accessed by the timer thread.
+   */
+  private static class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    private void add(final Timeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      }
+      else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    private void remove(final Timeout timeout) {
+      if (timeout.prev != null) {
+        timeout.prev.next = timeout.next;
+      }
+      else {
+        head = timeout.next;
+      }
+
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      }
+      else {
+        tail = timeout.prev;
+      }
+
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+  }
+
+  private class TimerThread extends Thread {
+    private volatile boolean running = false;
+
+    private TimerThread() {
+      super("Errai Scheduler Thread");
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          final long tickDeadline = startTime + (tick + 1) * tickMillis;
+          final long wait = tickDeadline - System.currentTimeMillis();
+          if (wait > 0) {
+            Thread.sleep(wait);
+          }
+
+          removeCancelled();
+          transferAdditions();
+          expire(wheel[(int) (tick & mask)], tickDeadline);
+          tick++;
+        }
+        catch (InterruptedException e) {
+          // This will happen during container shutdown, so logging as debug is sufficient.
+          log.debug("Scheduler thread interrupted", e);
+        }
+        catch (Throwable t) {
+          log.error("error in scheduler thread", t);
+        }
+      }
+    }
+
+    @Override
+    public void start() {
+      running = true;
+      super.start();
+    }
+
+    public void requestStop() {
+      running = false;
+      interrupt();
+    }
+  }
+}
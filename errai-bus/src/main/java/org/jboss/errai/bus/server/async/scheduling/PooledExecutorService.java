@@ -16,13 +16,10 @@
 
 package org.jboss.errai.bus.server.async.scheduling;
 
-import static java.lang.System.currentTimeMillis;
-import static java.util.concurrent.locks.LockSupport.parkUntil;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jboss.errai.bus.server.async.InterruptHandle;
@@ -39,16 +36,13 @@ public class PooledExecutorService implements TaskProvider {
   private final BlockingQueue<TimedTask> queue;
 
   /**
-   * this *must* be an ordered Set. The narrower type is to accomodate wrapping with
-   * Collections.synchronizedSet();
+   * Holds the scheduled tasks until they are due, and then puts them on the work queue.
    */
-  private final BlockingQueue<TimedTask> scheduledTasks;
+  private final HashedWheelTimer timer;
   private final ThreadWorkerPool pool;
 
   private boolean stopped = false;
 
-  private final SchedulerThread schedulerThread;
-
   private final ReentrantLock mutex = new ReentrantLock(true);
   private final int maxQueueSize;
 
@@ -104,10 +98,13 @@ public class PooledExecutorService implements TaskProvider {
     queue = new ArrayBlockingQueue<TimedTask>(queueSize);
     pool = new ThreadWorkerPool(this);
 
-    scheduledTasks = new PriorityBlockingQueue<TimedTask>();
-    schedulerThread = new SchedulerThread();
+    timer = new HashedWheelTimer(new HashedWheelTimer.ExpiryHandler() {
+      @Override
+      public void expired(final TimedTask task) throws InterruptedException {
+        runDue((ScheduledTask) task);
+      }
+    });
     this.saturationPolicy = saturationPolicy;
-    
   }
 
   /**
@@ -128,29 +125,24 @@ public class PooledExecutorService implements TaskProvider {
 
   public AsyncTask schedule(final Runnable runnable, TimeUnit unit, long interval) {
     checkLoad();
-    mutex.lock();
-    try {
-      TimedTask task;
-      scheduledTasks.offer(task = new DelayedTask(runnable, unit.toMillis(interval)));
-
-      return task;
-    }
-    finally {
-      mutex.unlock();
-    }
+    final ScheduledTask task = new DelayedTask(runnable, unit.toMillis(interval));
+    addToTimer(task);
+    return task;
   }
 
   public AsyncTask scheduleRepeating(final Runnable runnable, final TimeUnit unit, final long initial, final long interval) {
     checkLoad();
-    mutex.lock();
-    try {
-      TimedTask task;
-      scheduledTasks.offer(task = new RepeatingTimedTask(runnable, unit.toMillis(initial), unit.toMillis(interval)));
+    final ScheduledTask task = new RepeatingTimedTask(runnable, unit.toMillis(initial), unit.toMillis(interval));
+    addToTimer(task);
+    return task;
+  }
 
-      return task;
-    }
-    finally {
-      mutex.unlock();
+  private void addToTimer(final ScheduledTask task) {
+    task.timeout = timer.schedule(task, task.nextRuntime());
+
+    // the task may have been cancelled while it was being rescheduled.
+    if (task.isCancelled() && task.timeout.cancel()) {
+      task.descheduled();
     }
   }
 
@@ -161,7 +153,7 @@ public class PooledExecutorService implements TaskProvider {
         throw new IllegalStateException("work queue cannot be started after it's been stopped");
       }
 
-      schedulerThread.start();
+      timer.start();
 
       pool.startPool();
     }
@@ -173,7 +165,7 @@ public class PooledExecutorService implements TaskProvider {
   public void shutdown() {
     mutex.lock();
     try {
-      schedulerThread.requestStop();
+      timer.stop();
       queue.clear();
       stopped = true;
     }
@@ -182,29 +174,17 @@ public class PooledExecutorService implements TaskProvider {
     }
   }
 
-  private long runAllDue() throws InterruptedException {
-    long nextRunTime = 0;
-    TimedTask task;
-
-    while ((task = scheduledTasks.poll(60, java.util.concurrent.TimeUnit.SECONDS)) != null) {
-      if (!task.isDue(currentTimeMillis())) {
-        parkUntil(task.nextRuntime());
-      }
-
-      /**
-       * Sechedule the task for execution.
-       */
-      if (!queue.offer(task, 5, java.util.concurrent.TimeUnit.SECONDS)) {
-        saturationPolicy.dealWith(task);
-      }
-
-      if (task.calculateNextRuntime()) {
-        scheduledTasks.offer(task);
-      }
+  private void runDue(final ScheduledTask task) throws InterruptedException {
+    /**
+     * Sechedule the task for execution.
+     */
+    if (!queue.offer(task, 5, java.util.concurrent.TimeUnit.SECONDS)) {
+      saturationPolicy.dealWith(task);
     }
 
-    return nextRunTime;
-
+    if (task.calculateNextRuntime()) {
+      addToTimer(task);
+    }
   }
 
   private volatile int idleCount = 0;
@@ -274,7 +254,33 @@ public class PooledExecutorService implements TaskProvider {
     }
   }
 
-  private static final class DelayedTask extends TimedTask {
+  /**
+   * A task held by the {@link HashedWheelTimer} until it is due. Cancelling it takes it out of the timer right away.
+   */
+  private abstract static class ScheduledTask extends TimedTask {
+    protected volatile HashedWheelTimer.Timeout timeout;
+
+    @Override
+    public void cancel(boolean interrupt) {
+      super.cancel(interrupt);
+
+      final HashedWheelTimer.Timeout t = timeout;
+      if (t != null && t.cancel()) {
+        descheduled();
+      }
+    }
+
+    /**
+     * Called when the task was cancelled while waiting in the timer, and so won't run again.
+     */
+    protected void descheduled() {
+      if (exitHandler != null) {
+        exitHandler.run();
+      }
+    }
+  }
+
+  private static final class DelayedTask extends ScheduledTask {
     private final Runnable runnable;
     private boolean fired = false;
     private volatile Thread runningOn;
@@ -334,7 +340,7 @@ public class PooledExecutorService implements TaskProvider {
     }
   }
 
-  private static final class RepeatingTimedTask extends TimedTask {
+  private static final class RepeatingTimedTask extends ScheduledTask {
     private final Runnable runnable;
     private volatile Thread runningOn;
     private volatile boolean finished;
@@ -369,6 +375,12 @@ public class PooledExecutorService implements TaskProvider {
       return finished || isCancelled();
     }
 
+    @Override
+    protected void descheduled() {
+      finished = true;
+      super.descheduled();
+    }
+
     @Override
     public void run() {
       try {
@@ -385,46 +397,10 @@ public class PooledExecutorService implements TaskProvider {
     }
   }
 
-  private class SchedulerThread extends Thread {
-    private volatile boolean running = false;
-
-    private SchedulerThread() {
-    }
-
-    @Override
-    public void run() {
-      while (running) {
-        try {
-          while (running) {
-            runAllDue();
-          }
-        }
-        catch (InterruptedException e) {
-          // This will happen during container shutdown, so logging as debug is sufficient.
-          log.debug("Scheduler thread interrupted", e);
-        }
-        catch (Throwable t) {
-          t.printStackTrace();
-        }
-      }
-    }
-
-    @Override
-    public void start() {
-      running = true;
-      super.start();
-    }
-
-    public void requestStop() {
-      running = false;
-      interrupt();
-    }
-  }
-
   public void requestStop() {
     stopped = true;
     pool.requestStopAll();
-    schedulerThread.requestStop();
+    timer.stop();
   }
 
 }
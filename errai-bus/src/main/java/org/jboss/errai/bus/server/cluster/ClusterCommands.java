@@ -43,5 +43,18 @@ public enum ClusterCommands {
    * The <tt>InvalidRoute</tt> verb is used in a point-to-point message to indicate that the bus was
    * forwarded a message which it is not or no longer responsible for.
    */
-  InvalidRoute
+  InvalidRoute,
+
+  /**
+   * The <tt>SessionOwned</tt> verb is used in a point-to-point message from a bus to the buses holding the
+   * {@link SessionDirectory} entries of the specified sessions, to notify that it is responsible for handling them.
+   */
+  SessionOwned,
+
+  /**
+   * The <tt>SessionReleased</tt> verb is used in a point-to-point message from a bus to the buses holding the
+   * {@link SessionDirectory} entries of the specified sessions, to notify that it is no longer responsible for
+   * handling them.
+   */
+  SessionReleased
 }
@@ -20,5 +20,5 @@ package org.jboss.errai.bus.server.cluster;
  * @author Mike Brock
  */
 public enum ClusterParts {
-  BusId, Payload, Subject, MessageId, SessId
+  BusId, Payload, Subject, MessageId, SessId, Owner
 }
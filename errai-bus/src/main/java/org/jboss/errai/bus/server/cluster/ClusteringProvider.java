@@ -39,5 +39,21 @@ public interface ClusteringProvider {
    * @param message
    */
   public void clusterTransmitGlobal(final Message message);
+
+  /**
+   * Announces to the cluster that the specified session is now handled by this bus.
+   *
+   * @param sessionId
+   *        the session ID.
+   */
+  public void sessionAttached(final String sessionId);
+
+  /**
+   * Announces to the cluster that the specified session is no longer handled by this bus.
+   *
+   * @param sessionId
+   *        the session ID.
+   */
+  public void sessionDetached(final String sessionId);
 }
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.bus.server.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A directory of which cluster member handles which session, partitioned across the members of the cluster.
+ * <p/>
+ * Session ids are placed on a consistent hash ring of the members (each member occupying a number of virtual points
+ * on the ring). The first <tt>replicas</tt> distinct members following the hash of a session id hold the directory
+ * entry for that session. The member handling a session publishes its ownership to those members, so any member
+ * can find the owner of a session by asking one of them instead of the whole cluster.
+ * <p/>
+ * When the membership changes, only the sessions whose replicas changed have to be republished; with a consistent
+ * hash that is roughly the share of the sessions of the members which joined or left.
+ * <p/>
+ * This class only keeps the state; sending the ownership messages is up to the {@link ClusteringProvider}.
+ *
+ * @param <M>
+ *     the type identifying a cluster member. Members are told apart by {@link Object#equals(Object)} and
+ *     {@link Object#hashCode()}.
+ */
+public class SessionDirectory<M> {
+  public static final int DEFAULT_REPLICAS = 2;
+  public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+  private final M self;
+  private final int replicas;
+  private final int virtualNodes;
+
+  private volatile SortedMap<Integer, M> ring = Collections.unmodifiableSortedMap(new TreeMap<Integer, M>());
+  private volatile Set<M> members = Collections.emptySet();
+
+  /**
+   * The owners of the sessions this member holds the directory entries for.
+   */
+  private final ConcurrentMap<String, M> entries = new ConcurrentHashMap<String, M>();
+
+  /**
+   * The sessions handled by this member.
+   */
+  private final Set<String> owned = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public SessionDirectory(final M self) {
+    this(self, DEFAULT_REPLICAS, DEFAULT_VIRTUAL_NODES);
+  }
+
+  public SessionDirectory(final M self, final int replicas, final int virtualNodes) {
+    this.self = self;
+    this.replicas = replicas;
+    this.virtualNodes = virtualNodes;
+  }
+
+  private static int hash(final String value) {
+    return mix(value.hashCode());
+  }
+
+  /**
+   * The point of the given virtual node of a member on the ring. Members are placed by their own hash code rather
+   * than by their names, which are not guaranteed to be unique.
+   */
+  private static int hash(final Object member, final int virtualNode) {
+    return mix(31 * mix(member.hashCode()) + virtualNode);
+  }
+
+  private static int mix(int h) {
+    // murmur3 finalizer, to spread similar hashes over the ring.
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /**
+   * Returns the members holding the directory entry for the given session, the primary one first.
+   */
+  public List<M> getReplicas(final String sessionId) {
+    return getReplicas(ring, sessionId);
+  }
+
+  private List<M> getReplicas(final SortedMap<Integer, M> ring, final String sessionId) {
+    if (ring.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    final List<M> result = new ArrayList<M>(replicas);
+    final int h = hash(sessionId);
+
+    // walk the ring clockwise from the hash of the session, wrapping around at the end.
+    if (!addReplicas(result, ring.tailMap(h).values())) {
+      addReplicas(result, ring.headMap(h).values());
+    }
+    return result;
+  }
+
+  /**
+   * @return true once enough replicas have been found.
+   */
+  private boolean addReplicas(final List<M> result, final Collection<M> points) {
+    for (final M member : points) {
+      if (!result.contains(member)) {
+        result.add(member);
+        if (result.size() == replicas) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public boolean isReplica(final String sessionId) {
+    return getReplicas(sessionId).contains(self);
+  }
+
+  /**
+   * Records the owner of a session this member holds the directory entry for.
+   */
+  public void put(final String sessionId, final M owner) {
+    entries.put(sessionId, owner);
+  }
+
+  /**
+   * Removes the directory entry of the given session, unless it has been taken over by another member since.
+   */
+  public void remove(final String sessionId, final M owner) {
+    entries.remove(sessionId, owner);
+  }
+
+  /**
+   * Returns the owner of the given session, if this member handles it or holds its directory entry.
+   */
+  public M getOwner(final String sessionId) {
+    if (owned.contains(sessionId)) {
+      return self;
+    }
+    return entries.get(sessionId);
+  }
+
+  public void addOwned(final String sessionId) {
+    owned.add(sessionId);
+  }
+
+  public boolean removeOwned(final String sessionId) {
+    return owned.remove(sessionId);
+  }
+
+  public int getEntryCount() {
+    return entries.size();
+  }
+
+  public Set<M> getMembers() {
+    return members;
+  }
+
+  /**
+   * Rebuilds the ring for the new set of members, and drops the entries this member is no longer responsible for,
+   * along with those of owners which left.
+   *
+   * @return the sessions of this member to publish, by the replicas which didn't hold them before.
+   */
+  public synchronized Map<M, List<String>> membersChanged(final Collection<M> newMembers) {
+    final SortedMap<Integer, M> oldRing = ring;
+
+    final SortedMap<Integer, M> newRing = new TreeMap<Integer, M>();
+    for (final M member : newMembers) {
+      for (int i = 0; i < virtualNodes; i++) {
+        newRing.put(hash(member, i), member);
+      }
+    }
+
+    members = Collections.unmodifiableSet(new HashSet<M>(newMembers));
+    ring = Collections.unmodifiableSortedMap(newRing);
+
+    for (final Iterator<Map.Entry<String, M>> iter = entries.entrySet().iterator(); iter.hasNext(); ) {
+      final Map.Entry<String, M> entry = iter.next();
+      if (!members.contains(entry.getValue()) || !getReplicas(newRing, entry.getKey()).contains(self)) {
+        iter.remove();
+      }
+    }
+
+    final Map<M, List<String>> republish = new HashMap<M, List<String>>();
+    for (final String sessionId : owned) {
+      final List<M> before = getReplicas(oldRing, sessionId);
+      for (final M replica : getReplicas(newRing, sessionId)) {
+        if (!before.contains(replica)) {
+          List<String> sessions = republish.get(replica);
+          if (sessions == null) {
+            republish.put(replica, sessions = new ArrayList<String>());
+          }
+          sessions.add(sessionId);
+        }
+      }
+    }
+    return republish;
+  }
+}
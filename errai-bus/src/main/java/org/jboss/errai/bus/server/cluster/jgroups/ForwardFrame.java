@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.cluster.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format of the messages between the members of the cluster. Every JGroups message sent by the
+ * {@link JGroupsClusteringProvider} is a byte array whose first byte tells what it carries: either a
+ * {@link #COMMAND}, the UTF-8 encoded JSON of a cluster service message, or a {@link #FRAME} of forwarded bus
+ * messages. A frame carries one or more messages, each as its encoded payload plus the session and message ids
+ * needed to route it:
+ * <pre>
+ *   frame   = FRAME busId count message*
+ *   message = flags [sessionId] [messageId] length payload
+ * </pre>
+ * Strings are written with {@link DataOutputStream#writeUTF(String)}; the payload is the UTF-8 encoded JSON of the
+ * message, so it is encoded only once on its way through the cluster.
+ */
+final class ForwardFrame {
+  static final byte COMMAND = 1;
+  static final byte FRAME = 2;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int HAS_SESSION_ID = 1;
+  private static final int HAS_MESSAGE_ID = 1 << 1;
+
+  final String busId;
+  final List<Entry> entries;
+
+  ForwardFrame(final String busId, final List<Entry> entries) {
+    this.busId = busId;
+    this.entries = entries;
+  }
+
+  /**
+   * A forwarded message.
+   */
+  static final class Entry {
+    final String sessionId;
+    final String messageId;
+    final byte[] payload;
+
+    Entry(final String sessionId, final String messageId, final String payload) {
+      this(sessionId, messageId, payload.getBytes(UTF_8));
+    }
+
+    private Entry(final String sessionId, final String messageId, final byte[] payload) {
+      this.sessionId = sessionId;
+      this.messageId = messageId;
+      this.payload = payload;
+    }
+
+    String getPayload() {
+      return new String(payload, UTF_8);
+    }
+
+    /**
+     * Returns the approximate size of this entry in a frame.
+     */
+    int size() {
+      return payload.length + 64;
+    }
+  }
+
+  /**
+   * Returns the kind of the given cluster message, {@link #COMMAND} or {@link #FRAME}, or 0 if it is empty.
+   */
+  static byte kindOf(final byte[] buffer, final int offset, final int length) {
+    return length > 0 ? buffer[offset] : 0;
+  }
+
+  static byte[] encodeCommand(final String payload) {
+    final byte[] bytes = payload.getBytes(UTF_8);
+    final byte[] command = new byte[bytes.length + 1];
+    command[0] = COMMAND;
+    System.arraycopy(bytes, 0, command, 1, bytes.length);
+    return command;
+  }
+
+  static String decodeCommand(final byte[] buffer, final int offset, final int length) throws IOException {
+    if (kindOf(buffer, offset, length) != COMMAND) {
+      throw new IOException("not a cluster command");
+    }
+    return new String(buffer, offset + 1, length - 1, UTF_8);
+  }
+
+  byte[] encode() {
+    int size = 64;
+    for (final Entry entry : entries) {
+      size += entry.size();
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+    final DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeByte(FRAME);
+      out.writeUTF(busId);
+      out.writeInt(entries.size());
+
+      for (final Entry entry : entries) {
+        out.writeByte((entry.sessionId != null ? HAS_SESSION_ID : 0) | (entry.messageId != null ? HAS_MESSAGE_ID : 0));
+        if (entry.sessionId != null) {
+          out.writeUTF(entry.sessionId);
+        }
+        if (entry.messageId != null) {
+          out.writeUTF(entry.messageId);
+        }
+        out.writeInt(entry.payload.length);
+        out.write(entry.payload);
+      }
+      out.flush();
+    }
+    catch (IOException e) {
+      // cannot happen with a ByteArrayOutputStream.
+      throw new RuntimeException("could not encode forward frame", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static ForwardFrame decode(final byte[] buffer, final int offset, final int length) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer, offset, length));
+    if (in.readByte() != FRAME) {
+      throw new IOException("not a forward frame");
+    }
+
+    final String busId = in.readUTF();
+    final int count = in.readInt();
+    if (count < 0) {
+      throw new IOException("invalid message count: " + count);
+    }
+
+    final List<Entry> entries = new ArrayList<Entry>();
+    for (int i = 0; i < count; i++) {
+      final int flags = in.readByte();
+      final String sessionId = (flags & HAS_SESSION_ID) != 0 ? in.readUTF() : null;
+      final String messageId = (flags & HAS_MESSAGE_ID) != 0 ? in.readUTF() : null;
+
+      final int payloadLength = in.readInt();
+      if (payloadLength < 0 || payloadLength > in.available()) {
+        throw new IOException("invalid payload length: " + payloadLength);
+      }
+      final byte[] payload = new byte[payloadLength];
+      in.readFully(payload);
+      entries.add(new Entry(sessionId, messageId, payload));
+    }
+    return new ForwardFrame(busId, entries);
+  }
+}
@@ -18,6 +18,7 @@ package org.jboss.errai.bus.server.cluster.jgroups;
 
 import static org.jboss.errai.bus.server.cluster.ClusterParts.BusId;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.MessageId;
+import static org.jboss.errai.bus.server.cluster.ClusterParts.Owner;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.Payload;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.SessId;
 import static org.jboss.errai.bus.server.cluster.ClusterParts.Subject;
@@ -25,6 +26,21 @@ import static org.jboss.errai.common.client.protocols.MessageParts.CommandType;
 import static org.jboss.errai.common.client.protocols.MessageParts.SessionID;
 import static org.jboss.errai.common.client.protocols.MessageParts.ToSubject;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
@@ -40,6 +56,7 @@ import org.jboss.errai.bus.server.cluster.ClusterCommands;
 import org.jboss.errai.bus.server.cluster.ClusterParts;
 import org.jboss.errai.bus.server.cluster.ClusteringProvider;
 import org.jboss.errai.bus.server.cluster.IntrabusQueueSession;
+import org.jboss.errai.bus.server.cluster.SessionDirectory;
 import org.jboss.errai.bus.server.io.MessageFactory;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
@@ -50,10 +67,23 @@ import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
 import org.jgroups.Address;
 import org.jgroups.JChannel;
 import org.jgroups.ReceiverAdapter;
+import org.jgroups.View;
+import org.jgroups.ViewId;
+import org.jgroups.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Clusters the server bus over JGroups.
+ * <p/>
+ * Which bus handles which session is kept in a {@link SessionDirectory} partitioned across the members of the
+ * cluster: a bus publishes the sessions it handles to the members holding their directory entries, and asks one of
+ * those members when it has to forward a message to a session it doesn't know the owner of. Only if the directory
+ * has no entry for the session is the whole cluster asked with a <tt>WhoHandles</tt> broadcast.
+ * <p/>
+ * Forwarded messages are encoded once and sent as a {@link ForwardFrame}. The messages forwarded to the same
+ * destination within the flush window (<tt>errai.jgroups.flush_window</tt>, in milliseconds) are sent together in
+ * one frame, up to <tt>errai.jgroups.max_batch_size</tt> messages. A flush window of 0 sends every message at once.
  *
  * @author Mike Brock
  */
@@ -67,6 +97,25 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
 
   final Cache<String, Address> sessionToNodeCache;
 
+  /**
+   * The maximum number of sessions sent in one ownership message.
+   */
+  private static final int MAX_SESSIONS_PER_MESSAGE = 1000;
+
+  private final SessionDirectory<Address> sessionDirectory;
+  private ViewId lastViewId;
+
+  /**
+   * The maximum size of the payloads sent in one frame, in bytes.
+   */
+  private static final int MAX_FRAME_SIZE = 64 * 1024;
+
+  private final int flushWindow;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService flushScheduler;
+  private final ForwardBatch globalBatch = new ForwardBatch(null);
+  private final ConcurrentMap<Address, ForwardBatch> unicastBatches = new ConcurrentHashMap<Address, ForwardBatch>();
+
   private final static String JGROUPS_MESSAGE_RESOURCE = "JGroupsMessage";
 
   private static Logger log = LoggerFactory.getLogger(JGroupsClusteringProvider.class);
@@ -88,27 +137,57 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
       throw new RuntimeException(e);
     }
 
+    sessionToNodeCache = CacheBuilder.newBuilder()
+        .maximumSize(65536)
+        .build();
+
+    sessionDirectory = new SessionDirectory<Address>(jchannel.getAddress());
+
+    flushWindow = JGroupsConfigAttribs.JGROUPS_FLUSH_WINDOW.getInt(config);
+    maxBatchSize = JGroupsConfigAttribs.JGROUPS_MAX_BATCH_SIZE.getInt(config);
+    flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final Thread thread = new Thread(r, "Errai Cluster Flush Thread");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
     serverMessageBus.subscribe(CLUSTER_SERVICE, this);
     jchannel.setReceiver(this);
+    viewAccepted(jchannel.getView());
 
     erraiService.addShutdownHook(new Runnable() {
       @Override
       public void run() {
+        globalBatch.flush();
+        for (final ForwardBatch batch : unicastBatches.values()) {
+          batch.flush();
+        }
+        flushScheduler.shutdown();
         jchannel.close();
         log.info("shut down jgroups clustering service");
       }
     });
 
-    sessionToNodeCache = CacheBuilder.newBuilder()
-        .maximumSize(100)
-        .build();
-
     log.info("starting errai clustering service.");
   }
 
   @Override
   public void receive(final org.jgroups.Message msg) {
     try {
+      switch (ForwardFrame.kindOf(msg.getRawBuffer(), msg.getOffset(), msg.getLength())) {
+        case ForwardFrame.FRAME:
+          receiveFrame(msg);
+          return;
+        case ForwardFrame.COMMAND:
+          break;
+        default:
+          log.warn("discarded unknown cluster message from " + msg.getSrc());
+          return;
+      }
+
       final Message erraiMessage = getErraiMessage(msg);
       erraiMessage.setResource(JGROUPS_MESSAGE_RESOURCE, msg);
 
@@ -124,6 +203,133 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
     }
   }
 
+  private void receiveFrame(final org.jgroups.Message msg) throws IOException {
+    final ForwardFrame frame = ForwardFrame.decode(msg.getRawBuffer(), msg.getOffset(), msg.getLength());
+    if (busId.equals(frame.busId)) {
+      return;
+    }
+
+    for (final ForwardFrame.Entry entry : frame.entries) {
+      try {
+        final Message forwardMessage
+            = MessageFactory.createCommandMessage(IntrabusQueueSession.INSTANCE, entry.getPayload());
+        deliverForwarded(forwardMessage, entry.sessionId, entry.messageId, msg.getSrc());
+      }
+      catch (Exception e) {
+        log.error("could not deliver message forwarded from " + msg.getSrc(), e);
+      }
+    }
+  }
+
+  @Override
+  public void viewAccepted(final View view) {
+    final Map<Address, List<String>> republish;
+    synchronized (sessionDirectory) {
+      // the initial view may be applied after a newer one has been delivered.
+      if (lastViewId != null && view.getViewId().compareTo(lastViewId) <= 0) {
+        return;
+      }
+      lastViewId = view.getViewId();
+      republish = sessionDirectory.membersChanged(view.getMembers());
+    }
+
+    for (final Map.Entry<String, Address> entry : sessionToNodeCache.asMap().entrySet()) {
+      if (!view.containsMember(entry.getValue())) {
+        sessionToNodeCache.invalidate(entry.getKey());
+      }
+    }
+
+    unicastBatches.keySet().retainAll(view.getMembers());
+
+    for (final Map.Entry<Address, List<String>> entry : republish.entrySet()) {
+      sendOwnership(entry.getKey(), ClusterCommands.SessionOwned, entry.getValue());
+    }
+
+    log.info("cluster view changed: " + view.getMembers().size() + " members; republished sessions to "
+        + republish.size() + " members");
+  }
+
+  @Override
+  public void sessionAttached(final String sessionId) {
+    sessionDirectory.addOwned(sessionId);
+    for (final Address replica : sessionDirectory.getReplicas(sessionId)) {
+      sendOwnership(replica, ClusterCommands.SessionOwned, Collections.singletonList(sessionId));
+    }
+  }
+
+  @Override
+  public void sessionDetached(final String sessionId) {
+    if (sessionDirectory.removeOwned(sessionId)) {
+      for (final Address replica : sessionDirectory.getReplicas(sessionId)) {
+        sendOwnership(replica, ClusterCommands.SessionReleased, Collections.singletonList(sessionId));
+      }
+    }
+  }
+
+  private void sendOwnership(final Address replica, final ClusterCommands command, final List<String> sessionIds) {
+    if (replica.equals(jchannel.getAddress())) {
+      updateDirectory(command, replica, sessionIds);
+      return;
+    }
+
+    for (int i = 0; i < sessionIds.size(); i += MAX_SESSIONS_PER_MESSAGE) {
+      final StringBuilder ids = new StringBuilder();
+      for (final String sessionId : sessionIds.subList(i, Math.min(i + MAX_SESSIONS_PER_MESSAGE, sessionIds.size()))) {
+        if (ids.length() != 0) {
+          ids.append(',');
+        }
+        ids.append(sessionId);
+      }
+
+      final Message ownershipMessage = CommandMessage.create()
+          .set(ToSubject, CLUSTER_SERVICE)
+          .set(CommandType, command.name())
+          .set(BusId, busId)
+          .set(SessId, ids.toString());
+
+      try {
+        jchannel.send(replica, encodeCommand(ownershipMessage));
+      }
+      catch (Exception e) {
+        log.warn("could not send session ownership to " + replica, e);
+      }
+    }
+  }
+
+  private void updateDirectory(final ClusterCommands command, final Address owner, final List<String> sessionIds) {
+    for (final String sessionId : sessionIds) {
+      if (command == ClusterCommands.SessionOwned) {
+        sessionDirectory.put(sessionId, owner);
+      }
+      else {
+        sessionDirectory.remove(sessionId, owner);
+      }
+    }
+  }
+
+  /**
+   * Encodes the given address for the <tt>Owner</tt> part of a message. Addresses are sent in full, because the
+   * logical names of members are not guaranteed to be unique.
+   */
+  private static String encodeAddress(final Address address) throws Exception {
+    return Base64.getEncoder().encodeToString(Util.objectToByteBuffer(address));
+  }
+
+  /**
+   * Returns the member with the given encoded address, or null if it is not a member of the cluster (anymore).
+   */
+  private Address getMember(final String encodedAddress) {
+    final Object address;
+    try {
+      address = Util.objectFromByteBuffer(Base64.getDecoder().decode(encodedAddress));
+    }
+    catch (Exception e) {
+      log.warn("could not decode the owner address of a session", e);
+      return null;
+    }
+    return sessionDirectory.getMembers().contains(address) ? (Address) address : null;
+  }
+
   @Override
   public void callback(final Message message) {
     final QueueSession queueSession = message.getResource(QueueSession.class, "Session");
@@ -135,6 +341,13 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
 
     switch (ClusterCommands.valueOf(message.getCommandType())) {
       case WhoHandles: {
+        final org.jgroups.Message request = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
+        if (request.getDest() != null) {
+          // asked directly, as the holder of the directory entry of the session.
+          answerFromDirectory(message, request.getSrc());
+          break;
+        }
+
         final String subject = message.get(String.class, Subject);
         if (serverMessageBus.hasRemoteSubscriptions(subject)) {
           final String sessionIdRequested = message.get(String.class, ClusterParts.SessId);
@@ -158,7 +371,7 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
               .set(ClusterParts.SessId, sessionIdRequested);
 
           try {
-            jchannel.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(replyMsg.getParts()));
+            jchannel.send(jgroupsMessage.getSrc(), encodeCommand(replyMsg));
           }
           catch (Exception e) {
             e.printStackTrace();
@@ -170,23 +383,24 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
       case NotifyOwner: {
         final String messageId = message.get(String.class, MessageId);
         final String sessId = message.get(String.class, SessId);
-        final Message deferredMessage = serverMessageBus.getDeadLetterMessage(messageId);
-        serverMessageBus.removeDeadLetterMessage(messageId);
 
         final org.jgroups.Message jgroupsMessage
             = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
 
-        sessionToNodeCache.put(sessId, jgroupsMessage.getSrc());
+        // a directory entry names the owner; otherwise the owner answered itself.
+        final Address owner = message.hasPart(Owner) ? getMember(message.get(String.class, Owner)) : jgroupsMessage.getSrc();
+        if (owner == null) {
+          broadcastWhoHandles(sessId, messageId);
+          break;
+        }
 
-        if (deferredMessage != null) {
-          final Message dMessage = createForwardMessageFor(deferredMessage, messageId);
+        final Message deferredMessage = serverMessageBus.getDeadLetterMessage(messageId);
+        serverMessageBus.removeDeadLetterMessage(messageId);
 
-          try {
-            jchannel.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(dMessage.getParts()));
-          }
-          catch (Exception e) {
-            e.printStackTrace();
-          }
+        sessionToNodeCache.put(sessId, owner);
+
+        if (deferredMessage != null) {
+          forward(owner, deferredMessage, messageId);
         }
       }
       break;
@@ -210,62 +424,145 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
         break;
       }
 
+      case SessionOwned:
+      case SessionReleased: {
+        final org.jgroups.Message jgroupsMessage
+            = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
+        final ClusterCommands command = ClusterCommands.valueOf(message.getCommandType());
+        final List<String> sessionIds = Arrays.asList(message.get(String.class, SessId).split(","));
+
+        updateDirectory(command, jgroupsMessage.getSrc(), sessionIds);
+        for (final String sessionId : sessionIds) {
+          if (command == ClusterCommands.SessionOwned) {
+            sessionToNodeCache.put(sessionId, jgroupsMessage.getSrc());
+          }
+          else if (jgroupsMessage.getSrc().equals(sessionToNodeCache.getIfPresent(sessionId))) {
+            sessionToNodeCache.invalidate(sessionId);
+          }
+        }
+      }
+      break;
+
       case MessageForward: {
+        // sent by members which forward messages in a MessageForward envelope rather than a ForwardFrame.
         final String payload = message.get(String.class, Payload);
         final Message forwardMessage = MessageFactory.createCommandMessage(IntrabusQueueSession.INSTANCE, payload);
-        forwardMessage.setFlag(RoutingFlag.FromPeer);
 
-        final String sessId = message.get(String.class, SessId);
-        if (sessId == null) {
-          serverMessageBus.sendGlobal(forwardMessage);
-        }
-        else {
-          final MessageQueue messageQueue;
+        final org.jgroups.Message jgroupsMessage
+            = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
 
-          try {
-            messageQueue = serverMessageBus.getQueueBySession(sessId);
-          }
-          catch (QueueUnavailableException e) {
-            final org.jgroups.Message jgroupsMessage
-                = message.getResource(org.jgroups.Message.class, JGROUPS_MESSAGE_RESOURCE);
+        deliverForwarded(forwardMessage, message.get(String.class, SessId), message.get(String.class, MessageId),
+            jgroupsMessage.getSrc());
+      }
+      break;
+    }
+  }
 
-            final String messageId = message.get(String.class, MessageId);
-            final Message invalidRoute = createInvalidRouteMessage(sessId, forwardMessage.getSubject(), messageId);
+  private void deliverForwarded(final Message forwardMessage, final String sessId, final String messageId,
+                                final Address src) {
+    forwardMessage.setFlag(RoutingFlag.FromPeer);
 
-            try {
-              jchannel.send(jgroupsMessage.getSrc(), ErraiProtocol.encodePayload(invalidRoute.getParts()));
-            }
-            catch (Exception e2) {
-              e2.printStackTrace();
-            }
-            return;
-          }
+    if (sessId == null) {
+      serverMessageBus.sendGlobal(forwardMessage);
+      return;
+    }
 
-          // otherwise route it directly to the client.
-          forwardMessage.setResource(Resources.Session.name(), messageQueue.getSession());
-          serverMessageBus.send(forwardMessage);
-        }
+    final MessageQueue messageQueue;
+    try {
+      messageQueue = serverMessageBus.getQueueBySession(sessId);
+    }
+    catch (QueueUnavailableException e) {
+      final Message invalidRoute = createInvalidRouteMessage(sessId, forwardMessage.getSubject(), messageId);
+
+      try {
+        jchannel.send(src, encodeCommand(invalidRoute));
       }
-      break;
+      catch (Exception e2) {
+        e2.printStackTrace();
+      }
+      return;
+    }
+
+    // otherwise route it directly to the client.
+    forwardMessage.setResource(Resources.Session.name(), messageQueue.getSession());
+    serverMessageBus.send(forwardMessage);
+  }
+
+  /**
+   * Answers a <tt>WhoHandles</tt> request sent to this bus as the holder of the directory entry of the session.
+   */
+  private void answerFromDirectory(final Message request, final Address requester) {
+    final String sessionId = request.get(String.class, SessId);
+    final String messageId = request.get(String.class, MessageId);
+    final Address owner = sessionDirectory.getOwner(sessionId);
+
+    try {
+      final Message reply;
+      if (owner != null) {
+        reply = CommandMessage.create()
+            .set(ToSubject, CLUSTER_SERVICE)
+            .set(CommandType, ClusterCommands.NotifyOwner.name())
+            .set(BusId, busId)
+            .set(MessageId, messageId)
+            .set(SessId, sessionId)
+            .set(Owner, encodeAddress(owner));
+      }
+      else {
+        // the requester falls back to asking the whole cluster.
+        reply = createInvalidRouteMessage(sessionId, request.get(String.class, Subject), messageId);
+      }
+
+      jchannel.send(requester, encodeCommand(reply));
+    }
+    catch (Exception e) {
+      log.warn("could not answer session directory request from " + requester, e);
+    }
+  }
+
+  private void broadcastWhoHandles(final String sessionId, final String messageId) {
+    final Message deferredMessage = serverMessageBus.getDeadLetterMessage(messageId);
+    if (deferredMessage == null) {
+      return;
+    }
+
+    try {
+      jchannel.send(getJGroupsMessage(createWhoHandlesMessage(sessionId, deferredMessage.getSubject(), messageId)));
+    }
+    catch (Exception e) {
+      log.warn("could not ask the cluster which bus handles session " + sessionId, e);
     }
   }
 
   @Override
   public void clusterTransmit(final String sessionId, final String subject, final String messageId) {
-    final Address knownAddress = sessionToNodeCache.getIfPresent(sessionId);
+    Address knownAddress = sessionToNodeCache.getIfPresent(sessionId);
+    if (knownAddress == null) {
+      knownAddress = sessionDirectory.getOwner(sessionId);
+    }
+
     if (knownAddress != null) {
-      final Message forwardMessage = createForwardMessageFor(serverMessageBus.getDeadLetterMessage(messageId), messageId);
-      try {
-        jchannel.send(knownAddress, ErraiProtocol.encodePayload(forwardMessage.getParts()));
-      }
-      catch (Exception e) {
-        e.printStackTrace();
-      }
+      forward(knownAddress, serverMessageBus.getDeadLetterMessage(messageId), messageId);
     }
     else {
       final Message whoHandlesMessage = createWhoHandlesMessage(sessionId, subject, messageId);
+
+      // ask the primary holder of the directory entry, or the whole cluster if there is none yet.
+      final Address self = jchannel.getAddress();
+      Address directory = null;
+      for (final Address replica : sessionDirectory.getReplicas(sessionId)) {
+        if (!replica.equals(self)) {
+          directory = replica;
+          break;
+        }
+      }
+
       try {
-        jchannel.send(getJGroupsMessage(whoHandlesMessage));
+        if (directory != null) {
+          jchannel.send(directory, encodeCommand(whoHandlesMessage));
+        }
+        else {
+          jchannel.send(getJGroupsMessage(whoHandlesMessage));
+        }
       }
       catch (Exception e) {
         e.printStackTrace();
@@ -273,25 +570,95 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
     }
   }
 
-  private Message createForwardMessageFor(final Message message, final String messageId) {
-    final Message forward = CommandMessage.create()
-        .set(ToSubject, CLUSTER_SERVICE)
-        .set(CommandType, ClusterCommands.MessageForward.name())
-        .set(Payload, ErraiProtocol.encodePayload(message.getParts()))
-        .set(BusId, busId);
-
+  /**
+   * Queues the given message to be forwarded to the given member, or to the whole cluster if the member is null.
+   */
+  private void forward(final Address destination, final Message message, final String messageId) {
+    String sessionId = null;
     if (message.hasPart(SessionID)) {
       final String value = message.get(String.class, SessionID);
       if (!IntrabusQueueSession.INSTANCE.getSessionId().equals(value)) {
-        forward.set(SessId, value);
+        sessionId = value;
       }
     }
 
-    if (messageId != null) {
-      forward.set(MessageId, messageId);
+    final ForwardFrame.Entry entry
+        = new ForwardFrame.Entry(sessionId, messageId, ErraiProtocol.encodePayload(message.getParts()));
+
+    if (destination == null) {
+      globalBatch.add(entry);
+      return;
     }
 
-    return forward;
+    ForwardBatch batch = unicastBatches.get(destination);
+    if (batch == null) {
+      final ForwardBatch newBatch = new ForwardBatch(destination);
+      batch = unicastBatches.putIfAbsent(destination, newBatch);
+      if (batch == null) {
+        batch = newBatch;
+      }
+    }
+    batch.add(entry);
+  }
+
+  /**
+   * The messages waiting to be forwarded to one destination. They are sent in one frame when the flush window has
+   * passed, or as soon as the batch is full.
+   */
+  private class ForwardBatch implements Runnable {
+    private final Address destination;
+    private List<ForwardFrame.Entry> entries = new ArrayList<ForwardFrame.Entry>();
+    private int size;
+    private boolean flushScheduled;
+
+    private ForwardBatch(final Address destination) {
+      this.destination = destination;
+    }
+
+    private synchronized void add(final ForwardFrame.Entry entry) {
+      entries.add(entry);
+      size += entry.size();
+
+      if (flushWindow <= 0 || entries.size() >= maxBatchSize || size >= MAX_FRAME_SIZE) {
+        flush();
+      }
+      else if (!flushScheduled) {
+        try {
+          flushScheduler.schedule(this, flushWindow, TimeUnit.MILLISECONDS);
+          flushScheduled = true;
+        }
+        catch (RejectedExecutionException e) {
+          // shutting down.
+          flush();
+        }
+      }
+    }
+
+    @Override
+    public synchronized void run() {
+      flushScheduled = false;
+      flush();
+    }
+
+    /**
+     * Sends the pending messages. Sending while holding the lock keeps the frames to a destination in order.
+     */
+    private synchronized void flush() {
+      if (entries.isEmpty()) {
+        return;
+      }
+
+      final byte[] frame = new ForwardFrame(busId, entries).encode();
+      entries = new ArrayList<ForwardFrame.Entry>();
+      size = 0;
+
+      try {
+        jchannel.send(destination, frame);
+      }
+      catch (Exception e) {
+        log.error("could not forward messages to " + (destination == null ? "the cluster" : destination), e);
+      }
+    }
   }
 
   private Message createInvalidRouteMessage(final String sessionId, final String subject, final String messageId) {
@@ -316,19 +683,19 @@ public class JGroupsClusteringProvider extends ReceiverAdapter implements Cluste
 
   @Override
   public void clusterTransmitGlobal(final Message message) {
-    try {
-      jchannel.send(getJGroupsMessage(createForwardMessageFor(message, null)));
-    }
-    catch (Exception e) {
-      e.printStackTrace();
-    }
+    forward(null, message, null);
   }
 
-  public static Message getErraiMessage(final org.jgroups.Message message) {
-    return MessageFactory.createCommandMessage(IntrabusQueueSession.INSTANCE, String.valueOf(message.getObject()));
+  public static Message getErraiMessage(final org.jgroups.Message message) throws IOException {
+    return MessageFactory.createCommandMessage(IntrabusQueueSession.INSTANCE,
+        ForwardFrame.decodeCommand(message.getRawBuffer(), message.getOffset(), message.getLength()));
   }
 
   private static org.jgroups.Message getJGroupsMessage(final Message message) {
-    return new org.jgroups.Message(null, null, ErraiProtocol.encodePayload(message.getParts()));
+    return new org.jgroups.Message(null, null, encodeCommand(message));
+  }
+
+  private static byte[] encodeCommand(final Message message) {
+    return ForwardFrame.encodeCommand(ErraiProtocol.encodePayload(message.getParts()));
   }
 }
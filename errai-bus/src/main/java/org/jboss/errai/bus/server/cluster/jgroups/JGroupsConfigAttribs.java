@@ -23,7 +23,9 @@ import org.jgroups.JChannel;
  * @author Mike Brock
  */
 public enum JGroupsConfigAttribs {
-  JGROUPS_PROTOCOL_STACK("errai.jgroups.protocol_stack", JChannel.DEFAULT_PROTOCOL_STACK);
+  JGROUPS_PROTOCOL_STACK("errai.jgroups.protocol_stack", JChannel.DEFAULT_PROTOCOL_STACK),
+  JGROUPS_FLUSH_WINDOW("errai.jgroups.flush_window", "2"),
+  JGROUPS_MAX_BATCH_SIZE("errai.jgroups.max_batch_size", "64");
 
   protected final String attributeName;
   protected final String defaultValue;
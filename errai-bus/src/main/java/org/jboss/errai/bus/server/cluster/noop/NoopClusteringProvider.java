@@ -38,4 +38,12 @@ public class NoopClusteringProvider implements ClusteringProvider {
   @Override
   public void clusterTransmitGlobal(Message message) {
   }
+
+  @Override
+  public void sessionAttached(String sessionId) {
+  }
+
+  @Override
+  public void sessionDetached(String sessionId) {
+  }
 }
@@ -41,11 +41,24 @@ public abstract class AbstractRPCMethodCallback implements MessageCallback {
   protected final Method method;
   protected final MessageBus bus;
 
+  /**
+   * The bound method, or null to invoke the method reflectively.
+   */
+  protected final MethodHandleInvoker invoker;
+
+  protected AbstractRPCMethodCallback(final ServiceInstanceProvider genericSvc,
+                                      final Method method,
+                                      final MessageBus bus) {
+    this(genericSvc, method, null, bus);
+  }
+
   protected AbstractRPCMethodCallback(final ServiceInstanceProvider genericSvc,
                                       final Method method,
+                                      final MethodHandleInvoker invoker,
                                       final MessageBus bus) {
     this.serviceProvider = genericSvc;
     this.targetTypes = (this.method = method).getParameterTypes();
+    this.invoker = invoker;
     this.bus = bus;
   }
 
@@ -62,6 +75,9 @@ public abstract class AbstractRPCMethodCallback implements MessageCallback {
 
     try {
       RpcContext.set(message);
+      if (invoker != null) {
+        return invokeBound(serviceProvider.get(message), parms);
+      }
       return method.invoke(serviceProvider.get(message), (parms != null) ? parms.toArray(new Object[parms.size()]) : new Object[0]);
     }
     catch (final QueueUnavailableException e) {
@@ -81,4 +97,17 @@ public abstract class AbstractRPCMethodCallback implements MessageCallback {
       RpcContext.remove();
     }
   }
+
+  private Object invokeBound(final Object target, final List<Object> parms) {
+    // a mismatch is reported as an error invoking the endpoint, not as an exception thrown by it.
+    invoker.checkArguments(parms);
+
+    try {
+      return invoker.invoke(target, parms);
+    }
+    catch (final Throwable t) {
+      log.debug("RPC endpoint threw exception:", t);
+      throw new MessageDeliveryFailure("error invoking RPC endpoint " + method, t, true);
+    }
+  }
 }
@@ -29,6 +29,10 @@ public class AsyncRPCEndpointCallback extends AbstractRPCMethodCallback {
     super(genericSvc, method, bus);
   }
 
+  public AsyncRPCEndpointCallback(ServiceInstanceProvider genericSvc, Method method, MethodHandleInvoker invoker, MessageBus bus) {
+    super(genericSvc, method, invoker, bus);
+  }
+
   @Override
   public void callback(final Message message) {
     invokeMethodFromMessage(message);
@@ -16,14 +16,17 @@
 
 package org.jboss.errai.bus.server.io;
 
-import static org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer.encodePayloadToByteArrayInputStream;
+import static org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer.encodePayloadToPooledStream;
 
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.server.io.buffers.Buffer;
 import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
+import org.jboss.errai.marshalling.server.util.Utf8PayloadStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * @author Mike Brock
@@ -32,10 +35,43 @@ public final class BufferHelper {
   private BufferHelper() {
   }
 
-  public static void encodeAndWrite(final Buffer buffer, final BufferColor bufferColor, final Message message)
+  /**
+   * Encodes the message parts as UTF-8 into the calling thread's pooled payload stream, and copies the encoded
+   * bytes into the buffer. No intermediate <tt>String</tt> or <tt>byte[]</tt> is created for the payload.
+   *
+   * @return the buffer sequence the message was written at.
+   */
+  public static long encodeAndWrite(final Buffer buffer, final BufferColor bufferColor, final Message message)
           throws IOException {
 
-    buffer.write(encodePayloadToByteArrayInputStream(message.getParts()), bufferColor);
+    final long start = BusMetrics.startSample();
+    final Utf8PayloadStream payload = encodePayloadToPooledStream(message.getParts());
+    BusMetrics.recordEncode(start);
+    return buffer.write(payload.size(), payload, bufferColor);
+  }
+
+  /**
+   * Encodes the message parts as UTF-8, for a message which is written to the buffer for several queues. The session
+   * id is never encoded, so the same payload can be written for every queue the message is sent to.
+   *
+   * @return the encoded payload.
+   */
+  public static byte[] encode(final Message message) {
+    final long start = BusMetrics.startSample();
+    final Utf8PayloadStream payload = encodePayloadToPooledStream(message.getParts());
+    BusMetrics.recordEncode(start);
+    return Arrays.copyOf(payload.getBuffer(), payload.size());
+  }
+
+  /**
+   * Writes a payload returned by {@link #encode(Message)} to the buffer.
+   *
+   * @return the buffer sequence the message was written at.
+   */
+  public static long write(final Buffer buffer, final BufferColor bufferColor, final byte[] payload)
+          throws IOException {
+
+    return buffer.write(payload.length, new ByteArrayInputStream(payload), bufferColor);
   }
 
   private static final byte[] NOOP_ARRAY = new byte[0];
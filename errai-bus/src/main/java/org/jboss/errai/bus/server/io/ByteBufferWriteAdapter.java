@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.bus.server.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.jboss.errai.bus.server.io.buffers.Buffer;
+import org.jboss.errai.bus.server.io.buffers.BufferFilter;
+
+/**
+ * A {@link ByteWriteAdapter} which also accepts whole {@link ByteBuffer}s. When no {@link BufferFilter} is used, a
+ * {@link Buffer} hands its segments to such an adapter in one piece instead of byte by byte.
+ */
+public interface ByteBufferWriteAdapter extends ByteWriteAdapter {
+  /**
+   * Writes the remaining bytes of the given buffer, leaving its position at its limit.
+   */
+  public void write(ByteBuffer buffer) throws IOException;
+}
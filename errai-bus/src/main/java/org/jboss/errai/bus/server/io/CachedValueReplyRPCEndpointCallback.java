@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import static org.jboss.errai.bus.client.api.base.MessageBuilder.createConversation;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.annotations.CachedResult;
+import org.jboss.errai.common.client.protocols.Resources;
+import org.jboss.errai.marshalling.client.Marshalling;
+import org.jboss.errai.marshalling.client.api.EncodedValue;
+import org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * An RPC endpoint for a method annotated with {@link CachedResult}. The results are marshalled once and kept in a
+ * bounded cache, keyed by the marshalled arguments of the call, so that further calls with the same arguments are
+ * answered without invoking the method or marshalling its result again.
+ */
+public class CachedValueReplyRPCEndpointCallback extends AbstractRPCMethodCallback {
+  private static final String INVALIDATION_SUBJECT_PREFIX = "ErraiRPCCacheInvalidation:";
+
+  private final Cache<String, EncodedValue> results;
+  private final boolean perSession;
+
+  /**
+   * Incremented by every invalidation, so that a result computed concurrently with one isn't cached.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public CachedValueReplyRPCEndpointCallback(final ServiceInstanceProvider genericSvc,
+                                             final Method method,
+                                             final MethodHandleInvoker invoker,
+                                             final MessageBus bus) {
+    super(genericSvc, method, invoker, bus);
+
+    final CachedResult config = method.getAnnotation(CachedResult.class);
+    this.results = CacheBuilder.newBuilder()
+        .maximumSize(config.maxEntries())
+        .expireAfterWrite(config.ttl(), config.unit())
+        .build();
+    this.perSession = config.perSession();
+
+    final MessageCallback invalidator = new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        invalidate();
+      }
+    };
+    for (final String subject : config.invalidateOn()) {
+      bus.subscribeLocal(subject, invalidator);
+    }
+    for (final Class<?> eventType : config.invalidateOnEvents()) {
+      bus.subscribeLocal(getInvalidationSubject(eventType), invalidator);
+    }
+  }
+
+  /**
+   * Returns the local subject which is sent a message when an event of the given type is fired, to clear the caches
+   * declaring the event in {@link CachedResult#invalidateOnEvents()}.
+   */
+  public static String getInvalidationSubject(final Class<?> eventType) {
+    return INVALIDATION_SUBJECT_PREFIX + eventType.getName();
+  }
+
+  @Override
+  public void callback(final Message message) {
+    final Object reply;
+    if (message.isFlagSet(RoutingFlag.FromRemote)) {
+      final String key = createKey(message);
+      EncodedValue result = results.getIfPresent(key);
+      if (result == null) {
+        final long computedIn = generation.get();
+        result = ErraiProtocolServer.encodeValue(invokeMethodFromMessage(message));
+        if (generation.get() == computedIn) {
+          results.put(key, result);
+        }
+      }
+      reply = result;
+    }
+    else {
+      // the reply is delivered on the server, and its receiver expects the value itself.
+      reply = invokeMethodFromMessage(message);
+    }
+
+    createConversation(message)
+        .subjectProvided()
+        .with("MethodReply", reply)
+        .noErrorHandling().sendNowWith(bus);
+  }
+
+  private String createKey(final Message message) {
+    @SuppressWarnings("unchecked")
+    final List<Object> parms = message.get(List.class, "MethodParms");
+    final String arguments = Marshalling.toJSON(parms != null ? parms : Collections.emptyList());
+
+    if (perSession) {
+      final QueueSession session = message.getResource(QueueSession.class, Resources.Session.name());
+      return session.getSessionId() + ':' + arguments;
+    }
+    return arguments;
+  }
+
+  public void invalidate() {
+    generation.incrementAndGet();
+    results.invalidateAll();
+  }
+
+  public long getCachedResultCount() {
+    return results.size();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.errai.marshalling.server.util.UnwrappedByteArrayOutputStream;
+
+/**
+ * A {@link ByteWriteAdapter} for HTTP poll responses to clients which accept gzip (see
+ * {@link #shouldCompress(HttpServletRequest)}). It collects the payload read from the queue and, once the read is
+ * complete, writes it to the response: gzip-compressed if the payload is at least as large as the
+ * {@link PayloadCompression#getThreshold() threshold}, as is otherwise. The payload has to be collected first, since
+ * the <tt>Content-Encoding</tt> header can't be set after the response was committed.
+ */
+public class CompressingWriteAdapter extends AbstractByteWriteAdapter {
+  private final HttpServletResponse response;
+  private final UnwrappedByteArrayOutputStream payload = new UnwrappedByteArrayOutputStream();
+
+  public CompressingWriteAdapter(final HttpServletResponse response) {
+    this.response = response;
+  }
+
+  /**
+   * Returns true if compression is enabled and the client of the given request accepts gzip. Poll responses to all
+   * other requests should be written straight to the response with an {@link OutputStreamWriteAdapter}.
+   */
+  public static boolean shouldCompress(final HttpServletRequest request) {
+    return PayloadCompression.isEnabled() && PayloadCompression.acceptsGzip(request.getHeader("Accept-Encoding"));
+  }
+
+  @Override
+  public void write(final byte b) throws IOException {
+    payload.write(b);
+  }
+
+  /**
+   * Does nothing: the payload can only be written once the whole of it has been read. See {@link #finish()}.
+   */
+  @Override
+  public void flush() throws IOException {
+  }
+
+  /**
+   * Writes the payload collected so far to the response, compressing it if appropriate, and flushes the response.
+   */
+  public void finish() throws IOException {
+    if (payload.size() == 0) {
+      return;
+    }
+
+    final OutputStream out = response.getOutputStream();
+    if (PayloadCompression.shouldCompress(payload.size())) {
+      final byte[] compressed = PayloadCompression.gzip(payload.toByteArray(), payload.size());
+      response.setHeader("Content-Encoding", "gzip");
+      response.addHeader("Vary", "Accept-Encoding");
+      out.write(compressed);
+    }
+    else {
+      out.write(payload.toByteArray(), 0, payload.size());
+    }
+    payload.reset();
+    out.flush();
+  }
+}
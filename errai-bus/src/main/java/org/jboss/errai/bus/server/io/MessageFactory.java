@@ -31,14 +31,15 @@ import javax.servlet.http.HttpServletRequest;
 import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.client.api.RoutingFlag;
 import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.marshalling.client.api.json.EJArray;
 import org.jboss.errai.marshalling.client.api.json.EJValue;
 import org.jboss.errai.marshalling.client.marshallers.ErraiProtocolEnvelopeMarshaller;
 import org.jboss.errai.marshalling.server.DecodingSession;
 import org.jboss.errai.marshalling.server.JSONDecoder;
-import org.jboss.errai.marshalling.server.JSONStreamDecoder;
 import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jboss.errai.marshalling.server.ServerMarshalling;
 
 /**
  * The <tt>MessageFactory</tt> facilitates the building of a command message using a JSON string
@@ -68,76 +69,63 @@ public class MessageFactory {
   public static Message createCommandMessage(QueueSession session, HttpServletRequest request, String json) {
     if (json.length() == 0) return null;
 
+    final long start = BusMetrics.startSample();
     Map<String, Object> parts = decodeToMap(json);
     parts.remove(MessageParts.SessionID.name());
 
-    return from(parts, session, request);
+    final Message msg = from(parts, session, request);
+    BusMetrics.recordDecode(start);
+    return msg;
   }
 
   @SuppressWarnings("unchecked")
   public static Message createCommandMessage(QueueSession session, String json) {
     if (json.length() == 0) return null;
 
+    final long start = BusMetrics.startSample();
     Message msg = createWithPartsFromRawMap(ErraiProtocolEnvelopeMarshaller.INSTANCE.demarshall(JSONDecoder.decode(json),
         new DecodingSession(MappingContextSingleton.get())))
             .setResource("Session", session)
             .setResource("SessionID", session.getSessionId());
 
     msg.setFlag(RoutingFlag.FromRemote);
+    BusMetrics.recordDecode(start);
 
     return msg;
   }
 
 
   public static List<Message> createCommandMessage(QueueSession session, HttpServletRequest request) throws IOException {
-    EJValue value = JSONStreamDecoder.decode(request.getInputStream());
-    if (value.isObject() != null) {
-      return Collections.singletonList(from(getParts(value), session, request));
-    }
-    else if (value.isArray() != null) {
-      EJArray arr = value.isArray();
-      List<Message> messages = new ArrayList<Message>(arr.size());
-      for (int i = 0; i < arr.size(); i++) {
-        messages.add(from(getParts(arr.get(i)), session, request));
-      }
-      return messages;
-    }
-    else if (value.isNull()) {
-      return Collections.<Message>emptyList();
-    }
-    else {
-      throw new RuntimeException("bad payload");
-    }
+    final long start = BusMetrics.startSample();
+    final EJValue value = ServerMarshalling.decode(request.getInputStream());
+    final List<Message> messages = value.isNull() ? Collections.<Message>emptyList() : from(value, session, request);
+    BusMetrics.recordDecode(start);
+    return messages;
   }
 
-
   public static List<Message> createCommandMessage(QueueSession session, InputStream inputStream) throws IOException {
-    EJValue value = JSONStreamDecoder.decode(inputStream);
-    if (value.isObject() != null) {
-      return Collections.singletonList(from(getParts(value), session, null));
-    }
-    else if (value.isArray() != null) {
-      EJArray arr = value.isArray();
-      List<Message> messages = new ArrayList<Message>(arr.size());
-      for (int i = 0; i < arr.size(); i++) {
-        messages.add(from(getParts(arr.get(i)), session, null));
-      }
-      return messages;
-    }
-    else {
-      throw new RuntimeException("bad payload");
-    }
+    final long start = BusMetrics.startSample();
+    final List<Message> messages = from(ServerMarshalling.decode(inputStream), session, null);
+    BusMetrics.recordDecode(start);
+    return messages;
   }
 
   public static List<Message> createCommandMessage(QueueSession session, EJValue value) {
+    final long start = BusMetrics.startSample();
+    final List<Message> messages = from(value, session, null);
+    BusMetrics.recordDecode(start);
+    return messages;
+  }
+
+  private static List<Message> from(EJValue value, QueueSession session, HttpServletRequest request) {
     if (value.isObject() != null) {
-      return Collections.singletonList(from(getParts(value), session, null));
+      return Collections.singletonList(from(getParts(value), session, request));
     }
     else if (value.isArray() != null) {
       EJArray arr = value.isArray();
       List<Message> messages = new ArrayList<Message>(arr.size());
       for (int i = 0; i < arr.size(); i++) {
-        messages.add(from(getParts(arr.get(i)), session, null));
+        messages.add(from(getParts(arr.get(i)), session, request));
       }
       return messages;
     }
@@ -147,7 +135,6 @@ public class MessageFactory {
   }
 
 
-
   private static Map getParts(EJValue value) {
     return ErraiProtocolEnvelopeMarshaller.INSTANCE.demarshall(value,
             new DecodingSession(MappingContextSingleton.get()));
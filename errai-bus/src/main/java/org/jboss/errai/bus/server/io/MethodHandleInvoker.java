@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Invokes an RPC endpoint method through a {@link MethodHandle} bound once, when the endpoint is created, instead of
+ * through {@link Method#invoke(Object, Object...)}.
+ * <p/>
+ * The handle is adapted to take and return plain objects, so the call sites are exact invocations which the JIT can
+ * inline. Methods with up to four parameters get a call site of their own arity, which passes the parameters straight
+ * from the message's parameter list; methods with more parameters are invoked with a spread array.
+ * <p/>
+ * Unlike {@link Method#invoke(Object, Object...)}, {@link #invoke(Object, List)} throws the exceptions of the
+ * endpoint as they are, without wrapping them. The parameters have to be checked with
+ * {@link #checkArguments(List)} first, so that a parameter of the wrong type is not mistaken for an exception of the
+ * endpoint.
+ */
+public abstract class MethodHandleInvoker {
+  private static final int MAX_SPECIALIZED_ARITY = 4;
+
+  /**
+   * The wrapper types accepted for each primitive parameter type: those which unbox and widen to it, as with
+   * {@link Method#invoke(Object, Object...)}.
+   */
+  private static final Map<Class<?>, List<Class<?>>> ACCEPTED_WRAPPERS = new HashMap<Class<?>, List<Class<?>>>();
+
+  static {
+    ACCEPTED_WRAPPERS.put(boolean.class, Arrays.<Class<?>>asList(Boolean.class));
+    ACCEPTED_WRAPPERS.put(char.class, Arrays.<Class<?>>asList(Character.class));
+    ACCEPTED_WRAPPERS.put(byte.class, Arrays.<Class<?>>asList(Byte.class));
+    ACCEPTED_WRAPPERS.put(short.class, Arrays.<Class<?>>asList(Short.class, Byte.class));
+    ACCEPTED_WRAPPERS.put(int.class, Arrays.<Class<?>>asList(Integer.class, Character.class, Short.class, Byte.class));
+    ACCEPTED_WRAPPERS.put(long.class,
+        Arrays.<Class<?>>asList(Long.class, Integer.class, Character.class, Short.class, Byte.class));
+    ACCEPTED_WRAPPERS.put(float.class,
+        Arrays.<Class<?>>asList(Float.class, Long.class, Integer.class, Character.class, Short.class, Byte.class));
+    ACCEPTED_WRAPPERS.put(double.class, Arrays.<Class<?>>asList(Double.class, Float.class, Long.class, Integer.class,
+        Character.class, Short.class, Byte.class));
+  }
+
+  protected final MethodHandle handle;
+  private final Class<?>[] parameterTypes;
+
+  private MethodHandleInvoker(final MethodHandle handle, final Class<?>[] parameterTypes) {
+    this.handle = handle;
+    this.parameterTypes = parameterTypes;
+  }
+
+  /**
+   * Checks that the given parameters can be passed to the method, like {@link Method#invoke(Object, Object...)}
+   * does before invoking it.
+   *
+   * @param parms
+   *     the parameters, which have to match the arity of the method. May be null for methods without parameters.
+   *
+   * @throws IllegalArgumentException
+   *     if a parameter is null for a primitive parameter type, or cannot be converted to its parameter type.
+   */
+  public void checkArguments(final List<Object> parms) {
+    for (int i = 0; i < parameterTypes.length; i++) {
+      final Class<?> type = parameterTypes[i];
+      final Object parm = parms.get(i);
+
+      final boolean accepted;
+      if (type.isPrimitive()) {
+        accepted = parm != null && ACCEPTED_WRAPPERS.get(type).contains(parm.getClass());
+      }
+      else {
+        accepted = parm == null || type.isInstance(parm);
+      }
+
+      if (!accepted) {
+        throw new IllegalArgumentException("argument type mismatch: parameter " + i + " must be " + type.getName()
+            + " but was " + (parm == null ? "null" : parm.getClass().getName()));
+      }
+    }
+  }
+
+  /**
+   * Invokes the method on the given target.
+   *
+   * @param target
+   *     the instance to invoke the method on.
+   * @param parms
+   *     the parameters, which have to match the arity of the method. May be null for methods without parameters.
+   *
+   * @return the return value of the method, or null for void methods.
+   */
+  public abstract Object invoke(Object target, List<Object> parms) throws Throwable;
+
+  /**
+   * Binds the given method.
+   *
+   * @throws IllegalAccessException
+   *     if the method is not accessible.
+   */
+  public static MethodHandleInvoker create(final Method method) throws IllegalAccessException {
+    final Class<?>[] types = method.getParameterTypes();
+    final int arity = types.length;
+
+    final MethodHandle generic = MethodHandles.publicLookup().unreflect(method)
+        .asType(MethodType.genericMethodType(arity + 1));
+
+    switch (arity) {
+      case 0:
+        return new MethodHandleInvoker(generic, types) {
+          @Override
+          public Object invoke(final Object target, final List<Object> parms) throws Throwable {
+            return handle.invokeExact(target);
+          }
+        };
+      case 1:
+        return new MethodHandleInvoker(generic, types) {
+          @Override
+          public Object invoke(final Object target, final List<Object> parms) throws Throwable {
+            return handle.invokeExact(target, parms.get(0));
+          }
+        };
+      case 2:
+        return new MethodHandleInvoker(generic, types) {
+          @Override
+          public Object invoke(final Object target, final List<Object> parms) throws Throwable {
+            return handle.invokeExact(target, parms.get(0), parms.get(1));
+          }
+        };
+      case 3:
+        return new MethodHandleInvoker(generic, types) {
+          @Override
+          public Object invoke(final Object target, final List<Object> parms) throws Throwable {
+            return handle.invokeExact(target, parms.get(0), parms.get(1), parms.get(2));
+          }
+        };
+      case MAX_SPECIALIZED_ARITY:
+        return new MethodHandleInvoker(generic, types) {
+          @Override
+          public Object invoke(final Object target, final List<Object> parms) throws Throwable {
+            return handle.invokeExact(target, parms.get(0), parms.get(1), parms.get(2), parms.get(3));
+          }
+        };
+      default:
+        return new MethodHandleInvoker(generic.asSpreader(Object[].class, arity), types) {
+          @Override
+          public Object invoke(final Object target, final List<Object> parms) throws Throwable {
+            return handle.invokeExact(target, parms.toArray());
+          }
+        };
+    }
+  }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jboss.errai.bus.server.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.errai.bus.server.io.buffers.BufferFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the data of paged out message queues in a few memory-mapped segment files shared by all queues.
+ * <p/>
+ * Segments are filled append-only. The data of a queue is kept as a list of extents (a segment, an offset and a
+ * length) into the segments, so paging a queue out is a bulk copy into mapped memory, and paging it back in
+ * reads the extents in order. Reading in or discarding the data of a queue only releases its extents.
+ * <p/>
+ * A full segment is released once none of its data is live anymore. Segments which are mostly spent are compacted
+ * by copying their remaining extents to the end of the current segment, so the data of a few long paged out
+ * queues can't keep a great number of segments around.
+ */
+public class PageStore {
+  private static final Logger log = LoggerFactory.getLogger(PageStore.class);
+
+  public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024 * 32;     /* 32 Megabytes */
+
+  /**
+   * Full segments with less live data than this fraction of their size are compacted.
+   */
+  private static final double COMPACTION_THRESHOLD = 0.25d;
+
+  private static final int STAGING_SIZE = 1024 * 8;
+
+  private final File directory;
+  private final int segmentSize;
+
+  private final ConcurrentMap<String, Page> pages = new ConcurrentHashMap<String, Page>();
+  private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+
+  // guarded by this.
+  private Segment activeSegment;
+
+  private final Thread compactor;
+
+  /**
+   * @param directory
+   *     the directory to create the segment files in.
+   * @param segmentSize
+   *     the size of a segment file in bytes.
+   * @param compactionIntervalMillis
+   *     the interval of the background compaction. If 0 or less, segments are only compacted by calling
+   *     {@link #compact()}.
+   */
+  public PageStore(final File directory, final int segmentSize, final long compactionIntervalMillis) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+
+    if (compactionIntervalMillis > 0) {
+      compactor = new Thread("Errai Page Compactor") {
+        @Override
+        public void run() {
+          while (!isInterrupted()) {
+            try {
+              Thread.sleep(compactionIntervalMillis);
+              compact();
+            }
+            catch (InterruptedException e) {
+              return;
+            }
+            catch (Throwable t) {
+              log.error("error compacting page segments", t);
+            }
+          }
+        }
+      };
+      compactor.setDaemon(true);
+      compactor.start();
+    }
+    else {
+      compactor = null;
+    }
+  }
+
+  /**
+   * Returns an adapter appending everything written to it to the data of the given key. Single bytes are staged,
+   * and appended when {@link ByteWriteAdapter#flush()} is called.
+   */
+  public ByteBufferWriteAdapter getWriter(final String key) {
+    return new PageWriter(key);
+  }
+
+  /**
+   * Appends the remaining bytes of the given buffer to the data of the given key.
+   */
+  public void write(final String key, final ByteBuffer data) {
+    while (true) {
+      final Page page = getOrCreatePage(key);
+      synchronized (page) {
+        if (page.released) {
+          continue;
+        }
+
+        append(page, data, page.extents);
+        return;
+      }
+    }
+  }
+
+  private Page getOrCreatePage(final String key) {
+    Page page = pages.get(key);
+    if (page == null) {
+      final Page newPage = new Page();
+      page = pages.putIfAbsent(key, newPage);
+      if (page == null) {
+        page = newPage;
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Reads the data of the given key through the given filter into the given adapter, and releases it.
+   *
+   * @return false if there was no data for the key. In that case the filter is not called.
+   */
+  public boolean read(final String key, final ByteWriteAdapter outputStream, final BufferFilter filter)
+      throws IOException {
+    final Page page = pages.remove(key);
+    if (page == null) {
+      return false;
+    }
+
+    synchronized (page) {
+      try {
+        if (filter != null) {
+          filter.before(outputStream);
+        }
+
+        for (final Extent extent : page.extents) {
+          final ByteBuffer data = extent.segment.slice(extent.offset, extent.length);
+          if (filter == null && outputStream instanceof ByteBufferWriteAdapter) {
+            ((ByteBufferWriteAdapter) outputStream).write(data);
+          }
+          else {
+            while (data.hasRemaining()) {
+              final int b = data.get();
+              outputStream.write(filter == null ? b : filter.each(b, outputStream));
+            }
+          }
+        }
+
+        if (filter != null) {
+          filter.after(outputStream);
+        }
+      }
+      finally {
+        release(page);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Releases the data of the given key without reading it.
+   */
+  public void discard(final String key) {
+    final Page page = pages.remove(key);
+    if (page != null) {
+      synchronized (page) {
+        release(page);
+      }
+    }
+  }
+
+  public boolean hasData(final String key) {
+    return pages.containsKey(key);
+  }
+
+  /**
+   * Returns the number of bytes stored and not yet read or discarded.
+   */
+  public long getLiveBytes() {
+    long live = 0;
+    for (final Segment segment : segments) {
+      live += segment.liveBytes.get();
+    }
+    return live;
+  }
+
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Releases the full segments without live data, after copying the remaining data of the mostly spent ones to the
+   * current segment.
+   *
+   * @return the number of segments released.
+   */
+  public int compact() {
+    int released = 0;
+    for (final Segment segment : segments) {
+      if (!segment.sealed || segment.liveBytes.get() > segment.size * COMPACTION_THRESHOLD) {
+        continue;
+      }
+
+      for (final Page page : segment.pages) {
+        synchronized (page) {
+          if (!page.released) {
+            relocate(page, segment);
+          }
+        }
+      }
+
+      if (segment.liveBytes.get() == 0) {
+        segments.remove(segment);
+        segment.delete();
+        released++;
+      }
+    }
+    return released;
+  }
+
+  public void close() {
+    if (compactor != null) {
+      compactor.interrupt();
+    }
+
+    pages.clear();
+    for (final Segment segment : segments) {
+      segment.delete();
+    }
+    segments.clear();
+  }
+
+  /**
+   * Copies the given data to the end of the current segment, adding the extents it was written to to the given list.
+   * The caller must hold the lock of the page.
+   */
+  private void append(final Page page, final ByteBuffer data, final List<Extent> extents) {
+    while (data.hasRemaining()) {
+      final Extent extent = reserve(data.remaining());
+
+      final int limit = data.limit();
+      data.limit(data.position() + extent.length);
+      extent.segment.slice(extent.offset, extent.length).put(data);
+      data.limit(limit);
+
+      extent.segment.pages.add(page);
+
+      final Extent last = extents.isEmpty() ? null : extents.get(extents.size() - 1);
+      if (last != null && last.segment == extent.segment && last.offset + last.length == extent.offset) {
+        last.length += extent.length;
+      }
+      else {
+        extents.add(extent);
+      }
+    }
+  }
+
+  private synchronized Extent reserve(final int length) {
+    Segment segment = activeSegment;
+    if (segment != null && segment.liveBytes.get() == 0) {
+      // everything written to the current segment has been read; start over at its beginning.
+      segment.writePosition = 0;
+    }
+
+    if (segment == null || segment.writePosition == segment.size) {
+      if (segment != null) {
+        segment.sealed = true;
+      }
+      activeSegment = segment = newSegment();
+    }
+
+    final int reserved = Math.min(length, segment.size - segment.writePosition);
+    final Extent extent = new Extent(segment, segment.writePosition, reserved);
+    segment.writePosition += reserved;
+    segment.liveBytes.addAndGet(reserved);
+    return extent;
+  }
+
+  private Segment newSegment() {
+    try {
+      if (!directory.exists()) {
+        directory.mkdirs();
+      }
+
+      // a unique name, so that segments never clash with those of another store sharing the directory.
+      final File file = File.createTempFile("page-", ".seg", directory);
+      file.deleteOnExit();
+
+      final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        // the mapping stays valid after the channel has been closed.
+        final MappedByteBuffer buffer
+            = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        final Segment segment = new Segment(file, buffer);
+        segments.add(segment);
+        return segment;
+      }
+      finally {
+        randomAccessFile.close();
+      }
+    }
+    catch (IOException e) {
+      throw new RuntimeException("paging error", e);
+    }
+  }
+
+  /**
+   * Moves the extents of the given page in the given segment to the current segment. The caller must hold the lock
+   * of the page.
+   */
+  private void relocate(final Page page, final Segment segment) {
+    final List<Extent> relocated = new ArrayList<Extent>(page.extents.size());
+    for (final Extent extent : page.extents) {
+      if (extent.segment == segment) {
+        append(page, segment.slice(extent.offset, extent.length), relocated);
+        segment.liveBytes.addAndGet(-extent.length);
+      }
+      else {
+        relocated.add(extent);
+      }
+    }
+
+    page.extents.clear();
+    page.extents.addAll(relocated);
+    segment.pages.remove(page);
+  }
+
+  /**
+   * Releases all extents of the given page. The caller must hold the lock of the page.
+   */
+  private void release(final Page page) {
+    for (final Extent extent : page.extents) {
+      extent.segment.liveBytes.addAndGet(-extent.length);
+      extent.segment.pages.remove(page);
+    }
+    page.extents.clear();
+    page.released = true;
+  }
+
+  /**
+   * The data of one queue.
+   */
+  private static class Page {
+    private final List<Extent> extents = new ArrayList<Extent>(4);
+    private boolean released;
+  }
+
+  private static class Extent {
+    private final Segment segment;
+    private final int offset;
+    private int length;
+
+    private Extent(final Segment segment, final int offset, final int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private static class Segment {
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final AtomicInteger liveBytes = new AtomicInteger();
+    private final Set<Page> pages = Collections.newSetFromMap(new ConcurrentHashMap<Page, Boolean>());
+
+    // guarded by the store.
+    private int writePosition;
+    private volatile boolean sealed;
+
+    private Segment(final File file, final MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+      this.size = buffer.capacity();
+    }
+
+    private ByteBuffer slice(final int offset, final int length) {
+      final ByteBuffer slice = buffer.duplicate();
+      slice.limit(offset + length);
+      slice.position(offset);
+      return slice;
+    }
+
+    /**
+     * Deletes the file of this segment. The mapping itself is released once the buffer has been garbage collected.
+     */
+    private void delete() {
+      if (!file.delete()) {
+        log.debug("could not delete page segment " + file + "; it will be deleted on exit");
+      }
+    }
+  }
+
+  private class PageWriter implements ByteBufferWriteAdapter {
+    private final String key;
+    private final ByteBuffer staging = ByteBuffer.allocate(STAGING_SIZE);
+
+    private PageWriter(final String key) {
+      this.key = key;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      write((byte) b);
+    }
+
+    @Override
+    public void write(final byte b) throws IOException {
+      if (!staging.hasRemaining()) {
+        flush();
+      }
+      staging.put(b);
+    }
+
+    @Override
+    public void write(final byte[] b) throws IOException {
+      write(ByteBuffer.wrap(b));
+    }
+
+    @Override
+    public void write(final ByteBuffer buffer) throws IOException {
+      flush();
+      PageStore.this.write(key, buffer);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (staging.position() > 0) {
+        staging.flip();
+        PageStore.this.write(key, staging);
+        staging.clear();
+      }
+    }
+  }
+}
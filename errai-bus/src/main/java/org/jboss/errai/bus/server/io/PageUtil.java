@@ -20,18 +20,18 @@ import static java.lang.System.nanoTime;
 
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.io.buffers.BufferFilter;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Pages the waiting data of message queues out to, and back in from, the shared {@link PageStore}.
+ *
  * @author Mike Brock
  */
 public final class PageUtil {
@@ -43,35 +43,65 @@ public final class PageUtil {
 
   private static final String tempDir = System.getProperty("java.io.tmpdir");
 
-  public static String getPageFileName(final MessageQueue queue) {
-    return tempDir + "/queuecache/" + queue.getSession().getSessionId().replaceAll("\\-", "_");
-  }
+  private static final long COMPACTION_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+  private static int segmentSize = PageStore.DEFAULT_SEGMENT_SIZE;
+
+  private static PageStore store;
 
-  public static File getOrCreatePageFile(final MessageQueue queue) throws IOException {
-    final File pageFile = new File(getPageFileName(queue));
-    if (!pageFile.exists()) {
-      pageFile.getParentFile().mkdirs();
-      pageFile.createNewFile();
-      pageFile.deleteOnExit();
+  /**
+   * Sets the size of the segment files of the page store. Only takes effect if no queue has been paged out yet.
+   *
+   * @param segmentSize
+   *          the size of a segment file in bytes.
+   */
+  public static synchronized void configure(final int segmentSize) {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("page segment size must be positive: " + segmentSize);
     }
-    return pageFile;
+    PageUtil.segmentSize = segmentSize;
   }
 
-  public static void writeToPageFile(final MessageQueue queue, final InputStream inputStream, final boolean append) {
-
-    try {
-      final OutputStream outputStream
-          = new BufferedOutputStream(new FileOutputStream(getOrCreatePageFile(queue), append));
+  /**
+   * The page store is only created once the first queue is paged out. Its segments are kept in a directory of their
+   * own, so that servers sharing the temp directory don't clash.
+   */
+  public static synchronized PageStore getPageStore() {
+    if (store == null) {
+      final File directory;
+      try {
+        directory = Files.createTempDirectory(new File(tempDir).toPath(), "errai-queuecache").toFile();
+      }
+      catch (IOException e) {
+        throw new RuntimeException("could not create the page directory", e);
+      }
+      directory.deleteOnExit();
+      store = new PageStore(directory, segmentSize, COMPACTION_INTERVAL);
+    }
+    return store;
+  }
 
-      int read;
-      while ((read = inputStream.read()) != -1) outputStream.write(read);
+  private static String getPageKey(final MessageQueue queue) {
+    return queue.getSession().getSessionId();
+  }
 
-      outputStream.flush();
-      outputStream.close();
+  public static void writeToPageFile(final MessageQueue queue, final InputStream inputStream, final boolean append) {
+    synchronized (queue.getPageLock()) {
+      try {
+        final String key = getPageKey(queue);
+        if (!append) {
+          getPageStore().discard(key);
+        }
 
-    }
-    catch (IOException e) {
-      throw new RuntimeException("paging error", e);
+        final byte[] chunk = new byte[1024 * 8];
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+          getPageStore().write(key, ByteBuffer.wrap(chunk, 0, read));
+        }
+      }
+      catch (IOException e) {
+        throw new RuntimeException("paging error", e);
+      }
     }
   }
 
@@ -80,14 +110,17 @@ public final class PageUtil {
       try {
         final boolean alreadyPaged = queue.isPaged();
 
-        final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(getOrCreatePageFile(queue), alreadyPaged));
-        final ByteWriteAdapter writeAdapter = new OutputStreamWriteAdapter(outputStream);
+        final String key = getPageKey(queue);
+        if (!alreadyPaged) {
+          getPageStore().discard(key);
+        }
 
+        final ByteBufferWriteAdapter writeAdapter = getPageStore().getWriter(key);
         queue.getBuffer().read(writeAdapter, queue.getBufferColor());
-        outputStream.flush();
-        outputStream.close();
+        writeAdapter.flush();
 
         queue.setPaged(true);
+        BusMetrics.countPageOut();
 
         return alreadyPaged;
       }
@@ -103,24 +136,7 @@ public final class PageUtil {
     synchronized (queue.getPageLock()) {
       try {
         if (queue.isPaged()) {
-          final File pageFile = new File(getPageFileName(queue));
-          if (!pageFile.exists()) {
-            queue.setPaged(false);
-            return;
-          }
-
-          final InputStream inputStream = new BufferedInputStream(new FileInputStream(pageFile));
-
-          callback.before(outputStream);
-
-          int read;
-          while ((read = inputStream.read()) != -1) {
-            outputStream.write(callback.each(read, outputStream));
-          }
-          inputStream.close();
-
-          callback.after(outputStream);
-
+          getPageStore().read(getPageKey(queue), outputStream, callback);
           queue.setPaged(false);
         }
       }
@@ -132,10 +148,7 @@ public final class PageUtil {
 
   public static void discardPageData(final MessageQueue queue) {
     if (queue.isPaged()) {
-      File pageFile = new File(getPageFileName(queue));
-      if (pageFile.exists()) {
-        pageFile.delete();
-      }
+      getPageStore().discard(getPageKey(queue));
     }
   }
 
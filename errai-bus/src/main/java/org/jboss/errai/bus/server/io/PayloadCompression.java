@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of outbound bus payloads: gzip for HTTP poll responses, and the raw DEFLATE framing of the WebSocket
+ * <tt>permessage-deflate</tt> extension (RFC 7692) for WebSocket messages. Payloads smaller than the configured
+ * threshold are sent uncompressed, since compressing them costs more CPU than it saves bandwidth.
+ * <p/>
+ * The compression ratio and the CPU time spent compressing are accumulated for the whole server and can be read
+ * with the getters of this class.
+ */
+public final class PayloadCompression {
+  /**
+   * The WebSocket extension name of per-message compression.
+   */
+  public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+  /**
+   * The extension parameters the server answers with. Neither side keeps its compression context between
+   * messages, so each message is compressed and decompressed on its own.
+   */
+  public static final String PERMESSAGE_DEFLATE_RESPONSE =
+      PERMESSAGE_DEFLATE + "; server_no_context_takeover; client_no_context_takeover";
+
+  /**
+   * The value of the WebSocket frame RSV bits marking a compressed message.
+   */
+  public static final int PERMESSAGE_DEFLATE_RSV = 0x4;
+
+  private static final byte[] DEFLATE_TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+
+  private static volatile boolean enabled = true;
+  private static volatile int threshold = 1024;
+
+  private static final AtomicLong uncompressedBytes = new AtomicLong();
+  private static final AtomicLong compressedBytes = new AtomicLong();
+  private static final AtomicLong compressedPayloads = new AtomicLong();
+  private static final AtomicLong skippedPayloads = new AtomicLong();
+  private static final AtomicLong compressionCpuNanos = new AtomicLong();
+
+  private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private static final boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+  private PayloadCompression() {
+  }
+
+  /**
+   * Configures compression for the whole server.
+   *
+   * @param enabled
+   *     whether payloads may be compressed at all.
+   * @param threshold
+   *     the size in bytes below which payloads are sent uncompressed.
+   */
+  public static void configure(final boolean enabled, final int threshold) {
+    PayloadCompression.enabled = enabled;
+    PayloadCompression.threshold = threshold;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Returns true if a payload of the given size should be compressed, and counts it as skipped otherwise.
+   */
+  public static boolean shouldCompress(final int size) {
+    if (enabled && size >= threshold) {
+      return true;
+    }
+    skippedPayloads.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Returns true if the given <tt>Accept-Encoding</tt> header value accepts gzip.
+   */
+  public static boolean acceptsGzip(final String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (final String coding : acceptEncoding.split(",")) {
+      final String[] params = coding.split(";");
+      if (!"gzip".equals(params[0].trim())) {
+        continue;
+      }
+
+      for (int i = 1; i < params.length; i++) {
+        final String param = params[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            return Double.parseDouble(param.substring(2)) > 0;
+          }
+          catch (NumberFormatException e) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given <tt>Sec-WebSocket-Extensions</tt> header value offers <tt>permessage-deflate</tt>.
+   */
+  public static boolean offersPerMessageDeflate(final String extensions) {
+    if (extensions == null) {
+      return false;
+    }
+
+    for (final String extension : extensions.split(",")) {
+      final int paramStart = extension.indexOf(';');
+      final String name = (paramStart == -1 ? extension : extension.substring(0, paramStart)).trim();
+      if (PERMESSAGE_DEFLATE.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compresses the given bytes in gzip format.
+   */
+  public static byte[] gzip(final byte[] data, final int length) throws IOException {
+    final long start = cpuTime();
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+    final GZIPOutputStream gzipStream = new GZIPOutputStream(out, 8192);
+    gzipStream.write(data, 0, length);
+    gzipStream.finish();
+
+    final byte[] compressed = out.toByteArray();
+    record(length, compressed.length, start);
+    return compressed;
+  }
+
+  /**
+   * Compresses one WebSocket message as specified by the <tt>permessage-deflate</tt> extension: raw DEFLATE, flushed
+   * with an empty stored block whose trailing <tt>00 00 FF FF</tt> is removed.
+   */
+  public static byte[] deflateMessage(final byte[] data) {
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      return deflateMessage(deflater, data);
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] deflateMessage(final Deflater deflater, final byte[] data) {
+    final long start = cpuTime();
+
+    deflater.setInput(data);
+
+    byte[] out = new byte[Math.max(64, data.length / 2)];
+    int count = 0;
+    while (true) {
+      count += deflater.deflate(out, count, out.length - count, Deflater.SYNC_FLUSH);
+      if (count < out.length) {
+        break;
+      }
+      out = Arrays.copyOf(out, out.length << 1);
+    }
+
+    final int length = endsWithDeflateTail(out, count) ? count - DEFLATE_TAIL.length : count;
+    record(data.length, length, start);
+    return Arrays.copyOf(out, length);
+  }
+
+  /**
+   * Decompresses one WebSocket message compressed as specified by the <tt>permessage-deflate</tt> extension.
+   *
+   * @param maxSize
+   *     the largest decompressed size accepted, in bytes. Decompression stops as soon as it is exceeded.
+   *
+   * @throws IOException
+   *     if the message is malformed or decompresses to more than <tt>maxSize</tt> bytes.
+   */
+  public static byte[] inflateMessage(final byte[] data, final int maxSize) throws IOException {
+    final Inflater inflater = new Inflater(true);
+    try {
+      return inflateMessage(inflater, data, maxSize);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  private static byte[] inflateMessage(final Inflater inflater, final byte[] data, final int maxSize)
+      throws IOException {
+    try {
+      final byte[] input = Arrays.copyOf(data, data.length + DEFLATE_TAIL.length);
+      System.arraycopy(DEFLATE_TAIL, 0, input, data.length, DEFLATE_TAIL.length);
+      inflater.setInput(input);
+
+      // one byte more than allowed is enough to tell that a message is too large.
+      final int limit = maxSize == Integer.MAX_VALUE ? maxSize : maxSize + 1;
+      byte[] out = new byte[Math.min(limit, Math.max(64, data.length * 4))];
+      int count = 0;
+      while (!inflater.needsInput() && !inflater.finished()) {
+        if (count == out.length) {
+          out = Arrays.copyOf(out, (int) Math.min(limit, (long) out.length << 1));
+        }
+        count += inflater.inflate(out, count, out.length - count);
+        if (count > maxSize) {
+          throw new IOException("compressed websocket message exceeds " + maxSize + " bytes");
+        }
+      }
+      return Arrays.copyOf(out, count);
+    }
+    catch (DataFormatException e) {
+      throw new IOException("malformed compressed websocket message", e);
+    }
+  }
+
+  private static boolean endsWithDeflateTail(final byte[] data, final int length) {
+    if (length < DEFLATE_TAIL.length) {
+      return false;
+    }
+    for (int i = 0; i < DEFLATE_TAIL.length; i++) {
+      if (data[length - DEFLATE_TAIL.length + i] != DEFLATE_TAIL[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long cpuTime() {
+    return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  private static void record(final int uncompressed, final int compressed, final long start) {
+    compressionCpuNanos.addAndGet(cpuTime() - start);
+    uncompressedBytes.addAndGet(uncompressed);
+    compressedBytes.addAndGet(compressed);
+    compressedPayloads.incrementAndGet();
+  }
+
+  /**
+   * Returns the total size of all compressed payloads before compression, in bytes.
+   */
+  public static long getUncompressedBytes() {
+    return uncompressedBytes.get();
+  }
+
+  /**
+   * Returns the total size of all compressed payloads after compression, in bytes.
+   */
+  public static long getCompressedBytes() {
+    return compressedBytes.get();
+  }
+
+  public static long getCompressedPayloadCount() {
+    return compressedPayloads.get();
+  }
+
+  /**
+   * Returns the number of payloads sent uncompressed to clients which accept compression, because they were below
+   * the threshold.
+   */
+  public static long getSkippedPayloadCount() {
+    return skippedPayloads.get();
+  }
+
+  /**
+   * Returns the CPU time spent compressing payloads, in nanoseconds. Falls back to wall-clock time on JVMs which
+   * can't measure thread CPU time.
+   */
+  public static long getCompressionCpuNanos() {
+    return compressionCpuNanos.get();
+  }
+
+  /**
+   * Returns the ratio of the uncompressed to the compressed size of all compressed payloads, or 1 if nothing was
+   * compressed yet.
+   */
+  public static double getCompressionRatio() {
+    final long compressed = compressedBytes.get();
+    return compressed == 0 ? 1.0d : (double) uncompressedBytes.get() / compressed;
+  }
+
+  /**
+   * Resets all compression statistics to zero.
+   */
+  public static void resetStatistics() {
+    uncompressedBytes.set(0);
+    compressedBytes.set(0);
+    compressedPayloads.set(0);
+    skippedPayloads.set(0);
+    compressionCpuNanos.set(0);
+  }
+
+  /**
+   * The <tt>permessage-deflate</tt> state of one WebSocket connection. Neither side keeps its compression context
+   * between messages, so the deflater and inflater are reset for every message, but they are reused for the lifetime
+   * of the connection instead of being allocated (with their native memory) for every message. {@link #end()} must
+   * be called when the connection is closed.
+   */
+  public static final class PerMessageDeflate {
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final Inflater inflater = new Inflater(true);
+    private final int maxMessageSize;
+    private boolean ended;
+
+    /**
+     * @param maxMessageSize
+     *     the largest decompressed size of an inbound message, in bytes.
+     */
+    public PerMessageDeflate(final int maxMessageSize) {
+      this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Compresses one outbound message. See {@link PayloadCompression#deflateMessage(byte[])}.
+     */
+    public byte[] deflate(final byte[] data) {
+      synchronized (deflater) {
+        if (ended) {
+          return deflateMessage(data);
+        }
+        deflater.reset();
+        return deflateMessage(deflater, data);
+      }
+    }
+
+    /**
+     * Decompresses one inbound message. See {@link PayloadCompression#inflateMessage(byte[], int)}.
+     */
+    public byte[] inflate(final byte[] data) throws IOException {
+      synchronized (inflater) {
+        if (ended) {
+          throw new IOException("websocket connection is closed");
+        }
+        inflater.reset();
+        return inflateMessage(inflater, data, maxMessageSize);
+      }
+    }
+
+    /**
+     * Releases the native memory of the deflater and the inflater. Messages compressed afterwards (by writers which
+     * raced with the close) get a deflater of their own.
+     */
+    public void end() {
+      synchronized (deflater) {
+        synchronized (inflater) {
+          ended = true;
+          deflater.end();
+          inflater.end();
+        }
+      }
+    }
+  }
+}
@@ -16,9 +16,13 @@
 
 package org.jboss.errai.bus.server.io;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import org.jboss.errai.bus.client.api.CallableFuture;
 import org.jboss.errai.bus.client.api.messaging.MessageBus;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.annotations.CachedResult;
+import org.slf4j.Logger;
 
 import java.lang.reflect.Method;
 
@@ -26,6 +30,8 @@ import java.lang.reflect.Method;
  * @author Mike Brock
  */
 public class RPCEndpointFactory {
+  private static final Logger log = getLogger(RPCEndpointFactory.class);
+
   private static final RPCEndpointFactory ENDPOINT_FACTORY = new RPCEndpointFactory();
 
   private RPCEndpointFactory() {
@@ -44,8 +50,42 @@ public class RPCEndpointFactory {
     else if (CallableFuture.class.isAssignableFrom(method.getReturnType())) {
       return new AsyncRPCEndpointCallback(provider, method, messageBus);
     }
+    else if (method.isAnnotationPresent(CachedResult.class)) {
+      return new CachedValueReplyRPCEndpointCallback(provider, method, null, messageBus);
+    }
     else {
       return new ValueReplyRPCEndpointCallback(provider, method, messageBus);
     }
   }
+
+  /**
+   * Creates an endpoint like {@link #createEndpointFor(ServiceInstanceProvider, Method, MessageBus)}, which invokes
+   * the method through a {@link MethodHandleInvoker} bound once, here, instead of reflectively on every call. Falls
+   * back to reflection if the method can't be bound.
+   */
+  public static MessageCallback createBoundEndpointFor(final ServiceInstanceProvider provider,
+                                                       final Method method,
+                                                       final MessageBus messageBus) {
+    final MethodHandleInvoker invoker;
+    try {
+      invoker = MethodHandleInvoker.create(method);
+    }
+    catch (IllegalAccessException e) {
+      log.debug("could not bind RPC endpoint " + method + "; invoking it reflectively", e);
+      return createEndpointFor(provider, method, messageBus);
+    }
+
+    if (method.getReturnType().equals(void.class)) {
+      return new VoidRPCEndpointCallback(provider, method, invoker, messageBus);
+    }
+    else if (CallableFuture.class.isAssignableFrom(method.getReturnType())) {
+      return new AsyncRPCEndpointCallback(provider, method, invoker, messageBus);
+    }
+    else if (method.isAnnotationPresent(CachedResult.class)) {
+      return new CachedValueReplyRPCEndpointCallback(provider, method, invoker, messageBus);
+    }
+    else {
+      return new ValueReplyRPCEndpointCallback(provider, method, invoker, messageBus);
+    }
+  }
 }
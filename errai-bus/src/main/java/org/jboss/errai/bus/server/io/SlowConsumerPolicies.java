@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.common.server.api.ErraiBootstrapFailure;
+import org.slf4j.Logger;
+
+/**
+ * The built-in {@link SlowConsumerPolicy} implementations, which can be referred to by their simple names
+ * (<tt>DropOldest</tt>, <tt>Conflate</tt>, <tt>Page</tt> and <tt>Disconnect</tt>) in the configuration.
+ */
+public final class SlowConsumerPolicies {
+  private static final Logger log = getLogger(SlowConsumerPolicies.class);
+
+  private static final Map<String, Class<? extends SlowConsumerPolicy>> builtIns
+      = new HashMap<String, Class<? extends SlowConsumerPolicy>>();
+
+  static {
+    builtIns.put("DropOldest", DropOldest.class);
+    builtIns.put("Conflate", Conflate.class);
+    builtIns.put("Page", Page.class);
+    builtIns.put("Disconnect", Disconnect.class);
+  }
+
+  private SlowConsumerPolicies() {
+  }
+
+  /**
+   * Returns the policy class with the specified name.
+   *
+   * @param name
+   *     the simple name of a built-in policy, or the fully qualified class name of a {@link SlowConsumerPolicy}.
+   */
+  public static Class<? extends SlowConsumerPolicy> getPolicyClass(final String name) {
+    final Class<? extends SlowConsumerPolicy> builtIn = builtIns.get(name);
+    if (builtIn != null) {
+      return builtIn;
+    }
+
+    try {
+      return Class.forName(name).asSubclass(SlowConsumerPolicy.class);
+    }
+    catch (Exception e) {
+      throw new ErraiBootstrapFailure("could not load slow consumer policy class: " + name, e);
+    }
+  }
+
+  public static SlowConsumerPolicy newInstance(final Class<? extends SlowConsumerPolicy> policyClass) {
+    try {
+      return policyClass.newInstance();
+    }
+    catch (Exception e) {
+      throw new RuntimeException("could not instantiate slow consumer policy: " + policyClass.getName(), e);
+    }
+  }
+
+  /**
+   * Discards all the messages waiting in the buffer for the client once the high watermark is reached, so that the
+   * client only receives the messages sent after that. The buffer can't drop single messages, so the whole backlog
+   * is dropped at once, the same way it is when the buffer overflows.
+   */
+  public static class DropOldest implements SlowConsumerPolicy {
+    @Override
+    public void onHighWatermark(final MessageQueue queue) {
+      queue.getBufferColor().getSequence().set(queue.getBuffer().getHeadSequence());
+      queue.resetMessageCount();
+
+      log.warn("dropped the waiting messages of session " + queue.getSession().getSessionId()
+          + " because the client is not keeping up with them");
+    }
+
+    @Override
+    public boolean offer(final MessageQueue queue, final Message message) throws IOException {
+      return queue.getDeliveryHandler().deliver(queue, message);
+    }
+
+    @Override
+    public void onLowWatermark(final MessageQueue queue) {
+    }
+  }
+
+  /**
+   * Holds back the messages offered to the queue while it is congested, and only keeps the latest message of every
+   * subject. The held messages are delivered once the client has drained the queue. While the queue is congested,
+   * messages broadcast to all subscribers of a subject are hidden from it in the buffer, and offered to it
+   * individually instead.
+   */
+  public static class Conflate implements SlowConsumerPolicy {
+    private final Map<String, Message> held = new LinkedHashMap<String, Message>();
+    private boolean holding;
+
+    @Override
+    public void onHighWatermark(final MessageQueue queue) {
+      if (holding) {
+        return;
+      }
+
+      holding = true;
+      queue.getBufferColor().suspendSharedData(queue.getBuffer().getHeadSequence());
+    }
+
+    @Override
+    public boolean offer(final MessageQueue queue, final Message message) throws IOException {
+      if (!holding) {
+        return queue.getDeliveryHandler().deliver(queue, message);
+      }
+
+      // re-inserting moves the subject to the end, so the held messages stay in the order they were last updated.
+      held.remove(message.getSubject());
+      held.put(message.getSubject(), message);
+      return true;
+    }
+
+    @Override
+    public void onLowWatermark(final MessageQueue queue) throws IOException {
+      if (!holding) {
+        return;
+      }
+
+      final List<Message> messages = new ArrayList<Message>(held.values());
+      held.clear();
+      try {
+        // the held messages have to be in the buffer before shared data becomes visible again. otherwise a newer
+        // broadcast could overtake an older held message of the same subject.
+        for (final Message message : messages) {
+          queue.getDeliveryHandler().deliver(queue, message);
+        }
+      }
+      finally {
+        queue.getBufferColor().resumeSharedData(queue.getBuffer().getHeadSequence());
+        holding = false;
+      }
+    }
+  }
+
+  /**
+   * Pages the messages waiting in the buffer out to disk every time the high watermark is reached. The paged
+   * messages are delivered to the client before any message in the buffer the next time it polls.
+   */
+  public static class Page implements SlowConsumerPolicy {
+    @Override
+    public void onHighWatermark(final MessageQueue queue) {
+      PageUtil.pageWaitingToDisk(queue);
+      queue.resetMessageCount();
+    }
+
+    @Override
+    public boolean offer(final MessageQueue queue, final Message message) throws IOException {
+      return queue.getDeliveryHandler().deliver(queue, message);
+    }
+
+    @Override
+    public void onLowWatermark(final MessageQueue queue) {
+    }
+  }
+
+  /**
+   * Stops the queue once the high watermark is reached. The session is cleaned up by the bus, and the client has
+   * to reconnect.
+   */
+  public static class Disconnect implements SlowConsumerPolicy {
+    @Override
+    public void onHighWatermark(final MessageQueue queue) {
+      log.warn("disconnecting session " + queue.getSession().getSessionId()
+          + " because the client is not keeping up with its messages");
+      queue.stopQueue();
+    }
+
+    @Override
+    public boolean offer(final MessageQueue queue, final Message message) {
+      return false;
+    }
+
+    @Override
+    public void onLowWatermark(final MessageQueue queue) {
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io;
+
+import java.io.IOException;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.api.MessageQueue;
+
+/**
+ * Decides what happens to the messages of a client which does not drain its {@link MessageQueue} fast enough. A queue
+ * becomes congested once the number of messages waiting for the client reaches the high watermark, and stays
+ * congested until the client has drained it down to the low watermark.
+ * <p/>
+ * Every queue has its own instance of the policy, so implementations may keep per-queue state. All methods are
+ * called while holding the backpressure lock of the queue. Implementations must have a public default constructor.
+ *
+ * @see SlowConsumerPolicies
+ */
+public interface SlowConsumerPolicy {
+  /**
+   * Called whenever the number of messages waiting in the queue reaches the high watermark.
+   *
+   * @param queue
+   *     the congested queue.
+   *
+   * @throws IOException
+   *     if there is a problem interacting with the buffer or the page store.
+   */
+  public void onHighWatermark(MessageQueue queue) throws IOException;
+
+  /**
+   * Called for every message offered to the queue while it is congested, instead of handing the message to the
+   * {@link MessageDeliveryHandler} of the queue.
+   *
+   * @param queue
+   *     the congested queue.
+   * @param message
+   *     the message offered to the queue.
+   *
+   * @return true if the message was accepted.
+   *
+   * @throws IOException
+   *     if there is a problem interacting with the underlying transport.
+   */
+  public boolean offer(MessageQueue queue, Message message) throws IOException;
+
+  /**
+   * Called once the client has drained the congested queue down to the low watermark.
+   *
+   * @param queue
+   *     the queue which is no longer congested.
+   *
+   * @throws IOException
+   *     if there is a problem interacting with the underlying transport.
+   */
+  public void onLowWatermark(MessageQueue queue) throws IOException;
+}
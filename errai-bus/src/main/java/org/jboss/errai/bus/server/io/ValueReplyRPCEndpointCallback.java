@@ -33,6 +33,13 @@ public class ValueReplyRPCEndpointCallback extends AbstractRPCMethodCallback {
     super(genericSvc, method, bus);
   }
 
+  public ValueReplyRPCEndpointCallback(final ServiceInstanceProvider genericSvc,
+                                       final Method method,
+                                       final MethodHandleInvoker invoker,
+                                       final MessageBus bus) {
+    super(genericSvc, method, invoker, bus);
+  }
+
   @Override
   public void callback(final Message message) {
     createConversation(message)
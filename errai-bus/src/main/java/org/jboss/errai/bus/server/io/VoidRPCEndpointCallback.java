@@ -31,6 +31,10 @@ public class VoidRPCEndpointCallback extends AbstractRPCMethodCallback {
     super(genericSvc, method, bus);
   }
 
+  public VoidRPCEndpointCallback(ServiceInstanceProvider genericSvc, Method method, MethodHandleInvoker invoker, MessageBus bus) {
+    super(genericSvc, method, invoker, bus);
+  }
+
   @Override
   public void callback(final Message message) {
     invokeMethodFromMessage(message);
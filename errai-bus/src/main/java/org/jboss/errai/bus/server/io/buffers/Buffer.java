@@ -28,7 +28,7 @@ import org.jboss.errai.bus.server.io.ByteWriteAdapter;
 public interface Buffer {
   public void write(InputStream inputStream, BufferColor bufferColor) throws IOException;
 
-  public void write(int writeSize, InputStream inputStream, BufferColor bufferColor) throws IOException;
+  public long write(int writeSize, InputStream inputStream, BufferColor bufferColor) throws IOException;
 
   public boolean read(ByteWriteAdapter outputStream, BufferColor bufferColor) throws IOException;
 
@@ -59,5 +59,6 @@ public interface Buffer {
   public int getTotalSegments();
   
   public int getSegmentSize();
-  
+
+  public void clear();
 }
@@ -16,6 +16,11 @@
 
 package org.jboss.errai.bus.server.io.buffers;
 
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -31,6 +36,17 @@ public class BufferColor {
   private static final AtomicInteger bufferColorCounter = new AtomicInteger();
   private static final BufferColor allBuffersColor = new BufferColor(Short.MIN_VALUE);
 
+  /**
+   * The number of colors reserved for subscriber groups, right above the all-buffers color. Session colors are never
+   * drawn from this range, so a session color can't be equal to a group color after the color counter wraps.
+   */
+  static final int GROUP_COLORS = 4096;
+  private static final int FIRST_GROUP_COLOR = Short.MIN_VALUE + 1;
+  private static final int LAST_GROUP_COLOR = Short.MIN_VALUE + GROUP_COLORS;
+
+  private static final AtomicInteger groupColorCounter = new AtomicInteger();
+  private static final Set<Short> liveGroupColors = ConcurrentHashMap.newKeySet();
+
   /**
    * The current tail position for this buffer color.
    */
@@ -51,6 +67,26 @@ public class BufferColor {
    */
   final Condition dataWaiting = lock.newCondition();
 
+  /**
+   * Reader threads parked while waiting for data of this color. Used by {@link LockFreeTransmissionBuffer}, which
+   * never holds {@link #lock} while writing and so cannot signal {@link #dataWaiting}.
+   */
+  final Queue<Thread> parkedReaders = new ConcurrentLinkedQueue<Thread>();
+
+  /**
+   * The subscriber-group colors this color is a member of. Replaced wholesale on every change so that readers
+   * never need to lock to inspect it.
+   */
+  private volatile GroupMembership groups = GroupMembership.EMPTY;
+
+  /**
+   * The windows of buffer sequences, as <tt>[from, until)</tt> pairs, in which data written with the all-buffers
+   * color or a group color is invisible to this color. Replaced wholesale on every change, like {@link #groups}.
+   */
+  private volatile long[] suspensions = NO_SUSPENSIONS;
+
+  private static final long[] NO_SUSPENSIONS = new long[0];
+
   public short getColor() {
     return color;
   }
@@ -77,6 +113,143 @@ public class BufferColor {
     return lock;
   }
 
+  /**
+   * Makes data written to the specified group color visible to this color, starting from the specified sequence.
+   * Data written to the group before <tt>fromSequence</tt> remains invisible to this color.
+   *
+   * @param groupColor
+   *     the group color to join.
+   * @param fromSequence
+   *     the buffer sequence from which the group data becomes visible to this color.
+   */
+  public synchronized void joinGroup(final BufferColor groupColor, final long fromSequence) {
+    groups = groups.with(groupColor.color, fromSequence);
+  }
+
+  /**
+   * Stops data written to the specified group color from being visible to this color.
+   *
+   * @param groupColor
+   *     the group color to leave.
+   */
+  public synchronized void leaveGroup(final BufferColor groupColor) {
+    groups = groups.without(groupColor.color);
+  }
+
+  /**
+   * Returns true if this color is a member of the specified group color.
+   *
+   * @param groupColor
+   *     the group color.
+   *
+   * @return true if this color is a member of the group.
+   */
+  public boolean isMemberOf(final BufferColor groupColor) {
+    return groups.indexOf(groupColor.color) != -1;
+  }
+
+  /**
+   * Returns true if a segment of the specified color, at the specified sequence, belongs to a group this color
+   * is a member of.
+   */
+  boolean isGroupVisible(final short segmentColor, final long sequence) {
+    final GroupMembership membership = groups;
+    if (membership.colors.length == 0) {
+      return false;
+    }
+
+    final int idx = membership.indexOf(segmentColor);
+    return idx != -1 && sequence >= membership.fromSequences[idx];
+  }
+
+  /**
+   * Hides the data written with the all-buffers color or with any group color from this color, starting from the
+   * specified sequence, until {@link #resumeSharedData(long)} is called. Data already written before
+   * <tt>fromSequence</tt> remains visible. Has no effect if shared data is already suspended.
+   *
+   * @param fromSequence
+   *     the buffer sequence from which shared data becomes invisible to this color.
+   */
+  public synchronized void suspendSharedData(final long fromSequence) {
+    if (isSharedDataSuspended()) {
+      return;
+    }
+
+    final long[] windows = pruneSuspensions(suspensions);
+    final long[] newWindows = Arrays.copyOf(windows, windows.length + 2);
+    newWindows[windows.length] = fromSequence;
+    newWindows[windows.length + 1] = Long.MAX_VALUE;
+    suspensions = newWindows;
+  }
+
+  /**
+   * Makes the data written with the all-buffers color or with a group color visible to this color again, starting
+   * from the specified sequence. Shared data written while it was suspended remains invisible.
+   *
+   * @param fromSequence
+   *     the buffer sequence from which shared data becomes visible to this color again.
+   */
+  public synchronized void resumeSharedData(final long fromSequence) {
+    if (!isSharedDataSuspended()) {
+      return;
+    }
+
+    final long[] newWindows = suspensions.clone();
+    newWindows[newWindows.length - 1] = fromSequence;
+    suspensions = pruneSuspensions(newWindows);
+  }
+
+  /**
+   * Returns true if the data written with the all-buffers color or a group color is currently hidden from this color.
+   */
+  public boolean isSharedDataSuspended() {
+    final long[] windows = suspensions;
+    return windows.length != 0 && windows[windows.length - 1] == Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns true if data written with the all-buffers color or a group color at the specified sequence is visible to
+   * this color (provided it is a member of the group).
+   *
+   * @param sequence
+   *     the buffer sequence the data was written at.
+   */
+  public boolean isSharedDataVisible(final long sequence) {
+    final long[] windows = suspensions;
+    for (int i = 0; i < windows.length; i += 2) {
+      if (sequence >= windows[i] && sequence < windows[i + 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops the windows this color has already read past.
+   */
+  private long[] pruneSuspensions(final long[] windows) {
+    final long read = sequence.get();
+
+    int keep = 0;
+    for (int i = 0; i < windows.length; i += 2) {
+      if (windows[i + 1] > read) {
+        keep += 2;
+      }
+    }
+    if (keep == windows.length) {
+      return windows;
+    }
+
+    final long[] newWindows = new long[keep];
+    for (int i = 0, j = 0; i < windows.length; i += 2) {
+      if (windows[i + 1] > read) {
+        newWindows[j++] = windows[i];
+        newWindows[j++] = windows[i + 1];
+      }
+    }
+    return newWindows;
+  }
+
   private BufferColor(final short color) {
     this.color = color;
   }
@@ -86,14 +259,14 @@ public class BufferColor {
    *
    * @return a new unique BufferColor
    *
-   * @see #getNewColorFromHead(TransmissionBuffer)
+   * @see #getNewColorFromHead(Buffer)
    */
   public static BufferColor getNewColor() {
     short val = (short) bufferColorCounter.incrementAndGet();
 
     // in a long-running system, do not allow it to recycle over the global
-    // color.
-    if (val == Short.MIN_VALUE) {
+    // color or the group colors.
+    while (val <= LAST_GROUP_COLOR) {
       val = (short) bufferColorCounter.incrementAndGet();
     }
 
@@ -101,14 +274,52 @@ public class BufferColor {
   }
 
   /**
-   * Returns a new unique BufferColor set to the head sequence of the specified TransmissionBuffer.
+   * Returns a new BufferColor to be used as a subscriber-group color. Data written with a group color is visible to
+   * every color which has {@link #joinGroup(BufferColor, long) joined} the group, which allows data addressed to a
+   * subset of all colors to be written to the buffer only once.
+   * <p/>
+   * Group colors are taken from a range of their own, and a group color is not handed out again until it is
+   * {@link #releaseGroupColor(BufferColor) released}.
+   *
+   * @return a new unique BufferColor to be used as a group color, or null if all group colors are in use.
+   */
+  public static BufferColor getNewGroupColor() {
+    for (int i = 0; i < GROUP_COLORS; i++) {
+      final short val = (short) (FIRST_GROUP_COLOR + Math.floorMod(groupColorCounter.getAndIncrement(), GROUP_COLORS));
+      if (liveGroupColors.add(val)) {
+        return new BufferColor(val);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Makes the specified group color available to {@link #getNewGroupColor()} again. Must only be called once no color
+   * is a member of the group anymore and no more data is written with it.
+   *
+   * @param groupColor
+   *     the group color to release.
+   */
+  public static void releaseGroupColor(final BufferColor groupColor) {
+    liveGroupColors.remove(groupColor.color);
+  }
+
+  /**
+   * Returns true if this color was obtained from {@link #getNewGroupColor()}.
+   */
+  public boolean isGroupColor() {
+    return color >= FIRST_GROUP_COLOR && color <= LAST_GROUP_COLOR;
+  }
+
+  /**
+   * Returns a new unique BufferColor set to the head sequence of the specified Buffer.
    *
    * @param buffer
    *     the buffer instance to obtain the head sequence from.
    *
    * @return a new unique BufferColor instance.
    */
-  public static BufferColor getNewColorFromHead(final TransmissionBuffer buffer) {
+  public static BufferColor getNewColorFromHead(final Buffer buffer) {
     final BufferColor color = getNewColor();
     color.sequence.set(buffer.getHeadSequence());
     return color;
@@ -122,5 +333,62 @@ public class BufferColor {
   public static BufferColor getAllBuffersColor() {
     return allBuffersColor;
   }
-}
 
+  /**
+   * An immutable snapshot of the groups a color is a member of.
+   */
+  private static final class GroupMembership {
+    static final GroupMembership EMPTY = new GroupMembership(new short[0], new long[0]);
+
+    final short[] colors;
+    final long[] fromSequences;
+
+    private GroupMembership(final short[] colors, final long[] fromSequences) {
+      this.colors = colors;
+      this.fromSequences = fromSequences;
+    }
+
+    int indexOf(final short color) {
+      for (int i = 0; i < colors.length; i++) {
+        if (colors[i] == color) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    GroupMembership with(final short color, final long fromSequence) {
+      if (indexOf(color) != -1) {
+        return this;
+      }
+
+      final short[] newColors = Arrays.copyOf(colors, colors.length + 1);
+      final long[] newFromSequences = Arrays.copyOf(fromSequences, fromSequences.length + 1);
+      newColors[colors.length] = color;
+      newFromSequences[fromSequences.length] = fromSequence;
+
+      return new GroupMembership(newColors, newFromSequences);
+    }
+
+    GroupMembership without(final short color) {
+      final int idx = indexOf(color);
+      if (idx == -1) {
+        return this;
+      }
+      if (colors.length == 1) {
+        return EMPTY;
+      }
+
+      final short[] newColors = new short[colors.length - 1];
+      final long[] newFromSequences = new long[fromSequences.length - 1];
+      for (int i = 0, j = 0; i < colors.length; i++) {
+        if (i != idx) {
+          newColors[j] = colors[i];
+          newFromSequences[j++] = fromSequences[i];
+        }
+      }
+
+      return new GroupMembership(newColors, newFromSequences);
+    }
+  }
+}
@@ -0,0 +1,584 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.io.buffers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.errai.bus.server.io.ByteBufferWriteAdapter;
+import org.jboss.errai.bus.server.io.ByteWriteAdapter;
+
+/**
+ * A ring-based buffer with the same segment layout and color semantics as {@link TransmissionBuffer}, but with a
+ * write path that never takes a lock.
+ * <p/>
+ * Writers claim a contiguous run of segments by atomically advancing the write sequence, copy their data into the
+ * claimed segments, and then publish each segment by storing its sequence number into the slot's entry in the
+ * published sequence array. Since every slot has exactly one writer per lap of the ring, no two writers ever
+ * contend for the same memory, regardless of the color they write.
+ * <p/>
+ * Readers scan forward from their color's tail and stop at the first segment which has been claimed but not yet
+ * published. Concurrent readers of the <em>same</em> color are still serialized with the color's lock, but that lock
+ * is never held by a writer. Waiting readers spin briefly and then park until a writer of their color unparks them.
+ * As writers never wait for readers, a reader which falls a whole lap of the ring behind skips ahead to the write
+ * sequence, and the data it missed is lost.
+ *
+ * @see TransmissionBuffer
+ */
+public class LockFreeTransmissionBuffer implements Buffer {
+  private static final int SEGMENT_HEADER_SIZE = 4;                      /* to accommodate a 32-bit integer  */
+
+  /**
+   * The number of times a waiting reader re-checks the buffer before parking.
+   */
+  private static final int SPIN_TRIES = 64;
+
+  /**
+   * The main buffer where the data is stored
+   */
+  private final ByteBuffer _buffer;
+
+  /**
+   * The segment map where allocation data is stored
+   */
+  private final short[] segmentMap;
+
+  /**
+   * The sequence number most recently published in each segment. A segment is readable at a given sequence
+   * only once its entry is greater than or equal to that sequence.
+   */
+  private final AtomicLongArray publishedSequences;
+
+  /**
+   * The absolute size (in bytes) of the buffer
+   */
+  private final int bufferSize;
+
+  /**
+   * The size of an individual segment in the buffer
+   */
+  private final int segmentSize;
+
+  /**
+   * The total number of allocable segments in the buffer
+   */
+  private final int segments;
+
+  /**
+   * The internal write sequence number used by the writers to claim write space within the buffer.
+   */
+  private final AtomicLong writeSequenceNumber = new AtomicLong(TransmissionBuffer.STARTING_SEQUENCE) {
+    @SuppressWarnings("UnusedDeclaration") public volatile long a1
+        ,
+        a2
+        ,
+        a3
+        ,
+        a4
+        ,
+        a5
+        ,
+        a6
+        ,
+        a7 = 7L;
+  };
+
+  /**
+   * All reader threads parked on this buffer, whatever their color. Data written with the all-buffers color or a
+   * group color can be visible to any color, so such writes wake all of them.
+   */
+  private final Queue<Thread> parkedReaders = new ConcurrentLinkedQueue<Thread>();
+
+  /**
+   * The highest sequence number which has been published.
+   */
+  private final AtomicLong headSequence = new AtomicLong(TransmissionBuffer.STARTING_SEQUENCE);
+
+  private LockFreeTransmissionBuffer(final boolean directBuffer, final int segmentSize, final int segments) {
+    this.segmentSize = segmentSize;
+    this.bufferSize = segmentSize * segments;
+    this.segments = segments;
+
+    if (directBuffer) {
+      this._buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+    else {
+      this._buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    segmentMap = new short[segments];
+    publishedSequences = new AtomicLongArray(segments);
+    for (int i = 0; i < segments; i++) {
+      publishedSequences.set(i, -1);
+    }
+  }
+
+  /**
+   * Creates a heap allocated lock-free transmission buffer with a specified segment size and segments. The
+   * resulting buffer will be of size: <i>segmentSize * segments</i>.
+   *
+   * @param segmentSize
+   *     the size of individual segments
+   * @param segments
+   *     the total number of segments
+   *
+   * @return an instance of the transmission buffer
+   */
+  public static LockFreeTransmissionBuffer create(final int segmentSize, final int segments) {
+    return new LockFreeTransmissionBuffer(false, segmentSize, segments);
+  }
+
+  /**
+   * Creates a direct allocated lock-free transmission buffer with a custom segment size and segments. The
+   * resulting buffer will be of size: <i>segmentSize * segments</i>.
+   *
+   * @param segmentSize
+   *     the size of the individual segments
+   * @param segments
+   *     the total number of segments
+   *
+   * @return an instance of the transmission buffer
+   */
+  public static LockFreeTransmissionBuffer createDirect(final int segmentSize, final int segments) {
+    return new LockFreeTransmissionBuffer(true, segmentSize, segments);
+  }
+
+  @Override
+  public void write(final InputStream inputStream, final BufferColor bufferColor) throws IOException {
+    write(inputStream.available(), inputStream, bufferColor);
+  }
+
+  /**
+   * Writes from an {@link InputStream} into the buffer using the specified {@param writeSize} to claim space
+   * in the buffer. This method does not block other writers, regardless of the color written.
+   *
+   * @param writeSize
+   *     the size in bytes to be allocated.
+   * @param inputStream
+   *     the input stream to read into the buffer.
+   * @param bufferColor
+   *     the color of the data to be inserted.
+   *
+   * @return the sequence of the first segment written.
+   *
+   * @throws IOException
+   */
+  @Override
+  public long write(final int writeSize,
+                    final InputStream inputStream,
+                    final BufferColor bufferColor) throws IOException {
+
+    if (writeSize > bufferSize) {
+      throw new IOException("write size larger than buffer can fit");
+    }
+
+    final int allocSize = (int) (((long) writeSize + (long) SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+    final long writeHead = writeSequenceNumber.getAndAdd(allocSize);
+    final int seq = (int) (writeHead % segments);
+
+    try {
+      /*
+       * Allocate the segments to the this color. No reader can observe these until they are published.
+       */
+      final short color = bufferColor.color;
+      for (int i = 0; i < allocSize; i++) {
+        segmentMap[((seq + i) % segments)] = color;
+      }
+
+      int writeCursor = seq * segmentSize;
+
+      // write the chunk size header for the data we're about to write
+      writeChunkSize(writeCursor, writeSize);
+
+      final int end = (writeCursor += SEGMENT_HEADER_SIZE) + writeSize;
+      final int initialRead = end > bufferSize ? bufferSize : end;
+
+      for (; writeCursor < initialRead; writeCursor++) {
+        _buffer.put(writeCursor, (byte) inputStream.read());
+      }
+
+      if (writeCursor < end) {
+        for (int i = 0; i < end - bufferSize; i++) {
+          _buffer.put(i, (byte) inputStream.read());
+        }
+      }
+    }
+    finally {
+      // the claimed segments must always be published, or readers would stall at this sequence forever.
+      for (int i = 0; i < allocSize; i++) {
+        publish((int) ((writeHead + i) % segments), writeHead + i);
+      }
+
+      advanceHead(writeHead + allocSize);
+      unparkReaders(bufferColor);
+    }
+
+    return writeHead;
+  }
+
+  /**
+   * Publishes the specified {@param sequence} in a segment slot. A writer which was descheduled for a whole lap of
+   * the ring may publish after the writer of the next lap, so the published sequence is only ever raised.
+   */
+  private void publish(final int slot, final long sequence) {
+    long current;
+    while ((current = publishedSequences.get(slot)) < sequence) {
+      if (publishedSequences.compareAndSet(slot, current, sequence)) {
+        return;
+      }
+    }
+  }
+
+  private void advanceHead(final long newHead) {
+    long current;
+    while ((current = headSequence.get()) < newHead) {
+      if (headSequence.compareAndSet(current, newHead)) {
+        return;
+      }
+    }
+  }
+
+  private void unparkReaders(final BufferColor bufferColor) {
+    final Queue<Thread> readers =
+        (bufferColor.isGroupColor() || bufferColor == BufferColor.getAllBuffersColor()) ? parkedReaders
+            : bufferColor.parkedReaders;
+
+    if (!readers.isEmpty()) {
+      for (final Thread thread : readers) {
+        LockSupport.unpark(thread);
+      }
+    }
+  }
+
+  @Override
+  public boolean read(final ByteWriteAdapter outputStream, final BufferColor bufferColor) throws IOException {
+    final ReentrantLock lock = bufferColor.lock;
+    lock.lock();
+    try {
+      return readAvailable(outputStream, bufferColor, null, Long.MAX_VALUE) != -1;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean read(final ByteWriteAdapter outputStream,
+                      final BufferColor bufferColor,
+                      final BufferFilter callback) throws IOException {
+
+    return read(outputStream, bufferColor, callback, headSequence.get());
+  }
+
+  /**
+   * Reads the published data for the specified color up to, but not including, the specified {@param sequence}.
+   */
+  @Override
+  public boolean read(final ByteWriteAdapter outputStream,
+                      final BufferColor bufferColor,
+                      final BufferFilter callback,
+                      final long sequence) throws IOException {
+
+    final ReentrantLock lock = bufferColor.lock;
+    if (lock.tryLock()) {
+      try {
+        callback.before(outputStream);
+        final boolean advanced = readAvailable(outputStream, bufferColor, callback, sequence) != -1;
+        callback.after(outputStream);
+        return advanced;
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean readWait(final ByteWriteAdapter outputStream,
+                          final BufferColor bufferColor) throws InterruptedException, IOException {
+    return awaitAndRead(-1, outputStream, bufferColor, null);
+  }
+
+  @Override
+  public boolean readWait(final TimeUnit unit,
+                          final long time,
+                          final ByteWriteAdapter outputStream,
+                          final BufferColor bufferColor) throws IOException, InterruptedException {
+    return awaitAndRead(unit.toNanos(time), outputStream, bufferColor, null);
+  }
+
+  @Override
+  public boolean readWait(final ByteWriteAdapter outputStream,
+                          final BufferColor bufferColor,
+                          final BufferFilter callback) throws IOException, InterruptedException {
+    return readWait(TimeUnit.NANOSECONDS, -1, outputStream, bufferColor, callback);
+  }
+
+  @Override
+  public boolean readWait(final TimeUnit unit,
+                          final long time,
+                          final ByteWriteAdapter outputStream,
+                          final BufferColor bufferColor,
+                          final BufferFilter callback) throws IOException, InterruptedException {
+
+    callback.before(outputStream);
+    try {
+      // a time of -1 means "do not wait", as it does for TransmissionBuffer.
+      return awaitAndRead(time == -1 ? 1 : unit.toNanos(time), outputStream, bufferColor, callback);
+    }
+    finally {
+      callback.after(outputStream);
+    }
+  }
+
+  /**
+   * Reads all available data for the color, spinning and then parking until data arrives or the timeout elapses.
+   *
+   * @param nanos
+   *     the maximum time to wait in nanoseconds, or -1 to wait indefinitely.
+   *
+   * @return true if any data was read.
+   */
+  private boolean awaitAndRead(final long nanos,
+                               final ByteWriteAdapter outputStream,
+                               final BufferColor bufferColor,
+                               final BufferFilter callback) throws IOException, InterruptedException {
+
+    final long deadline = nanos == -1 ? 0 : System.nanoTime() + nanos;
+    int spins = 0;
+
+    for (; ; ) {
+      final ReentrantLock lock = bufferColor.lock;
+      lock.lockInterruptibly();
+      try {
+        if (readAvailable(outputStream, bufferColor, callback, Long.MAX_VALUE) != -1) {
+          return true;
+        }
+      }
+      finally {
+        lock.unlock();
+      }
+
+      final long remaining = nanos == -1 ? Long.MAX_VALUE : deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+
+      if (spins++ < SPIN_TRIES) {
+        Thread.yield();
+        continue;
+      }
+
+      final Thread thread = Thread.currentThread();
+      bufferColor.parkedReaders.add(thread);
+      parkedReaders.add(thread);
+      try {
+        // re-check after registering so we cannot miss an unpark from a writer that published in the meantime.
+        if (!hasDataFor(bufferColor)) {
+          if (nanos == -1) {
+            LockSupport.park(this);
+          }
+          else {
+            LockSupport.parkNanos(this, remaining);
+          }
+        }
+      }
+      finally {
+        bufferColor.parkedReaders.remove(thread);
+        parkedReaders.remove(thread);
+      }
+
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  private boolean hasDataFor(final BufferColor bufferColor) {
+    return getNextSegment(bufferColor, writeSequenceNumber.get(), bufferColor.sequence.get()) != -1;
+  }
+
+  /**
+   * Reads all published data for the specified color below the specified {@param limit} and advances the color's
+   * tail. Must be called with the color's lock held.
+   *
+   * @return the new tail sequence, or -1 if nothing was read.
+   */
+  private long readAvailable(final ByteWriteAdapter outputStream,
+                             final BufferColor bufferColor,
+                             final BufferFilter callback,
+                             final long limit) throws IOException {
+
+    final long writeHead = Math.min(writeSequenceNumber.get(), limit);
+    long read = bufferColor.sequence.get();
+    long lastRead = -1;
+
+    while ((read = readNextChunk(writeHead, read, bufferColor, outputStream, callback)) != -1) {
+      lastRead = read;
+    }
+
+    if (lastRead != -1) {
+      bufferColor.sequence.set(lastRead);
+    }
+
+    return lastRead;
+  }
+
+  @Override
+  public long getHeadSequence() {
+    return headSequence.get();
+  }
+
+  @Override
+  public int getHeadPositionBytes() {
+    return (int) (headSequence.get() % segments) * segmentSize;
+  }
+
+  @Override
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  @Override
+  public int getTotalSegments() {
+    return segments;
+  }
+
+  @Override
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  @Override
+  public void clear() {
+    _buffer.clear();
+  }
+
+  /**
+   * Returns the next published segment containing data for the specified {@param bufferColor}, up to the
+   * specified {@param headSeq} position, from the specified {@param colorSeq} position.
+   *
+   * @return the sequence of the next segment to read, or -1 if there is none.
+   */
+  private long getNextSegment(final BufferColor bufferColor, final long headSeq, long colorSeq) {
+    for (final int color = bufferColor.getColor(); colorSeq < headSeq; colorSeq++) {
+      final int slot = (int) (colorSeq % segments);
+
+      if (publishedSequences.get(slot) < colorSeq) {
+        // claimed but not yet published. nothing beyond this point may be read yet.
+        return -1;
+      }
+
+      final short seg = segmentMap[slot];
+      if (seg == color || ((seg == Short.MIN_VALUE || bufferColor.isGroupVisible(seg, colorSeq))
+          && bufferColor.isSharedDataVisible(colorSeq))) {
+        return colorSeq;
+      }
+    }
+    return -1;
+  }
+
+  private long readNextChunk(final long head,
+                             final long sequence,
+                             final BufferColor color,
+                             final ByteWriteAdapter outputStream,
+                             final BufferFilter callback) throws IOException {
+
+    final long sequenceToRead = getNextSegment(color, head, sequence);
+    if (sequenceToRead != -1) {
+      int readCursor = (int) (sequenceToRead % segments) * segmentSize;
+
+      final int readSize = readChunkSize(readCursor);
+
+      if (isLapped(sequenceToRead) || readSize < 0 || readSize > bufferSize - SEGMENT_HEADER_SIZE) {
+        // the writers went around the ring before this reader got here, so the chunk may be overwritten. the
+        // write sequence is the only position known to be on a chunk boundary, so everything up to it is skipped.
+        return writeSequenceNumber.get();
+      }
+
+      readCursor += SEGMENT_HEADER_SIZE;
+
+      final long endRead = (long) readCursor + (long) readSize;
+      final int maxInitialRead = endRead < bufferSize ? (int) endRead : bufferSize;
+
+      if (callback == null && outputStream instanceof ByteBufferWriteAdapter) {
+        // no filter to apply, so the chunk can be handed over in one piece.
+        final ByteBufferWriteAdapter bulkAdapter = (ByteBufferWriteAdapter) outputStream;
+        final ByteBuffer chunk = _buffer.duplicate();
+        chunk.limit(maxInitialRead);
+        chunk.position(readCursor);
+        bulkAdapter.write(chunk);
+
+        if (maxInitialRead < endRead) {
+          chunk.limit((int) (endRead - bufferSize));
+          chunk.position(0);
+          bulkAdapter.write(chunk);
+        }
+
+        return sequenceToRead + (((long) readSize + (long) SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+      }
+
+      final BufferFilter nullSafeCallback = (callback == null ? NoOpBufferFilter.INSTANCE : callback);
+
+      for (; readCursor >= 0 && readCursor < maxInitialRead; readCursor++) {
+        outputStream.write(nullSafeCallback.each(_buffer.get(readCursor), outputStream));
+      }
+
+      if (readCursor < endRead) {
+        final int remaining = (int) (endRead - bufferSize);
+        for (int i = 0; i < remaining; i++) {
+          outputStream.write(nullSafeCallback.each(_buffer.get(i), outputStream));
+        }
+      }
+
+      return sequenceToRead + (((long) readSize + (long) SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+    }
+    else {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns true if the segment at the specified {@param sequence} has been claimed again by a writer since.
+   */
+  private boolean isLapped(final long sequence) {
+    return writeSequenceNumber.get() > sequence + segments;
+  }
+
+  private int readChunkSize(final int position) {
+    return (((_buffer.get(position + 3)) & 0xFF)) +
+        (((_buffer.get(position + 2)) & 0xFF) << 8) +
+        (((_buffer.get(position + 1)) & 0xFF) << 16) +
+        (((_buffer.get(position)) & 0xFF) << 24);
+  }
+
+  private void writeChunkSize(final int position, final int size) {
+    _buffer.put(position, (byte) ((size >> 24) & 0xFF));
+    _buffer.put(position + 1, (byte) ((size >> 16) & 0xFF));
+    _buffer.put(position + 2, (byte) ((size >> 8) & 0xFF));
+    _buffer.put(position + 3, (byte) (size & 0xFF));
+  }
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.jboss.errai.bus.server.io.ByteBufferWriteAdapter;
 import org.jboss.errai.bus.server.io.ByteWriteAdapter;
 
 /**
@@ -38,6 +39,9 @@ import org.jboss.errai.bus.server.io.ByteWriteAdapter;
  * <p/>
  * Since this is a multi-colored buffer, it has multiple tails -- one for each color.
  * <p/>
+ * Data which is relevant to a subset of all colors may be written once with a group color (see
+ * {@link BufferColor#getNewGroupColor()}), in which case it is visible to every color which has joined the group.
+ * <p/>
  * The amount of free space available in the buffer at any time is the delta between the head and maximum physical
  * extent of the buffer, plus the delta from the beginning of the physical buffer in memory to the closest tail.
  * </p>
@@ -197,10 +201,12 @@ public class TransmissionBuffer implements Buffer {
    * @param bufferColor
    *     the color of the data to be inserted.
    *
+   * @return the sequence of the first segment written.
+   *
    * @throws IOException
    */
   @Override
-  public void write(final int writeSize,
+  public long write(final int writeSize,
                     final InputStream inputStream,
                     final BufferColor bufferColor) throws IOException {
 
@@ -242,6 +248,7 @@ public class TransmissionBuffer implements Buffer {
       }
 
       headSequence = writeHead + allocSize;
+      return writeHead;
     }
     finally {
       try {
@@ -628,7 +635,8 @@ public class TransmissionBuffer implements Buffer {
     for (final int color = bufferColor.getColor(); colorSeq < headSeq; colorSeq++) {
       final short seg = segmentMap[(int) (colorSeq % segments)];
 
-      if (seg == color || seg == Short.MIN_VALUE) {
+      if (seg == color || ((seg == Short.MIN_VALUE || bufferColor.isGroupVisible(seg, colorSeq))
+          && bufferColor.isSharedDataVisible(colorSeq))) {
         return colorSeq;
       }
     }
@@ -683,6 +691,23 @@ public class TransmissionBuffer implements Buffer {
         maxInitialRead = bufferSize;
       }
 
+      if (callback == null && outputStream instanceof ByteBufferWriteAdapter) {
+        // no filter to apply, so the chunk can be handed over in one piece.
+        final ByteBufferWriteAdapter bulkAdapter = (ByteBufferWriteAdapter) outputStream;
+        final ByteBuffer chunk = _buffer.duplicate();
+        chunk.limit(maxInitialRead);
+        chunk.position(readCursor);
+        bulkAdapter.write(chunk);
+
+        if (maxInitialRead < endRead) {
+          chunk.limit((int) (endRead - bufferSize));
+          chunk.position(0);
+          bulkAdapter.write(chunk);
+        }
+
+        return sequenceToRead + (((long) readSize + (long) SEGMENT_HEADER_SIZE) / segmentSize) + 1;
+      }
+
       final BufferFilter nullSafeCallback = (callback == null ? NoOpBufferFilter.INSTANCE : callback);
 
       for (; readCursor >= 0 && readCursor < maxInitialRead; readCursor++) {
@@ -738,6 +763,7 @@ public class TransmissionBuffer implements Buffer {
   /**
    * Clear the current buffer.
    */
+  @Override
   public void clear() {
     _buffer.clear();
   }
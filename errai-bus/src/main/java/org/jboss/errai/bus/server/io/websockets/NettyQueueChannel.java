@@ -16,8 +16,11 @@
 
 package org.jboss.errai.bus.server.io.websockets;
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.jboss.errai.bus.server.io.PayloadCompression;
 import org.jboss.errai.bus.server.io.QueueChannel;
 
 /**
@@ -26,9 +29,20 @@ import org.jboss.errai.bus.server.io.QueueChannel;
  */
 public class NettyQueueChannel implements QueueChannel {
   final Channel channel;
+  private final PayloadCompression.PerMessageDeflate deflate;
 
   public NettyQueueChannel(Channel channel) {
+    this(channel, null);
+  }
+
+  /**
+   * @param deflate
+   *     the compression state of the channel if it negotiated the <tt>permessage-deflate</tt> extension, in which
+   *     case messages above the {@link PayloadCompression#getThreshold() threshold} are sent compressed, or null.
+   */
+  public NettyQueueChannel(Channel channel, PayloadCompression.PerMessageDeflate deflate) {
     this.channel = channel;
+    this.deflate = deflate;
   }
 
   @Override
@@ -38,6 +52,14 @@ public class NettyQueueChannel implements QueueChannel {
 
   @Override
   public void write(String data) {
+    if (deflate != null) {
+      final byte[] bytes = data.getBytes(CharsetUtil.UTF_8);
+      if (PayloadCompression.shouldCompress(bytes.length)) {
+        channel.writeAndFlush(new TextWebSocketFrame(true, PayloadCompression.PERMESSAGE_DEFLATE_RSV,
+            Unpooled.wrappedBuffer(deflate.deflate(bytes))));
+        return;
+      }
+    }
     channel.writeAndFlush(new TextWebSocketFrame(data));
   }
 
@@ -30,6 +30,7 @@ import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -76,6 +77,7 @@ import org.jboss.errai.bus.client.protocols.BusCommand;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.io.DirectDeliveryHandler;
 import org.jboss.errai.bus.server.io.MessageFactory;
+import org.jboss.errai.bus.server.io.PayloadCompression;
 import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
 import org.jboss.errai.bus.server.service.ErraiService;
 import org.jboss.errai.bus.server.util.LocalContext;
@@ -95,8 +97,16 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler {
   public static final String WEBSOCKET_ACTIVE = "Active";
   public static final String WEBSOCKET_PATH = "/websocket.bus";
 
+  private static final String SEC_WEBSOCKET_EXTENSIONS = "Sec-WebSocket-Extensions";
+
   private final Map<Channel, QueueSession> activeChannels = new ConcurrentHashMap<Channel, QueueSession>();
 
+  /**
+   * The compression state of the channels which negotiated the <tt>permessage-deflate</tt> extension.
+   */
+  private final Map<Channel, PayloadCompression.PerMessageDeflate> deflateChannels
+      = new ConcurrentHashMap<Channel, PayloadCompression.PerMessageDeflate>();
+
   private WebSocketServerHandshaker handshaker = null;
   private final ErraiService svc;
 
@@ -127,20 +137,39 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler {
     }
 
     int maxFrameSize = ErraiConfigAttribs.WEB_SOCKET_MAX_FRAME_SIZE.getInt(svc.getConfiguration());
+    final boolean compression = PayloadCompression.isEnabled();
 
     // Handshake
     final WebSocketServerHandshakerFactory wsFactory = new WebSocketServerHandshakerFactory(
-        this.getWebSocketLocation(req), null, false, maxFrameSize);
+        this.getWebSocketLocation(req), null, compression, maxFrameSize);
     this.handshaker = wsFactory.newHandshaker(req);
     if (this.handshaker == null) {
       wsFactory.sendUnsupportedWebSocketVersionResponse(ctx.channel());
     }
+    else if (compression && PayloadCompression.offersPerMessageDeflate(req.headers().get(SEC_WEBSOCKET_EXTENSIONS))) {
+      final Channel channel = ctx.channel();
+      final HttpHeaders responseHeaders = new DefaultHttpHeaders();
+      responseHeaders.add(SEC_WEBSOCKET_EXTENSIONS, PayloadCompression.PERMESSAGE_DEFLATE_RESPONSE);
+
+      deflateChannels.put(channel, new PayloadCompression.PerMessageDeflate(maxFrameSize));
+      channel.closeFuture().addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(final ChannelFuture channelFuture) throws Exception {
+          final PayloadCompression.PerMessageDeflate deflate = deflateChannels.remove(channel);
+          if (deflate != null) {
+            deflate.end();
+          }
+        }
+      });
+
+      this.handshaker.handshake(channel, req, responseHeaders, channel.newPromise());
+    }
     else {
       this.handshaker.handshake(ctx.channel(), req);
     }
   }
 
-  private void handleWebSocketFrame(final ChannelHandlerContext ctx, final WebSocketFrame frame) {
+  private void handleWebSocketFrame(final ChannelHandlerContext ctx, final WebSocketFrame frame) throws IOException {
     // Check for closing frame
     if (frame instanceof CloseWebSocketFrame) {
       activeChannels.remove(ctx.channel());
@@ -157,7 +186,18 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler {
           .getName()));
     }
 
-    @SuppressWarnings("unchecked") final EJValue val = JSONDecoder.decode(((TextWebSocketFrame) frame).text());
+    final String text;
+    final PayloadCompression.PerMessageDeflate deflate = deflateChannels.get(ctx.channel());
+    if ((frame.rsv() & PayloadCompression.PERMESSAGE_DEFLATE_RSV) != 0 && deflate != null) {
+      final byte[] compressed = new byte[frame.content().readableBytes()];
+      frame.content().getBytes(frame.content().readerIndex(), compressed);
+      text = new String(deflate.inflate(compressed), CharsetUtil.UTF_8);
+    }
+    else {
+      text = ((TextWebSocketFrame) frame).text();
+    }
+
+    @SuppressWarnings("unchecked") final EJValue val = JSONDecoder.decode(text);
 
     final QueueSession session;
 
@@ -194,7 +234,8 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler {
               WEBSOCKET_ACTIVE.equals(localContext.getAttribute(String.class, SESSION_ATTR_WS_STATUS))) {
 
             final MessageQueue queueBySession = svc.getBus().getQueueBySession(sessionKey);
-            queueBySession.setDeliveryHandler(DirectDeliveryHandler.createFor(new NettyQueueChannel(ctx.channel())));
+            queueBySession.setDeliveryHandler(DirectDeliveryHandler.createFor(
+                new NettyQueueChannel(ctx.channel(), deflateChannels.get(ctx.channel()))));
 
             // open the channel
             activeChannels.put(ctx.channel(), session);
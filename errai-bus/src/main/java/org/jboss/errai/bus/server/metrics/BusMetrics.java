@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and latency histograms of the server bus, recorded from the bus, the transports and the I/O layer.
+ * Like {@link org.jboss.errai.bus.server.io.PayloadCompression}, the metrics are accumulated for the whole server.
+ * <p/>
+ * Recording is disabled by default and costs a single volatile read per call site then. Once enabled, counters are
+ * striped {@link LongAdder}s which don't contend between threads, and only one in every <i>sample rate</i> encode
+ * and decode operations is timed, so the overhead of the clock reads stays negligible at high message rates.
+ *
+ * @see ServerBusMetrics
+ */
+public final class BusMetrics {
+  /**
+   * The key the messages of subjects beyond {@link #MAX_TRACKED_SUBJECTS} are counted under.
+   */
+  public static final String OTHER_SUBJECTS = "*";
+
+  /**
+   * The maximum number of subjects counted individually. Subjects are usually a fixed set of service names, but
+   * nothing stops an application from creating them dynamically, which must not make the metrics grow unbounded.
+   */
+  public static final int MAX_TRACKED_SUBJECTS = 512;
+
+  private static volatile boolean enabled = false;
+  private static volatile int sampleMask = 63;
+
+  private static final LongAdder messagesRouted = new LongAdder();
+  private static final LongAdder messagesFromRemote = new LongAdder();
+  private static final LongAdder messagesToRemote = new LongAdder();
+  private static final LongAdder pageOuts = new LongAdder();
+  private static final LongAdder dispatcherSaturations = new LongAdder();
+
+  private static final ConcurrentHashMap<String, LongAdder> subjectCounts = new ConcurrentHashMap<String, LongAdder>();
+
+  private static final LatencyHistogram encodeTime = new LatencyHistogram();
+  private static final LatencyHistogram decodeTime = new LatencyHistogram();
+
+  private static volatile BlockingQueue<?> dispatcherQueue;
+
+  private BusMetrics() {
+  }
+
+  /**
+   * Configures the metrics for the whole server.
+   *
+   * @param enabled
+   *     whether metrics are recorded at all.
+   * @param sampleRate
+   *     one in how many encode and decode operations is timed. Rounded up to the next power of two.
+   */
+  public static void configure(final boolean enabled, final int sampleRate) {
+    final int rate = sampleRate <= 1 ? 1 : Integer.highestOneBit(sampleRate - 1) << 1;
+    BusMetrics.sampleMask = rate - 1;
+    BusMetrics.enabled = enabled;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static int getSampleRate() {
+    return sampleMask + 1;
+  }
+
+  /**
+   * Returns the current time to pass to {@link #recordEncode(long)} or {@link #recordDecode(long)} if this operation
+   * is sampled, and 0 otherwise.
+   */
+  public static long startSample() {
+    if (!enabled || (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+      return 0;
+    }
+    return System.nanoTime();
+  }
+
+  public static void recordEncode(final long start) {
+    if (start != 0) {
+      encodeTime.record(System.nanoTime() - start);
+    }
+  }
+
+  public static void recordDecode(final long start) {
+    if (start != 0) {
+      decodeTime.record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Counts a message routed to the subscribers of its subject on the server.
+   */
+  public static void countRouted(final String subject, final boolean fromRemote) {
+    if (enabled) {
+      messagesRouted.increment();
+      if (fromRemote) {
+        messagesFromRemote.increment();
+      }
+      countSubject(subject);
+    }
+  }
+
+  /**
+   * Counts the messages of a subject sent to the queues of clients.
+   *
+   * @param messages
+   *     the number of queues the message was sent to.
+   */
+  public static void countToRemote(final String subject, final int messages) {
+    if (enabled && messages > 0) {
+      messagesToRemote.add(messages);
+      getSubjectCounter(subject).add(messages);
+    }
+  }
+
+  private static void countSubject(final String subject) {
+    getSubjectCounter(subject).increment();
+  }
+
+  private static LongAdder getSubjectCounter(final String subject) {
+    LongAdder counter = subjectCounts.get(subject);
+    if (counter == null) {
+      final String key = subjectCounts.size() < MAX_TRACKED_SUBJECTS ? subject : OTHER_SUBJECTS;
+      final LongAdder newCounter = new LongAdder();
+      counter = subjectCounts.putIfAbsent(key, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * Counts the messages waiting for a client being paged out of the transmission buffer.
+   */
+  public static void countPageOut() {
+    if (enabled) {
+      pageOuts.increment();
+    }
+  }
+
+  /**
+   * Counts a message the dispatcher could not queue up for delivery in time.
+   */
+  public static void countDispatcherSaturation() {
+    if (enabled) {
+      dispatcherSaturations.increment();
+    }
+  }
+
+  /**
+   * Sets the delivery queue of the dispatcher, the backlog of which is reported by {@link #getDispatcherBacklog()}.
+   */
+  public static void setDispatcherQueue(final BlockingQueue<?> queue) {
+    dispatcherQueue = queue;
+  }
+
+  public static long getMessagesRouted() {
+    return messagesRouted.sum();
+  }
+
+  public static long getMessagesFromRemote() {
+    return messagesFromRemote.sum();
+  }
+
+  public static long getMessagesToRemote() {
+    return messagesToRemote.sum();
+  }
+
+  public static long getPageOuts() {
+    return pageOuts.sum();
+  }
+
+  public static long getDispatcherSaturations() {
+    return dispatcherSaturations.sum();
+  }
+
+  /**
+   * Returns the number of messages waiting in the delivery queue of the dispatcher, or -1 if the dispatcher has no
+   * delivery queue.
+   */
+  public static int getDispatcherBacklog() {
+    final BlockingQueue<?> queue = dispatcherQueue;
+    return queue == null ? -1 : queue.size();
+  }
+
+  /**
+   * Returns the number of messages counted for every subject.
+   */
+  public static Map<String, Long> getSubjectCounts() {
+    final Map<String, Long> counts = new HashMap<String, Long>();
+    for (final Map.Entry<String, LongAdder> entry : subjectCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().sum());
+    }
+    return Collections.unmodifiableMap(counts);
+  }
+
+  public static LatencyHistogram getEncodeTime() {
+    return encodeTime;
+  }
+
+  public static LatencyHistogram getDecodeTime() {
+    return decodeTime;
+  }
+
+  /**
+   * Resets all counters and histograms.
+   */
+  public static void reset() {
+    messagesRouted.reset();
+    messagesFromRemote.reset();
+    messagesToRemote.reset();
+    pageOuts.reset();
+    dispatcherSaturations.reset();
+    subjectCounts.clear();
+    encodeTime.reset();
+    decodeTime.reset();
+  }
+}
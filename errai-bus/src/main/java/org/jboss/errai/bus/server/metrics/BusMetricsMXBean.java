@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the server bus metrics, registered with the platform MBean server under
+ * <tt>org.jboss.errai.bus:type=Metrics</tt>. Latencies and compression CPU time are in microseconds, rates in
+ * messages per second, and buffer lag in buffer segments. The compression ratio is the uncompressed size of all
+ * compressed payloads divided by their compressed size.
+ */
+public interface BusMetricsMXBean {
+  public long getMessagesRouted();
+
+  public long getMessagesFromRemote();
+
+  public long getMessagesToRemote();
+
+  public double getMessageRate();
+
+  public Map<String, Double> getSubjectRates();
+
+  public double getEncodeTimeMeanMicros();
+
+  public double getEncodeTimeP99Micros();
+
+  public double getEncodeTimeMaxMicros();
+
+  public double getDecodeTimeMeanMicros();
+
+  public double getDecodeTimeP99Micros();
+
+  public double getDecodeTimeMaxMicros();
+
+  public int getSampleRate();
+
+  public int getQueueCount();
+
+  public long getTotalQueueDepth();
+
+  public int getMaxQueueDepth();
+
+  public int getCongestedQueueCount();
+
+  public long getMaxBufferHeadLag();
+
+  public long getPageOuts();
+
+  public int getDispatcherBacklog();
+
+  public long getDispatcherSaturations();
+
+  public long getCompressedPayloads();
+
+  public long getUncompressedPayloads();
+
+  public double getCompressionRatio();
+
+  public double getCompressionCpuTimeMicros();
+
+  public void reset();
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds, in the style of an HDR histogram: the values are counted in
+ * buckets which double in width every power of two, and every power of two is split into {@link #SUB_BUCKETS} linear
+ * sub-buckets. Percentiles are therefore accurate to within 1/{@link #SUB_BUCKETS} of the value, over the whole range
+ * of <tt>long</tt>, with a constant memory footprint.
+ * <p/>
+ * Recording is wait-free and can be done from any number of threads concurrently.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  // values below 2 * SUB_BUCKETS are counted exactly, every higher power of two gets SUB_BUCKETS buckets.
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong totalValue = new AtomicLong();
+  private final AtomicLong maxValue = new AtomicLong();
+
+  /**
+   * Records the given duration. Negative durations are recorded as zero.
+   */
+  public void record(final long nanos) {
+    final long value = Math.max(0, nanos);
+
+    counts.incrementAndGet(indexOf(value));
+    totalCount.incrementAndGet();
+    totalValue.addAndGet(value);
+
+    long max;
+    while (value > (max = maxValue.get())) {
+      if (maxValue.compareAndSet(max, value)) {
+        break;
+      }
+    }
+  }
+
+  public long getCount() {
+    return totalCount.get();
+  }
+
+  public long getMax() {
+    return maxValue.get();
+  }
+
+  public double getMean() {
+    final long count = totalCount.get();
+    return count == 0 ? 0 : (double) totalValue.get() / count;
+  }
+
+  /**
+   * Returns the value below which the given percentage of the recorded values fall, or 0 if nothing has been
+   * recorded.
+   *
+   * @param percentile
+   *     the percentile, between 0 and 100.
+   */
+  public long getValueAtPercentile(final double percentile) {
+    final long count = totalCount.get();
+    if (count == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValueOf(i), maxValue.get());
+      }
+    }
+    return maxValue.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    totalValue.set(0);
+    maxValue.set(0);
+  }
+
+  static int indexOf(final long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  static long highestValueOf(final int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+
+    final int shift = index / SUB_BUCKETS - 1;
+    final long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.metrics;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
+import org.jboss.errai.bus.server.io.PayloadCompression;
+import org.slf4j.Logger;
+
+/**
+ * Reports the {@link BusMetrics} of the server together with the state of the message queues of a bus. The metrics
+ * are exposed as the {@link BusMetricsMXBean} and, as a map in the <tt>Metrics</tt> part of the reply, by the
+ * {@link org.jboss.errai.bus.server.service.ErraiService#SERVER_METRICS_SERVICE} subject. That subject only answers
+ * server-side code: it names every subject of the bus, so requests from clients are refused.
+ * <p/>
+ * The message rates are computed from the counters every {@link #RATE_INTERVAL_SECS} seconds. Everything else is
+ * computed when it is read, so reporting costs nothing while nobody is looking.
+ */
+public class ServerBusMetrics implements BusMetricsMXBean, MessageCallback {
+  private static final Logger log = getLogger(ServerBusMetrics.class);
+
+  public static final String METRICS_PART = "Metrics";
+
+  static final int RATE_INTERVAL_SECS = 5;
+
+  private final ServerMessageBus bus;
+
+  private ObjectName objectName;
+  private ScheduledFuture<?> rateTask;
+
+  private long lastRateUpdate = System.nanoTime();
+  private long lastTotal;
+  private Map<String, Long> lastSubjectCounts = Collections.emptyMap();
+
+  private volatile double messageRate;
+  private volatile Map<String, Double> subjectRates = Collections.emptyMap();
+
+  public ServerBusMetrics(final ServerMessageBus bus) {
+    this.bus = bus;
+  }
+
+  /**
+   * Starts computing the message rates, and registers the MXBean with the platform MBean server.
+   */
+  public void start(final ScheduledExecutorService scheduler) {
+    rateTask = scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        updateRates();
+      }
+
+      @Override
+      public String toString() {
+        return "MetricsRateUpdate";
+      }
+    }, RATE_INTERVAL_SECS, RATE_INTERVAL_SECS, TimeUnit.SECONDS);
+
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      objectName = new ObjectName("org.jboss.errai.bus:type=Metrics,bus="
+          + Integer.toHexString(System.identityHashCode(bus)));
+      server.registerMBean(this, objectName);
+    }
+    catch (Exception e) {
+      log.warn("could not register the bus metrics with the platform MBean server", e);
+      objectName = null;
+    }
+  }
+
+  public void stop() {
+    if (rateTask != null) {
+      rateTask.cancel(false);
+    }
+
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      }
+      catch (Exception e) {
+        log.debug("could not unregister the bus metrics", e);
+      }
+      objectName = null;
+    }
+  }
+
+  synchronized void updateRates() {
+    final long now = System.nanoTime();
+    final double seconds = (now - lastRateUpdate) / 1e9;
+    if (seconds <= 0) {
+      return;
+    }
+
+    final long total = BusMetrics.getMessagesRouted() + BusMetrics.getMessagesToRemote();
+    final Map<String, Long> subjectCounts = BusMetrics.getSubjectCounts();
+    final Map<String, Double> rates = new HashMap<String, Double>();
+    for (final Map.Entry<String, Long> entry : subjectCounts.entrySet()) {
+      final Long last = lastSubjectCounts.get(entry.getKey());
+      rates.put(entry.getKey(), Math.max(0, entry.getValue() - (last == null ? 0 : last)) / seconds);
+    }
+
+    messageRate = Math.max(0, total - lastTotal) / seconds;
+    subjectRates = Collections.unmodifiableMap(rates);
+
+    lastRateUpdate = now;
+    lastTotal = total;
+    lastSubjectCounts = subjectCounts;
+  }
+
+  /**
+   * Answers a request to the metrics service with the current metrics. Requests from clients are dropped.
+   */
+  @Override
+  public void callback(final Message message) {
+    if (message.isFlagSet(RoutingFlag.FromRemote)) {
+      log.warn("refused a request for the bus metrics from a remote bus");
+      return;
+    }
+
+    MessageBuilder.createConversation(message)
+        .subjectProvided()
+        .signalling()
+        .with(METRICS_PART, getSnapshot())
+        .noErrorHandling()
+        .sendNowWith(bus);
+  }
+
+  /**
+   * Returns all metrics by the names of their attributes in the {@link BusMetricsMXBean}.
+   */
+  public Map<String, Object> getSnapshot() {
+    final Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+    snapshot.put("MessagesRouted", getMessagesRouted());
+    snapshot.put("MessagesFromRemote", getMessagesFromRemote());
+    snapshot.put("MessagesToRemote", getMessagesToRemote());
+    snapshot.put("MessageRate", getMessageRate());
+    snapshot.put("SubjectRates", new HashMap<String, Double>(getSubjectRates()));
+    snapshot.put("EncodeTimeMeanMicros", getEncodeTimeMeanMicros());
+    snapshot.put("EncodeTimeP99Micros", getEncodeTimeP99Micros());
+    snapshot.put("EncodeTimeMaxMicros", getEncodeTimeMaxMicros());
+    snapshot.put("DecodeTimeMeanMicros", getDecodeTimeMeanMicros());
+    snapshot.put("DecodeTimeP99Micros", getDecodeTimeP99Micros());
+    snapshot.put("DecodeTimeMaxMicros", getDecodeTimeMaxMicros());
+    snapshot.put("SampleRate", getSampleRate());
+
+    final QueueStats queues = getQueueStats();
+    snapshot.put("QueueCount", queues.count);
+    snapshot.put("TotalQueueDepth", queues.totalDepth);
+    snapshot.put("MaxQueueDepth", queues.maxDepth);
+    snapshot.put("CongestedQueueCount", queues.congested);
+    snapshot.put("MaxBufferHeadLag", queues.maxLag);
+
+    snapshot.put("PageOuts", getPageOuts());
+    snapshot.put("DispatcherBacklog", getDispatcherBacklog());
+    snapshot.put("DispatcherSaturations", getDispatcherSaturations());
+    snapshot.put("CompressedPayloads", getCompressedPayloads());
+    snapshot.put("UncompressedPayloads", getUncompressedPayloads());
+    snapshot.put("CompressionRatio", getCompressionRatio());
+    snapshot.put("CompressionCpuTimeMicros", getCompressionCpuTimeMicros());
+    return snapshot;
+  }
+
+  @Override
+  public long getMessagesRouted() {
+    return BusMetrics.getMessagesRouted();
+  }
+
+  @Override
+  public long getMessagesFromRemote() {
+    return BusMetrics.getMessagesFromRemote();
+  }
+
+  @Override
+  public long getMessagesToRemote() {
+    return BusMetrics.getMessagesToRemote();
+  }
+
+  @Override
+  public double getMessageRate() {
+    return messageRate;
+  }
+
+  @Override
+  public Map<String, Double> getSubjectRates() {
+    return subjectRates;
+  }
+
+  @Override
+  public double getEncodeTimeMeanMicros() {
+    return BusMetrics.getEncodeTime().getMean() / 1000;
+  }
+
+  @Override
+  public double getEncodeTimeP99Micros() {
+    return BusMetrics.getEncodeTime().getValueAtPercentile(99) / 1000d;
+  }
+
+  @Override
+  public double getEncodeTimeMaxMicros() {
+    return BusMetrics.getEncodeTime().getMax() / 1000d;
+  }
+
+  @Override
+  public double getDecodeTimeMeanMicros() {
+    return BusMetrics.getDecodeTime().getMean() / 1000;
+  }
+
+  @Override
+  public double getDecodeTimeP99Micros() {
+    return BusMetrics.getDecodeTime().getValueAtPercentile(99) / 1000d;
+  }
+
+  @Override
+  public double getDecodeTimeMaxMicros() {
+    return BusMetrics.getDecodeTime().getMax() / 1000d;
+  }
+
+  @Override
+  public int getSampleRate() {
+    return BusMetrics.getSampleRate();
+  }
+
+  @Override
+  public int getQueueCount() {
+    return getQueueStats().count;
+  }
+
+  @Override
+  public long getTotalQueueDepth() {
+    return getQueueStats().totalDepth;
+  }
+
+  @Override
+  public int getMaxQueueDepth() {
+    return getQueueStats().maxDepth;
+  }
+
+  @Override
+  public int getCongestedQueueCount() {
+    return getQueueStats().congested;
+  }
+
+  @Override
+  public long getMaxBufferHeadLag() {
+    return getQueueStats().maxLag;
+  }
+
+  @Override
+  public long getPageOuts() {
+    return BusMetrics.getPageOuts();
+  }
+
+  @Override
+  public int getDispatcherBacklog() {
+    return BusMetrics.getDispatcherBacklog();
+  }
+
+  @Override
+  public long getDispatcherSaturations() {
+    return BusMetrics.getDispatcherSaturations();
+  }
+
+  @Override
+  public long getCompressedPayloads() {
+    return PayloadCompression.getCompressedPayloadCount();
+  }
+
+  @Override
+  public long getUncompressedPayloads() {
+    return PayloadCompression.getSkippedPayloadCount();
+  }
+
+  @Override
+  public double getCompressionRatio() {
+    return PayloadCompression.getCompressionRatio();
+  }
+
+  @Override
+  public double getCompressionCpuTimeMicros() {
+    return PayloadCompression.getCompressionCpuNanos() / 1000d;
+  }
+
+  @Override
+  public synchronized void reset() {
+    BusMetrics.reset();
+    PayloadCompression.resetStatistics();
+    lastRateUpdate = System.nanoTime();
+    lastTotal = 0;
+    lastSubjectCounts = Collections.emptyMap();
+    messageRate = 0;
+    subjectRates = Collections.emptyMap();
+  }
+
+  private QueueStats getQueueStats() {
+    final QueueStats stats = new QueueStats();
+    for (final MessageQueue queue : bus.getMessageQueues().values()) {
+      final int depth = queue.getQueueDepth();
+      final long lag = queue.getBuffer().getHeadSequence() - queue.getBufferColor().getSequence().get();
+
+      stats.count++;
+      stats.totalDepth += depth;
+      stats.maxDepth = Math.max(stats.maxDepth, depth);
+      stats.maxLag = Math.max(stats.maxLag, lag);
+      if (queue.isCongested()) {
+        stats.congested++;
+      }
+    }
+    return stats;
+  }
+
+  private static class QueueStats {
+    private int count;
+    private long totalDepth;
+    private int maxDepth;
+    private int congested;
+    private long maxLag;
+  }
+}
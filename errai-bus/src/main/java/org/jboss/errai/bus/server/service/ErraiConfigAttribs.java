@@ -24,7 +24,29 @@ import org.jboss.errai.bus.server.SimpleDispatcher;
  */
 public enum ErraiConfigAttribs {
 
+  /**
+   * The fully qualified class name of the {@link org.jboss.errai.bus.client.api.messaging.RequestDispatcher}. Errai
+   * provides the {@link SimpleDispatcher}, the {@link org.jboss.errai.bus.server.AsyncDispatcher} and the
+   * {@link org.jboss.errai.bus.server.VirtualThreadDispatcher}.
+   * <p/>
+   * Default value: {@link SimpleDispatcher}
+   */
   ERRAI_DISPATCHER_IMPLEMENTATION("errai.dispatcher_implementation", SimpleDispatcher.class.getName()),
+
+  /**
+   * Limits on the number of messages the {@link org.jboss.errai.bus.server.VirtualThreadDispatcher} delivers to a
+   * subject concurrently, as a comma-separated list of <tt>subject=limit</tt> pairs (e.g.
+   * <tt>ReportService=4,SearchService=16</tt>).
+   */
+  DISPATCHER_SUBJECT_CONCURRENCY("errai.dispatcher.subject_concurrency"),
+
+  /**
+   * The limit on the number of messages the {@link org.jboss.errai.bus.server.VirtualThreadDispatcher} delivers
+   * concurrently to each subject not listed in {@link #DISPATCHER_SUBJECT_CONCURRENCY}. <tt>0</tt> means no limit.
+   * <p/>
+   * Default value: 0
+   */
+  DISPATCHER_DEFAULT_SUBJECT_CONCURRENCY("errai.dispatcher.default_subject_concurrency", "0"),
   ERRAI_SESSION_PROVIDER_IMPLEMENTATION("errai.session_provider_implementation", HttpSessionProvider.class.getName()),
 
   /**
@@ -64,6 +86,64 @@ public enum ErraiConfigAttribs {
    */
   BUS_BUFFER_ALLOCATION_MODE("errai.bus.buffer_allocation_mode", "direct"),
 
+  /**
+   * The transmission buffer implementation ('locking' or 'lockfree'). The locking implementation serializes all
+   * writers of the same color on that color's lock. The lock-free implementation lets writers claim buffer segments
+   * atomically and publish them without locking, and has waiting readers spin briefly before parking. The
+   * lock-free implementation is preferable when many threads publish to the same color (e.g. broadcasts under
+   * heavy load).
+   * <p/>
+   * Default value: 'locking'
+   */
+  BUS_BUFFER_IMPLEMENTATION("errai.bus.buffer_implementation", "locking"),
+
+  /**
+   * The decoder for the JSON of incoming messages ('stream' or 'bytes'). The stream decoder reads the payload
+   * through a character reader. The bytes decoder decodes UTF-8 directly from the payload bytes, with pooled
+   * per-thread buffers, which allocates less for each message.
+   * <p/>
+   * Default value: 'stream'
+   */
+  BUS_JSON_DECODER("errai.bus.json_decoder", "stream"),
+
+  /**
+   * The size in bytes of the memory-mapped segment files that message queues are paged out to.
+   * <p/>
+   * Default value: 33554432 (32 MB)
+   */
+  BUS_PAGE_SEGMENT_SIZE("errai.bus.page_segment_size", String.valueOf(1024 * 1024 * 32)),
+
+  /**
+   * Whether outbound payloads may be compressed: gzip for HTTP poll responses (if the client accepts it), and
+   * <tt>permessage-deflate</tt> for WebSocket messages (if the client offers it in the WebSocket handshake).
+   * <p/>
+   * Default value: true
+   */
+  BUS_ENABLE_COMPRESSION("errai.bus.enable_compression", "true"),
+
+  /**
+   * The size in bytes below which payloads are sent uncompressed even if compression is enabled.
+   * <p/>
+   * Default value: 1024
+   */
+  BUS_COMPRESSION_THRESHOLD("errai.bus.compression_threshold", "1024"),
+
+  /**
+   * Whether the bus records metrics, and exposes them through JMX and, to server-side code only, the
+   * {@link ErraiService#SERVER_METRICS_SERVICE}. See {@link org.jboss.errai.bus.server.metrics.BusMetrics}.
+   * <p/>
+   * Default value: false
+   */
+  BUS_ENABLE_METRICS("errai.bus.enable_metrics", "false"),
+
+  /**
+   * One in how many encode and decode operations is timed when metrics are enabled. Rounded up to the next power of
+   * two.
+   * <p/>
+   * Default value: 64
+   */
+  BUS_METRICS_SAMPLE_RATE("errai.bus.metrics_sample_rate", "64"),
+
   ENABLE_CSRF_BUS_TOKEN("errai.bus.enable_csrf_token", "false"),
 
   HOSTED_MODE_TESTING("errai.hosted_mode_testing", "false"),
@@ -87,6 +167,22 @@ public enum ErraiConfigAttribs {
   WEBSOCKET_SERVLET_CONTEXT_PATH("errai.bus.websocket.servlet.path", "in.erraiBusWebSocket"),
   FORCE_SECURE_WEBSOCKET("errai.bus.websocket.force.secure", "false"),
 
+  /**
+   * If true, the JSR-356 WebSocket channel sends asynchronously instead of blocking the bus thread delivering the
+   * message, and coalesces the output written while a frame is being sent into a single frame.
+   * <p/>
+   * Default value: false
+   */
+  WEBSOCKET_SERVLET_ASYNC_SEND("errai.bus.websocket.servlet.async_send", "false"),
+
+  /**
+   * The maximum number of writes to an asynchronous JSR-356 WebSocket channel which have been accepted but not yet
+   * sent. Further writes fail, and the message queue of the client is stopped.
+   * <p/>
+   * Default value: 1024
+   */
+  WEBSOCKET_SERVLET_MAX_IN_FLIGHT("errai.bus.websocket.servlet.max_in_flight", "1024"),
+
   AUTO_DISCOVER_SERVICES("errai.bus.auto_discover_services", "false"),
 
   CLUSTER_PORT("errai.clustering.port", "6446"),
@@ -95,6 +191,32 @@ public enum ErraiConfigAttribs {
   CLUSTERING_PROVIDER("errai.bus.clustering_provider", "org.jboss.errai.bus.server.cluster.noop.NoopClusteringProvider"),
 
   MESSAGE_QUEUE_TIMEOUT_SECS("errai.bus.message_queue_timeout_secs", "90"),
+
+  /**
+   * The number of messages waiting for a client at which its message queue becomes congested, and is handed over to
+   * the {@link #MESSAGE_QUEUE_SLOW_CONSUMER_POLICY}. <tt>0</tt> disables backpressure.
+   * <p/>
+   * Default value: 0
+   */
+  MESSAGE_QUEUE_HIGH_WATERMARK("errai.bus.message_queue_high_watermark", "0"),
+
+  /**
+   * The number of waiting messages a client has to drain its congested message queue down to before it is no longer
+   * congested.
+   * <p/>
+   * Default value: half the {@link #MESSAGE_QUEUE_HIGH_WATERMARK}
+   */
+  MESSAGE_QUEUE_LOW_WATERMARK("errai.bus.message_queue_low_watermark"),
+
+  /**
+   * The policy in control of a congested message queue: <tt>DropOldest</tt>, <tt>Conflate</tt>, <tt>Page</tt>,
+   * <tt>Disconnect</tt>, or the fully qualified class name of a
+   * {@link org.jboss.errai.bus.server.io.SlowConsumerPolicy}. See
+   * {@link org.jboss.errai.bus.server.io.SlowConsumerPolicies}.
+   * <p/>
+   * Default value: Page
+   */
+  MESSAGE_QUEUE_SLOW_CONSUMER_POLICY("errai.bus.message_queue_slow_consumer_policy", "Page"),
   SATURATION_POLICY("errai.bus.saturation_policy", "CallerRuns");
 
   protected final String attributeName;
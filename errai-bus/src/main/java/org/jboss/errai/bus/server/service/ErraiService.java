@@ -30,6 +30,7 @@ import java.util.Collection;
 public interface ErraiService<S> extends ServiceComposite<S> {
   public static final String AUTHORIZATION_SVC_SUBJECT = "AuthenticationService";
   public static final String SERVER_ECHO_SERVICE = "ServerEchoService";
+  public static final String SERVER_METRICS_SERVICE = "ServerMetricsService";
   public static final String AUTHORIZATION_SERVICE = "AuthorizationService";
   public static final String SESSION_AUTH_DATA = "ErraiAuthData";
 
@@ -227,6 +227,11 @@ public class MessageBusProxy implements ServerMessageBus {
     return proxied.getQueue(session);
   }
 
+  @Override
+  public void multicast(Message message, Collection<String> sessionIds) {
+    proxied.multicast(message, sessionIds);
+  }
+
   @Override
   public void closeQueue(String sessionId) {
     proxied.closeQueue(sessionId);
@@ -293,6 +298,11 @@ public class MessageBusProxy implements ServerMessageBus {
     return proxied.getQueueBySession(id);
   }
 
+  @Override
+  public boolean isCongested(String sessionId) {
+    return proxied.isCongested(sessionId);
+  }
+
   @Override
   public QueueSession getSessionBySessionId(String id) {
     return proxied.getSessionBySessionId(id);
@@ -245,7 +245,7 @@ public class ServiceProcessor implements MetaDataProcessor<BootstrapContext> {
       for (final Method method : intf.getMethods()) {
         if (ProxyUtil.isMethodInInterface(remoteIface, method)) {
           epts.put(ProxyUtil.createCallSignature(intf, method),
-                  RPCEndpointFactory.createEndpointFor(genericSvc, method, context.getBus()));
+                  RPCEndpointFactory.createBoundEndpointFor(genericSvc, method, context.getBus()));
         }
       }
     }
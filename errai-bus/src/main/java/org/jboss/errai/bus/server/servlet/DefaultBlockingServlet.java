@@ -35,6 +35,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.server.QueueUnavailableException;
 import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.io.ByteWriteAdapter;
+import org.jboss.errai.bus.server.io.CompressingWriteAdapter;
 import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
 
 /**
@@ -204,11 +206,20 @@ public class DefaultBlockingServlet extends AbstractErraiServlet implements Filt
           }
         }
       }
-      else if (wait) {
-        queue.poll(TimeUnit.MILLISECONDS, getLongPollTimeout(), new OutputStreamWriteAdapter(outputStream));
-      }
       else {
-        queue.poll(new OutputStreamWriteAdapter(outputStream));
+        final CompressingWriteAdapter compressingAdapter = CompressingWriteAdapter.shouldCompress(httpServletRequest)
+            ? new CompressingWriteAdapter(httpServletResponse) : null;
+        final ByteWriteAdapter adapter =
+            compressingAdapter != null ? compressingAdapter : new OutputStreamWriteAdapter(outputStream);
+        if (wait) {
+          queue.poll(TimeUnit.MILLISECONDS, getLongPollTimeout(), adapter);
+        }
+        else {
+          queue.poll(adapter);
+        }
+        if (compressingAdapter != null) {
+          compressingAdapter.finish();
+        }
       }
     }
     catch (final IOException io) {
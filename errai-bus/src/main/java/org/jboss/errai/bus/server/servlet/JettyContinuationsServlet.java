@@ -20,7 +20,6 @@ import static org.jboss.errai.bus.server.io.MessageFactory.createCommandMessage;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
-import java.io.OutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -32,6 +31,7 @@ import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.server.QueueUnavailableException;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.api.QueueActivationCallback;
+import org.jboss.errai.bus.server.io.CompressingWriteAdapter;
 import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
 import org.slf4j.Logger;
 
@@ -145,7 +145,7 @@ public class JettyContinuationsServlet extends AbstractErraiServlet {
         }
       }
 
-      pollQueue(queue, httpServletResponse.getOutputStream(), httpServletResponse);
+      pollQueue(queue, httpServletRequest, httpServletResponse);
     }
     catch (final IOException io) {
       log.debug("Problem when polling for new messages", io);
@@ -176,7 +176,7 @@ public class JettyContinuationsServlet extends AbstractErraiServlet {
     }
   }
 
-  private static boolean pollQueue(final MessageQueue queue, final OutputStream stream,
+  private static boolean pollQueue(final MessageQueue queue, final HttpServletRequest httpServletRequest,
                                    final HttpServletResponse httpServletResponse) throws IOException {
     if (queue == null) return false;
     queue.heartBeat();
@@ -185,7 +185,14 @@ public class JettyContinuationsServlet extends AbstractErraiServlet {
     httpServletResponse.setHeader("Pragma", "no-cache");
     httpServletResponse.setHeader("Expires", "-1");
     httpServletResponse.setContentType("application/json");
-    return queue.poll(new OutputStreamWriteAdapter(stream));
+    if (!CompressingWriteAdapter.shouldCompress(httpServletRequest)) {
+      return queue.poll(new OutputStreamWriteAdapter(httpServletResponse.getOutputStream()));
+    }
+
+    final CompressingWriteAdapter adapter = new CompressingWriteAdapter(httpServletResponse);
+    final boolean polled = queue.poll(adapter);
+    adapter.finish();
+    return polled;
   }
 
   private static class JettyQueueActivationCallback implements QueueActivationCallback {
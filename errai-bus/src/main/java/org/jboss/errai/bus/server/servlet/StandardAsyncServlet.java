@@ -32,6 +32,7 @@ import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.server.QueueUnavailableException;
 import org.jboss.errai.bus.server.api.MessageQueue;
 import org.jboss.errai.bus.server.api.QueueActivationCallback;
+import org.jboss.errai.bus.server.io.CompressingWriteAdapter;
 import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
 import org.slf4j.Logger;
 
@@ -97,10 +98,12 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
         }
       });
 
+    final boolean compress = CompressingWriteAdapter.shouldCompress(request);
+
     synchronized (queue.getActivationLock()) {
       if (queue.messagesWaiting()) {
         try {
-          queue.poll(new OutputStreamWriteAdapter(asyncContext.getResponse().getOutputStream()));
+          pollQueue(queue, (HttpServletResponse) asyncContext.getResponse(), compress);
           asyncContext.complete();
         } 
         catch(IOException ioe) {
@@ -113,7 +116,7 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
         @Override
         public void activate(final MessageQueue queue) {
           try {
-            queue.poll(new OutputStreamWriteAdapter(asyncContext.getResponse().getOutputStream()));
+            pollQueue(queue, (HttpServletResponse) asyncContext.getResponse(), compress);
             queue.setActivationCallback(null);
             queue.heartBeat();
           }
@@ -161,7 +164,7 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
           doGet(request, response);
         }
         else {
-          queue.poll(new OutputStreamWriteAdapter(response.getOutputStream()));
+          pollQueue(queue, response, CompressingWriteAdapter.shouldCompress(request));
         }
       }
     }
@@ -184,6 +187,18 @@ public class StandardAsyncServlet extends AbstractErraiServlet {
     }
   }
   
+  private static void pollQueue(final MessageQueue queue, final HttpServletResponse response,
+                                final boolean compress) throws IOException {
+    if (!compress) {
+      queue.poll(new OutputStreamWriteAdapter(response.getOutputStream()));
+      return;
+    }
+
+    final CompressingWriteAdapter adapter = new CompressingWriteAdapter(response);
+    queue.poll(adapter);
+    adapter.finish();
+  }
+
   private void clearActivationCallback(final MessageQueue queue) {
     synchronized (queue.getActivationLock()) {
       queue.setActivationCallback(null);
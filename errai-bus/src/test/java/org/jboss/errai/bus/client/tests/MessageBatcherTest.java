@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.client.tests;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.framework.ClientMessageBusImpl;
+import org.jboss.errai.bus.client.framework.MessageBatcher;
+import org.jboss.errai.bus.client.framework.transports.TransportHandler;
+import org.jboss.errai.bus.client.framework.transports.TransportStatistics;
+import org.jboss.errai.bus.common.AbstractErraiTest;
+import org.jboss.errai.common.client.protocols.MessageParts;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Tests the {@link MessageBatcher} against a transport which records the batches it is asked to transmit.
+ */
+public class MessageBatcherTest extends AbstractErraiTest {
+
+  private RecordingTransportHandler transport;
+  private ClientMessageBusImpl batchingBus;
+  private MessageBatcher batcher;
+
+  @Override
+  public String getModuleName() {
+    return "org.jboss.errai.bus.ErraiBusTests";
+  }
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+
+    transport = new RecordingTransportHandler();
+    batchingBus = new ClientMessageBusImpl() {
+      @Override
+      public TransportHandler getTransportHandler() {
+        return transport;
+      }
+    };
+    batcher = new MessageBatcher(batchingBus);
+  }
+
+  private static Message message(final String subject, final int sequence) {
+    return CommandMessage.create().toSubject(subject).set("Sequence", sequence);
+  }
+
+  private static List<Integer> sequences(final List<Message> messages) {
+    final List<Integer> sequences = new ArrayList<Integer>();
+    for (final Message message : messages) {
+      sequences.add(message.get(Integer.class, "Sequence"));
+    }
+    return sequences;
+  }
+
+  public void testBatchIsTransmittedOnceFull() {
+    batchingBus.setProperty(MessageBatcher.BATCH_SIZE, "4");
+
+    for (int i = 0; i < 3; i++) {
+      batcher.send(message("A", i));
+    }
+    assertEquals(0, transport.batches.size());
+    assertEquals(3, batcher.getPendingMessages());
+
+    batcher.send(message("A", 3));
+    assertEquals(1, transport.batches.size());
+    assertEquals(list(0, 1, 2, 3), sequences(transport.batches.get(0)));
+    assertEquals(0, batcher.getPendingMessages());
+  }
+
+  public void testBatchSizeScalesWithLatency() {
+    batchingBus.setProperty(MessageBatcher.BATCH_SIZE, "4");
+    transport.latency = 200;
+    assertEquals(16, batcher.getBatchSize());
+
+    for (int i = 0; i < 15; i++) {
+      batcher.send(message("A", i));
+    }
+    assertEquals(0, transport.batches.size());
+
+    batcher.send(message("A", 15));
+    assertEquals(1, transport.batches.size());
+    assertEquals(16, transport.batches.get(0).size());
+  }
+
+  public void testBatchIsTransmittedAfterWindow() {
+    batchingBus.setProperty(MessageBatcher.BATCH_WINDOW_MS, "50");
+
+    batcher.send(message("A", 0));
+    batcher.send(message("B", 1));
+
+    // the window outlasts the current turn of the event loop.
+    Scheduler.get().scheduleDeferred(new Scheduler.ScheduledCommand() {
+      @Override
+      public void execute() {
+        assertEquals(0, transport.batches.size());
+      }
+    });
+
+    new Timer() {
+      @Override
+      public void run() {
+        assertEquals(1, transport.batches.size());
+        assertEquals(list(0, 1), sequences(transport.batches.get(0)));
+        finishTest();
+      }
+    }.schedule(500);
+
+    delayTestFinish(5000);
+  }
+
+  public void testBatchIsTransmittedAtEndOfEventLoopTurn() {
+    batcher.send(message("A", 0));
+    batcher.send(message("B", 1));
+    assertEquals(0, transport.batches.size());
+
+    Scheduler.get().scheduleDeferred(new Scheduler.ScheduledCommand() {
+      @Override
+      public void execute() {
+        assertEquals(1, transport.batches.size());
+        assertEquals(list(0, 1), sequences(transport.batches.get(0)));
+        finishTest();
+      }
+    });
+
+    delayTestFinish(5000);
+  }
+
+  public void testMessagesKeepTheirOrderAcrossBatches() {
+    batchingBus.setProperty(MessageBatcher.BATCH_SIZE, "3");
+
+    final List<Integer> sent = new ArrayList<Integer>();
+    for (int i = 0; i < 20; i++) {
+      final Message message = message(i % 2 == 0 ? "A" : "B", i);
+      if (i % 7 == 0) {
+        message.set(MessageParts.PriorityProcessing, "1");
+      }
+      batcher.send(message);
+      sent.add(i);
+    }
+    batcher.flush();
+
+    final List<Integer> transmitted = new ArrayList<Integer>();
+    for (final List<Message> batch : transport.batches) {
+      assertTrue(batch.size() <= 3);
+      transmitted.addAll(sequences(batch));
+    }
+    assertEquals(sent, transmitted);
+    assertTrue(transport.batches.size() > 1);
+  }
+
+  private static List<Integer> list(final Integer... values) {
+    final List<Integer> list = new ArrayList<Integer>();
+    Collections.addAll(list, values);
+    return list;
+  }
+
+  private static class RecordingTransportHandler implements TransportHandler, TransportStatistics {
+    private final List<List<Message>> batches = new ArrayList<List<Message>>();
+    private int latency = 0;
+
+    @Override
+    public void configure(final Message capabilitiesMessage) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public Collection<Message> stop(final boolean stopAllCurrentRequests) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void transmit(final List<Message> txMessages) {
+      batches.add(new ArrayList<Message>(txMessages));
+    }
+
+    @Override
+    public void handleProtocolExtension(final Message message) {
+    }
+
+    @Override
+    public boolean isUsable() {
+      return true;
+    }
+
+    @Override
+    public TransportStatistics getStatistics() {
+      return this;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String getTransportDescription() {
+      return "Recording";
+    }
+
+    @Override
+    public String getUnsupportedDescription() {
+      return null;
+    }
+
+    @Override
+    public int getMessagesSent() {
+      return 0;
+    }
+
+    @Override
+    public int getMessagesReceived() {
+      return 0;
+    }
+
+    @Override
+    public long getConnectedTime() {
+      return 0;
+    }
+
+    @Override
+    public long getLastTransmissionTime() {
+      return 0;
+    }
+
+    @Override
+    public int getMeasuredLatency() {
+      return latency;
+    }
+
+    @Override
+    public boolean isFullDuplex() {
+      return true;
+    }
+
+    @Override
+    public String getRxEndpoint() {
+      return null;
+    }
+
+    @Override
+    public String getTxEndpoint() {
+      return null;
+    }
+
+    @Override
+    public int getPendingMessages() {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.client.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.errai.bus.client.api.Subscription;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.common.AbstractErraiTest;
+
+/**
+ * Tests that messages routed to the client are delivered to its subscriptions to patterns matching their subjects.
+ */
+public class PatternSubscriptionTest extends AbstractErraiTest {
+
+  @Override
+  public String getModuleName() {
+    return "org.jboss.errai.bus.ErraiBusTests";
+  }
+
+  private static MessageCallback recordTo(final List<String> received, final String name) {
+    return new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        received.add(name + ":" + message.getSubject());
+      }
+    };
+  }
+
+  public void testMessagesAreDeliveredToMatchingPatterns() {
+    runAfterInit(new Runnable() {
+      @Override
+      public void run() {
+        final List<String> received = new ArrayList<String>();
+        final Subscription one = bus.subscribe("PatternTest.*", recordTo(received, "one"));
+        final Subscription all = bus.subscribe("PatternTest.>", recordTo(received, "all"));
+        final Subscription exact = bus.subscribe("PatternTest.A", recordTo(received, "exact"));
+
+        bus.sendLocal(CommandMessage.create().toSubject("PatternTest.A"));
+        bus.sendLocal(CommandMessage.create().toSubject("PatternTest.B.Created"));
+        bus.sendLocal(CommandMessage.create().toSubject("OtherTest.A"));
+
+        assertEquals(Arrays.asList("exact:PatternTest.A", "one:PatternTest.A", "all:PatternTest.A",
+            "all:PatternTest.B.Created"), received);
+
+        one.remove();
+        all.remove();
+        exact.remove();
+        received.clear();
+
+        bus.sendLocal(CommandMessage.create().toSubject("PatternTest.A"));
+        assertTrue(received.isEmpty());
+
+        finishTest();
+      }
+    });
+  }
+
+  public void testLocalSubscriptionsToPatternsAreDelivered() {
+    runAfterInit(new Runnable() {
+      @Override
+      public void run() {
+        final List<String> received = new ArrayList<String>();
+        final Subscription local = bus.subscribeLocal("LocalPatternTest.*", recordTo(received, "local"));
+
+        bus.send(CommandMessage.create().toSubject("LocalPatternTest.A"));
+        assertEquals(Arrays.asList("local:LocalPatternTest.A"), received);
+
+        local.remove();
+        received.clear();
+
+        bus.sendLocal(CommandMessage.create().toSubject("LocalPatternTest.A"));
+        assertTrue(received.isEmpty());
+
+        finishTest();
+      }
+    });
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.io.BufferHelper;
+import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.io.SlowConsumerPolicies;
+import org.jboss.errai.bus.server.io.SlowConsumerPolicy;
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.junit.Test;
+
+public class BackpressureTests {
+  private final TransmissionBuffer buffer = TransmissionBuffer.create();
+
+  private MessageQueueImpl createQueue(final int high, final int low, final SlowConsumerPolicy policy) {
+    return new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30, high, low, policy);
+  }
+
+  private static void offer(final MessageQueue queue, final String subject, final String value) throws IOException {
+    queue.offer(CommandMessage.create().toSubject(subject).set("Value", value));
+  }
+
+  private static String poll(final MessageQueue queue) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    queue.poll(new OutputStreamWriteAdapter(out));
+    return out.toString();
+  }
+
+  private static void assertInOrder(final String payload, final String... values) {
+    int last = -1;
+    for (final String value : values) {
+      final int idx = payload.indexOf("\"" + value + "\"");
+      assertTrue(value + " missing or out of order in: " + payload, idx > last);
+      last = idx;
+    }
+  }
+
+  @Test
+  public void testDropOldestDiscardsBacklog() throws Exception {
+    final MessageQueueImpl queue = createQueue(10, 5, new SlowConsumerPolicies.DropOldest());
+
+    for (int i = 1; i <= 25; i++) {
+      offer(queue, "Foo", "m" + i);
+    }
+    assertTrue(queue.isCongested());
+    assertEquals(5, queue.getQueueDepth());
+
+    final String payload = poll(queue);
+    assertFalse(payload.contains("\"m20\""));
+    assertInOrder(payload, "m21", "m22", "m23", "m24", "m25");
+    assertFalse(queue.isCongested());
+    assertEquals(0, queue.getQueueDepth());
+  }
+
+  @Test
+  public void testConflateKeepsLatestMessageOfEachSubject() throws Exception {
+    final MessageQueueImpl queue = createQueue(4, 1, new SlowConsumerPolicies.Conflate());
+
+    offer(queue, "A", "a1");
+    offer(queue, "B", "b1");
+    offer(queue, "C", "c1");
+    offer(queue, "D", "d1");
+    assertTrue(queue.isCongested());
+
+    offer(queue, "A", "a2");
+    offer(queue, "B", "b2");
+    offer(queue, "A", "a3");
+
+    final String backlog = poll(queue);
+    assertInOrder(backlog, "a1", "b1", "c1", "d1");
+    assertFalse(backlog.contains("\"a3\""));
+
+    assertFalse(queue.isCongested());
+    assertEquals(2, queue.getQueueDepth());
+
+    final String conflated = poll(queue);
+    assertFalse(conflated.contains("\"a2\""));
+    assertInOrder(conflated, "b2", "a3");
+  }
+
+  @Test
+  public void testSharedDataIsOfferedIndividuallyToCongestedQueue() throws Exception {
+    final MessageQueueImpl congested = createQueue(2, 0, new SlowConsumerPolicies.Conflate());
+    final MessageQueueImpl healthy = createQueue(2, 0, new SlowConsumerPolicies.Conflate());
+
+    offer(congested, "A", "a1");
+    offer(congested, "A", "a2");
+    assertTrue(congested.isCongested());
+
+    final Message broadcast = CommandMessage.create().toSubject("News").set("Value", "news1");
+    final long sequence = BufferHelper.encodeAndWrite(buffer, BufferColor.getAllBuffersColor(), broadcast);
+
+    assertTrue(healthy.offerShared(sequence));
+    assertEquals(1, healthy.getQueueDepth());
+
+    assertFalse(congested.offerShared(sequence));
+    congested.offer(broadcast);
+
+    final String backlog = poll(congested);
+    assertInOrder(backlog, "a1", "a2");
+    assertFalse(backlog.contains("\"news1\""));
+
+    final String relieved = poll(congested);
+    assertInOrder(relieved, "news1");
+    assertTrue(poll(healthy).contains("\"news1\""));
+  }
+
+  @Test
+  public void testEncodedPayloadIsWrittenToEveryQueue() throws Exception {
+    final MessageQueueImpl first = createQueue(2, 0, new SlowConsumerPolicies.Conflate());
+    final MessageQueueImpl second = createQueue(2, 0, new SlowConsumerPolicies.Conflate());
+    final MessageQueueImpl congested = createQueue(2, 0, new SlowConsumerPolicies.Conflate());
+
+    offer(congested, "A", "a1");
+    offer(congested, "A", "a2");
+    assertTrue(congested.isCongested());
+
+    final byte[] payload = BufferHelper.encode(CommandMessage.create().toSubject("News").set("Value", "news1"));
+
+    assertTrue(first.offerEncoded(payload));
+    assertTrue(second.offerEncoded(payload));
+    assertFalse(congested.offerEncoded(payload));
+
+    assertEquals(1, first.getQueueDepth());
+    assertTrue(poll(first).contains("\"news1\""));
+    assertTrue(poll(second).contains("\"news1\""));
+    assertFalse(poll(congested).contains("\"news1\""));
+  }
+
+  @Test
+  public void testPagedBacklogIsTransmittedFirst() throws Exception {
+    final MessageQueueImpl queue = createQueue(5, 2, new SlowConsumerPolicies.Page());
+
+    for (int i = 1; i <= 12; i++) {
+      offer(queue, "Foo", "m" + i);
+    }
+    assertTrue(queue.isPaged());
+    assertEquals(2, queue.getQueueDepth());
+
+    final String paged = poll(queue);
+    assertInOrder(paged, "m1", "m2", "m3", "m4", "m5", "m6", "m7", "m8", "m9", "m10");
+    assertFalse(paged.contains("\"m11\""));
+    assertFalse(queue.isPaged());
+    assertFalse(queue.isCongested());
+
+    assertInOrder(poll(queue), "m11", "m12");
+  }
+
+  @Test
+  public void testDisconnectStopsQueue() throws Exception {
+    final MessageQueueImpl queue = createQueue(3, 1, new SlowConsumerPolicies.Disconnect());
+
+    offer(queue, "Foo", "m1");
+    offer(queue, "Foo", "m2");
+    assertFalse(queue.isStale());
+
+    offer(queue, "Foo", "m3");
+    assertTrue(queue.isStale());
+
+    try {
+      offer(queue, "Foo", "m4");
+      throw new AssertionError("expected the queue to be unavailable");
+    }
+    catch (QueueUnavailableException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSuspendedSharedDataIsInvisible() throws Exception {
+    final BufferColor color = BufferColor.getNewColorFromHead(buffer);
+    final BufferColor global = BufferColor.getAllBuffersColor();
+
+    buffer.write(4, new ByteArrayInputStream("1234".getBytes()), global);
+    color.suspendSharedData(buffer.getHeadSequence());
+    assertTrue(color.isSharedDataSuspended());
+
+    final long hidden = buffer.write(4, new ByteArrayInputStream("ABCD".getBytes()), global);
+    buffer.write(4, new ByteArrayInputStream("mine".getBytes()), color);
+    assertFalse(color.isSharedDataVisible(hidden));
+
+    color.resumeSharedData(buffer.getHeadSequence());
+    buffer.write(4, new ByteArrayInputStream("EFGH".getBytes()), global);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    buffer.read(new OutputStreamWriteAdapter(out), color);
+    assertEquals("1234mineEFGH", out.toString());
+    assertFalse(color.isSharedDataSuspended());
+  }
+}
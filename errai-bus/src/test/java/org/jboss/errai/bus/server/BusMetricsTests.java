@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
+import org.jboss.errai.bus.server.io.PayloadCompression;
+import org.jboss.errai.bus.server.metrics.BusMetrics;
+import org.jboss.errai.bus.server.metrics.LatencyHistogram;
+import org.jboss.errai.bus.server.metrics.ServerBusMetrics;
+import org.jboss.errai.bus.server.service.ErraiService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class BusMetricsTests {
+  @Before
+  public void setUp() {
+    BusMetrics.reset();
+  }
+
+  @After
+  public void tearDown() {
+    BusMetrics.configure(false, 64);
+    BusMetrics.reset();
+  }
+
+  @Test
+  public void testHistogramPercentilesAreWithinBucketPrecision() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    assertEquals(100000, histogram.getCount());
+    assertEquals(100000000, histogram.getMax());
+    assertEquals(50000500, histogram.getMean(), 1);
+
+    assertWithinPrecision(50000000, histogram.getValueAtPercentile(50));
+    assertWithinPrecision(99000000, histogram.getValueAtPercentile(99));
+    assertEquals(100000000, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testHistogramCountsSmallValuesExactly() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 10; i++) {
+      histogram.record(i);
+    }
+    histogram.record(-5);
+
+    assertEquals(0, histogram.getValueAtPercentile(0));
+    assertEquals(4, histogram.getValueAtPercentile(50));
+    assertEquals(9, histogram.getValueAtPercentile(100));
+
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+
+  private static void assertWithinPrecision(final long expected, final long actual) {
+    final double error = Math.abs(actual - expected) / (double) expected;
+    assertTrue("expected about " + expected + " but was " + actual, error <= 1d / 16);
+  }
+
+  @Test
+  public void testNothingIsRecordedWhileDisabled() {
+    BusMetrics.configure(false, 1);
+
+    BusMetrics.countRouted("Foo", true);
+    BusMetrics.countToRemote("Foo", 3);
+    BusMetrics.recordEncode(BusMetrics.startSample());
+
+    assertEquals(0, BusMetrics.getMessagesRouted());
+    assertEquals(0, BusMetrics.getMessagesToRemote());
+    assertEquals(0, BusMetrics.getEncodeTime().getCount());
+    assertTrue(BusMetrics.getSubjectCounts().isEmpty());
+  }
+
+  @Test
+  public void testMessagesAreCountedPerSubject() {
+    BusMetrics.configure(true, 64);
+
+    BusMetrics.countRouted("Foo", true);
+    BusMetrics.countRouted("Foo", false);
+    BusMetrics.countToRemote("Bar", 3);
+    BusMetrics.countToRemote("Bar", 0);
+
+    assertEquals(2, BusMetrics.getMessagesRouted());
+    assertEquals(1, BusMetrics.getMessagesFromRemote());
+    assertEquals(3, BusMetrics.getMessagesToRemote());
+
+    final Map<String, Long> counts = BusMetrics.getSubjectCounts();
+    assertEquals(Long.valueOf(2), counts.get("Foo"));
+    assertEquals(Long.valueOf(3), counts.get("Bar"));
+  }
+
+  @Test
+  public void testSubjectsBeyondLimitAreCountedTogether() {
+    BusMetrics.configure(true, 64);
+
+    for (int i = 0; i < BusMetrics.MAX_TRACKED_SUBJECTS + 10; i++) {
+      BusMetrics.countRouted("Subject" + i, false);
+    }
+
+    final Map<String, Long> counts = BusMetrics.getSubjectCounts();
+    assertEquals(BusMetrics.MAX_TRACKED_SUBJECTS + 1, counts.size());
+    assertEquals(Long.valueOf(10), counts.get(BusMetrics.OTHER_SUBJECTS));
+  }
+
+  @Test
+  public void testMetricsRequestsFromClientsAreRefused() {
+    final List<String> busCalls = new ArrayList<String>();
+    final ServerMessageBus bus = (ServerMessageBus) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[]{ServerMessageBus.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            busCalls.add(method.getName());
+            return null;
+          }
+        });
+
+    final ServerBusMetrics metrics = new ServerBusMetrics(bus);
+    metrics.callback(CommandMessage.create().toSubject(ErraiService.SERVER_METRICS_SERVICE)
+        .setFlag(RoutingFlag.FromRemote));
+
+    assertTrue("answered a client: " + busCalls, busCalls.isEmpty());
+  }
+
+  @Test
+  public void testCompressionStatisticsAreReported() throws Exception {
+    final ServerMessageBus bus = (ServerMessageBus) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class[]{ServerMessageBus.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return "getMessageQueues".equals(method.getName()) ? Collections.emptyMap() : null;
+          }
+        });
+
+    final ServerBusMetrics metrics = new ServerBusMetrics(bus);
+    metrics.reset();
+
+    final byte[] payload = new byte[10000];
+    PayloadCompression.gzip(payload, payload.length);
+
+    final Map<String, Object> snapshot = metrics.getSnapshot();
+    assertEquals(1L, snapshot.get("CompressedPayloads"));
+    assertTrue((Double) snapshot.get("CompressionRatio") > 10);
+    assertTrue(snapshot.containsKey("CompressionCpuTimeMicros"));
+
+    metrics.reset();
+    assertEquals(0, metrics.getCompressedPayloads());
+    assertEquals(1.0d, metrics.getCompressionRatio(), 0);
+  }
+
+  @Test
+  public void testOneInSampleRateOperationsIsTimed() {
+    BusMetrics.configure(true, 50);
+    assertEquals(64, BusMetrics.getSampleRate());
+
+    final int operations = 640000;
+    for (int i = 0; i < operations; i++) {
+      BusMetrics.recordDecode(BusMetrics.startSample());
+    }
+
+    final long sampled = BusMetrics.getDecodeTime().getCount();
+    assertTrue("unexpected number of samples: " + sampled, sampled > 9000 && sampled < 11000);
+
+    BusMetrics.configure(true, 1);
+    assertEquals(1, BusMetrics.getSampleRate());
+  }
+
+  @Test
+  @Ignore
+  public void benchmarkRecordingOverhead() {
+    final DecimalFormat fmt = new DecimalFormat("###,###.###");
+    final int iterations = 10000000;
+
+    for (final boolean enabled : new boolean[]{false, true, false, true}) {
+      BusMetrics.configure(enabled, 64);
+
+      final long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        final long sample = BusMetrics.startSample();
+        BusMetrics.countRouted("BenchmarkService", true);
+        BusMetrics.recordEncode(sample);
+      }
+      final long nanos = System.nanoTime() - start;
+
+      System.out.println("enabled=" + enabled + ": " + fmt.format((double) nanos / iterations) + "ns per message");
+    }
+  }
+}
@@ -16,17 +16,33 @@
 
 package org.jboss.errai.bus.server;
 
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
 import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.framework.BuiltInServices;
+import org.jboss.errai.bus.client.protocols.BusCommand;
+import org.jboss.errai.bus.server.io.BufferHelper;
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
 import org.jboss.errai.bus.server.mock.MockErraiService;
 import org.jboss.errai.bus.server.mock.MockErraiServiceConfigurator;
+import org.jboss.errai.common.client.protocols.MessageParts;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Mike Brock
@@ -68,4 +84,144 @@ public class BusPerformanceTests {
 
     Assert.assertEquals(iterations, callback.calls);
   }
+
+  /**
+   * Compares encoding a message once per subscribed queue against encoding it once to a subscriber-group color,
+   * for a subject which only a portion of all sessions are subscribed to.
+   */
+  @Test
+  @Ignore
+  public void testPartialSubscriberFanOutThroughput() throws IOException {
+    final int sessions = 20000;
+    final int subscribers = (int) (sessions * 0.6);
+    final int iterations = 200;
+
+    final TransmissionBuffer buffer = TransmissionBuffer.create();
+    final BufferColor groupColor = BufferColor.getNewGroupColor();
+
+    final List<MessageQueueImpl> subscribed = new ArrayList<MessageQueueImpl>();
+    for (int i = 0; i < sessions; i++) {
+      final MessageQueueImpl queue = new MessageQueueImpl(buffer, MockQueueSessionFactory.newSession(), 30);
+      if (i < subscribers) {
+        queue.getBufferColor().joinGroup(groupColor, buffer.getHeadSequence());
+        subscribed.add(queue);
+      }
+    }
+
+    final Message message = CommandMessage.create()
+        .toSubject("Foo")
+        .set("Data", "The quick brown fox jumps over the lazy dog");
+    message.commit();
+
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < iterations; i++) {
+      for (final MessageQueueImpl queue : subscribed) {
+        BufferHelper.encodeAndWrite(buffer, queue.getBufferColor(), message);
+      }
+    }
+    final long perQueueTime = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    for (int i = 0; i < iterations; i++) {
+      BufferHelper.encodeAndWrite(buffer, groupColor, message);
+    }
+    final long groupTime = System.currentTimeMillis() - start;
+
+    final NumberFormat nf = new DecimalFormat("###,###.###");
+
+    System.out.println("Subscribed Sessions: " + nf.format(subscribers) + " of " + nf.format(sessions));
+    System.out.println("Messages Fanned Out: " + nf.format(iterations));
+    System.out.println("Per-Queue Encoding : " + nf.format(perQueueTime / 1000d) + " seconds.");
+    System.out.println("Group Encoding     : " + nf.format(groupTime / 1000d) + " seconds.");
+
+    Assert.assertTrue(groupTime <= perQueueTime);
+  }
+
+  /**
+   * Replays a reconnect storm: 50,000 sessions handshake at once, as they would after a redeploy, and then all of
+   * them handshake again while every tenth disconnects first. No queue or remote subscription may get lost.
+   */
+  @Test
+  @Ignore
+  public void testReconnectStorm() throws Exception {
+    final int sessions = 50000;
+    final int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    final ServerMessageBusImpl bus = new ServerMessageBusImpl(new MockErraiService(), new MockErraiServiceConfigurator());
+    final MessageCallback serverBus = bus.getReceivers(BuiltInServices.ServerBus.name()).iterator().next();
+
+    final List<QueueSession> queueSessions = new ArrayList<QueueSession>(sessions);
+    for (int i = 0; i < sessions; i++) {
+      queueSessions.add(MockQueueSessionFactory.newSession());
+    }
+
+    final NumberFormat nf = new DecimalFormat("###,###.###");
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long time = replay(executor, threads, queueSessions, serverBus, false);
+      System.out.println("Initial Handshakes : " + nf.format(sessions) + " in " + nf.format(time / 1000d) + " seconds.");
+
+      time = replay(executor, threads, queueSessions, serverBus, true);
+      System.out.println("Reconnect Storm    : " + nf.format(sessions) + " in " + nf.format(time / 1000d) + " seconds.");
+      System.out.println("Handshake Rate     : " + nf.format(sessions / (time / 1000d)) + " per second.");
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(sessions, bus.getMessageQueues().size());
+    for (final QueueSession session : queueSessions) {
+      Assert.assertNotNull(bus.getQueue(session));
+      Assert.assertTrue(bus.hasRemoteSubscription(session.getSessionId(), "PresenceService"));
+      Assert.assertTrue(bus.hasRemoteSubscription(session.getSessionId(), "ChatService"));
+    }
+
+    bus.stop();
+  }
+
+  private static long replay(final ExecutorService executor, final int threads, final List<QueueSession> sessions,
+                             final MessageCallback serverBus, final boolean disconnectSome) throws InterruptedException {
+    final CountDownLatch startGate = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+
+    for (int t = 0; t < threads; t++) {
+      final int offset = t;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            startGate.await();
+            for (int i = offset; i < sessions.size(); i += threads) {
+              final QueueSession session = sessions.get(i);
+              if (disconnectSome && i % 10 == 0) {
+                serverBus.callback(serverBusCommand(session, BusCommand.Disconnect));
+              }
+              serverBus.callback(serverBusCommand(session, BusCommand.Associate)
+                  .set(MessageParts.RemoteServices, "PresenceService,ChatService"));
+            }
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+
+    final long start = System.currentTimeMillis();
+    startGate.countDown();
+    Assert.assertTrue("handshakes timed out", done.await(5, TimeUnit.MINUTES));
+    return System.currentTimeMillis() - start;
+  }
+
+  private static Message serverBusCommand(final QueueSession session, final BusCommand command) {
+    return CommandMessage.create()
+        .toSubject(BuiltInServices.ServerBus.name())
+        .command(command)
+        .setResource("Session", session)
+        .setResource("SessionID", session.getSessionId())
+        .setFlag(RoutingFlag.FromRemote);
+  }
 }
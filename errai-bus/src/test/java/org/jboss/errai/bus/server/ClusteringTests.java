@@ -17,8 +17,11 @@
 package org.jboss.errai.bus.server;
 
 import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -263,6 +266,71 @@ public class ClusteringTests extends TestCase {
     assertEquals(Arrays.asList("Client:ServerA", "Client:ServerB"), results);
   }
 
+  /*
+   * Sessions are spread over the directory replicas of the cluster, so some of the owners node C looks up are found
+   * in its own directory entries and the others by asking a replica with WhoHandles, which answers with NotifyOwner.
+   */
+  public void testPointToPointMessagesFindOwnerThroughSessionDirectory() throws Exception {
+    final ErraiService<?> nodeA = startInstance();
+    final ErraiService<?> nodeB = startInstance();
+    final ErraiService<?> nodeC = startInstance();
+    final QueueSession controlSession = MockQueueSessionFactory.newSession("control");
+    final QueueSession broadCastBlockingSession = MockQueueSessionFactory.newSession("dummy");
+
+    // Listens for sent topic to control that it is not being broadcast
+    associateQueueSessionToBus(controlSession, nodeA.getBus());
+    associateQueueSessionToBus(controlSession, nodeB.getBus());
+    associateQueueSessionToBus(controlSession, nodeC.getBus());
+    // Prevents broadcasting of messages so that they can be intercepted
+    associateQueueSessionToBus(broadCastBlockingSession, nodeA.getBus());
+    associateQueueSessionToBus(broadCastBlockingSession, nodeB.getBus());
+    associateQueueSessionToBus(broadCastBlockingSession, nodeC.getBus());
+
+    final Consumer<Message> failAction = msg -> {
+      if ("localTest".equals(msg.getSubject())) {
+        fail("Received message to wrong client session.");
+      }
+    };
+    mockTransportWithAction(nodeA.getBus(), controlSession, failAction);
+    mockTransportWithAction(nodeB.getBus(), controlSession, failAction);
+    mockTransportWithAction(nodeC.getBus(), controlSession, failAction);
+
+    final int sessionCount = 20;
+    final String localService = "localTest";
+    final Set<String> results = Collections.synchronizedSet(new HashSet<>());
+    final CountDownLatch latch = new CountDownLatch(sessionCount);
+
+    final List<QueueSession> sessions = new ArrayList<>();
+    for (int i = 0; i < sessionCount; i++) {
+      final QueueSession session = MockQueueSessionFactory.newSession("client" + i);
+      associateQueueSessionToBus(session, nodeA.getBus());
+      remoteSubscibeToTopic(session, nodeA.getBus(), localService);
+
+      final String client = "Client " + i + ":";
+      mockTransportWithAction(nodeA.getBus(), session, msg -> {
+        if (localService.equals(msg.getSubject()) && results.add(client + msg.get(String.class, MessageParts.Value))) {
+          latch.countDown();
+        }
+      });
+      sessions.add(session);
+    }
+
+    for (final QueueSession session : sessions) {
+      MessageBuilder.createMessage()
+          .toSubject(localService)
+          .signalling()
+          .withValue("ServerC")
+          .with(MessageParts.SessionID, session.getSessionId())
+          .noErrorHandling()
+          .sendNowWith(nodeC.getBus());
+    }
+
+    assertTrue("Timeout while waiting for messages from servers. Received: " + results, latch.await(30, TimeUnit.SECONDS));
+    for (int i = 0; i < sessionCount; i++) {
+      assertTrue(results.contains("Client " + i + ":ServerC"));
+    }
+  }
+
   /*
    * When a client switches servers in a cluster, it must associate with the new bus. This tests that
    * a message from an unassociated client is rejected with a QueueUnavailableException. Because
@@ -318,6 +386,58 @@ public class ClusteringTests extends TestCase {
     }
   }
 
+  /**
+   * Measures how many global messages per second one node forwards to another. Not run by default; rename it to
+   * <tt>testGlobalForwardingThroughput</tt> to run it.
+   */
+  public void benchmarkGlobalForwardingThroughput() throws Exception {
+    final ErraiService<?> nodeA = startInstance();
+    final ErraiService<?> nodeB = startInstance();
+    final QueueSession sessionA = MockQueueSessionFactory.newSession("client1");
+    final QueueSession sessionB = MockQueueSessionFactory.newSession("client2");
+    final QueueSession broadCastBlockingSession = MockQueueSessionFactory.newSession("dummy");
+
+    associateQueueSessionToBus(sessionA, nodeA.getBus());
+    associateQueueSessionToBus(sessionB, nodeB.getBus());
+    // Prevents broadcasting of messages so that they can be intercepted
+    associateQueueSessionToBus(broadCastBlockingSession, nodeA.getBus());
+    associateQueueSessionToBus(broadCastBlockingSession, nodeB.getBus());
+
+    final String localService = "throughputTest";
+    final int iterations = 200000;
+    final CountDownLatch latch = new CountDownLatch(iterations);
+
+    remoteSubscibeToTopic(sessionA, nodeA.getBus(), localService);
+    remoteSubscibeToTopic(sessionB, nodeB.getBus(), localService);
+
+    mockTransportWithAction(nodeA.getBus(), sessionA, msg -> {});
+    mockTransportWithAction(nodeB.getBus(), sessionB, msg -> {
+      if (localService.equals(msg.getSubject())) {
+        latch.countDown();
+      }
+    });
+
+    final long start = System.currentTimeMillis();
+    for (int i = 0; i < iterations; i++) {
+      MessageBuilder.createMessage()
+          .toSubject(localService)
+          .signalling()
+          .with("Seq", i)
+          .with("Data", "The quick brown fox jumps over the lazy dog")
+          .noErrorHandling()
+          .sendGlobalWith(nodeA.getBus());
+    }
+
+    assertTrue("Timeout while waiting for messages from node A. Missing: " + latch.getCount(),
+        latch.await(120, TimeUnit.SECONDS));
+    final long time = System.currentTimeMillis() - start;
+
+    final NumberFormat nf = new DecimalFormat("###,###.###");
+    System.out.println("Total Test Time     : " + nf.format(time / 1000d) + " seconds.");
+    System.out.println("Messages Forwarded  : " + nf.format(iterations));
+    System.out.println("Transaction Rate    : " + nf.format(iterations / (time / 1000d)) + " per second.");
+  }
+
   private void associateToNewBus(final QueueSession session, final ServerMessageBus oldBus, final ServerMessageBus newBus) {
     final Message disconnectMsg = MessageBuilder
       .createMessage(BuiltInServices.ServerBus.name())
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.errai.bus.server.async.TimedTask;
+import org.jboss.errai.bus.server.async.scheduling.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class HashedWheelTimerTests {
+  private HashedWheelTimer timer;
+
+  private static class Task extends TimedTask {
+    private Task(final long deadline) {
+      nextRuntime = deadline;
+    }
+
+    @Override
+    public boolean isFinished() {
+      return false;
+    }
+
+    @Override
+    public void run() {
+    }
+  }
+
+  @After
+  public void stopTimer() {
+    if (timer != null) {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void testTasksExpireAtTheirDeadline() throws Exception {
+    final Map<TimedTask, Long> expiredAt = new ConcurrentHashMap<TimedTask, Long>();
+    final CountDownLatch latch = new CountDownLatch(3);
+
+    timer = new HashedWheelTimer(new HashedWheelTimer.ExpiryHandler() {
+      @Override
+      public void expired(final TimedTask task) {
+        expiredAt.put(task, System.currentTimeMillis());
+        latch.countDown();
+      }
+    });
+    timer.start();
+
+    final long now = System.currentTimeMillis();
+    final List<Task> tasks = new ArrayList<Task>();
+    for (final long delay : new long[]{100, 20, 250}) {
+      final Task task = new Task(now + delay);
+      tasks.add(task);
+      timer.schedule(task, task.nextRuntime());
+    }
+    assertEquals(3, timer.getPendingCount());
+
+    assertTrue("tasks did not expire in time", latch.await(5, TimeUnit.SECONDS));
+    for (final Task task : tasks) {
+      assertTrue("task expired before its deadline", expiredAt.get(task) >= task.nextRuntime());
+    }
+    assertEquals(0, timer.getPendingCount());
+  }
+
+  @Test
+  public void testCancelledTaskDoesNotExpire() throws Exception {
+    final List<TimedTask> expired = Collections.synchronizedList(new ArrayList<TimedTask>());
+    timer = new HashedWheelTimer(new HashedWheelTimer.ExpiryHandler() {
+      @Override
+      public void expired(final TimedTask task) {
+        expired.add(task);
+      }
+    });
+    timer.start();
+
+    final Task cancelled = new Task(System.currentTimeMillis() + 50);
+    final HashedWheelTimer.Timeout timeout = timer.schedule(cancelled, cancelled.nextRuntime());
+
+    final Task kept = new Task(System.currentTimeMillis() + 100);
+    timer.schedule(kept, kept.nextRuntime());
+
+    assertTrue(timeout.cancel());
+    assertFalse(timeout.cancel());
+    assertEquals(1, timer.getPendingCount());
+
+    Thread.sleep(300);
+    assertEquals(Collections.<TimedTask>singletonList(kept), expired);
+  }
+
+  @Test
+  public void testTasksBeyondOneTurnOfTheWheelExpire() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long[] expiredAt = new long[1];
+
+    // one turn of the wheel lasts 16 milliseconds.
+    timer = new HashedWheelTimer(new HashedWheelTimer.ExpiryHandler() {
+      @Override
+      public void expired(final TimedTask task) {
+        expiredAt[0] = System.currentTimeMillis();
+        latch.countDown();
+      }
+    }, 1, 16);
+    timer.start();
+
+    final Task task = new Task(System.currentTimeMillis() + 200);
+    timer.schedule(task, task.nextRuntime());
+
+    assertTrue("task did not expire in time", latch.await(5, TimeUnit.SECONDS));
+    assertTrue("task expired before its deadline", expiredAt[0] >= task.nextRuntime());
+  }
+
+  @Test
+  @Ignore
+  public void testMillionOutstandingTimers() throws Exception {
+    final int timers = 1000000;
+    final Random random = new Random(42);
+    final NumberFormat nf = new DecimalFormat("###,###.###");
+
+    final long now = System.currentTimeMillis();
+    final Task[] tasks = new Task[timers];
+    for (int i = 0; i < timers; i++) {
+      // session timeouts and heartbeats, spread over the next ten minutes.
+      tasks[i] = new Task(now + 60000 + random.nextInt(540000));
+    }
+
+    timer = new HashedWheelTimer(new HashedWheelTimer.ExpiryHandler() {
+      @Override
+      public void expired(final TimedTask task) {
+      }
+    });
+    timer.start();
+
+    final HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[timers];
+    long start = System.nanoTime();
+    for (int i = 0; i < timers; i++) {
+      timeouts[i] = timer.schedule(tasks[i], tasks[i].nextRuntime());
+    }
+    final long wheelSchedule = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int i = 0; i < timers; i += 2) {
+      timeouts[i].cancel();
+    }
+    final long wheelCancel = System.nanoTime() - start;
+    assertEquals(timers / 2, timer.getPendingCount());
+
+    final PriorityBlockingQueue<TimedTask> queue = new PriorityBlockingQueue<TimedTask>();
+    start = System.nanoTime();
+    for (int i = 0; i < timers; i++) {
+      queue.offer(tasks[i]);
+    }
+    final long queueSchedule = System.nanoTime() - start;
+
+    // removing from the priority queue is linear, so only a sample is cancelled.
+    final int sample = 1000;
+    start = System.nanoTime();
+    for (int i = 0; i < sample * 2; i += 2) {
+      queue.remove(tasks[i]);
+    }
+    final long queueCancel = (System.nanoTime() - start) * (timers / 2 / sample);
+
+    System.out.println("Outstanding Timers   : " + nf.format(timers));
+    System.out.println("Wheel Schedule       : " + nf.format(wheelSchedule / 1000000d) + " ms");
+    System.out.println("Wheel Cancel (half)  : " + nf.format(wheelCancel / 1000000d) + " ms");
+    System.out.println("Queue Schedule       : " + nf.format(queueSchedule / 1000000d) + " ms");
+    System.out.println("Queue Cancel (half)  : " + nf.format(queueCancel / 1000000d) + " ms (extrapolated)");
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.io.buffers.Buffer;
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.LockFreeTransmissionBuffer;
+import org.jboss.errai.bus.server.io.buffers.NoOpBufferFilter;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class LockFreeTransmissionBufferTests {
+
+  @Test
+  public void testBufferWriteAndRead() throws IOException {
+    final Buffer buffer = LockFreeTransmissionBuffer.createDirect(16, 64);
+    final BufferColor color = BufferColor.getNewColor();
+
+    final String s = "This is a test";
+    buffer.write(s.length(), new ByteArrayInputStream(s.getBytes()), color);
+
+    final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    assertTrue(buffer.read(new OutputStreamWriteAdapter(bOutputStream), color));
+    assertEquals(s, new String(bOutputStream.toByteArray()));
+  }
+
+  @Test
+  public void testColorInterleavingAcrossBufferCycles() throws IOException {
+    final Buffer buffer = LockFreeTransmissionBuffer.create(10, 20);
+
+    final BufferColor colorA = BufferColor.getNewColor();
+    final BufferColor colorB = BufferColor.getNewColor();
+    final BufferColor globalColor = BufferColor.getAllBuffersColor();
+
+    final String stringA = "12345678";
+    final String stringB = "ABCDEFGH";
+    final String stringG = "IJKLMNOP";
+
+    for (int i = 0; i < 100000; i++) {
+      buffer.write(stringA.length(), new ByteArrayInputStream(stringA.getBytes()), colorA);
+      buffer.write(stringB.length(), new ByteArrayInputStream(stringB.getBytes()), colorB);
+      buffer.write(stringG.length(), new ByteArrayInputStream(stringG.getBytes()), globalColor);
+
+      ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+      buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorA);
+      assertEquals(stringA + stringG, new String(bOutputStream.toByteArray()));
+
+      bOutputStream = new ByteArrayOutputStream();
+      buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorB);
+      assertEquals(stringB + stringG, new String(bOutputStream.toByteArray()));
+    }
+  }
+
+  @Test
+  public void testReadStopsAtRequestedSequence() throws IOException {
+    final Buffer buffer = LockFreeTransmissionBuffer.create(16, 64);
+    final BufferColor color = BufferColor.getNewColor();
+
+    buffer.write(3, new ByteArrayInputStream("abc".getBytes()), color);
+    final long second = buffer.write(3, new ByteArrayInputStream("def".getBytes()), color);
+
+    final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    final OutputStreamWriteAdapter adapter = new OutputStreamWriteAdapter(bOutputStream);
+    assertTrue(buffer.read(adapter, color, NoOpBufferFilter.INSTANCE, second));
+    assertEquals("abc", new String(bOutputStream.toByteArray()));
+
+    assertTrue(buffer.read(adapter, color, NoOpBufferFilter.INSTANCE));
+    assertEquals("abcdef", new String(bOutputStream.toByteArray()));
+  }
+
+  @Test
+  public void testReadWaitTimesOutWithoutData() throws Exception {
+    final Buffer buffer = LockFreeTransmissionBuffer.create(16, 64);
+    final BufferColor color = BufferColor.getNewColorFromHead(buffer);
+
+    final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    assertFalse(buffer.readWait(TimeUnit.MILLISECONDS, 50, new OutputStreamWriteAdapter(bOutputStream), color));
+    assertEquals(0, bOutputStream.size());
+  }
+
+  @Test
+  public void testParkedReaderIsWokenByWriter() throws Exception {
+    final Buffer buffer = LockFreeTransmissionBuffer.create(16, 64);
+    final BufferColor color = BufferColor.getNewColorFromHead(buffer);
+
+    final AtomicReference<String> result = new AtomicReference<String>();
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    final Thread reader = new Thread() {
+      @Override
+      public void run() {
+        try {
+          final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+          buffer.readWait(TimeUnit.SECONDS, 10, new OutputStreamWriteAdapter(bOutputStream), color);
+          result.set(new String(bOutputStream.toByteArray()));
+        }
+        catch (Exception e) {
+          result.set(e.toString());
+        }
+        finally {
+          latch.countDown();
+        }
+      }
+    };
+    reader.start();
+
+    // give the reader time to get past its spin phase and park.
+    Thread.sleep(100);
+    buffer.write(5, new ByteArrayInputStream("Hello".getBytes()), color);
+
+    assertTrue("reader was not woken", latch.await(5, TimeUnit.SECONDS));
+    assertEquals("Hello", result.get());
+  }
+
+  @Test
+  public void testParkedReaderIsWokenByGroupWrite() throws Exception {
+    final Buffer buffer = LockFreeTransmissionBuffer.create(16, 64);
+    final BufferColor color = BufferColor.getNewColorFromHead(buffer);
+    final BufferColor groupColor = BufferColor.getNewGroupColor();
+    color.joinGroup(groupColor, buffer.getHeadSequence());
+
+    final AtomicReference<String> result = new AtomicReference<String>();
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    final Thread reader = new Thread() {
+      @Override
+      public void run() {
+        try {
+          final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+          buffer.readWait(TimeUnit.SECONDS, 10, new OutputStreamWriteAdapter(bOutputStream), color);
+          result.set(new String(bOutputStream.toByteArray()));
+        }
+        catch (Exception e) {
+          result.set(e.toString());
+        }
+        finally {
+          latch.countDown();
+        }
+      }
+    };
+    reader.start();
+
+    try {
+      // give the reader time to get past its spin phase and park.
+      Thread.sleep(100);
+      buffer.write(5, new ByteArrayInputStream("Group".getBytes()), groupColor);
+
+      assertTrue("reader was not woken by the group write", latch.await(1, TimeUnit.SECONDS));
+      assertEquals("Group", result.get());
+    }
+    finally {
+      BufferColor.releaseGroupColor(groupColor);
+    }
+  }
+
+  @Test
+  public void testMultipleProducersSingleColor() throws Exception {
+    final int producers = 8;
+    final int writesPerProducer = 2000;
+
+    final Buffer buffer = LockFreeTransmissionBuffer.create(16, 1024 * 64);
+    final BufferColor color = BufferColor.getNewColorFromHead(buffer);
+
+    runProducers(buffer, color, producers, writesPerProducer);
+
+    final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    buffer.read(new OutputStreamWriteAdapter(bOutputStream), color);
+
+    final String output = new String(bOutputStream.toByteArray());
+    assertEquals(producers * writesPerProducer * 4, output.length());
+    for (int i = 0; i < output.length(); i += 4) {
+      assertEquals("data", output.substring(i, i + 4));
+    }
+  }
+
+  @Test
+  public void testLappedReaderSkipsOverwrittenData() throws IOException {
+    final Buffer buffer = LockFreeTransmissionBuffer.create(16, 8);
+    final BufferColor color = BufferColor.getNewColorFromHead(buffer);
+
+    for (int i = 0; i < 10; i++) {
+      final String s = "overwritten data " + i;
+      buffer.write(s.length(), new ByteArrayInputStream(s.getBytes()), color);
+    }
+
+    final ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    buffer.read(new OutputStreamWriteAdapter(bOutputStream), color);
+    assertEquals("", new String(bOutputStream.toByteArray()));
+
+    final String s = "fresh data";
+    buffer.write(s.length(), new ByteArrayInputStream(s.getBytes()), color);
+
+    assertTrue(buffer.read(new OutputStreamWriteAdapter(bOutputStream), color));
+    assertEquals(s, new String(bOutputStream.toByteArray()));
+  }
+
+  /**
+   * Compares contended write throughput of the locking and lock-free buffers at increasing producer counts.
+   */
+  @Test
+  @Ignore
+  public void testContendedWriteThroughput() throws Exception {
+    final int writes = 2000000;
+    final NumberFormat nf = new DecimalFormat("###,###.###");
+
+    for (final int producers : new int[]{1, 4, 16, 64}) {
+      final Buffer locking = TransmissionBuffer.create(16, 1024 * 64);
+      final Buffer lockFree = LockFreeTransmissionBuffer.create(16, 1024 * 64);
+
+      final long lockingTime = runProducers(locking, BufferColor.getNewColorFromHead(locking),
+          producers, writes / producers);
+      final long lockFreeTime = runProducers(lockFree, BufferColor.getNewColorFromHead(lockFree),
+          producers, writes / producers);
+
+      System.out.println("Producers: " + producers);
+      System.out.println("  Locking   : " + nf.format(writes / (lockingTime / 1000d)) + " writes per second.");
+      System.out.println("  Lock-free : " + nf.format(writes / (lockFreeTime / 1000d)) + " writes per second.");
+    }
+  }
+
+  private static long runProducers(final Buffer buffer,
+                                   final BufferColor color,
+                                   final int producers,
+                                   final int writesPerProducer) throws InterruptedException {
+    final byte[] data = "data".getBytes();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch doneLatch = new CountDownLatch(producers);
+
+    for (int i = 0; i < producers; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+            for (int w = 0; w < writesPerProducer; w++) {
+              buffer.write(data.length, new ByteArrayInputStream(data), color);
+            }
+          }
+          catch (Exception e) {
+            e.printStackTrace();
+          }
+          finally {
+            doneLatch.countDown();
+          }
+        }
+      }.start();
+    }
+
+    final long start = System.currentTimeMillis();
+    startLatch.countDown();
+    doneLatch.await();
+    return System.currentTimeMillis() - start;
+  }
+}
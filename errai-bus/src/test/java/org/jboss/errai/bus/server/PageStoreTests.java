@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.jboss.errai.bus.server.io.ByteBufferWriteAdapter;
+import org.jboss.errai.bus.server.io.ByteWriteAdapter;
+import org.jboss.errai.bus.server.io.OutputStreamWriteAdapter;
+import org.jboss.errai.bus.server.io.PageStore;
+import org.jboss.errai.bus.server.io.buffers.BufferColor;
+import org.jboss.errai.bus.server.io.buffers.BufferFilter;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageStoreTests {
+  private File directory;
+  private PageStore store;
+
+  @Before
+  public void createStore() {
+    directory = new File(System.getProperty("java.io.tmpdir"), "pagestoretests-" + System.nanoTime());
+    store = new PageStore(directory, 64, 0);
+  }
+
+  @After
+  public void closeStore() {
+    store.close();
+    directory.delete();
+  }
+
+  private void write(final String key, final String data) {
+    store.write(key, ByteBuffer.wrap(data.getBytes()));
+  }
+
+  private String read(final String key) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertTrue(store.read(key, new OutputStreamWriteAdapter(out), null));
+    return out.toString();
+  }
+
+  @Test
+  public void testDataSpanningSegmentsIsReadInOrder() throws Exception {
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      final String chunk = "message-" + i + ";";
+      expected.append(chunk);
+      write("a", chunk);
+      write("b", "interleaved");
+    }
+
+    assertTrue(store.getSegmentCount() > 1);
+    assertEquals(expected.toString(), read("a"));
+    assertFalse(store.hasData("a"));
+    assertFalse(store.read("a", new OutputStreamWriteAdapter(new ByteArrayOutputStream()), null));
+  }
+
+  @Test
+  public void testFilterIsAppliedOnRead() throws Exception {
+    write("a", "abc");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    store.read("a", new OutputStreamWriteAdapter(out), new BufferFilter() {
+      @Override
+      public void before(final ByteWriteAdapter writer) throws IOException {
+        writer.write('[');
+      }
+
+      @Override
+      public int each(final int i, final ByteWriteAdapter writer) throws IOException {
+        return Character.toUpperCase(i);
+      }
+
+      @Override
+      public void after(final ByteWriteAdapter writer) throws IOException {
+        writer.write(']');
+      }
+    });
+
+    assertEquals("[ABC]", out.toString());
+  }
+
+  @Test
+  public void testCompactionReleasesSpentSegments() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      write("spent" + i, "0123456789012345678901234567890123456789");
+    }
+    write("kept", "kept data");
+    for (int i = 0; i < 10; i++) {
+      store.discard("spent" + i);
+    }
+    write("tail", "0123456789012345678901234567890123456789012345678901234567890123");
+
+    final int segments = store.getSegmentCount();
+    assertTrue(store.compact() > 0);
+    assertTrue(store.getSegmentCount() < segments);
+
+    assertEquals("kept data", read("kept"));
+    assertEquals(64, store.getLiveBytes());
+  }
+
+  @Test
+  public void testTransmissionBufferSegmentsAreCopiedInBulk() throws Exception {
+    final TransmissionBuffer buffer = TransmissionBuffer.create(32, 16);
+    final BufferColor color = BufferColor.getNewColor();
+    buffer.write(new ByteArrayInputStream("{\"foo\":\"bar\"}".getBytes()), color);
+    buffer.write(new ByteArrayInputStream("{\"bar\":\"foo\"}".getBytes()), color);
+
+    final int[] bulkWrites = new int[1];
+    final ByteBufferWriteAdapter writer = store.getWriter("a");
+    buffer.read(new ByteBufferWriteAdapter() {
+      @Override
+      public void write(final ByteBuffer data) throws IOException {
+        bulkWrites[0]++;
+        writer.write(data);
+      }
+
+      @Override
+      public void write(final int b) throws IOException {
+        writer.write(b);
+      }
+
+      @Override
+      public void write(final byte b) throws IOException {
+        writer.write(b);
+      }
+
+      @Override
+      public void write(final byte[] b) throws IOException {
+        writer.write(b);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        writer.flush();
+      }
+    }, color);
+    writer.flush();
+
+    assertEquals(2, bulkWrites[0]);
+    assertEquals("{\"foo\":\"bar\"}{\"bar\":\"foo\"}", read("a"));
+  }
+}
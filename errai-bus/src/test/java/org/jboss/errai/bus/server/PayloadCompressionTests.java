@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.jboss.errai.bus.server.io.PayloadCompression;
+import org.junit.After;
+import org.junit.Test;
+
+public class PayloadCompressionTests {
+
+  private static byte[] typicalPayload(final int messages) {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < messages; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"ToSubject\":\"StockTicker\",\"CommandType\":\"PriceUpdate\",\"Value\":{")
+          .append("\"^EncodedType\":\"org.jboss.errai.demo.stock.client.shared.StockUpdate\",\"^ObjectID\":\"1\",")
+          .append("\"sequence\":").append(100000 + i).append("}}");
+    }
+    return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @After
+  public void restoreDefaults() {
+    PayloadCompression.configure(true, 1024);
+  }
+
+  @Test
+  public void testPerMessageDeflateRoundTrip() throws Exception {
+    for (final int messages : new int[] { 0, 1, 10, 1000 }) {
+      final byte[] payload = typicalPayload(messages);
+      final byte[] compressed = PayloadCompression.deflateMessage(payload);
+      assertArrayEquals(payload, PayloadCompression.inflateMessage(compressed, payload.length));
+    }
+    assertArrayEquals(new byte[0], PayloadCompression.inflateMessage(PayloadCompression.deflateMessage(new byte[0]), 0));
+  }
+
+  @Test
+  public void testInflateStopsAtMaxSize() throws Exception {
+    // a small message which decompresses to a megabyte.
+    final byte[] bomb = PayloadCompression.deflateMessage(new byte[1024 * 1024]);
+    assertTrue(bomb.length < 2048);
+
+    try {
+      PayloadCompression.inflateMessage(bomb, 65536);
+      fail("message exceeding the maximum size was inflated");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testPerMessageDeflateIsReusedAcrossMessages() throws Exception {
+    final PayloadCompression.PerMessageDeflate deflate = new PayloadCompression.PerMessageDeflate(1024 * 1024);
+    try {
+      for (final int messages : new int[] { 1000, 0, 10, 1, 1000 }) {
+        final byte[] payload = typicalPayload(messages);
+        final byte[] compressed = deflate.deflate(payload);
+        assertArrayEquals(payload, deflate.inflate(compressed));
+        assertArrayEquals(payload, PayloadCompression.inflateMessage(compressed, payload.length));
+      }
+
+      try {
+        deflate.inflate(PayloadCompression.deflateMessage(new byte[2 * 1024 * 1024]));
+        fail("message exceeding the maximum size was inflated");
+      }
+      catch (IOException e) {
+        // expected
+      }
+
+      // a failed message must not affect the next one.
+      final byte[] payload = typicalPayload(10);
+      assertArrayEquals(payload, deflate.inflate(deflate.deflate(payload)));
+    }
+    finally {
+      deflate.end();
+    }
+  }
+
+  @Test
+  public void testGzipRoundTripAndStatistics() throws Exception {
+    final long before = PayloadCompression.getCompressedPayloadCount();
+    final byte[] payload = typicalPayload(100);
+    final byte[] compressed = PayloadCompression.gzip(payload, payload.length);
+
+    final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buf = new byte[1024];
+    int read;
+    while ((read = in.read(buf)) != -1) {
+      out.write(buf, 0, read);
+    }
+
+    assertArrayEquals(payload, out.toByteArray());
+    assertTrue(compressed.length * 5 < payload.length);
+    assertTrue(PayloadCompression.getCompressedPayloadCount() > before);
+    assertTrue(PayloadCompression.getCompressionRatio() > 1.0d);
+  }
+
+  @Test
+  public void testThreshold() {
+    PayloadCompression.configure(true, 100);
+    assertFalse(PayloadCompression.shouldCompress(99));
+    assertTrue(PayloadCompression.shouldCompress(100));
+
+    PayloadCompression.configure(false, 100);
+    assertFalse(PayloadCompression.shouldCompress(100000));
+  }
+
+  @Test
+  public void testNegotiationHeaders() {
+    assertTrue(PayloadCompression.acceptsGzip("gzip, deflate, br"));
+    assertTrue(PayloadCompression.acceptsGzip("deflate,gzip;q=0.5"));
+    assertFalse(PayloadCompression.acceptsGzip("gzip;q=0"));
+    assertFalse(PayloadCompression.acceptsGzip("gzip; q=0.0"));
+    assertFalse(PayloadCompression.acceptsGzip("identity"));
+    assertFalse(PayloadCompression.acceptsGzip(null));
+
+    assertTrue(PayloadCompression.offersPerMessageDeflate("permessage-deflate; client_max_window_bits"));
+    assertTrue(PayloadCompression.offersPerMessageDeflate("x-webkit-deflate-frame, permessage-deflate"));
+    assertFalse(PayloadCompression.offersPerMessageDeflate("x-webkit-deflate-frame"));
+    assertFalse(PayloadCompression.offersPerMessageDeflate(null));
+  }
+}
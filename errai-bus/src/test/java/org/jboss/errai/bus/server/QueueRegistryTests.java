@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.server.api.MessageQueue;
+import org.jboss.errai.bus.server.io.buffers.TransmissionBuffer;
+import org.junit.Test;
+
+public class QueueRegistryTests {
+  private final TransmissionBuffer buffer = TransmissionBuffer.create();
+
+  private MessageQueue newQueue(final QueueSession session) {
+    return new MessageQueueImpl(buffer, session, 30);
+  }
+
+  @Test
+  public void testClosingReplacedQueueKeepsItsReplacement() {
+    final QueueRegistry registry = new QueueRegistry();
+    final QueueSession session = MockQueueSessionFactory.newSession();
+
+    final MessageQueue oldQueue = newQueue(session);
+    registry.addQueue(session, oldQueue);
+
+    final MessageQueue newQueue = newQueue(session);
+    registry.addQueue(session, newQueue);
+
+    assertFalse(registry.removeQueue(oldQueue));
+    assertSame(newQueue, registry.getQueue(session));
+    assertSame(session, registry.getSession(session.getSessionId()));
+
+    assertTrue(registry.removeQueue(newQueue));
+    assertNull(registry.getQueue(session));
+    assertNull(registry.getSession(session.getSessionId()));
+  }
+
+  @Test
+  public void testRemovingQueueRemovesAliases() {
+    final QueueRegistry registry = new QueueRegistry();
+    final QueueSession oldSession = MockQueueSessionFactory.newSession();
+    final QueueSession newSession = MockQueueSessionFactory.newSession();
+
+    final MessageQueue queue = newQueue(oldSession);
+    registry.addQueue(oldSession, queue);
+    registry.addAlias(oldSession, newSession);
+
+    assertSame(queue, registry.getQueue(newSession));
+    assertSame(oldSession, registry.getSession(newSession.getSessionId()));
+    assertEquals(2, registry.getQueueCount());
+
+    assertTrue(registry.removeQueue(queue));
+    assertEquals(0, registry.getQueueCount());
+    assertNull(registry.getSession(oldSession.getSessionId()));
+    assertNull(registry.getSession(newSession.getSessionId()));
+  }
+
+  @Test
+  public void testSubjectsAreTrackedPerQueue() {
+    final QueueRegistry registry = new QueueRegistry();
+    final QueueSession session = MockQueueSessionFactory.newSession();
+    final MessageQueue queue = newQueue(session);
+    registry.addQueue(session, queue);
+
+    registry.addSubject(queue, "A");
+    registry.addSubject(queue, "B");
+    registry.addSubject(queue, "A");
+
+    assertEquals(new HashSet<String>(Arrays.asList("A", "B")), registry.getSubjects(queue));
+    assertEquals(new HashSet<String>(Arrays.asList("A", "B")), registry.removeSubjects(queue));
+    assertTrue(registry.getSubjects(queue).isEmpty());
+  }
+
+  @Test
+  public void testLocksAreStripedBySession() {
+    final QueueRegistry registry = new QueueRegistry(100);
+    assertEquals(128, registry.getStripeCount());
+
+    final QueueSession session = MockQueueSessionFactory.newSession("client1");
+    assertSame(registry.getLock(session), registry.getLock(MockQueueSessionFactory.newSession("client1")));
+
+    final HashSet<Object> locks = new HashSet<Object>();
+    for (int i = 0; i < 1000; i++) {
+      locks.add(registry.getLock(MockQueueSessionFactory.newSession()));
+    }
+    assertTrue(locks.size() > 64);
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.base.MessageDeliveryFailure;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.server.io.AbstractRPCMethodCallback;
+import org.jboss.errai.bus.server.io.MethodHandleInvoker;
+import org.jboss.errai.bus.server.io.ServiceInstanceProvider;
+import org.jboss.errai.bus.server.io.ValueReplyRPCEndpointCallback;
+import org.junit.Test;
+
+public class RPCEndpointInvocationTests {
+  public interface Calculator {
+    int zero();
+
+    int negate(int a);
+
+    String concat(String a, String b);
+
+    long sum(int a, int b, int c, int d, int e);
+
+    void clear();
+
+    void fail(String reason);
+  }
+
+  private static class CalculatorImpl implements Calculator {
+    @Override
+    public int zero() {
+      return 0;
+    }
+
+    @Override
+    public int negate(final int a) {
+      return -a;
+    }
+
+    @Override
+    public String concat(final String a, final String b) {
+      return a + b;
+    }
+
+    @Override
+    public long sum(final int a, final int b, final int c, final int d, final int e) {
+      return a + b + c + d + e;
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public void fail(final String reason) {
+      throw new IllegalStateException(reason);
+    }
+  }
+
+  private final Calculator calculator = new CalculatorImpl();
+
+  private final ServiceInstanceProvider provider = new ServiceInstanceProvider() {
+    @Override
+    public Object get(final Message message) {
+      return calculator;
+    }
+  };
+
+  private static Message call(final Object... parms) {
+    return CommandMessage.create().set("MethodParms", Arrays.asList(parms));
+  }
+
+  private AbstractRPCMethodCallback endpoint(final String name, final boolean bound) throws Exception {
+    Method method = null;
+    for (final Method candidate : Calculator.class.getMethods()) {
+      if (candidate.getName().equals(name)) {
+        method = candidate;
+      }
+    }
+    return new ValueReplyRPCEndpointCallback(provider, method, bound ? MethodHandleInvoker.create(method) : null, null);
+  }
+
+  @Test
+  public void testBoundInvocationMatchesReflection() throws Exception {
+    for (final boolean bound : new boolean[]{false, true}) {
+      assertEquals(0, endpoint("zero", bound).invokeMethodFromMessage(CommandMessage.create()));
+      assertEquals(-7, endpoint("negate", bound).invokeMethodFromMessage(call(7)));
+      assertEquals("foobar", endpoint("concat", bound).invokeMethodFromMessage(call("foo", "bar")));
+      assertEquals(15L, endpoint("sum", bound).invokeMethodFromMessage(call(1, 2, 3, 4, 5)));
+    }
+  }
+
+  @Test
+  public void testVoidMethodReturnsNull() throws Throwable {
+    final MethodHandleInvoker invoker = MethodHandleInvoker.create(Calculator.class.getMethod("clear"));
+    assertNull(invoker.invoke(calculator, null));
+  }
+
+  @Test
+  public void testInvokerThrowsEndpointExceptionUnwrapped() throws Throwable {
+    final MethodHandleInvoker invoker = MethodHandleInvoker.create(Calculator.class.getMethod("fail", String.class));
+    try {
+      invoker.invoke(calculator, Collections.<Object>singletonList("bound"));
+      fail("expected the endpoint's exception");
+    }
+    catch (IllegalStateException e) {
+      assertEquals("bound", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testEndpointExceptionIsWrapped() throws Exception {
+    for (final boolean bound : new boolean[]{false, true}) {
+      try {
+        endpoint("fail", bound).invokeMethodFromMessage(call("broken"));
+        fail("expected a delivery failure");
+      }
+      catch (MessageDeliveryFailure e) {
+        assertTrue(e.isRpcEndpointException());
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals("broken", e.getCause().getMessage());
+      }
+    }
+  }
+
+  @Test(expected = MessageDeliveryFailure.class)
+  public void testWrongArityIsRejected() throws Exception {
+    endpoint("concat", true).invokeMethodFromMessage(call("foo"));
+  }
+
+  @Test
+  public void testArgumentMismatchIsNotAnEndpointException() throws Exception {
+    for (final boolean bound : new boolean[]{false, true}) {
+      for (final Message message : Arrays.asList(call("seven"), call((Object) null), call(7L))) {
+        try {
+          endpoint("negate", bound).invokeMethodFromMessage(message);
+          fail("expected a delivery failure");
+        }
+        catch (MessageDeliveryFailure e) {
+          assertFalse(e.isRpcEndpointException());
+          assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+      }
+
+      try {
+        endpoint("concat", bound).invokeMethodFromMessage(call("foo", 42));
+        fail("expected a delivery failure");
+      }
+      catch (MessageDeliveryFailure e) {
+        assertFalse(e.isRpcEndpointException());
+      }
+    }
+  }
+
+  @Test
+  public void testPrimitiveArgumentsAreWidened() throws Exception {
+    for (final boolean bound : new boolean[]{false, true}) {
+      assertEquals(-7, endpoint("negate", bound).invokeMethodFromMessage(call((short) 7)));
+      assertEquals(-97, endpoint("negate", bound).invokeMethodFromMessage(call('a')));
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.errai.bus.client.api.RoutingFlag;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.annotations.CachedResult;
+import org.jboss.errai.bus.server.io.CachedValueReplyRPCEndpointCallback;
+import org.jboss.errai.bus.server.io.RPCEndpointFactory;
+import org.jboss.errai.bus.server.io.ServiceInstanceProvider;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.mock.MockErraiServiceConfigurator;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.marshalling.client.api.EncodedValue;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RPCResultCacheTests {
+  public interface Greeter {
+    @CachedResult(maxEntries = 2, invalidateOn = "GreetingsChanged")
+    String greet(String name);
+  }
+
+  private final AtomicInteger invocations = new AtomicInteger();
+  private final List<Object> replies = new ArrayList<Object>();
+
+  private ServerMessageBusImpl bus;
+  private CachedValueReplyRPCEndpointCallback endpoint;
+
+  @Before
+  public void createEndpoint() throws Exception {
+    MappingContextSingleton.get();
+    bus = new ServerMessageBusImpl(new MockErraiService(), new MockErraiServiceConfigurator());
+
+    final Greeter greeter = new Greeter() {
+      @Override
+      public String greet(final String name) {
+        return "Hello, " + name + " (" + invocations.incrementAndGet() + ")";
+      }
+    };
+    endpoint = (CachedValueReplyRPCEndpointCallback) RPCEndpointFactory.createBoundEndpointFor(
+        new ServiceInstanceProvider() {
+          @Override
+          public Object get(final Message message) {
+            return greeter;
+          }
+        }, Greeter.class.getMethod("greet", String.class), bus);
+
+    bus.subscribe("GreeterReply", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        replies.add(message.get(Object.class, "MethodReply"));
+      }
+    });
+  }
+
+  @After
+  public void stopBus() {
+    bus.stop();
+  }
+
+  private Message call(final String name, final boolean fromClient) {
+    final Message message = CommandMessage.create()
+        .set(MessageParts.ReplyTo, "GreeterReply")
+        .set("MethodParms", Arrays.<Object>asList(name));
+    if (fromClient) {
+      message.setFlag(RoutingFlag.FromRemote);
+    }
+    return message;
+  }
+
+  @Test
+  public void testClientCallsAreAnsweredFromCache() {
+    endpoint.callback(call("Alice", true));
+    endpoint.callback(call("Alice", true));
+    endpoint.callback(call("Bob", true));
+
+    assertEquals(2, invocations.get());
+    assertEquals(2, endpoint.getCachedResultCount());
+    assertEquals(3, replies.size());
+    assertTrue(replies.get(0) instanceof EncodedValue);
+    assertEquals("\"Hello, Alice (1)\"", ((EncodedValue) replies.get(0)).getJson());
+    assertEquals(replies.get(0), replies.get(1));
+  }
+
+  @Test
+  public void testServerCallsBypassCache() {
+    endpoint.callback(call("Alice", false));
+    endpoint.callback(call("Alice", false));
+
+    assertEquals(2, invocations.get());
+    assertEquals(Arrays.<Object>asList("Hello, Alice (1)", "Hello, Alice (2)"), replies);
+  }
+
+  @Test
+  public void testMessageToInvalidationSubjectClearsCache() {
+    endpoint.callback(call("Alice", true));
+    MessageBuilder.createMessage()
+        .toSubject("GreetingsChanged")
+        .signalling()
+        .noErrorHandling()
+        .sendNowWith(bus);
+    endpoint.callback(call("Alice", true));
+
+    assertEquals(2, invocations.get());
+    assertEquals("\"Hello, Alice (2)\"", ((EncodedValue) replies.get(1)).getJson());
+  }
+}
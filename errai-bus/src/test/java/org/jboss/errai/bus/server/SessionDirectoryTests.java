@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.bus.server.cluster.SessionDirectory;
+import org.junit.Test;
+
+public class SessionDirectoryTests {
+  private static final List<String> EIGHT_NODES
+      = Arrays.asList("node1", "node2", "node3", "node4", "node5", "node6", "node7", "node8");
+
+  @Test
+  public void testReplicasAreDistinctAndAgreedOn() {
+    final SessionDirectory<String> a = new SessionDirectory<String>("node1");
+    final SessionDirectory<String> b = new SessionDirectory<String>("node5");
+    a.membersChanged(EIGHT_NODES);
+    b.membersChanged(EIGHT_NODES);
+
+    for (int i = 0; i < 1000; i++) {
+      final String sessionId = "session-" + i;
+      final List<String> replicas = a.getReplicas(sessionId);
+      assertEquals(2, replicas.size());
+      assertFalse(replicas.get(0).equals(replicas.get(1)));
+      assertEquals(replicas, b.getReplicas(sessionId));
+    }
+  }
+
+  @Test
+  public void testSingleMemberIsItsOwnReplica() {
+    final SessionDirectory<String> directory = new SessionDirectory<String>("node1");
+    directory.membersChanged(Arrays.asList("node1"));
+
+    assertEquals(Arrays.asList("node1"), directory.getReplicas("session"));
+    assertTrue(directory.isReplica("session"));
+  }
+
+  @Test
+  public void testMemberJoiningOnlyMovesShareOfSessions() {
+    final SessionDirectory<String> directory = new SessionDirectory<String>("node1");
+    directory.membersChanged(EIGHT_NODES.subList(0, 7));
+
+    final int sessions = 10000;
+    for (int i = 0; i < sessions; i++) {
+      directory.addOwned("session-" + i);
+    }
+
+    final Map<String, List<String>> republish = directory.membersChanged(EIGHT_NODES);
+    assertEquals(1, republish.size());
+
+    // each session has two replicas, so the new member takes over about 2/8 of the entries.
+    final int moved = republish.get("node8").size();
+    assertTrue("too many sessions moved: " + moved, moved < sessions / 2);
+    assertTrue("too few sessions moved: " + moved, moved > sessions / 8);
+  }
+
+  @Test
+  public void testEntriesOfDepartedOwnersAreDropped() {
+    final SessionDirectory<String> directory = new SessionDirectory<String>("node1");
+    directory.membersChanged(Arrays.asList("node1", "node2"));
+
+    directory.put("session", "node2");
+    assertEquals("node2", directory.getOwner("session"));
+
+    directory.membersChanged(Arrays.asList("node1", "node3"));
+    assertNull(directory.getOwner("session"));
+  }
+
+  @Test
+  public void testReleaseDoesNotRemoveNewOwner() {
+    final SessionDirectory<String> directory = new SessionDirectory<String>("node1");
+    directory.membersChanged(EIGHT_NODES);
+
+    directory.put("session", "node2");
+    directory.put("session", "node3");
+    directory.remove("session", "node2");
+    assertEquals("node3", directory.getOwner("session"));
+
+    directory.addOwned("mine");
+    assertEquals("node1", directory.getOwner("mine"));
+    assertTrue(directory.removeOwned("mine"));
+    assertNull(directory.getOwner("mine"));
+  }
+}
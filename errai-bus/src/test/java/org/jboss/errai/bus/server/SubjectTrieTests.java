@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.client.util.SubjectPatterns;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.mock.MockErraiServiceConfigurator;
+import org.junit.Test;
+
+public class SubjectTrieTests {
+  private static class NamedCallback implements MessageCallback {
+    private final String name;
+
+    private NamedCallback(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void callback(final Message message) {
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static List<String> receivers(final DeliveryPlan plan) {
+    final List<String> names = new ArrayList<String>();
+    for (final MessageCallback callback : plan.getDeliverTo()) {
+      names.add(callback.toString());
+    }
+    Collections.sort(names);
+    return names;
+  }
+
+  private static DeliveryPlan plan(final String name) {
+    return DeliveryPlan.newDeliveryPlan(new NamedCallback(name));
+  }
+
+  @Test
+  public void testPatternsAreRecognized() {
+    assertTrue(SubjectTrie.isPattern("Orders.*"));
+    assertTrue(SubjectTrie.isPattern("Orders.*.Created"));
+    assertTrue(SubjectTrie.isPattern("Orders.>"));
+    assertFalse(SubjectTrie.isPattern("Orders.>.Created"));
+    assertFalse(SubjectTrie.isPattern("Orders.Created"));
+    assertFalse(SubjectTrie.isPattern("org.jboss.errai.Service"));
+  }
+
+  @Test
+  public void testPatternsMatchSubjects() {
+    assertTrue(SubjectPatterns.matches("Orders.*", "Orders.EU"));
+    assertFalse(SubjectPatterns.matches("Orders.*", "Orders.EU.Created"));
+    assertFalse(SubjectPatterns.matches("Orders.*", "Orders"));
+    assertTrue(SubjectPatterns.matches("Orders.*.Created", "Orders.EU.Created"));
+    assertFalse(SubjectPatterns.matches("Orders.*.Created", "Orders.EU.Deleted"));
+    assertTrue(SubjectPatterns.matches("Orders.>", "Orders.EU.Created"));
+    assertFalse(SubjectPatterns.matches("Orders.>", "Orders"));
+    assertFalse(SubjectPatterns.matches("Orders.>", "Invoices.EU"));
+  }
+
+  @Test
+  public void testRootPatternsAreRecognized() {
+    assertTrue(SubjectPatterns.isRootPattern(">"));
+    assertTrue(SubjectPatterns.isRootPattern("*"));
+    assertTrue(SubjectPatterns.isRootPattern("*.Created"));
+    assertFalse(SubjectPatterns.isRootPattern("Orders.>"));
+    assertFalse(SubjectPatterns.isRootPattern("Orders.*"));
+  }
+
+  @Test
+  public void testRemoteSubscriptionsToRootPatternsAreRefused() {
+    final ServerMessageBusImpl bus = new ServerMessageBusImpl(new MockErraiService(), new MockErraiServiceConfigurator());
+    try {
+      final QueueSession session = MockQueueSessionFactory.newSession("client");
+      for (final String pattern : Arrays.asList(">", "*", "*.Created")) {
+        bus.remoteSubscribe(session, null, pattern);
+        assertFalse(pattern, bus.hasRemoteSubscriptions(pattern));
+      }
+    }
+    finally {
+      bus.stop();
+    }
+  }
+
+  @Test
+  public void testWildcardsMatch() {
+    final SubjectTrie trie = new SubjectTrie();
+    trie.put("Orders.*", plan("one"));
+    trie.put("Orders.*.Created", plan("created"));
+    trie.put("Orders.>", plan("all"));
+    trie.put("*.EU.*", plan("eu"));
+
+    assertEquals(Arrays.asList("all", "one"), receivers(trie.resolve("Orders.EU")));
+    assertEquals(Arrays.asList("all", "created", "eu"), receivers(trie.resolve("Orders.EU.Created")));
+    assertEquals(Arrays.asList("all"), receivers(trie.resolve("Orders.EU.Created.Today")));
+    assertNull(trie.resolve("Orders"));
+    assertNull(trie.resolve("Invoices.US"));
+  }
+
+  @Test
+  public void testResolvedPlansFollowUpdates() {
+    final SubjectTrie trie = new SubjectTrie();
+    trie.put("Orders.*", plan("one"));
+    assertEquals(Arrays.asList("one"), receivers(trie.resolve("Orders.42")));
+
+    trie.put("Orders.>", plan("all"));
+    assertEquals(Arrays.asList("all", "one"), receivers(trie.resolve("Orders.42")));
+
+    trie.put("Orders.*", null);
+    assertEquals(Arrays.asList("all"), receivers(trie.resolve("Orders.42")));
+    assertEquals(Arrays.asList("Orders.>"), trie.getMatchingPatterns("Orders.42"));
+
+    trie.put("Orders.>", new DeliveryPlan());
+    assertNull(trie.resolve("Orders.42"));
+    assertTrue(trie.isEmpty());
+  }
+
+  @Test
+  public void testBusDeliversToPatternSubscribers() {
+    final ServerMessageBusImpl bus = new ServerMessageBusImpl(new MockErraiService(), new MockErraiServiceConfigurator());
+    try {
+      final List<String> received = new ArrayList<String>();
+      bus.subscribe("Orders.>", new MessageCallback() {
+        @Override
+        public void callback(final Message message) {
+          received.add("all:" + message.getSubject());
+        }
+      });
+      bus.subscribe("Orders.42", new MessageCallback() {
+        @Override
+        public void callback(final Message message) {
+          received.add("exact:" + message.getSubject());
+        }
+      });
+
+      bus.sendGlobal(CommandMessage.create().toSubject("Orders.42"));
+      bus.sendGlobal(CommandMessage.create().toSubject("Orders.7.Created"));
+
+      Collections.sort(received);
+      assertEquals(Arrays.asList("all:Orders.42", "all:Orders.7.Created", "exact:Orders.42"), received);
+    }
+    finally {
+      bus.stop();
+    }
+  }
+}
@@ -635,6 +635,71 @@ public class TransmissionBufferTests extends TestCase {
     System.out.println(System.currentTimeMillis() - start);
   }
 
+  public void testGroupVisibleColors() throws IOException {
+    final BufferColor colorA = BufferColor.getNewColor();
+    final BufferColor colorB = BufferColor.getNewColor();
+    final BufferColor colorC = BufferColor.getNewColor();
+
+    final BufferColor groupColor = BufferColor.getNewGroupColor();
+
+    final TransmissionBuffer buffer = TransmissionBuffer.create(5, 2500);
+
+    colorA.joinGroup(groupColor, buffer.getHeadSequence());
+    colorB.joinGroup(groupColor, buffer.getHeadSequence());
+
+    final String stringA = "12345678";
+    final String stringB = "ABCDEFGH";
+    final String stringG = "IJKLMNOP";
+
+    for (int i = 0; i < 100000; i++) {
+      ByteArrayInputStream bInputStream = new ByteArrayInputStream(stringA.getBytes());
+      buffer.write(stringA.length(), bInputStream, colorA);
+
+      bInputStream = new ByteArrayInputStream(stringB.getBytes());
+      buffer.write(stringB.length(), bInputStream, colorB);
+
+      bInputStream = new ByteArrayInputStream(stringG.getBytes());
+      buffer.write(stringG.length(), bInputStream, groupColor);
+
+      ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+      buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorA);
+      assertEquals(stringA + stringG, new String(bOutputStream.toByteArray()));
+
+      bOutputStream = new ByteArrayOutputStream();
+      buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorB);
+      assertEquals(stringB + stringG, new String(bOutputStream.toByteArray()));
+
+      if (i == 0) {
+        bOutputStream = new ByteArrayOutputStream();
+        buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorC);
+        assertEquals("", new String(bOutputStream.toByteArray()));
+      }
+    }
+  }
+
+  public void testGroupDataWrittenBeforeJoiningIsNotVisible() throws IOException {
+    final BufferColor colorA = BufferColor.getNewColor();
+    final BufferColor groupColor = BufferColor.getNewGroupColor();
+
+    final TransmissionBuffer buffer = TransmissionBuffer.create(5, 2500);
+
+    buffer.write(4, new ByteArrayInputStream("1234".getBytes()), groupColor);
+    colorA.joinGroup(groupColor, buffer.getHeadSequence());
+    buffer.write(4, new ByteArrayInputStream("ABCD".getBytes()), groupColor);
+
+    ByteArrayOutputStream bOutputStream = new ByteArrayOutputStream();
+    buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorA);
+    assertEquals("ABCD", new String(bOutputStream.toByteArray()));
+
+    colorA.leaveGroup(groupColor);
+    assertFalse(colorA.isMemberOf(groupColor));
+    buffer.write(4, new ByteArrayInputStream("EFGH".getBytes()), groupColor);
+
+    bOutputStream = new ByteArrayOutputStream();
+    buffer.read(new OutputStreamWriteAdapter(bOutputStream), colorA);
+    assertEquals("", new String(bOutputStream.toByteArray()));
+  }
+
   public void testBufferColorCyclesAroundCorrectly() throws IOException {
     final int loopMax = Short.MAX_VALUE * 2 + 10;
 
@@ -646,6 +711,38 @@ public class TransmissionBufferTests extends TestCase {
     }
   }
 
+  public void testSessionColorsNeverCollideWithGroupColors() {
+    final BufferColor groupColor = BufferColor.getNewGroupColor();
+    assertTrue(groupColor.isGroupColor());
+
+    final int loopMax = Short.MAX_VALUE * 2 + 10;
+    for (int i = 0; i < loopMax; i++) {
+      final BufferColor color = BufferColor.getNewColor();
+      if (color.isGroupColor() || color.getColor() == groupColor.getColor()) {
+        fail("a new session color should never be a group color!");
+      }
+    }
+    BufferColor.releaseGroupColor(groupColor);
+  }
+
+  public void testGroupColorsAreNotReusedWhileLive() {
+    final List<BufferColor> groupColors = new ArrayList<BufferColor>();
+    final Set<Short> distinct = new HashSet<Short>();
+
+    BufferColor groupColor;
+    while ((groupColor = BufferColor.getNewGroupColor()) != null) {
+      assertTrue("group color handed out twice", distinct.add(groupColor.getColor()));
+      groupColors.add(groupColor);
+    }
+
+    BufferColor.releaseGroupColor(groupColors.get(0));
+    assertEquals(groupColors.get(0).getColor(), BufferColor.getNewGroupColor().getColor());
+
+    for (final BufferColor color : groupColors) {
+      BufferColor.releaseGroupColor(color);
+    }
+  }
+
   public static String createGiantString() {
     final int size = TransmissionBuffer.DEFAULT_SEGMENT_SIZE * 3;
     final StringBuilder sb = new StringBuilder(size + 10);
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
+import org.jboss.errai.bus.server.mock.MockErraiService;
+import org.jboss.errai.bus.server.mock.MockErraiServiceConfigurator;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiServiceConfigurator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VirtualThreadDispatcherTests {
+  private final List<Runnable> shutdownHooks = new ArrayList<Runnable>();
+  private final Map<String, String> properties = new HashMap<String, String>();
+
+  private ServerMessageBusImpl bus;
+  private VirtualThreadDispatcher dispatcher;
+
+  @Before
+  public void createDispatcher() {
+    properties.put(ErraiConfigAttribs.DISPATCHER_SUBJECT_CONCURRENCY.getAttributeName(), "Limited=2");
+    properties.put("errai.async.thread_pool_size", "4");
+
+    final ErraiServiceConfigurator config = new MockErraiServiceConfigurator() {
+      @Override
+      public boolean hasProperty(final String key) {
+        return properties.containsKey(key);
+      }
+
+      @Override
+      public String getProperty(final String key) {
+        return properties.get(key);
+      }
+
+      @Override
+      public Integer getIntProperty(final String key) {
+        return properties.containsKey(key) ? Integer.valueOf(properties.get(key)) : null;
+      }
+
+      @Override
+      public void setProperty(final String key, final String value) {
+        properties.put(key, value);
+      }
+    };
+
+    bus = new ServerMessageBusImpl(new MockErraiService(), config);
+    dispatcher = new VirtualThreadDispatcher(new MockErraiService<Object>() {
+      @Override
+      public ServerMessageBus getBus() {
+        return bus;
+      }
+
+      @Override
+      public ErraiServiceConfigurator getConfiguration() {
+        return config;
+      }
+
+      @Override
+      public void addShutdownHook(final Runnable runnable) {
+        shutdownHooks.add(runnable);
+      }
+    });
+  }
+
+  @After
+  public void shutdown() {
+    for (final Runnable hook : shutdownHooks) {
+      hook.run();
+    }
+    bus.stop();
+  }
+
+  @Test
+  public void testMessagesOfOneSessionAreDeliveredInOrder() throws Exception {
+    final int sessions = 20;
+    final int messagesPerSession = 200;
+
+    final Map<String, List<Integer>> received = new ConcurrentHashMap<String, List<Integer>>();
+    final CountDownLatch latch = new CountDownLatch(sessions * messagesPerSession);
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    bus.subscribe("Ordered", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        final int running = concurrent.incrementAndGet();
+        synchronized (maxConcurrent) {
+          maxConcurrent.set(Math.max(maxConcurrent.get(), running));
+        }
+        try {
+          Thread.sleep(1);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        received.get(message.get(String.class, "Client")).add(message.get(Integer.class, "Seq"));
+        concurrent.decrementAndGet();
+        latch.countDown();
+      }
+    });
+
+    final List<QueueSession> queueSessions = new ArrayList<QueueSession>();
+    for (int i = 0; i < sessions; i++) {
+      final QueueSession session = MockQueueSessionFactory.newSession();
+      queueSessions.add(session);
+      received.put(session.getSessionId(), Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+
+    for (int seq = 0; seq < messagesPerSession; seq++) {
+      for (final QueueSession session : queueSessions) {
+        dispatcher.dispatchGlobal(CommandMessage.create()
+            .toSubject("Ordered")
+            .set("Client", session.getSessionId())
+            .set("Seq", seq)
+            .setResource("Session", session));
+      }
+    }
+
+    assertTrue("messages were not delivered in time", latch.await(60, TimeUnit.SECONDS));
+
+    for (final List<Integer> sequence : received.values()) {
+      assertEquals(messagesPerSession, sequence.size());
+      for (int i = 0; i < messagesPerSession; i++) {
+        assertEquals(Integer.valueOf(i), sequence.get(i));
+      }
+    }
+    assertTrue("sessions were not delivered concurrently", maxConcurrent.get() > 1);
+  }
+
+  @Test
+  public void testSubjectConcurrencyLimit() throws Exception {
+    final int messages = 50;
+    final CountDownLatch latch = new CountDownLatch(messages);
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    bus.subscribe("Limited", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        final int running = concurrent.incrementAndGet();
+        synchronized (maxConcurrent) {
+          maxConcurrent.set(Math.max(maxConcurrent.get(), running));
+        }
+        try {
+          Thread.sleep(5);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        concurrent.decrementAndGet();
+        latch.countDown();
+      }
+    });
+
+    for (int i = 0; i < messages; i++) {
+      dispatcher.dispatchGlobal(CommandMessage.create()
+          .toSubject("Limited")
+          .setResource("Session", MockQueueSessionFactory.newSession()));
+    }
+
+    assertTrue("messages were not delivered in time", latch.await(60, TimeUnit.SECONDS));
+    assertEquals(2, maxConcurrent.get());
+  }
+
+  @Test
+  public void testPlatformThreadPoolIsBounded() throws Exception {
+    final int messages = 40;
+    final CountDownLatch latch = new CountDownLatch(messages);
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    bus.subscribe("Blocking", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        final int running = concurrent.incrementAndGet();
+        synchronized (maxConcurrent) {
+          maxConcurrent.set(Math.max(maxConcurrent.get(), running));
+        }
+        try {
+          Thread.sleep(20);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        concurrent.decrementAndGet();
+        latch.countDown();
+      }
+    });
+
+    for (int i = 0; i < messages; i++) {
+      dispatcher.dispatchGlobal(CommandMessage.create()
+          .toSubject("Blocking")
+          .setResource("Session", MockQueueSessionFactory.newSession()));
+    }
+
+    assertTrue("messages were not delivered in time", latch.await(60, TimeUnit.SECONDS));
+    if (!dispatcher.isUsingVirtualThreads()) {
+      assertTrue("more deliveries than pool threads: " + maxConcurrent.get(), maxConcurrent.get() <= 4);
+    }
+  }
+
+  @Test
+  public void testDeliveriesOverTheLimitDoNotHoldThreads() throws Exception {
+    final int limited = 10;
+    final CountDownLatch gate = new CountDownLatch(1);
+    final CountDownLatch limitedDelivered = new CountDownLatch(limited);
+    final CountDownLatch otherDelivered = new CountDownLatch(1);
+
+    bus.subscribe("Limited", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        try {
+          gate.await(60, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        limitedDelivered.countDown();
+      }
+    });
+
+    bus.subscribe("Other", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        otherDelivered.countDown();
+      }
+    });
+
+    // two deliveries hold the permits of the subject; the other eight must not take up the four pool threads.
+    for (int i = 0; i < limited; i++) {
+      dispatcher.dispatchGlobal(CommandMessage.create()
+          .toSubject("Limited")
+          .setResource("Session", MockQueueSessionFactory.newSession()));
+    }
+    dispatcher.dispatchGlobal(CommandMessage.create()
+        .toSubject("Other")
+        .setResource("Session", MockQueueSessionFactory.newSession()));
+
+    try {
+      assertTrue("delivery to another subject was blocked", otherDelivered.await(10, TimeUnit.SECONDS));
+    }
+    finally {
+      gate.countDown();
+    }
+    assertTrue("messages were not delivered in time", limitedDelivered.await(60, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testMessagesAreDeliveredWhenTheDeliveryQueueIsFull() throws Exception {
+    shutdown();
+    shutdownHooks.clear();
+    properties.put("errai.async.delivery.queue_size", "2");
+    createDispatcher();
+
+    final int messages = 40;
+    final CountDownLatch latch = new CountDownLatch(messages);
+
+    bus.subscribe("Slow", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        try {
+          Thread.sleep(5);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        latch.countDown();
+      }
+    });
+
+    for (int i = 0; i < messages; i++) {
+      dispatcher.dispatchGlobal(CommandMessage.create()
+          .toSubject("Slow")
+          .setResource("Session", MockQueueSessionFactory.newSession()));
+    }
+
+    assertTrue("messages were not delivered in time", latch.await(60, TimeUnit.SECONDS));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSubjectLimitIsRejected() {
+    VirtualThreadDispatcher.parseSubjectLimits("Foo=4,Bar");
+  }
+}
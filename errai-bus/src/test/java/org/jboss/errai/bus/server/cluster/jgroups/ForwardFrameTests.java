@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.cluster.jgroups;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ForwardFrameTests {
+
+  @Test
+  public void testFrameRoundTrip() throws IOException {
+    final ForwardFrame frame = new ForwardFrame("bus-1", Arrays.asList(
+        new ForwardFrame.Entry("session-1", "message-1", "{\"ToSubject\":\"Orders\",\"Value\":\"é中\"}"),
+        new ForwardFrame.Entry(null, "message-2", "{\"ToSubject\":\"Global\"}"),
+        new ForwardFrame.Entry("session-3", null, "{}"),
+        new ForwardFrame.Entry(null, null, "")));
+
+    final byte[] encoded = frame.encode();
+    assertEquals(ForwardFrame.FRAME, ForwardFrame.kindOf(encoded, 0, encoded.length));
+
+    final ForwardFrame decoded = ForwardFrame.decode(encoded, 0, encoded.length);
+    assertEquals("bus-1", decoded.busId);
+    assertEquals(frame.entries.size(), decoded.entries.size());
+
+    for (int i = 0; i < frame.entries.size(); i++) {
+      final ForwardFrame.Entry expected = frame.entries.get(i);
+      final ForwardFrame.Entry actual = decoded.entries.get(i);
+      assertEquals(expected.sessionId, actual.sessionId);
+      assertEquals(expected.messageId, actual.messageId);
+      assertEquals(expected.getPayload(), actual.getPayload());
+    }
+    assertNull(decoded.entries.get(1).sessionId);
+    assertNull(decoded.entries.get(2).messageId);
+  }
+
+  @Test
+  public void testFrameDecodesAtOffset() throws IOException {
+    final byte[] encoded = new ForwardFrame("bus-1",
+        Arrays.asList(new ForwardFrame.Entry("session-1", "message-1", "{\"Value\":1}"))).encode();
+
+    final byte[] buffer = new byte[encoded.length + 10];
+    System.arraycopy(encoded, 0, buffer, 5, encoded.length);
+
+    final ForwardFrame decoded = ForwardFrame.decode(buffer, 5, encoded.length);
+    assertEquals("{\"Value\":1}", decoded.entries.get(0).getPayload());
+  }
+
+  @Test
+  public void testCommandRoundTrip() throws IOException {
+    final String payload = "{\"ToSubject\":\"local:ErraiClusterService\",\"SessId\":\"é\"}";
+    final byte[] encoded = ForwardFrame.encodeCommand(payload);
+
+    assertEquals(ForwardFrame.COMMAND, ForwardFrame.kindOf(encoded, 0, encoded.length));
+    assertEquals(payload, ForwardFrame.decodeCommand(encoded, 0, encoded.length));
+  }
+
+  @Test
+  public void testCommandIsNotDecodedAsFrame() {
+    final byte[] encoded = ForwardFrame.encodeCommand("{}");
+    try {
+      ForwardFrame.decode(encoded, 0, encoded.length);
+      fail("decoded a command as a frame");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testTruncatedFrameIsRejected() {
+    final byte[] encoded = new ForwardFrame("bus-1",
+        Arrays.asList(new ForwardFrame.Entry("session-1", "message-1", "{\"Value\":1}"))).encode();
+    try {
+      ForwardFrame.decode(encoded, 0, encoded.length - 3);
+      fail("decoded a truncated frame");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+}
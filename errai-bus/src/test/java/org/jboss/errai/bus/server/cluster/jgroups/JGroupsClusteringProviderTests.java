@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.bus.server.cluster.jgroups;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.bus.server.InVMBusUtil;
+import org.jboss.errai.bus.server.cluster.ClusterParts;
+import org.jboss.errai.bus.server.service.ErraiConfigAttribs;
+import org.jboss.errai.bus.server.service.ErraiService;
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+import org.jgroups.JChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JGroupsClusteringProviderTests {
+  private ErraiService<?> service;
+  private JChannel peer;
+
+  @Before
+  public void setUp() throws Exception {
+    MappingContextSingleton.get();
+    service = InVMBusUtil.startService(1);
+    peer = new JChannel("test-stack.xml");
+    peer.connect(ErraiConfigAttribs.CLUSTER_NAME.get(service.getConfiguration()));
+  }
+
+  @After
+  public void tearDown() {
+    peer.close();
+    service.stopService();
+  }
+
+  @Test
+  public void testCommandMessageIsReceivedFromPeer() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicReference<Message> received = new AtomicReference<Message>();
+    service.getBus().subscribe("RoundTripService", new MessageCallback() {
+      @Override
+      public void callback(final Message message) {
+        received.set(message);
+        latch.countDown();
+      }
+    });
+
+    final Message message = CommandMessage.create()
+        .toSubject("RoundTripService")
+        .set(ClusterParts.BusId, "peer-bus")
+        .set(MessageParts.Value, "é中");
+    final byte[] command = ForwardFrame.encodeCommand(ErraiProtocol.encodePayload(message.getParts()));
+    peer.send(new org.jgroups.Message(null, null, command));
+
+    assertTrue("message was not received", latch.await(10, TimeUnit.SECONDS));
+    assertEquals("é中", received.get().get(String.class, MessageParts.Value));
+    assertEquals("peer-bus", received.get().get(String.class, ClusterParts.BusId));
+  }
+}
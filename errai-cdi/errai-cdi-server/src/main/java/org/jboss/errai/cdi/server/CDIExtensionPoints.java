@@ -22,6 +22,7 @@ import static org.jboss.errai.cdi.server.CDIServerUtil.lookupRPCBean;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -57,6 +58,7 @@ import org.jboss.errai.bus.client.api.messaging.RequestDispatcher;
 import org.jboss.errai.bus.server.AsyncDispatcher;
 import org.jboss.errai.bus.server.ServerMessageBusImpl;
 import org.jboss.errai.bus.server.SimpleDispatcher;
+import org.jboss.errai.bus.server.annotations.CachedResult;
 import org.jboss.errai.bus.server.annotations.Remote;
 import org.jboss.errai.bus.server.annotations.Service;
 import org.jboss.errai.bus.server.io.RPCEndpointFactory;
@@ -70,6 +72,7 @@ import org.jboss.errai.bus.server.util.ServiceMethodParser;
 import org.jboss.errai.bus.server.util.ServiceParser;
 import org.jboss.errai.bus.server.util.ServiceTypeParser;
 import org.jboss.errai.cdi.server.events.AnyEventObserver;
+import org.jboss.errai.cdi.server.events.CacheInvalidationObserver;
 import org.jboss.errai.cdi.server.events.EventDispatcher;
 import org.jboss.errai.cdi.server.events.EventRoutingTable;
 import org.jboss.errai.cdi.server.events.ShutdownEventObserver;
@@ -295,6 +298,9 @@ public class CDIExtensionPoints implements Extension {
 
     // Register observers
     abd.addObserverMethod(new ShutdownEventObserver(managedTypes, bus));
+    for (final Class<?> eventType : getCacheInvalidationEvents()) {
+      abd.addObserverMethod(new CacheInvalidationObserver(eventType, bus));
+    }
 
     // subscribe service and rpc endpoints
     subscribeServices(bm, bus);
@@ -309,6 +315,22 @@ public class CDIExtensionPoints implements Extension {
     bus.subscribe(CDI.SERVER_DISPATCHER_SUBJECT, eventDispatcher);
   }
 
+  /**
+   * Returns the event types which clear the cached results of RPC methods.
+   */
+  private Set<Class<?>> getCacheInvalidationEvents() {
+    final Set<Class<?>> eventTypes = new HashSet<>();
+    for (final Class<?> remoteInterfaceType : managedTypes.getRemoteInterfaces()) {
+      for (final Method method : remoteInterfaceType.getMethods()) {
+        final CachedResult cachedResult = method.getAnnotation(CachedResult.class);
+        if (cachedResult != null) {
+          eventTypes.addAll(Arrays.asList(cachedResult.invalidateOnEvents()));
+        }
+      }
+    }
+    return eventTypes;
+  }
+
   /**
    * Registers beans (type and method services) as they become available from the bean manager.
    */
@@ -437,7 +459,7 @@ public class CDIExtensionPoints implements Extension {
       if (ProxyUtil.isMethodInInterface(remoteIface, method)) {
 
         epts.put(ProxyUtil.createCallSignature(remoteIface, method),
-                RPCEndpointFactory.createEndpointFor(genericSvc, method, bus));
+                RPCEndpointFactory.createBoundEndpointFor(genericSvc, method, bus));
       }
     }
 
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2009 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.cdi.server.events;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.enterprise.event.Reception;
+import javax.enterprise.event.TransactionPhase;
+import javax.enterprise.inject.spi.ObserverMethod;
+
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.server.annotations.CachedResult;
+import org.jboss.errai.bus.server.io.CachedValueReplyRPCEndpointCallback;
+
+/**
+ * Observes the CDI events declared in {@link CachedResult#invalidateOnEvents()}, and clears the caches of the RPC
+ * methods declaring them by sending a message to the invalidation subject of the event type.
+ */
+@SuppressWarnings("rawtypes")
+public class CacheInvalidationObserver implements ObserverMethod {
+  private final Class<?> eventType;
+  private final String subject;
+  private final MessageBus bus;
+
+  public CacheInvalidationObserver(final Class<?> eventType, final MessageBus bus) {
+    this.eventType = eventType;
+    this.subject = CachedValueReplyRPCEndpointCallback.getInvalidationSubject(eventType);
+    this.bus = bus;
+  }
+
+  @Override
+  public Class<?> getBeanClass() {
+    return CacheInvalidationObserver.class;
+  }
+
+  @Override
+  public Type getObservedType() {
+    return eventType;
+  }
+
+  @Override
+  public Set<Annotation> getObservedQualifiers() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Reception getReception() {
+    return Reception.ALWAYS;
+  }
+
+  @Override
+  public TransactionPhase getTransactionPhase() {
+    return TransactionPhase.IN_PROGRESS;
+  }
+
+  @Override
+  public void notify(final Object event) {
+    MessageBuilder.createMessage()
+        .toSubject(subject)
+        .signalling()
+        .noErrorHandling()
+        .sendNowWith(bus);
+  }
+}
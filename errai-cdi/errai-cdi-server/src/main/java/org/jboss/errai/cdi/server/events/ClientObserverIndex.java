@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.cdi.server.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
+
+/**
+ * The active client observers of the {@link EventDispatcher}, by event type. Observers with an {@link EventFilter} are
+ * additionally indexed by the allowed values of the first property they filter on. Firing an event reads each indexed
+ * property once, and only evaluates the filters of the observers which allow its value, so a thousand clients
+ * filtering on their own tenant id cost a single lookup rather than a thousand filter evaluations.
+ * <p/>
+ * Lookups don't lock. Adding and removing observers synchronize on the index.
+ */
+public class ClientObserverIndex {
+  private final ConcurrentMap<Class<?>, ObserversOfType> observers = new ConcurrentHashMap<Class<?>, ObserversOfType>();
+
+  public boolean contains(final ClientObserverMetadata observer) {
+    final ObserversOfType observersOfType = observers.get(observer.getEventType());
+    return observersOfType != null && observersOfType.all.contains(observer);
+  }
+
+  public boolean isEmpty() {
+    return observers.isEmpty();
+  }
+
+  public synchronized void add(final ClientObserverMetadata observer) {
+    ObserversOfType observersOfType = observers.get(observer.getEventType());
+    if (observersOfType == null) {
+      final ObserversOfType newObservers = new ObserversOfType();
+      observersOfType = observers.putIfAbsent(observer.getEventType(), newObservers);
+      if (observersOfType == null) {
+        observersOfType = newObservers;
+      }
+    }
+    observersOfType.add(observer);
+  }
+
+  /**
+   * Removes the given observer, along with the index entries left empty by its removal.
+   */
+  public synchronized void remove(final ClientObserverMetadata observer) {
+    final ObserversOfType observersOfType = observers.get(observer.getEventType());
+    if (observersOfType != null) {
+      observersOfType.remove(observer);
+      if (observersOfType.all.isEmpty()) {
+        observers.remove(observer.getEventType());
+      }
+    }
+  }
+
+  /**
+   * Returns the observers the event has to be sent to.
+   *
+   * @param qualifiers
+   *     the qualifiers of the event, as returned by {@link ClientObserverMetadata#getQualifiers(javax.enterprise.inject.spi.EventMetadata)}.
+   */
+  public List<ClientObserverMetadata> getMatchingObservers(final Object event, final Set<String> qualifiers) {
+    final ObserversOfType observersOfType = observers.get(event.getClass());
+    if (observersOfType == null) {
+      return Collections.emptyList();
+    }
+    return observersOfType.getMatchingObservers(event, qualifiers);
+  }
+
+  private static class ObserversOfType {
+    private final Set<ClientObserverMetadata> all =
+            Collections.newSetFromMap(new ConcurrentHashMap<ClientObserverMetadata, Boolean>());
+    private final Set<ClientObserverMetadata> unfiltered =
+            Collections.newSetFromMap(new ConcurrentHashMap<ClientObserverMetadata, Boolean>());
+    private final ConcurrentMap<String, PropertyIndex> filtered = new ConcurrentHashMap<String, PropertyIndex>();
+
+    private void add(final ClientObserverMetadata observer) {
+      if (!all.add(observer)) {
+        return;
+      }
+
+      final EventFilter filter = observer.getFilter();
+      if (filter == null) {
+        unfiltered.add(observer);
+        return;
+      }
+
+      final Map.Entry<String, Set<String>> indexed = filter.getConstraints().entrySet().iterator().next();
+      PropertyIndex index = filtered.get(indexed.getKey());
+      if (index == null) {
+        final PropertyIndex newIndex =
+                new PropertyIndex(EventPropertyAccessor.forProperty(observer.getEventType(), indexed.getKey()));
+        index = filtered.putIfAbsent(indexed.getKey(), newIndex);
+        if (index == null) {
+          index = newIndex;
+        }
+      }
+      for (final String value : indexed.getValue()) {
+        index.add(value, observer);
+      }
+    }
+
+    private void remove(final ClientObserverMetadata observer) {
+      if (!all.remove(observer)) {
+        return;
+      }
+
+      final EventFilter filter = observer.getFilter();
+      if (filter == null) {
+        unfiltered.remove(observer);
+        return;
+      }
+
+      final Map.Entry<String, Set<String>> indexed = filter.getConstraints().entrySet().iterator().next();
+      final PropertyIndex index = filtered.get(indexed.getKey());
+      if (index != null) {
+        for (final String value : indexed.getValue()) {
+          index.remove(value, observer);
+        }
+        if (index.observersByValue.isEmpty()) {
+          filtered.remove(indexed.getKey());
+        }
+      }
+    }
+
+    private List<ClientObserverMetadata> getMatchingObservers(final Object event, final Set<String> qualifiers) {
+      final Class<?> eventType = event.getClass();
+      final List<ClientObserverMetadata> matching = new ArrayList<ClientObserverMetadata>();
+
+      for (final ClientObserverMetadata observer : unfiltered) {
+        if (observer.matches(eventType, qualifiers)) {
+          matching.add(observer);
+        }
+      }
+
+      for (final PropertyIndex index : filtered.values()) {
+        final Set<ClientObserverMetadata> candidates = index.get(event);
+        if (candidates != null) {
+          for (final ClientObserverMetadata observer : candidates) {
+            if (observer.matches(eventType, qualifiers) && observer.matchesFilter(event)) {
+              matching.add(observer);
+            }
+          }
+        }
+      }
+
+      return matching;
+    }
+  }
+
+  private static class PropertyIndex {
+    private final EventPropertyAccessor accessor;
+    private final ConcurrentMap<String, Set<ClientObserverMetadata>> observersByValue =
+            new ConcurrentHashMap<String, Set<ClientObserverMetadata>>();
+
+    private PropertyIndex(final EventPropertyAccessor accessor) {
+      this.accessor = accessor;
+    }
+
+    private void add(final String value, final ClientObserverMetadata observer) {
+      Set<ClientObserverMetadata> observers = observersByValue.get(value);
+      if (observers == null) {
+        final Set<ClientObserverMetadata> newObservers =
+                Collections.newSetFromMap(new ConcurrentHashMap<ClientObserverMetadata, Boolean>());
+        observers = observersByValue.putIfAbsent(value, newObservers);
+        if (observers == null) {
+          observers = newObservers;
+        }
+      }
+      observers.add(observer);
+    }
+
+    private void remove(final String value, final ClientObserverMetadata observer) {
+      final Set<ClientObserverMetadata> observers = observersByValue.get(value);
+      if (observers != null) {
+        observers.remove(observer);
+        if (observers.isEmpty()) {
+          observersByValue.remove(value);
+        }
+      }
+    }
+
+    private Set<ClientObserverMetadata> get(final Object event) {
+      return observersByValue.get(accessor.getValue(event));
+    }
+  }
+}
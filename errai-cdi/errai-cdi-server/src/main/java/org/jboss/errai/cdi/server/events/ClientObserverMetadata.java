@@ -18,12 +18,15 @@ package org.jboss.errai.cdi.server.events;
 
 import java.lang.annotation.Annotation;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.spi.EventMetadata;
 
 import org.jboss.errai.enterprise.client.cdi.api.CDI;
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
 
 /**
  * Represents an active client-side event observer (an observer that at least
@@ -34,10 +37,33 @@ import org.jboss.errai.enterprise.client.cdi.api.CDI;
 public class ClientObserverMetadata {
   private final Class<?> eventType;
   private final Set<String> qualifiers;
+  private final EventFilter filter;
+  private final Map<EventPropertyAccessor, Set<String>> filterConstraints;
 
   public ClientObserverMetadata(final Class<?> eventType, final Set<String> qualifiers) throws ClassNotFoundException {
+    this(eventType, qualifiers, null);
+  }
+
+  /**
+   * @param filter
+   *          the filter of the observer, or null if it has none.
+   * @throws IllegalArgumentException
+   *           if the filter refers to a property the event type doesn't have.
+   */
+  public ClientObserverMetadata(final Class<?> eventType, final Set<String> qualifiers, final EventFilter filter) {
     this.eventType = eventType;
     this.qualifiers = qualifiers;
+    this.filter = filter;
+
+    if (filter == null) {
+      this.filterConstraints = Collections.emptyMap();
+    }
+    else {
+      this.filterConstraints = new LinkedHashMap<EventPropertyAccessor, Set<String>>();
+      for (final Map.Entry<String, Set<String>> constraint : filter.getConstraints().entrySet()) {
+        filterConstraints.put(EventPropertyAccessor.forProperty(eventType, constraint.getKey()), constraint.getValue());
+      }
+    }
   }
 
   public Class<?> getEventType() {
@@ -48,6 +74,10 @@ public class ClientObserverMetadata {
     return qualifiers;
   }
 
+  public EventFilter getFilter() {
+    return filter;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (this == obj)
@@ -69,6 +99,12 @@ public class ClientObserverMetadata {
     }
     else if (!qualifiers.equals(other.qualifiers))
       return false;
+    if (filter == null) {
+      if (other.filter != null)
+        return false;
+    }
+    else if (!filter.equals(other.filter))
+      return false;
     return true;
   }
 
@@ -78,14 +114,20 @@ public class ClientObserverMetadata {
     int result = 1;
     result = prime * result + ((eventType == null) ? 0 : eventType.hashCode());
     result = prime * result + ((qualifiers == null) ? 0 : qualifiers.hashCode());
+    result = prime * result + ((filter == null) ? 0 : filter.hashCode());
     return result;
   }
 
   public boolean matches(Object event, EventMetadata emd) {
-    Class<?> actualEventType = event.getClass();
-    Set<String> actualQualifiers = (emd != null) ? CDI
-            .getQualifiersPart(emd.getQualifiers().toArray(new Annotation[0])) : Collections.<String> emptySet();
+    return matches(event.getClass(), getQualifiers(emd)) && matchesFilter(event);
+  }
 
+  /**
+   * @param actualQualifiers
+   *          the qualifiers of the fired event, as returned by {@link #getQualifiers(EventMetadata)}. Computing them
+   *          once per event, rather than once per observer, is up to the caller.
+   */
+  public boolean matches(Class<?> actualEventType, Set<String> actualQualifiers) {
     // The clients subscribe to every supertype and interface type separately
     // which is why checking for equals is enough here. Otherwise, we would have
     // to check for eventType.isAssignableFrom(actualEventType).
@@ -96,8 +138,28 @@ public class ClientObserverMetadata {
     return typeMatches && qualifiersMatch;
   }
 
+  /**
+   * Evaluates the filter of this observer, if it has one, against the event.
+   */
+  public boolean matchesFilter(Object event) {
+    for (final Map.Entry<EventPropertyAccessor, Set<String>> constraint : filterConstraints.entrySet()) {
+      if (!constraint.getValue().contains(constraint.getKey().getValue(event))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the string representations of the qualifiers of a fired event.
+   */
+  public static Set<String> getQualifiers(EventMetadata emd) {
+    return (emd != null) ? CDI.getQualifiersPart(emd.getQualifiers().toArray(new Annotation[0]))
+            : Collections.<String> emptySet();
+  }
+
   @Override
   public String toString() {
-    return "ClientEventObserver [eventType=" + eventType + ", qualifiers=" + qualifiers + "]";
+    return "ClientEventObserver [eventType=" + eventType + ", qualifiers=" + qualifiers + ", filter=" + filter + "]";
   }
 }
@@ -20,12 +20,11 @@ import static org.jboss.errai.enterprise.client.cdi.api.CDI.getSubjectNameByType
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.EventMetadata;
@@ -39,6 +38,7 @@ import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageBus;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
 import org.jboss.errai.bus.server.api.RpcContext;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
 import org.jboss.errai.bus.server.util.LocalContext;
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.config.rebind.EnvUtil;
@@ -46,6 +46,7 @@ import org.jboss.errai.enterprise.client.cdi.CDICommands;
 import org.jboss.errai.enterprise.client.cdi.CDIProtocol;
 import org.jboss.errai.enterprise.client.cdi.api.CDI;
 import org.jboss.errai.enterprise.client.cdi.api.Conversational;
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,8 +67,7 @@ public class EventDispatcher implements MessageCallback {
   private final Set<String> observedEvents;
   private final Map<String, Annotation> eventQualifiers;
 
-  private final Set<ClientObserverMetadata> clientObservers = Collections
-          .newSetFromMap(new ConcurrentHashMap<ClientObserverMetadata, Boolean>());
+  private final ClientObserverIndex clientObservers = new ClientObserverIndex();
 
   public EventDispatcher(final BeanManager beanManager, final EventRoutingTable eventRoutingTable,
           final MessageBus messageBus, final Set<String> observedEvents, final Map<String, Annotation> eventQualifiers) {
@@ -89,24 +89,41 @@ public class EventDispatcher implements MessageCallback {
       final LocalContext localContext = LocalContext.get(message);
       final String typeName = message.get(String.class, CDIProtocol.BeanType);
       final Set<String> annotationTypes = message.get(Set.class, CDIProtocol.Qualifiers);
+      final EventFilter filter = getFilter(message);
 
       switch (CDICommands.valueOf(message.getCommandType())) {
       case RemoteSubscribe:
         final Class<?> type = Thread.currentThread().getContextClassLoader().loadClass(typeName);
-        final ClientObserverMetadata clientObserver = new ClientObserverMetadata(type, annotationTypes);
+        final ClientObserverMetadata clientObserver;
+        try {
+          clientObserver = new ClientObserverMetadata(type, annotationTypes, filter);
+        }
+        catch (final IllegalArgumentException e) {
+          log.warn("client tried to register an invalid filter: " + e.getMessage());
+          return;
+        }
 
-        if (!clientObservers.contains(clientObserver)) {
-          if (type == null || !EnvUtil.isPortableType(type)) {
-            log.warn("client tried to register a non-portable type: " + type);
-            return;
+        // an observer is removed from the index once its last route is deactivated
+        synchronized (clientObservers) {
+          if (!clientObservers.contains(clientObserver)) {
+            if (type == null || !EnvUtil.isPortableType(type)) {
+              log.warn("client tried to register a non-portable type: " + type);
+              return;
+            }
+            clientObservers.add(clientObserver);
           }
-          clientObservers.add(clientObserver);
+          eventRoutingTable.activateRoute(typeName, annotationTypes, filter,
+                  message.getResource(QueueSession.class, "Session"));
         }
-        eventRoutingTable.activateRoute(typeName, annotationTypes, message.getResource(QueueSession.class, "Session"));
         break;
 
       case RemoteUnsubscribe:
-        eventRoutingTable.deactivateRoute(typeName, annotationTypes, message.getResource(QueueSession.class, "Session"));
+        synchronized (clientObservers) {
+          if (eventRoutingTable.deactivateRoute(typeName, annotationTypes, filter,
+                  message.getResource(QueueSession.class, "Session"))) {
+            removeClientObserver(typeName, annotationTypes, filter);
+          }
+        }
         break;
 
       case CDIEvent:
@@ -164,6 +181,17 @@ public class EventDispatcher implements MessageCallback {
     }
   }
 
+  private void removeClientObserver(final String typeName, final Set<String> annotationTypes, final EventFilter filter)
+          throws ClassNotFoundException {
+    final Class<?> type = Thread.currentThread().getContextClassLoader().loadClass(typeName);
+    try {
+      clientObservers.remove(new ClientObserverMetadata(type, annotationTypes, filter));
+    }
+    catch (final IllegalArgumentException e) {
+      // the filter was rejected when the client subscribed, so the observer was never added.
+    }
+  }
+
   private String getEventTypes() {
     final StringBuilder stringBuilder = new StringBuilder();
     for (final String s : observedEvents) {
@@ -181,15 +209,20 @@ public class EventDispatcher implements MessageCallback {
             && observedEvents.contains(message.get(String.class, CDIProtocol.BeanType));
   }
 
+  @SuppressWarnings("unchecked")
+  private static EventFilter getFilter(final Message message) {
+    final EventFilter filter = EventFilter.fromConstraints(message.get(Map.class, CDIProtocol.Filter));
+    return (filter == null || filter.isEmpty()) ? null : filter;
+  }
+
   public void sendEventToClients(Object event, EventMetadata emd) {
-    for (final ClientObserverMetadata clientObserver : clientObservers) {
-      if (clientObserver.matches(event, emd)) {
-        sendEventToClient(event, clientObserver.getQualifiers());
-      }
+    final Set<String> qualifiers = ClientObserverMetadata.getQualifiers(emd);
+    for (final ClientObserverMetadata clientObserver : clientObservers.getMatchingObservers(event, qualifiers)) {
+      sendEventToClient(event, clientObserver.getQualifiers(), clientObserver.getFilter());
     }
   }
 
-  private void sendEventToClient(Object event, Set<String> qualifierTypes) {
+  private void sendEventToClient(Object event, Set<String> qualifierTypes, EventFilter filter) {
     final Class<? extends Object> eventType = event.getClass();
     final String sessionId = getConversationalSessionId(eventType);
 
@@ -203,13 +236,29 @@ public class EventDispatcher implements MessageCallback {
       messageParts.put(CDIProtocol.Qualifiers.name(), qualifierTypes);
     }
 
+    if (filter != null) {
+      // tells the client which of its observers the event passed the filter of
+      messageParts.put(CDIProtocol.Filter.name(), filter.getConstraints());
+    }
+
     if (sessionId != null) {
       messageParts.put(MessageParts.SessionID.name(), sessionId);
       messagebus.send(CommandMessage.createWithParts(messageParts));
     }
     else {
-      for (final String id : eventRoutingTable.getQueueIdsForRoute(eventType.getName(), qualifierTypes)) {
-        messagebus.send(CommandMessage.createWithParts(new RoutingMap(messageParts, id)));
+      final Collection<String> ids = eventRoutingTable.getQueueIdsForRoute(eventType.getName(), qualifierTypes, filter);
+      if (ids.isEmpty()) {
+        return;
+      }
+
+      if (messagebus instanceof ServerMessageBus) {
+        // the event is marshalled once for all clients, instead of once per client.
+        ((ServerMessageBus) messagebus).multicast(CommandMessage.createWithParts(messageParts), ids);
+      }
+      else {
+        for (final String id : ids) {
+          messagebus.send(CommandMessage.createWithParts(new RoutingMap(messageParts, id)));
+        }
       }
     }
   }
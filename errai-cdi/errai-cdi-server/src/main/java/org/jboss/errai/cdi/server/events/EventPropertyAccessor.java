@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.cdi.server.events;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.errai.codegen.meta.MetaField;
+import org.jboss.errai.codegen.meta.MetaMethod;
+import org.jboss.errai.marshalling.rebind.api.model.MappingDefinition;
+import org.jboss.errai.marshalling.rebind.api.model.MemberMapping;
+import org.jboss.errai.marshalling.server.MappingContextSingleton;
+
+/**
+ * Reads a property of an event for the evaluation of {@link org.jboss.errai.enterprise.client.cdi.api.EventFilter}s.
+ * Only the properties the marshalling mapping of a portable event type sends to clients can be filtered on. The
+ * member of a property is looked up once per event type, when the first client subscribes with a filter on it, not
+ * every time an event is fired.
+ */
+public final class EventPropertyAccessor {
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<String, EventPropertyAccessor>> accessors =
+          new ConcurrentHashMap<Class<?>, ConcurrentMap<String, EventPropertyAccessor>>();
+
+  private final String property;
+  private final Method getter;
+  private final Field field;
+
+  private EventPropertyAccessor(final String property, final Method getter, final Field field) {
+    this.property = property;
+    this.getter = getter;
+    this.field = field;
+  }
+
+  /**
+   * Returns the accessor of a property of the specified event type.
+   *
+   * @throws IllegalArgumentException
+   *     if the type is not portable, or does not marshal the property.
+   */
+  public static EventPropertyAccessor forProperty(final Class<?> eventType, final String property) {
+    ConcurrentMap<String, EventPropertyAccessor> accessorsOfType = accessors.get(eventType);
+    if (accessorsOfType == null) {
+      final ConcurrentMap<String, EventPropertyAccessor> newAccessors =
+              new ConcurrentHashMap<String, EventPropertyAccessor>();
+      accessorsOfType = accessors.putIfAbsent(eventType, newAccessors);
+      if (accessorsOfType == null) {
+        accessorsOfType = newAccessors;
+      }
+    }
+
+    EventPropertyAccessor accessor = accessorsOfType.get(property);
+    if (accessor == null) {
+      accessor = resolve(eventType, property);
+      accessorsOfType.putIfAbsent(property, accessor);
+    }
+    return accessor;
+  }
+
+  private static EventPropertyAccessor resolve(final Class<?> eventType, final String property) {
+    if (property == null || property.isEmpty()) {
+      throw new IllegalArgumentException("no property name given for " + eventType.getName());
+    }
+
+    // property names come from clients, so only what is marshalled to clients anyway may be read
+    final MappingDefinition definition = MappingContextSingleton.get().getDefinitionsFactory().getDefinition(eventType);
+    if (definition == null) {
+      throw new IllegalArgumentException(eventType.getName() + " is not portable");
+    }
+
+    for (final MemberMapping mapping : definition.getReadableMemberMappings()) {
+      if (!property.equals(mapping.getKey())) {
+        continue;
+      }
+
+      if (mapping.getReadingMember() instanceof MetaField) {
+        final Field field = ((MetaField) mapping.getReadingMember()).asField();
+        field.setAccessible(true);
+        return new EventPropertyAccessor(property, null, field);
+      }
+      else if (mapping.getReadingMember() instanceof MetaMethod) {
+        final Method getter = ((MetaMethod) mapping.getReadingMember()).asMethod();
+        getter.setAccessible(true);
+        return new EventPropertyAccessor(property, getter, null);
+      }
+    }
+
+    throw new IllegalArgumentException("no marshalled property " + property + " on " + eventType.getName());
+  }
+
+  public String getProperty() {
+    return property;
+  }
+
+  /**
+   * Returns the string representation of the property of the event, which is what filters compare.
+   */
+  public String getValue(final Object event) {
+    try {
+      return String.valueOf(getter != null ? getter.invoke(event) : field.get(event));
+    }
+    catch (Exception e) {
+      throw new RuntimeException("failed to read property " + property + " of " + event.getClass().getName(), e);
+    }
+  }
+}
@@ -27,6 +27,7 @@ import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.client.api.laundry.Laundry;
 import org.jboss.errai.bus.client.api.laundry.LaundryList;
 import org.jboss.errai.bus.client.api.laundry.LaundryListProviderFactory;
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
 
 /**
  * <a href="http://www.youtube.com/watch?v=qBXn9PptgN8">Architectural Overview</a>
@@ -40,6 +41,10 @@ public class EventRoutingTable {
   private final Map<String, Map<Set<String>, Set<String>>> activeRoutes
       = new ConcurrentHashMap<String, Map<Set<String>, Set<String>>>();
 
+  // type to (set<annotations> to (filter to set<session ids>)) of the observers with an EventFilter
+  private final Map<String, Map<Set<String>, Map<EventFilter, Set<String>>>> filteredRoutes
+      = new ConcurrentHashMap<String, Map<Set<String>, Map<EventFilter, Set<String>>>>();
+
   private final Object routeChangeLock = new Object();
   private final Object sessionChangeLock = new Object();
 
@@ -75,13 +80,98 @@ public class EventRoutingTable {
     updateLaundry(queueSession);
   }
 
-  public void deactivateRoute(final String eventType,
-                              final Set<String> annotations,
-                              final QueueSession queueSession) {
+  /**
+   * Activates the route of an observer with the specified filter. Routes with a filter are separate from the route
+   * with the same qualifiers but no filter.
+   */
+  public void activateRoute(final String eventType,
+                            final Set<String> annotations,
+                            final EventFilter filter,
+                            final QueueSession queueSession) {
+    if (filter == null) {
+      activateRoute(eventType, annotations, queueSession);
+      return;
+    }
+
+    getFilteredSessions(eventType, annotations, filter, true).add(queueSession.getSessionId());
+
+    updateLaundry(queueSession);
+  }
+
+  /**
+   * Deactivates the route of an observer with the specified filter for the given session.
+   *
+   * @return true if no session is left on the route.
+   */
+  public boolean deactivateRoute(final String eventType,
+                                 final Set<String> annotations,
+                                 final EventFilter filter,
+                                 final QueueSession queueSession) {
+    if (filter == null) {
+      return deactivateRoute(eventType, annotations, queueSession);
+    }
+
+    final Set<String> sessions = getFilteredSessions(eventType, annotations, filter, false);
+    if (sessions == null) {
+      return true;
+    }
+    sessions.remove(queueSession.getSessionId());
+    return sessions.isEmpty();
+  }
+
+  public Collection<String> getQueueIdsForRoute(final String eventType,
+                                                final Set<String> annotations,
+                                                final EventFilter filter) {
+    if (filter == null) {
+      return getQueueIdsForRoute(eventType, annotations);
+    }
+
+    final Set<String> sessions = getFilteredSessions(eventType, annotations, filter, false);
+    return sessions == null ? Collections.<String>emptySet() : sessions;
+  }
+
+  private Set<String> getFilteredSessions(final String eventType,
+                                          final Set<String> annotations,
+                                          final EventFilter filter,
+                                          final boolean create) {
+    Map<Set<String>, Map<EventFilter, Set<String>>> route = filteredRoutes.get(eventType);
+    Map<EventFilter, Set<String>> filters = route == null ? null : route.get(annotations);
+    Set<String> sessions = filters == null ? null : filters.get(filter);
+
+    if (sessions == null && create) {
+      synchronized (routeChangeLock) {
+        route = filteredRoutes.get(eventType);
+        if (route == null) {
+          filteredRoutes.put(eventType, route = new ConcurrentHashMap<Set<String>, Map<EventFilter, Set<String>>>());
+        }
+
+        filters = route.get(annotations);
+        if (filters == null) {
+          route.put(annotations, filters = new ConcurrentHashMap<EventFilter, Set<String>>());
+        }
+
+        sessions = filters.get(filter);
+        if (sessions == null) {
+          filters.put(filter, sessions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+        }
+      }
+    }
+
+    return sessions;
+  }
+
+  /**
+   * Deactivates the route of an observer without a filter for the given session.
+   *
+   * @return true if no session is left on the route.
+   */
+  public boolean deactivateRoute(final String eventType,
+                                 final Set<String> annotations,
+                                 final QueueSession queueSession) {
 
     final Map<Set<String>, Set<String>> route = activeRoutes.get(eventType);
     if (route == null) {
-      return;
+      return true;
     }
 
     final Set<String> sessions = route.get(annotations);
@@ -95,6 +185,23 @@ public class EventRoutingTable {
     else {
       sessions.remove(queueSession.getSessionId());
     }
+
+    return !hasSessions(route, annotations);
+  }
+
+  private static boolean hasSessions(final Map<Set<String>, Set<String>> route, final Set<String> annotations) {
+    final Set<String> sessions = route.get(annotations);
+    if (sessions != null) {
+      return !sessions.isEmpty();
+    }
+
+    // the sessions of the route may have been merged into the route of the qualifiers of a fired event.
+    for (final Map.Entry<Set<String>, Set<String>> entry : route.entrySet()) {
+      if (entry.getKey().containsAll(annotations) && !entry.getValue().isEmpty()) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public boolean isRouteActive(final String eventType,
@@ -145,6 +252,13 @@ public class EventRoutingTable {
           entry.getValue().remove(id);
         }
       }
+      for (final Map<Set<String>, Map<EventFilter, Set<String>>> routeMaps : filteredRoutes.values()) {
+        for (final Map<EventFilter, Set<String>> filters : routeMaps.values()) {
+          for (final Set<String> sessions : filters.values()) {
+            sessions.remove(id);
+          }
+        }
+      }
     }
   }
 
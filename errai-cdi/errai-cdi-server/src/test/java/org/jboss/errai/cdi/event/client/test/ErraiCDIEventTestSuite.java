@@ -27,6 +27,7 @@ import org.junit.runners.Suite;
     EventObserverIntegrationTest.class,
     EventProducerIntegrationTest.class,
     EventRoutingIntegrationTest.class,
+    FilteredObserverTest.class,
     ObserverManipulationTest.class,
     ServerLocalEventIntegrationTest.class
 })
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.cdi.event.client.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.bus.client.api.base.CommandMessage;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.cdi.client.event.FunEvent;
+import org.jboss.errai.cdi.client.qualifier.A;
+import org.jboss.errai.enterprise.client.cdi.AbstractCDIEventCallback;
+import org.jboss.errai.enterprise.client.cdi.AbstractErraiCDITest;
+import org.jboss.errai.enterprise.client.cdi.CDIProtocol;
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
+
+/**
+ * Tests that an observer with an {@link EventFilter} only fires for the events the server sent for that filter, and
+ * that an observer without a filter only fires for the events sent for observers without a filter.
+ */
+public class FilteredObserverTest extends AbstractErraiCDITest {
+
+  @Override
+  public String getModuleName() {
+    return "org.jboss.errai.cdi.event.EventRoutingTestModule";
+  }
+
+  private static AbstractCDIEventCallback<FunEvent> observer(final List<String> received, final String name,
+          final EventFilter eventFilter) {
+    return new AbstractCDIEventCallback<FunEvent>() {
+      {
+        qualifierSet.add(A.class.getName());
+        filter = eventFilter;
+      }
+
+      @Override
+      protected void fireEvent(final FunEvent event) {
+        received.add(name + ":" + event.getText());
+      }
+    };
+  }
+
+  private static Message fromServer(final String text, final Map<String, ?> filterConstraints) {
+    final Message message = CommandMessage.create()
+        .set(CDIProtocol.BeanReference, new FunEvent(text))
+        .set(CDIProtocol.Qualifiers, Collections.singleton(A.class.getName()));
+    if (filterConstraints != null) {
+      message.set(CDIProtocol.Filter, filterConstraints);
+    }
+    return message;
+  }
+
+  public void testObserversOnlyFireForTheirOwnFilter() {
+    final List<String> received = new ArrayList<String>();
+    final EventFilter tenant1 = EventFilter.create().propertyEquals("tenantId", 1);
+
+    final List<AbstractCDIEventCallback<FunEvent>> observers = Arrays.asList(
+        observer(received, "unfiltered", null),
+        observer(received, "tenant1", tenant1),
+        observer(received, "tenant2", EventFilter.create().propertyEquals("tenantId", 2)));
+
+    // the server sends one message for the unfiltered observer and one for the filter the event passed
+    final List<Message> messages = Arrays.asList(fromServer("a", null), fromServer("b", tenant1.getConstraints()));
+    for (final Message message : messages) {
+      for (final AbstractCDIEventCallback<FunEvent> observer : observers) {
+        observer.callback(message);
+      }
+    }
+
+    assertEquals(Arrays.asList("unfiltered:a", "tenant1:b"), received);
+  }
+
+  public void testFiltersAreComparedByTheirConstraints() {
+    final List<String> received = new ArrayList<String>();
+    final AbstractCDIEventCallback<FunEvent> observer =
+        observer(received, "open", EventFilter.create().propertyIn("status", "OPEN", "HELD"));
+
+    // demarshalled constraints need not be sorted sets
+    final Map<String, List<String>> constraints = new HashMap<String, List<String>>();
+    constraints.put("status", Arrays.asList("HELD", "OPEN"));
+    observer.callback(fromServer("a", constraints));
+
+    constraints.put("status", Arrays.asList("OPEN"));
+    observer.callback(fromServer("b", constraints));
+
+    assertEquals(Arrays.asList("open:a"), received);
+  }
+}
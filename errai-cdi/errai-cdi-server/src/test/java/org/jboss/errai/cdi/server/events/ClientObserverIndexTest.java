@@ -0,0 +1,105 @@
+package org.jboss.errai.cdi.server.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.errai.bus.client.api.QueueSession;
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
+import org.junit.Test;
+
+public class ClientObserverIndexTest {
+  private static final Set<String> NO_QUALIFIERS = Collections.emptySet();
+
+  private final ClientObserverIndex index = new ClientObserverIndex();
+
+  private ClientObserverMetadata observe(final EventFilter filter) {
+    final ClientObserverMetadata observer = new ClientObserverMetadata(MyTenantEvent.class, NO_QUALIFIERS, filter);
+    index.add(observer);
+    return observer;
+  }
+
+  private Set<ClientObserverMetadata> getMatchingObservers(final Object event) {
+    final List<ClientObserverMetadata> observers = index.getMatchingObservers(event, NO_QUALIFIERS);
+    final Set<ClientObserverMetadata> unique = new HashSet<ClientObserverMetadata>(observers);
+    assertEquals("observer matched twice", observers.size(), unique.size());
+    return unique;
+  }
+
+  @Test
+  public void filteredObserversOnlyMatchAllowedValues() {
+    final ClientObserverMetadata unfiltered = observe(null);
+    final ClientObserverMetadata tenant1 = observe(EventFilter.create().propertyEquals("tenantId", 1));
+    final ClientObserverMetadata tenant1or2 = observe(EventFilter.create().propertyIn("tenantId", 1, 2));
+
+    assertEquals(new HashSet<ClientObserverMetadata>(Arrays.asList(unfiltered, tenant1, tenant1or2)),
+            getMatchingObservers(new MyTenantEvent(1, "OPEN")));
+    assertEquals(new HashSet<ClientObserverMetadata>(Arrays.asList(unfiltered, tenant1or2)),
+            getMatchingObservers(new MyTenantEvent(2, "OPEN")));
+    assertEquals(Collections.singleton(unfiltered), getMatchingObservers(new MyTenantEvent(3, "OPEN")));
+  }
+
+  @Test
+  public void allConstraintsOfFilterMustMatch() {
+    final ClientObserverMetadata openOfTenant1 =
+            observe(EventFilter.create().propertyEquals("tenantId", 1).propertyIn("status", "OPEN", "HELD"));
+
+    assertTrue(getMatchingObservers(new MyTenantEvent(1, "HELD")).contains(openOfTenant1));
+    assertTrue(getMatchingObservers(new MyTenantEvent(1, "CLOSED")).isEmpty());
+    assertTrue(getMatchingObservers(new MyTenantEvent(2, "OPEN")).isEmpty());
+  }
+
+  @Test
+  public void observersAreIdentifiedByTheirFilter() {
+    observe(EventFilter.create().propertyEquals("tenantId", 1));
+
+    assertTrue(index.contains(new ClientObserverMetadata(MyTenantEvent.class, NO_QUALIFIERS,
+            EventFilter.create().propertyIn("tenantId", "1"))));
+    assertFalse(index.contains(new ClientObserverMetadata(MyTenantEvent.class, NO_QUALIFIERS,
+            EventFilter.create().propertyEquals("tenantId", 2))));
+    assertFalse(index.contains(new ClientObserverMetadata(MyTenantEvent.class, NO_QUALIFIERS, null)));
+  }
+
+  @Test
+  public void observersAreRemovedWhenTheirLastRouteIsDeactivated() {
+    final EventRoutingTable routingTable = new EventRoutingTable();
+    final QueueSession session = new MockQueueSession();
+    final String eventType = MyTenantEvent.class.getName();
+    final EventFilter tenant1or2 = EventFilter.create().propertyIn("tenantId", 1, 2);
+
+    final ClientObserverMetadata unfiltered = observe(null);
+    final ClientObserverMetadata filtered = observe(tenant1or2);
+    routingTable.activateRoute(eventType, NO_QUALIFIERS, null, session);
+    routingTable.activateRoute(eventType, NO_QUALIFIERS, tenant1or2, session);
+
+    assertTrue(routingTable.deactivateRoute(eventType, NO_QUALIFIERS, null, session));
+    index.remove(unfiltered);
+    assertTrue(routingTable.deactivateRoute(eventType, NO_QUALIFIERS, tenant1or2, session));
+    index.remove(filtered);
+
+    assertTrue(index.isEmpty());
+    assertTrue(getMatchingObservers(new MyTenantEvent(1, "OPEN")).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void filterOnUnknownPropertyIsRejected() {
+    observe(EventFilter.create().propertyEquals("customerId", 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void filterOnPropertyWhichIsNotMarshalledIsRejected() {
+    observe(EventFilter.create().propertyEquals("auditNote", "internal"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void filterOnNonPortableTypeIsRejected() {
+    new ClientObserverMetadata(MyNonConversationalEvent.class, NO_QUALIFIERS,
+            EventFilter.create().propertyEquals("class", "x"));
+  }
+}
@@ -0,0 +1,24 @@
+package org.jboss.errai.cdi.server.events;
+
+import org.jboss.errai.common.client.api.annotations.MapsTo;
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+@Portable
+public class MyTenantEvent {
+  private final int tenantId;
+  private final String status;
+  private transient String auditNote = "internal";
+
+  public MyTenantEvent(@MapsTo("tenantId") final int tenantId, @MapsTo("status") final String status) {
+    this.tenantId = tenantId;
+    this.status = status;
+  }
+
+  public int getTenantId() {
+    return tenantId;
+  }
+
+  public String getAuditNote() {
+    return auditNote;
+  }
+}
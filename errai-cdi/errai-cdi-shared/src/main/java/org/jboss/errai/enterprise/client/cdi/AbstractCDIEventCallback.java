@@ -18,10 +18,13 @@ package org.jboss.errai.enterprise.client.cdi;
 
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
+import org.jboss.errai.enterprise.client.cdi.api.EventFilter;
 
 import javax.enterprise.inject.Any;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -34,10 +37,23 @@ public abstract class AbstractCDIEventCallback<T> implements MessageCallback {
    */
   protected final Set<String> qualifierSet = new HashSet<String>();
 
+  /**
+   * The filter the server applies to the events of this observer, or <tt>null</tt> to receive all events. It must be
+   * set before the observer is subscribed.
+   */
+  protected EventFilter filter;
+
   public Set<String> getQualifiers() {
     return qualifierSet;
   }
 
+  /**
+   * Returns the filter the server applies to the events of this observer, or <tt>null</tt> if it has none.
+   */
+  public EventFilter getFilter() {
+    return (filter == null || filter.isEmpty()) ? null : filter;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public final void callback(final Message message) {
@@ -55,13 +71,19 @@ public abstract class AbstractCDIEventCallback<T> implements MessageCallback {
     else {
       // Our server-side CDI integration module knows of all client-side event
       // observers and sends a separate message specific to each matching
-      // observer.
-      if (msgQualifiers.equals(qualifierSet)) {
+      // observer, naming the filter the event passed.
+      if (msgQualifiers.equals(qualifierSet) && isSameFilter(message.get(Map.class, CDIProtocol.Filter))) {
         fireEvent((T) message.get(Object.class, CDIProtocol.BeanReference));
       }
     }
   }
 
+  private boolean isSameFilter(final Map<String, ? extends Collection<?>> msgConstraints) {
+    final EventFilter msgFilter = EventFilter.fromConstraints(msgConstraints);
+    final EventFilter ownFilter = getFilter();
+    return (ownFilter == null) ? (msgFilter == null || msgFilter.isEmpty()) : ownFilter.equals(msgFilter);
+  }
+
   protected boolean isDefault() {
     return qualifierSet.size() == 1 && qualifierSet.contains(Any.class.getName());
   }
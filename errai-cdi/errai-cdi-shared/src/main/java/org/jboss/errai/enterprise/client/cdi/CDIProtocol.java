@@ -17,5 +17,5 @@
 package org.jboss.errai.enterprise.client.cdi;
 
 public enum CDIProtocol {
-  BeanType, Qualifiers, BeanReference, ObservedTypes, FromClient
+  BeanType, Qualifiers, BeanReference, ObservedTypes, FromClient, Filter
 }
@@ -35,6 +35,8 @@ import org.jboss.errai.bus.client.api.ClientMessageBus;
 import org.jboss.errai.bus.client.api.Subscription;
 import org.jboss.errai.bus.client.api.base.CommandMessage;
 import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.builder.MessageBuildParms;
+import org.jboss.errai.bus.client.api.builder.MessageBuildSendableWithReply;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
 import org.jboss.errai.bus.client.framework.BusState;
@@ -215,17 +217,26 @@ public class CDI {
 
     if (isRemoteCommunicationEnabled() && ErraiBus.get() instanceof ClientMessageBusImpl
             && ((ClientMessageBusImpl) ErraiBus.get()).getState().equals(BusState.CONNECTED)) {
-      MessageBuilder.createMessage()
-          .toSubject(CDI.SERVER_DISPATCHER_SUBJECT)
-          .command(CDICommands.RemoteSubscribe)
-          .with(CDIProtocol.BeanType, eventType)
-          .with(CDIProtocol.Qualifiers, callback.getQualifiers())
-          .noErrorHandling().sendNowWith(ErraiBus.get());
+      sendSubscriptionCommand(CDICommands.RemoteSubscribe, eventType, callback);
     }
 
     return subscribeLocal(eventType, callback, false);
   }
 
+  private static void sendSubscriptionCommand(final CDICommands command, final String eventType,
+          final AbstractCDIEventCallback<?> callback) {
+    MessageBuildParms<MessageBuildSendableWithReply> parms = MessageBuilder.createMessage()
+        .toSubject(CDI.SERVER_DISPATCHER_SUBJECT)
+        .command(command)
+        .with(CDIProtocol.BeanType, eventType)
+        .with(CDIProtocol.Qualifiers, callback.getQualifiers());
+
+    if (callback.getFilter() != null) {
+      parms = parms.with(CDIProtocol.Filter, callback.getFilter().getConstraints());
+    }
+    parms.noErrorHandling().sendNowWith(ErraiBus.get());
+  }
+
   private static void unsubscribe(final String eventType, final AbstractCDIEventCallback<?> callback) {
     if (eventObservers.containsKey(eventType)) {
       eventObservers.get(eventType).remove(callback);
@@ -233,7 +244,7 @@ public class CDI {
       if (!localOnlyObserverTypes.contains(eventType)) {
         boolean shouldUnsubscribe = true;
         for (final AbstractCDIEventCallback<?> cb : eventObservers.get(eventType)) {
-          if (cb.getQualifiers().equals(callback.getQualifiers())) {
+          if (cb.getQualifiers().equals(callback.getQualifiers()) && isSameFilter(cb, callback)) {
             // found another matching observer -> do not unsubscribe
             shouldUnsubscribe = false;
             break;
@@ -241,12 +252,7 @@ public class CDI {
         }
 
         if (isRemoteCommunicationEnabled() && shouldUnsubscribe) {
-          MessageBuilder.createMessage()
-              .toSubject(CDI.SERVER_DISPATCHER_SUBJECT)
-              .command(CDICommands.RemoteUnsubscribe)
-              .with(CDIProtocol.BeanType, eventType)
-              .with(CDIProtocol.Qualifiers, callback.getQualifiers())
-              .noErrorHandling().sendNowWith(ErraiBus.get());
+          sendSubscriptionCommand(CDICommands.RemoteUnsubscribe, eventType, callback);
         }
 
         if (eventObservers.get(eventType).isEmpty()) {
@@ -256,6 +262,10 @@ public class CDI {
     }
   }
 
+  private static boolean isSameFilter(final AbstractCDIEventCallback<?> a, final AbstractCDIEventCallback<?> b) {
+    return (a.getFilter() == null) ? b.getFilter() == null : a.getFilter().equals(b.getFilter());
+  }
+
   /**
    * Informs the server of all active CDI observers currently registered on the
    * client. This is not strictly necessary when the client bus first connects,
@@ -275,12 +285,7 @@ public class CDI {
         if (!localOnlyObserverTypes.contains(eventType)) {
           for (final AbstractCDIEventCallback<?> callback : mapEntry.getValue()) {
             remoteEventCount++;
-            MessageBuilder.createMessage()
-                .toSubject(CDI.SERVER_DISPATCHER_SUBJECT)
-                .command(CDICommands.RemoteSubscribe)
-                .with(CDIProtocol.BeanType, eventType)
-                .with(CDIProtocol.Qualifiers, callback.getQualifiers())
-                .noErrorHandling().sendNowWith(ErraiBus.get());
+            sendSubscriptionCommand(CDICommands.RemoteSubscribe, eventType, callback);
           }
         }
       }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.enterprise.client.cdi.api;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A filter on the properties of the events a client-side observer receives from the server. The filter is evaluated
+ * on the server before an event is sent to the client, so the client doesn't pay for the transmission of events it
+ * isn't interested in:
+ *
+ * <pre>
+ * new AbstractCDIEventCallback&lt;OrderUpdated&gt;() {
+ *   {
+ *     filter = EventFilter.create().propertyEquals("tenantId", tenantId).propertyIn("status", "OPEN", "HELD");
+ *   }
+ *   ...
+ * }
+ * </pre>
+ *
+ * An event passes the filter if every filtered property has one of the allowed values. Only properties which are
+ * marshalled to clients can be filtered on, and they are compared by their string representation. The server
+ * refuses subscriptions with filters on any other property. Filters only apply to events fired on the server.
+ * <p/>
+ * Filters are immutable.
+ */
+public final class EventFilter {
+  private static final EventFilter EMPTY = new EventFilter(new TreeMap<String, Set<String>>());
+
+  private final Map<String, Set<String>> constraints;
+
+  private EventFilter(final Map<String, Set<String>> constraints) {
+    this.constraints = Collections.unmodifiableMap(constraints);
+  }
+
+  /**
+   * Returns a filter which lets every event pass.
+   */
+  public static EventFilter create() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the filter described by the specified constraints, as returned by {@link #getConstraints()}, or
+   * <tt>null</tt> if the constraints are <tt>null</tt>.
+   */
+  public static EventFilter fromConstraints(final Map<String, ? extends Collection<?>> constraints) {
+    if (constraints == null) {
+      return null;
+    }
+
+    EventFilter filter = EMPTY;
+    for (final Map.Entry<String, ? extends Collection<?>> entry : constraints.entrySet()) {
+      filter = filter.propertyIn(entry.getKey(), entry.getValue());
+    }
+    return filter;
+  }
+
+  /**
+   * Returns a filter which additionally requires the specified property of an event to be equal to the value.
+   */
+  public EventFilter propertyEquals(final String property, final Object value) {
+    return propertyIn(property, Collections.singleton(value));
+  }
+
+  /**
+   * Returns a filter which additionally requires the specified property of an event to be equal to one of the
+   * values.
+   */
+  public EventFilter propertyIn(final String property, final Object... values) {
+    return propertyIn(property, Arrays.asList(values));
+  }
+
+  /**
+   * Returns a filter which additionally requires the specified property of an event to be equal to one of the
+   * values.
+   */
+  public EventFilter propertyIn(final String property, final Collection<?> values) {
+    final Set<String> allowed = new TreeSet<String>();
+    for (final Object value : values) {
+      allowed.add(String.valueOf(value));
+    }
+
+    final Set<String> current = constraints.get(property);
+    if (current != null) {
+      allowed.retainAll(current);
+    }
+
+    final Map<String, Set<String>> newConstraints = new TreeMap<String, Set<String>>(constraints);
+    newConstraints.put(property, Collections.unmodifiableSet(allowed));
+    return new EventFilter(newConstraints);
+  }
+
+  /**
+   * Returns the allowed values of every filtered property, sorted by property name.
+   */
+  public Map<String, Set<String>> getConstraints() {
+    return constraints;
+  }
+
+  public boolean isEmpty() {
+    return constraints.isEmpty();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    return this == o || (o instanceof EventFilter && constraints.equals(((EventFilter) o).constraints));
+  }
+
+  @Override
+  public int hashCode() {
+    return constraints.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "EventFilter" + constraints;
+  }
+}
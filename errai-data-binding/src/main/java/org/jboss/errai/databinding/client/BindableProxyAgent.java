@@ -53,6 +53,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -79,6 +80,9 @@ import java.util.function.Supplier;
  *
  * <li>Update the target model in response to value change events (only works for bound components that implement
  * {@link HasValue})</li>
+ *
+ * <li>Defer the updates of bound components and the property change events until the end of a batch, coalescing
+ * repeated changes of the same property (see {@link #beginBatch()})</li>
  * <ul>
  *
  * @author Christian Sadilek <csadilek@redhat.com>
@@ -98,6 +102,10 @@ public final class BindableProxyAgent<T> implements HasPropertyChangeHandlers {
   final Map<String, Object> knownValues = new HashMap<>();
   final Collection<HandlerRegistration> modelChangeHandlers = new ArrayList<>();
 
+  private int batchDepth;
+  private final Map<String, PendingChange> pendingChanges = new LinkedHashMap<>();
+  private final Collection<DataBinder> batchedBinders = new ArrayList<>();
+
   PropertyChangeHandlerSupport propertyChangeHandlerSupport = new PropertyChangeHandlerSupport();
 
   final BindableProxy<T> proxy;
@@ -613,6 +621,10 @@ public final class BindableProxyAgent<T> implements HasPropertyChangeHandlers {
       for (final PropertyChangeHandler<?> handler : propertyChangeHandlerSupport.specificPropertyHandlers.get("**")) {
         binder.addPropertyChangeHandler("**", handler);
       }
+      if (batchDepth > 0) {
+        binder.beginBatch();
+        batchedBinders.add(binder);
+      }
     }
     else if (proxy.get(bindableProperty) != null) {
       binder.setModel(proxy.get(bindableProperty), initialState, true);
@@ -734,6 +746,16 @@ public final class BindableProxyAgent<T> implements HasPropertyChangeHandlers {
   private <P> void updateWidgetsAndFireEvent(final boolean sync, final String property, final P oldValue, final P newValue,
           final Object excluding) {
 
+    if (batchDepth > 0) {
+      addPendingChange(property, oldValue, newValue, true, sync, excluding);
+      return;
+    }
+
+    updateComponents(sync, property, newValue, excluding);
+    maybeFirePropertyChangeEvent(property, oldValue, newValue);
+  }
+
+  private <P> void updateComponents(final boolean sync, final String property, final P newValue, final Object excluding) {
     for (final Binding binding : bindings.get(property)) {
       final Object component = binding.getComponent();
       final Converter converter = binding.getConverter();
@@ -761,8 +783,6 @@ public final class BindableProxyAgent<T> implements HasPropertyChangeHandlers {
         }
       }
     }
-
-    maybeFirePropertyChangeEvent(property, oldValue, newValue);
   }
 
   private Object getUIPart(final Object component) {
@@ -802,6 +822,11 @@ public final class BindableProxyAgent<T> implements HasPropertyChangeHandlers {
    * @return true Iff property change handlers were notified for this type.
    */
   private <P> boolean maybeFirePropertyChangeEvent(final String property, final P oldValue, final P newValue) {
+    if (batchDepth > 0) {
+      addPendingChange(property, oldValue, newValue, false, false, null);
+      return false;
+    }
+
     knownValues.put(property, newValue);
 
     final PropertyChangeEvent<P> event = new PropertyChangeEvent<>(proxy, Assert.notNull(property), oldValue, newValue);
@@ -1054,6 +1079,91 @@ public final class BindableProxyAgent<T> implements HasPropertyChangeHandlers {
     }
   }
 
+  /**
+   * Starts deferring the updates of bound components and the {@link PropertyChangeEvent}s caused by changes of the
+   * model, until {@link #commitBatch()} is called as often as this method. The model itself is still updated
+   * immediately. Nested binders are batched as well.
+   */
+  public void beginBatch() {
+    if (batchDepth++ > 0)
+      return;
+
+    for (final DataBinder<?> binder : binders.values()) {
+      binder.beginBatch();
+      batchedBinders.add(binder);
+    }
+  }
+
+  /**
+   * Ends a batch started with {@link #beginBatch()}. When the outermost batch ends, the bound components of every
+   * property changed during the batch are updated once with the latest value, and a single {@link PropertyChangeEvent}
+   * is fired per property, from the value before the batch to the latest value.
+   */
+  public void commitBatch() {
+    if (batchDepth == 0 || --batchDepth > 0)
+      return;
+
+    final Collection<DataBinder> nestedBinders = new ArrayList<>(batchedBinders);
+    batchedBinders.clear();
+    for (final DataBinder<?> binder : nestedBinders) {
+      binder.commitBatch();
+    }
+
+    final Collection<PendingChange> changes = new ArrayList<>(pendingChanges.values());
+    pendingChanges.clear();
+    for (final PendingChange change : changes) {
+      if (change.updateComponents) {
+        updateComponents(change.sync, change.property, change.newValue, change.excluding);
+      }
+      maybeFirePropertyChangeEvent(change.property, change.oldValue, change.newValue);
+    }
+  }
+
+  public boolean isBatching() {
+    return batchDepth > 0;
+  }
+
+  private void addPendingChange(final String property, final Object oldValue, final Object newValue,
+          final boolean updateComponents, final boolean sync, final Object excluding) {
+    knownValues.put(property, newValue);
+
+    final PendingChange pending = pendingChanges.get(property);
+    if (pending == null) {
+      pendingChanges.put(property, new PendingChange(property, oldValue, newValue, updateComponents, sync, excluding));
+    }
+    else {
+      // The value before the batch is kept, the latest value replaces all intermediate ones.
+      pending.newValue = newValue;
+      pending.sync |= sync;
+      if (updateComponents) {
+        pending.excluding = (pending.updateComponents && pending.excluding != excluding ? null : excluding);
+        pending.updateComponents = true;
+      }
+    }
+  }
+
+  /**
+   * The accumulated changes of a property during a batch.
+   */
+  private static class PendingChange {
+    private final String property;
+    private final Object oldValue;
+    private Object newValue;
+    private boolean updateComponents;
+    private boolean sync;
+    private Object excluding;
+
+    private PendingChange(final String property, final Object oldValue, final Object newValue,
+            final boolean updateComponents, final boolean sync, final Object excluding) {
+      this.property = property;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+      this.updateComponents = updateComponents;
+      this.sync = sync;
+      this.excluding = excluding;
+    }
+  }
+
   public void clearModelHandlers() {
     for (final HandlerRegistration reg : modelChangeHandlers) {
       reg.removeHandler();
@@ -59,6 +59,8 @@ public class DataBinder<T> implements HasPropertyChangeHandlers {
 
   private T proxy;
   private T paused;
+  private int batchDepth;
+  private BindableProxyAgent<T> batchedAgent;
 
   protected DataBinder() {
   }
@@ -431,10 +433,20 @@ public class DataBinder<T> implements HasPropertyChangeHandlers {
    *         if changes should be automatically synchronized with the UI (also
    *         accessible using {@link #getModel()}).
    */
-  @SuppressWarnings("unchecked")
   public T setModel(final T model, final StateSync initialState, final boolean fireChangeEvents) {
     Assert.notNull(model);
 
+    beginBatch();
+    try {
+      return replaceModel(model, initialState, fireChangeEvents);
+    }
+    finally {
+      commitBatch();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T replaceModel(final T model, final StateSync initialState, final boolean fireChangeEvents) {
     final BindableProxy<T> newProxy;
     final StateSync newInitState = Optional.ofNullable(initialState).orElse(StateSync.FROM_MODEL);
     if (model instanceof BindableProxy) {
@@ -444,6 +456,13 @@ public class DataBinder<T> implements HasPropertyChangeHandlers {
       newProxy = (BindableProxy<T>) BindableProxyFactory.getBindableProxy(model);
     }
 
+    if (batchedAgent != null && batchedAgent != newProxy.getBindableProxyAgent()) {
+      // the batch continues on the new model, changes of the old model are applied right away
+      final BindableProxyAgent<T> oldAgent = batchedAgent;
+      batchedAgent = newProxy.getBindableProxyAgent();
+      batchedAgent.beginBatch();
+      oldAgent.commitBatch();
+    }
     newProxy.getBindableProxyAgent().mergePropertyChangeHandlers(propertyChangeHandlerSupport);
     if (fireChangeEvents) {
       newProxy.getBindableProxyAgent().fireChangeEvents(getAgent(), initialState);
@@ -537,6 +556,49 @@ public class DataBinder<T> implements HasPropertyChangeHandlers {
     return (paused != null);
   }
 
+  /**
+   * Starts a batch of model changes. Until the batch is committed with {@link #commitBatch()}, changes of the model
+   * are not propagated to the bound UI components and no {@link PropertyChangeEvent}s are fired. Committing the batch
+   * updates the components of every changed property once, with its latest value, and fires one event per changed
+   * property. A property that is changed back to its value before the batch does not cause an event.
+   * <p>
+   * Use this when changing many properties at once, e.g. when copying a DTO received from the server into the model.
+   * {@link #setModel(Object, StateSync, boolean)} always runs in a batch. Batches can be nested, in which case changes
+   * are propagated when the outermost batch is committed. Changes of bound lists are still propagated immediately to
+   * components implementing
+   * {@link org.jboss.errai.databinding.client.api.handler.list.BindableListChangeHandler}.
+   */
+  public void beginBatch() {
+    if (batchDepth++ == 0) {
+      batchedAgent = getAgent();
+      batchedAgent.beginBatch();
+    }
+  }
+
+  /**
+   * Commits the batch started by the matching call to {@link #beginBatch()}.
+   *
+   * @throws IllegalStateException
+   *           If no batch was started.
+   */
+  public void commitBatch() {
+    if (batchDepth == 0) {
+      throw new IllegalStateException("No batch was started.");
+    }
+    if (--batchDepth == 0 && batchedAgent != null) {
+      final BindableProxyAgent<T> agent = batchedAgent;
+      batchedAgent = null;
+      agent.commitBatch();
+    }
+  }
+
+  /**
+   * @return true iff {@link #beginBatch()} was called more often than {@link #commitBatch()}.
+   */
+  public boolean isBatching() {
+    return batchDepth > 0;
+  }
+
   @Override
   public PropertyChangeUnsubscribeHandle addPropertyChangeHandler(final PropertyChangeHandler<?> handler) {
     propertyChangeHandlerSupport.addPropertyChangeHandler(handler);
@@ -573,6 +635,12 @@ public class DataBinder<T> implements HasPropertyChangeHandlers {
   @SuppressWarnings("unchecked")
   private void unwrapProxy() {
     if (proxy instanceof BindableProxy<?>) {
+      if (batchedAgent != null && batchedAgent == ((BindableProxy<T>) proxy).getBindableProxyAgent()) {
+        // changes deferred until now must not be lost with the agent
+        final BindableProxyAgent<T> agent = batchedAgent;
+        batchedAgent = null;
+        agent.commitBatch();
+      }
       proxy = (T) ((BindableProxy<T>) proxy).unwrap();
     }
   }
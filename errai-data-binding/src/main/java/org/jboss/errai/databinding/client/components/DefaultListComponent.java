@@ -52,6 +52,7 @@ public class DefaultListComponent<M, C extends TakesValue<M>> implements ListCom
   private List<M> value;
   private Consumer<C> selector = c -> {};
   private Consumer<C> deselector = c -> {};
+  private Function<? super M, ?> keyExtractor;
 
   private final Set<C> selected = Collections.newSetFromMap(new IdentityHashMap<>());
 
@@ -87,6 +88,11 @@ public class DefaultListComponent<M, C extends TakesValue<M>> implements ListCom
     this.value = value;
 
     if (changed) {
+      if (keyExtractor != null) {
+        reconcile();
+        return;
+      }
+
       for (int i = components.size()-1; i > -1; i--) {
         removeComponent(i);
       }
@@ -96,6 +102,73 @@ public class DefaultListComponent<M, C extends TakesValue<M>> implements ListCom
     }
   }
 
+  @Override
+  public void setKeyExtractor(final Function<? super M, ?> keyExtractor) {
+    this.keyExtractor = keyExtractor;
+  }
+
+  /**
+   * Displays the current value by reusing the components of models with the same key, instead of re-creating every
+   * component. Only components displaying a different model instance than before get the new model.
+   */
+  private void reconcile() {
+    final List<Object> oldKeys = new ArrayList<>(components.size());
+    for (final C component : components) {
+      oldKeys.add(keyExtractor.apply(component.getValue()));
+    }
+    final List<Object> newKeys = new ArrayList<>(value.size());
+    for (final M model : value) {
+      newKeys.add(keyExtractor.apply(model));
+    }
+    final KeyedListDiff diff = KeyedListDiff.compute(oldKeys, newKeys);
+
+    final List<C> oldComponents = new ArrayList<>(components);
+    for (int i = oldComponents.size()-1; i > -1; i--) {
+      if (diff.isRemoved(i)) {
+        removeComponent(i);
+      }
+    }
+
+    // Going backwards, every component is placed in front of its successor, which is already in place.
+    final List<C> newComponents = new ArrayList<>(Collections.<C>nCopies(value.size(), null));
+    final List<C> created = new ArrayList<>();
+    HTMLElement successor = null;
+    for (int i = value.size()-1; i > -1; i--) {
+      final M model = value.get(i);
+      final C component;
+      if (diff.isInserted(i)) {
+        component = createComponent(model);
+        created.add(component);
+      }
+      else {
+        component = oldComponents.get(diff.getSource(i));
+        if (component.getValue() != model) {
+          component.setValue(model);
+        }
+      }
+
+      final HTMLElement element = Assert.notNull(elementAccessor.apply(component));
+      if (diff.isInserted(i) || diff.isMoved(i)) {
+        if (successor == null) {
+          root.appendChild(element);
+        }
+        else {
+          root.insertBefore(element, successor);
+        }
+      }
+      newComponents.set(i, component);
+      successor = element;
+    }
+
+    components.clear();
+    components.addAll(newComponents);
+    for (int i = created.size()-1; i > -1; i--) {
+      for (final Consumer<C> handler : creationHandlers) {
+        handler.accept(created.get(i));
+      }
+    }
+  }
+
   @Override
   public List<M> getValue() {
     return value;
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.databinding.client.components;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between the keys of the models displayed by a list and the keys of a new list of models, used to
+ * reuse the UI components of models which are still displayed instead of re-creating all of them.
+ *
+ * Every item of the new list is either inserted or reused from the old list. Of the reused items, those forming the
+ * longest subsequence which is in the same order in both lists stay in place, and only the others have to be moved.
+ * Items of the old list which aren't reused are removed. If keys are not unique, only the first item with a key is
+ * reused.
+ */
+public final class KeyedListDiff {
+
+  private final int[] sources;
+  private final boolean[] moved;
+  private final boolean[] removed;
+
+  private KeyedListDiff(final int[] sources, final boolean[] moved, final boolean[] removed) {
+    this.sources = sources;
+    this.moved = moved;
+    this.removed = removed;
+  }
+
+  /**
+   * @param oldKeys
+   *          The keys of the items currently displayed, in display order. Must not be null.
+   * @param newKeys
+   *          The keys of the items to display, in display order. Must not be null.
+   * @return The difference between the two lists of keys. Never null.
+   */
+  public static KeyedListDiff compute(final List<?> oldKeys, final List<?> newKeys) {
+    final Map<Object, Integer> oldIndexes = new HashMap<>(oldKeys.size() * 2);
+    for (int i = oldKeys.size() - 1; i >= 0; i--) {
+      oldIndexes.put(oldKeys.get(i), i);
+    }
+
+    final boolean[] removed = new boolean[oldKeys.size()];
+    Arrays.fill(removed, true);
+
+    final int[] sources = new int[newKeys.size()];
+    for (int i = 0; i < sources.length; i++) {
+      final Integer source = oldIndexes.remove(newKeys.get(i));
+      if (source == null) {
+        sources[i] = -1;
+      }
+      else {
+        sources[i] = source;
+        removed[source] = false;
+      }
+    }
+
+    final boolean[] moved = new boolean[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      moved[i] = sources[i] != -1;
+    }
+    for (final int stable : longestIncreasingSubsequence(sources)) {
+      moved[stable] = false;
+    }
+
+    return new KeyedListDiff(sources, moved, removed);
+  }
+
+  /**
+   * Returns the indexes of a longest strictly increasing subsequence of the non-negative values, in O(n log n).
+   */
+  private static int[] longestIncreasingSubsequence(final int[] values) {
+    // tails[k] is the index of the smallest value ending an increasing subsequence of length k + 1
+    final int[] tails = new int[values.length];
+    final int[] predecessors = new int[values.length];
+    int length = 0;
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] < 0) {
+        continue;
+      }
+
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (values[tails[mid]] < values[i]) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+
+      predecessors[i] = (low > 0) ? tails[low - 1] : -1;
+      tails[low] = i;
+      if (low == length) {
+        length++;
+      }
+    }
+
+    final int[] subsequence = new int[length];
+    for (int k = length - 1, i = (length > 0) ? tails[length - 1] : -1; k >= 0; k--, i = predecessors[i]) {
+      subsequence[k] = i;
+    }
+    return subsequence;
+  }
+
+  /**
+   * @return The index in the old list of the item reused at the given index of the new list, or -1 if the item is
+   *         inserted.
+   */
+  public int getSource(final int newIndex) {
+    return sources[newIndex];
+  }
+
+  /**
+   * @return True iff the item at the given index of the new list has no counterpart in the old list.
+   */
+  public boolean isInserted(final int newIndex) {
+    return sources[newIndex] == -1;
+  }
+
+  /**
+   * @return True iff the item at the given index of the new list is reused, but has to change places with other reused
+   *         items.
+   */
+  public boolean isMoved(final int newIndex) {
+    return moved[newIndex];
+  }
+
+  /**
+   * @return True iff the item at the given index of the old list is not part of the new list.
+   */
+  public boolean isRemoved(final int oldIndex) {
+    return removed[oldIndex];
+  }
+
+  public int getOldSize() {
+    return removed.length;
+  }
+
+  public int getNewSize() {
+    return sources.length;
+  }
+}
@@ -81,6 +81,24 @@ public interface ListComponent<M, C extends TakesValue<M>> extends IsElement, Ta
     }
   }
 
+  /**
+   * Enables or disables the reconciliation of displayed components by key. By default, every component is destroyed
+   * and re-created when a new list of models is set with {@link #setValue(Object)}. With a key extractor, a component
+   * displaying a model with the same key as a model of the new list is kept and moved to the new position of the model
+   * instead, and only the components of models which were added or removed are created or destroyed. This is what
+   * makes re-binding a large list to a refreshed copy of it cheap.
+   *
+   * The default implementation ignores the key extractor, so list components which don't reconcile by key keep
+   * updating their components by position. Setting a key extractor is therefore always safe, but only an
+   * optimization for the list components which support it.
+   *
+   * @param keyExtractor
+   *          A function returning a key which identifies a model among the models in this list (e.g. its id), or null
+   *          to re-create all components when a new list is set.
+   */
+  default void setKeyExtractor(final Function<? super M, ?> keyExtractor) {
+  }
+
   /**
    * @param handler
    *          A handler that is called for every new UI component created for this list.
@@ -238,7 +256,7 @@ public interface ListComponent<M, C extends TakesValue<M>> extends IsElement, Ta
    */
   static <M, C extends TakesValue<M> & IsElement> Builder<M, C> forIsElementComponent(final Supplier<C> supplier,
           final Consumer<C> destroyer) {
-    return new Builder<>(root -> new DefaultListComponent<>(root, supplier, destroyer, c -> c.getElement()));
+    return new Builder<>(supplier, destroyer, c -> c.getElement());
   }
 
   /**
@@ -251,17 +269,53 @@ public interface ListComponent<M, C extends TakesValue<M>> extends IsElement, Ta
    */
   static <M, C extends TakesValue<M> & IsWidget> Builder<M, C> forIsWidgetComponent(final Supplier<C> supplier,
           final Consumer<C> destroyer) {
-    return new Builder<>(root -> new DefaultListComponent<>(root, supplier, destroyer, c -> (HTMLElement) c.asWidget().getElement()));
+    return new Builder<>(supplier, destroyer, c -> (HTMLElement) c.asWidget().getElement());
   }
 
   /**
    * Allows for building {@link ListComponent ListComponents} with different kinds of container elements.
    */
   static class Builder<M, C extends TakesValue<M>> {
-    private final Function<HTMLElement, ListComponent<M, C>> factory;
+    private final Supplier<C> supplier;
+    private final Consumer<C> destroyer;
+    private final Function<C, HTMLElement> elementAccessor;
+    private Function<? super M, ?> keyExtractor;
+    private boolean windowed;
+    private int itemHeight;
+    private int overscan;
+
+    private Builder(final Supplier<C> supplier, final Consumer<C> destroyer, final Function<C, HTMLElement> elementAccessor) {
+      this.supplier = supplier;
+      this.destroyer = destroyer;
+      this.elementAccessor = elementAccessor;
+    }
 
-    private Builder(final Function<HTMLElement, ListComponent<M, C>> factory) {
-      this.factory = factory;
+    /**
+     * Builds a {@link WindowedListComponent}, which only displays UI components for the models scrolled into view. The
+     * container element is the scrolling viewport and must be given a fixed height.
+     *
+     * @param itemHeight
+     *          The height in pixels of every displayed UI component. Must be positive.
+     * @param overscan
+     *          The number of models displayed before and after the viewport. Must not be negative.
+     * @return This builder.
+     */
+    public Builder<M, C> windowed(final int itemHeight, final int overscan) {
+      this.windowed = true;
+      this.itemHeight = itemHeight;
+      this.overscan = overscan;
+      return this;
+    }
+
+    /**
+     * @param keyExtractor
+     *          A function returning a key which identifies a model among the models in the list. See
+     *          {@link ListComponent#setKeyExtractor(Function)}.
+     * @return This builder.
+     */
+    public Builder<M, C> withKeyExtractor(final Function<? super M, ?> keyExtractor) {
+      this.keyExtractor = keyExtractor;
+      return this;
     }
 
     /**
@@ -270,7 +324,17 @@ public interface ListComponent<M, C extends TakesValue<M>> extends IsElement, Ta
      * @return A list component that displays UI components for individual models in an element with the given tag name.
      */
     public ListComponent<M, C> inElement(final String tagName) {
-      return factory.apply((HTMLElement) Document.get().createElement(tagName));
+      final HTMLElement root = (HTMLElement) Document.get().createElement(tagName);
+      final ListComponent<M, C> listComponent;
+      if (windowed) {
+        listComponent = new WindowedListComponent<>(root, supplier, destroyer, elementAccessor, itemHeight, overscan);
+      }
+      else {
+        listComponent = new DefaultListComponent<>(root, supplier, destroyer, elementAccessor);
+      }
+      listComponent.setKeyExtractor(keyExtractor);
+
+      return listComponent;
     }
 
     /**
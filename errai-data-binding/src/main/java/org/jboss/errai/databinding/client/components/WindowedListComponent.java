@@ -0,0 +1,488 @@
+/**
+ * Copyright (C) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.databinding.client.components;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.jboss.errai.common.client.api.Assert;
+import org.jboss.errai.common.client.dom.HTMLElement;
+
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.TakesValue;
+
+/**
+ * A {@link ListComponent} for very large lists, which only displays UI components for the models in its scrolled
+ * viewport plus a few models before and after it. The space taken by the models which aren't displayed is filled with
+ * two spacer elements, so that the scrollbar behaves as if every model were displayed.
+ *
+ * The root element of this component is the scrolling viewport and must be given a fixed height. Every displayed
+ * component must have the same height, given when constructing this component. UI components scrolled out of the
+ * viewport are not destroyed but reused for the models scrolled into it, so the number of UI components created does
+ * not depend on the size of the list. Consequently, creation handlers are called once per UI component and not once
+ * per model, and selection is tracked by model: a component displaying a selected model is passed to the selector, and
+ * passed to the deselector when it is reused for a model that isn't selected.
+ *
+ * Changes of the list only update the displayed components whose model changed, and the height of the spacers.
+ */
+public class WindowedListComponent<M, C extends TakesValue<M>> implements ListComponent<M, C> {
+
+  private final Collection<Consumer<C>> creationHandlers = new ArrayList<>();
+  private final Collection<Consumer<C>> destructionHandlers = new ArrayList<>();
+
+  private final HTMLElement root;
+  private final HTMLElement topSpacer;
+  private final HTMLElement bottomSpacer;
+  private final Supplier<C> supplier;
+  private final Consumer<C> destroyer;
+  private final Function<C, HTMLElement> elementAccessor;
+  private final int itemHeight;
+  private final int overscan;
+
+  /**
+   * The components displaying the models from index {@link #first} on, in display order.
+   */
+  private final List<C> components = new ArrayList<>();
+  private final Deque<C> recycled = new ArrayDeque<>();
+  private int first;
+
+  private List<M> value;
+  private Consumer<C> selector = c -> {};
+  private Consumer<C> deselector = c -> {};
+  private Function<? super M, ?> keyExtractor;
+
+  private final Set<M> selectedModels = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Set<C> selectedComponents = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * @param root
+   *          The scrolling viewport. Must be given a fixed height.
+   * @param itemHeight
+   *          The height in pixels of every displayed UI component. Must be positive.
+   * @param overscan
+   *          The number of models displayed before and after the viewport, so that scrolling does not reveal empty
+   *          space before the scroll event is handled. Must not be negative.
+   */
+  public WindowedListComponent(final HTMLElement root, final Supplier<C> supplier, final Consumer<C> destroyer,
+          final Function<C, HTMLElement> elementAccessor, final int itemHeight, final int overscan) {
+    if (itemHeight < 1) {
+      throw new IllegalArgumentException("The item height must be positive but was " + itemHeight);
+    }
+    if (overscan < 0) {
+      throw new IllegalArgumentException("The overscan must not be negative but was " + overscan);
+    }
+    this.root = root;
+    this.supplier = supplier;
+    this.destroyer = destroyer;
+    this.elementAccessor = elementAccessor;
+    this.itemHeight = itemHeight;
+    this.overscan = overscan;
+
+    topSpacer = createSpacer();
+    bottomSpacer = createSpacer();
+    root.appendChild(topSpacer);
+    root.appendChild(bottomSpacer);
+    root.getStyle().setProperty("overflow-y", "auto");
+    root.addEventListener("scroll", event -> render(false), false);
+  }
+
+  private static HTMLElement createSpacer() {
+    final HTMLElement spacer = (HTMLElement) Document.get().createElement(DivElement.TAG);
+    spacer.getStyle().setProperty("height", "0px");
+
+    return spacer;
+  }
+
+  @Override
+  public HandlerRegistration addComponentCreationHandler(final Consumer<C> handler) {
+    creationHandlers.add(handler);
+
+    return () -> creationHandlers.remove(handler);
+  }
+
+  @Override
+  public HandlerRegistration addComponentDestructionHandler(final Consumer<C> handler) {
+    destructionHandlers.add(handler);
+
+    return () -> destructionHandlers.remove(handler);
+  }
+
+  @Override
+  public HTMLElement getElement() {
+    return root;
+  }
+
+  @Override
+  public void setValue(final List<M> value) {
+    final boolean changed = this.value != value;
+    this.value = value;
+
+    if (changed) {
+      render(true);
+    }
+  }
+
+  @Override
+  public List<M> getValue() {
+    return value;
+  }
+
+  @Override
+  public void setKeyExtractor(final Function<? super M, ?> keyExtractor) {
+    this.keyExtractor = keyExtractor;
+  }
+
+  /**
+   * Updates the displayed components to the current size and scroll position of the viewport. Must be called when the
+   * height of the viewport changes, e.g. after this component was attached to the document.
+   */
+  public void refresh() {
+    render(true);
+  }
+
+  /**
+   * Scrolls the model at the given index to the top of the viewport.
+   *
+   * @param index
+   *          A valid index for a model in the list of models.
+   */
+  public void scrollToIndex(final int index) {
+    checkIndex(index);
+    ((Element) root).setScrollTop(index * itemHeight);
+    render(false, index);
+  }
+
+  /**
+   * Scrolls the model at the given index into the viewport if it is not displayed.
+   */
+  @Override
+  public C getComponent(final int index) {
+    checkIndex(index);
+    if (index < first || index >= first + components.size()) {
+      scrollToIndex(index);
+    }
+
+    return components.get(index - first);
+  }
+
+  /**
+   * @return An optional containing a UI component associated with the given model, iff the given model is currently
+   *         displayed in the viewport or the overscan. Otherwise {@link Optional#empty()}.
+   */
+  @Override
+  public Optional<C> getComponent(final M model) {
+    for (final C component : components) {
+      if (component.getValue() == model) {
+        return Optional.of(component);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  private void checkIndex(final int index) {
+    if (value == null || index < 0 || index >= value.size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (value == null ? 0 : value.size()));
+    }
+  }
+
+  @Override
+  public void onItemAdded(final List<M> source, final M item) {
+    render(true);
+  }
+
+  @Override
+  public void onItemAddedAt(final List<M> source, final int index, final M item) {
+    render(true);
+  }
+
+  @Override
+  public void onItemsAdded(final List<M> source, final Collection<? extends M> items) {
+    render(true);
+  }
+
+  @Override
+  public void onItemsAddedAt(final List<M> source, final int index, final Collection<? extends M> items) {
+    render(true);
+  }
+
+  @Override
+  public void onItemRemovedAt(final List<M> source, final int index) {
+    deselectRemoved(source, Collections.singletonList(index));
+    render(true);
+  }
+
+  @Override
+  public void onItemsRemovedAt(final List<M> source, final List<Integer> indexes) {
+    deselectRemoved(source, indexes);
+    render(true);
+  }
+
+  /**
+   * Drops removed models from the selection, unless the list still contains them at another index.
+   *
+   * @param source
+   *          The list before the removal.
+   */
+  private void deselectRemoved(final List<M> source, final List<Integer> indexes) {
+    for (final int index : indexes) {
+      final M model = source.get(index);
+      if (selectedModels.contains(model) && !containsModel(model)) {
+        selectedModels.remove(model);
+      }
+    }
+  }
+
+  private boolean containsModel(final M model) {
+    if (value != null) {
+      for (final M m : value) {
+        if (m == model) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  public void onItemsCleared(final List<M> source) {
+    selectedModels.clear();
+    render(true);
+  }
+
+  @Override
+  public void onItemChanged(final List<M> source, final int index, final M item) {
+    if (index >= first && index < first + components.size()) {
+      bind(components.get(index - first), item);
+    }
+  }
+
+  private void render(final boolean force) {
+    render(force, ((Element) root).getScrollTop() / itemHeight);
+  }
+
+  /**
+   * Displays the models in the viewport and the overscan. Components displaying a model which is still displayed are
+   * kept, the others are reused for the newly displayed models. Only components displaying another model than before
+   * are updated.
+   *
+   * @param force
+   *          If false, nothing is done if the displayed range of models did not change.
+   * @param topIndex
+   *          The index of the model at the top of the viewport. Passed explicitly when scrolling programmatically,
+   *          because the scroll position of a detached element can't be changed.
+   */
+  private void render(final boolean force, final int topIndex) {
+    final int size = (value == null ? 0 : value.size());
+    final int firstVisible = Math.min(topIndex, Math.max(0, size - 1));
+    final int visible = (((Element) root).getClientHeight() + itemHeight - 1) / itemHeight + 1;
+    final int from = Math.max(0, firstVisible - overscan);
+    final int to = Math.min(size, firstVisible + visible + overscan);
+
+    if (!force && from == first && to - from == components.size()) {
+      return;
+    }
+
+    // The same model, or models with the same key, can be displayed more than once.
+    final Map<Object, Deque<C>> displayed = (keyExtractor == null ? new IdentityHashMap<>() : new HashMap<>());
+    for (final C component : components) {
+      final Object key = keyOf(component.getValue());
+      Deque<C> componentsOfKey = displayed.get(key);
+      if (componentsOfKey == null) {
+        componentsOfKey = new ArrayDeque<>(1);
+        displayed.put(key, componentsOfKey);
+      }
+      componentsOfKey.add(component);
+    }
+
+    final List<C> newComponents = new ArrayList<>(Collections.<C>nCopies(to - from, null));
+    for (int i = from; i < to; i++) {
+      final Deque<C> componentsOfKey = displayed.get(keyOf(value.get(i)));
+      final C component = (componentsOfKey == null ? null : componentsOfKey.poll());
+      if (component != null) {
+        newComponents.set(i - from, component);
+        bind(component, value.get(i));
+      }
+    }
+
+    for (final Deque<C> componentsOfKey : displayed.values()) {
+      recycled.addAll(componentsOfKey);
+    }
+    final List<C> created = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      if (newComponents.get(i - from) == null) {
+        final C component;
+        if (recycled.isEmpty()) {
+          component = supplier.get();
+          created.add(component);
+        }
+        else {
+          component = recycled.pop();
+        }
+        newComponents.set(i - from, component);
+        bind(component, value.get(i));
+      }
+    }
+
+    // Going backwards, every displayed element is placed in front of its successor, which is already in place.
+    HTMLElement successor = bottomSpacer;
+    for (int i = newComponents.size()-1; i > -1; i--) {
+      final HTMLElement element = Assert.notNull(elementAccessor.apply(newComponents.get(i)));
+      if (element.getParentNode() != root || element.getNextSibling() != successor) {
+        root.insertBefore(element, successor);
+      }
+      successor = element;
+    }
+
+    // Unused components are kept for later scrolling, but no more than the displayed ones.
+    while (recycled.size() > newComponents.size()) {
+      destroyComponent(recycled.pop());
+    }
+    for (final C component : recycled) {
+      if (selectedComponents.remove(component)) {
+        deselector.accept(component);
+      }
+      final HTMLElement element = elementAccessor.apply(component);
+      if (element.getParentNode() != null) {
+        element.getParentNode().removeChild(element);
+      }
+    }
+
+    components.clear();
+    components.addAll(newComponents);
+    first = from;
+    topSpacer.getStyle().setProperty("height", (from * itemHeight) + "px");
+    bottomSpacer.getStyle().setProperty("height", ((size - to) * itemHeight) + "px");
+
+    for (final C component : created) {
+      for (final Consumer<C> handler : creationHandlers) {
+        handler.accept(component);
+      }
+    }
+  }
+
+  private Object keyOf(final M model) {
+    return (keyExtractor == null ? model : keyExtractor.apply(model));
+  }
+
+  private void bind(final C component, final M model) {
+    if (component.getValue() != model) {
+      component.setValue(model);
+    }
+
+    if (selectedModels.contains(model)) {
+      if (selectedComponents.add(component)) {
+        selector.accept(component);
+      }
+    }
+    else if (selectedComponents.remove(component)) {
+      deselector.accept(component);
+    }
+  }
+
+  private void destroyComponent(final C component) {
+    selectedComponents.remove(component);
+    for (final Consumer<C> handler : destructionHandlers) {
+      handler.accept(component);
+    }
+    final HTMLElement element = elementAccessor.apply(component);
+    if (element.getParentNode() != null) {
+      element.getParentNode().removeChild(element);
+    }
+    destroyer.accept(component);
+  }
+
+  @Override
+  public void setSelector(final Consumer<C> selector) {
+    this.selector = Assert.notNull(selector);
+  }
+
+  @Override
+  public void setDeselector(final Consumer<C> deselector) {
+    this.deselector = Assert.notNull(deselector);
+  }
+
+  @Override
+  public void selectModels(final Collection<M> models) {
+    selectedModels.addAll(models);
+    for (final C component : components) {
+      bind(component, component.getValue());
+    }
+  }
+
+  @Override
+  public void selectComponents(final Collection<C> components) {
+    final Collection<M> models = new ArrayList<>(components.size());
+    for (final C comp : components) {
+      models.add(comp.getValue());
+    }
+    selectModels(models);
+  }
+
+  /**
+   * @return The displayed components whose model is selected. Selected models outside of the viewport and the overscan
+   *         are returned by {@link #getSelectedModels()}.
+   */
+  @Override
+  public Collection<C> getSelectedComponents() {
+    return Collections.unmodifiableCollection(selectedComponents);
+  }
+
+  @Override
+  public Collection<M> getSelectedModels() {
+    return new ArrayList<>(selectedModels);
+  }
+
+  @Override
+  public void deselectModels(final Collection<M> models) {
+    selectedModels.removeAll(models);
+    for (final C component : components) {
+      bind(component, component.getValue());
+    }
+  }
+
+  @Override
+  public void deselectComponents(final Collection<C> components) {
+    final Collection<M> models = new ArrayList<>(components.size());
+    for (final C comp : components) {
+      models.add(comp.getValue());
+    }
+    deselectModels(models);
+  }
+
+  @Override
+  public void deselectAll() {
+    deselectModels(getSelectedModels());
+  }
+
+}
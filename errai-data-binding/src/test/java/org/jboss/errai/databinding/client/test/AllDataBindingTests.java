@@ -32,6 +32,7 @@ import org.junit.runners.Suite;
   DataBindingValidatorTest.class,
   DefaultConversionTest.class,
   HasPropertiesIntegrationTest.class,
+  KeyedListDiffTest.class,
   PropertyChangeHandlerIntegrationTest.class,
   PropertyChangeHandlerSupportTest.class})
 public class AllDataBindingTests {
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.databinding.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.errai.databinding.client.components.KeyedListDiff;
+import org.junit.Test;
+
+/**
+ * Tests for {@link KeyedListDiff}.
+ */
+public class KeyedListDiffTest {
+
+  /**
+   * Applies the diff the way the list components do, going backwards and placing every inserted or moved item in front
+   * of its successor.
+   */
+  private static List<String> apply(final List<String> oldList, final List<String> newList, final KeyedListDiff diff) {
+    final List<String> result = new ArrayList<>(oldList);
+    for (int i = oldList.size() - 1; i >= 0; i--) {
+      if (diff.isRemoved(i)) {
+        result.remove(i);
+      }
+    }
+
+    String successor = null;
+    for (int i = newList.size() - 1; i >= 0; i--) {
+      final String item = diff.isInserted(i) ? newList.get(i) : oldList.get(diff.getSource(i));
+      if (diff.isInserted(i) || diff.isMoved(i)) {
+        result.remove(item);
+        result.add((successor == null) ? result.size() : result.indexOf(successor), item);
+      }
+      successor = item;
+    }
+    return result;
+  }
+
+  private static int countMoves(final KeyedListDiff diff) {
+    int moves = 0;
+    for (int i = 0; i < diff.getNewSize(); i++) {
+      if (diff.isMoved(i)) {
+        moves++;
+      }
+    }
+    return moves;
+  }
+
+  @Test
+  public void testUnchangedListNeedsNoChanges() {
+    final List<String> list = Arrays.asList("a", "b", "c");
+    final KeyedListDiff diff = KeyedListDiff.compute(list, list);
+
+    for (int i = 0; i < list.size(); i++) {
+      assertEquals(i, diff.getSource(i));
+      assertFalse(diff.isMoved(i));
+      assertFalse(diff.isRemoved(i));
+    }
+  }
+
+  @Test
+  public void testMovingOneItemMovesOnlyThatItem() {
+    final List<String> oldList = Arrays.asList("a", "b", "c", "d", "e");
+    final List<String> newList = Arrays.asList("b", "c", "d", "e", "a");
+    final KeyedListDiff diff = KeyedListDiff.compute(oldList, newList);
+
+    assertEquals(1, countMoves(diff));
+    assertTrue(diff.isMoved(4));
+    assertEquals(newList, apply(oldList, newList, diff));
+  }
+
+  @Test
+  public void testInsertionsAndRemovals() {
+    final List<String> oldList = Arrays.asList("a", "b", "c", "d");
+    final List<String> newList = Arrays.asList("x", "a", "c", "y", "d");
+    final KeyedListDiff diff = KeyedListDiff.compute(oldList, newList);
+
+    assertTrue(diff.isInserted(0));
+    assertTrue(diff.isInserted(3));
+    assertTrue(diff.isRemoved(1));
+    assertFalse(diff.isRemoved(2));
+    assertEquals(0, countMoves(diff));
+    assertEquals(newList, apply(oldList, newList, diff));
+  }
+
+  @Test
+  public void testOnlyFirstItemWithDuplicateKeyIsReused() {
+    final List<String> oldList = Arrays.asList("a", "a", "b");
+    final List<String> newList = Arrays.asList("b", "a", "a");
+    final KeyedListDiff diff = KeyedListDiff.compute(oldList, newList);
+
+    assertEquals(2, diff.getSource(0));
+    assertEquals(0, diff.getSource(1));
+    assertTrue(diff.isInserted(2));
+    assertTrue(diff.isRemoved(1));
+  }
+
+  @Test
+  public void testRandomPermutationsAreReconciledWithMinimalMoves() {
+    final Random random = new Random(42);
+    for (int run = 0; run < 200; run++) {
+      final int oldSize = random.nextInt(50);
+      final int insertions = random.nextInt(10);
+
+      final List<String> oldList = new ArrayList<>();
+      for (int i = 0; i < oldSize; i++) {
+        oldList.add("k" + i);
+      }
+      final List<String> newList = new ArrayList<>();
+      for (final String key : oldList) {
+        if (random.nextInt(4) != 0) {
+          newList.add(key);
+        }
+      }
+      for (int i = 0; i < insertions; i++) {
+        newList.add("n" + i);
+      }
+      Collections.shuffle(newList, random);
+
+      final KeyedListDiff diff = KeyedListDiff.compute(oldList, newList);
+      assertEquals(newList, apply(oldList, newList, diff));
+      assertEquals(reusedCount(diff) - longestIncreasingSubsequenceLength(diff), countMoves(diff));
+    }
+  }
+
+  private static int reusedCount(final KeyedListDiff diff) {
+    int reused = 0;
+    for (int i = 0; i < diff.getNewSize(); i++) {
+      if (!diff.isInserted(i)) {
+        reused++;
+      }
+    }
+    return reused;
+  }
+
+  private static int longestIncreasingSubsequenceLength(final KeyedListDiff diff) {
+    final int[] lengths = new int[diff.getNewSize()];
+    int longest = 0;
+    for (int i = 0; i < lengths.length; i++) {
+      if (diff.isInserted(i)) {
+        continue;
+      }
+      lengths[i] = 1;
+      for (int j = 0; j < i; j++) {
+        if (!diff.isInserted(j) && diff.getSource(j) < diff.getSource(i)) {
+          lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+        }
+      }
+      longest = Math.max(longest, lengths[i]);
+    }
+    return longest;
+  }
+}
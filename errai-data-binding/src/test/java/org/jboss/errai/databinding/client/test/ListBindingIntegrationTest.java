@@ -157,6 +157,106 @@ public class ListBindingIntegrationTest extends AbstractErraiIOCTest {
     runTestModelListAssertions(list, component, one, two, three);
   }
 
+  public void testWindowedListHandlerBindingToListDirectly() throws Exception {
+    final ListComponent<TestModel, TestModelWidget> component = forIsWidgetComponent(TestModelWidget::new, c -> {})
+            .windowed(20, 10).inDiv();
+    final List<TestModel> list = DataBinder.forListOfType(TestModel.class)
+            .bind(component, "this", Convert.identityConverter(List.class)).getModel();
+    final TestModel one = new TestModel("one");
+    final TestModel two = new TestModel("two");
+    final TestModel three = new TestModel("three");
+
+    runTestModelListAssertions(list, component, one, two, three);
+  }
+
+  public void testWindowedListOnlyCreatesDisplayedComponents() throws Exception {
+    final List<TestModelWidget> created = new ArrayList<>();
+    final ListComponent<TestModel, TestModelWidget> component = forIsWidgetComponent(TestModelWidget::new, c -> {})
+            .windowed(20, 5).inDiv();
+    component.addComponentCreationHandler(created::add);
+    final List<TestModel> list = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      list.add(new TestModel(String.valueOf(i)));
+    }
+
+    component.setValue(list);
+    assertTrue("Too many components created: " + created.size(), created.size() < 20);
+    assertEquals("Unexpected number of displayed elements plus two spacers.", created.size() + 2,
+            component.getElement().getChildNodes().getLength());
+
+    assertEquals(list.get(5000), component.getComponent(5000).getValue());
+    assertTrue("Scrolling created new components: " + created.size(), created.size() < 20);
+  }
+
+  public void testKeyedListReusesComponentsWhenListIsReset() throws Exception {
+    final List<TestModelWidget> created = new ArrayList<>();
+    final List<TestModelWidget> destroyed = new ArrayList<>();
+    final ListComponent<TestModel, TestModelWidget> component = forIsWidgetComponent(TestModelWidget::new, c -> {})
+            .withKeyExtractor(TestModel::getValue).inDiv();
+    component.addComponentCreationHandler(created::add);
+    component.addComponentDestructionHandler(destroyed::add);
+
+    component.setValue(Arrays.asList(new TestModel("one"), new TestModel("two"), new TestModel("three")));
+    final TestModelWidget one = component.getComponent(0);
+    final TestModelWidget two = component.getComponent(1);
+    final TestModelWidget three = component.getComponent(2);
+    created.clear();
+
+    // a refreshed copy of the list, reordered, with one model removed and one added
+    final List<TestModel> refreshed = Arrays.asList(new TestModel("three"), new TestModel("one"), new TestModel("four"));
+    component.setValue(refreshed);
+
+    assertSame("Component of kept model was re-created.", three, component.getComponent(0));
+    assertSame("Component of kept model was re-created.", one, component.getComponent(1));
+    assertEquals(Collections.singletonList(component.getComponent(2)), created);
+    assertEquals(Collections.singletonList(two), destroyed);
+    for (int i = 0; i < refreshed.size(); i++) {
+      assertSame("Reused component does not display the new model.", refreshed.get(i),
+              component.getComponent(i).getValue());
+      assertSame("Element is not at the index of its model.", component.getComponent(i).getElement(),
+              component.getElement().getChildNodes().item(i));
+    }
+  }
+
+  public void testWindowedListDisplaysDuplicateModels() throws Exception {
+    final List<TestModelWidget> created = new ArrayList<>();
+    final ListComponent<TestModel, TestModelWidget> component = forIsWidgetComponent(TestModelWidget::new, c -> {})
+            .windowed(20, 5).inDiv();
+    component.addComponentCreationHandler(created::add);
+    final TestModel one = new TestModel("one");
+    final TestModel two = new TestModel("two");
+
+    component.setValue(Arrays.asList(one, one, two));
+    component.setValue(Arrays.asList(two, one, one));
+
+    assertEquals("Components were not reused.", 3, created.size());
+    assertEquals("Unexpected number of displayed elements plus two spacers.", 5,
+            component.getElement().getChildNodes().getLength());
+    assertSame(two, component.getComponent(0).getValue());
+    assertSame(one, component.getComponent(1).getValue());
+    assertSame(one, component.getComponent(2).getValue());
+    assertNotSame(component.getComponent(1), component.getComponent(2));
+  }
+
+  public void testWindowedListDropsRemovedModelsFromSelection() throws Exception {
+    final ListComponent<TestModel, TestModelWidget> component = forIsWidgetComponent(TestModelWidget::new, c -> {})
+            .windowed(20, 5).inDiv();
+    final List<TestModel> list = DataBinder.forListOfType(TestModel.class)
+            .bind(component, "this", Convert.identityConverter(List.class)).getModel();
+    list.add(new TestModel("one"));
+    list.add(new TestModel("two"));
+    list.add(new TestModel("three"));
+    final TestModel one = list.get(0);
+    final TestModel three = list.get(2);
+
+    component.selectModels(Arrays.asList(one, three));
+    list.remove(0);
+
+    assertEquals(Collections.singletonList(three), new ArrayList<>(component.getSelectedModels()));
+    assertEquals(Collections.singletonList(component.getComponent(1)),
+            new ArrayList<>(component.getSelectedComponents()));
+  }
+
   public void testListHandlerPauseAndResume() throws Exception {
     final ListComponent<TestModel, TestModelWidget> component = forIsWidgetComponent(TestModelWidget::new, c -> {}).inDiv();
     final DataBinder<List<TestModel>> binder = DataBinder.forListOfType(TestModel.class)
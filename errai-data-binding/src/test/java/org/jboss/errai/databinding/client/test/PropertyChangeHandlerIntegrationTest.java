@@ -623,6 +623,60 @@ public class PropertyChangeHandlerIntegrationTest extends AbstractErraiIOCTest {
     assertEquals("The handler should not have been invoked for this change since remove was called.", 1, (int) propertyChanges.get());
   }
 
+  @Test
+  public void testBatchedChangesAreCoalescedPerProperty() {
+    final MockHandler handler = new MockHandler();
+
+    final TextBox textBox = new TextBox();
+    final DataBinder<TestModel> binder = DataBinder.forType(TestModel.class).bind(textBox, "value");
+    binder.addPropertyChangeHandler(handler);
+
+    binder.beginBatch();
+    binder.getModel().setValue("first");
+    binder.getModel().setValue("second");
+    binder.getModel().setName("name");
+    assertEquals("Model not properly updated", "second", binder.getModel().getValue());
+    assertEquals("Widget should not be updated before the batch is committed", "", textBox.getText());
+    assertEquals("Should not have received property change events before the batch is committed", 0,
+            handler.getEvents().size());
+
+    binder.commitBatch();
+    assertFalse(binder.isBatching());
+    assertEquals("Widget not properly updated", "second", textBox.getText());
+    assertEquals("Should have received exactly one property change event per property", 2, handler.getEvents().size());
+    assertEquals("Wrong property name in event", "value", handler.getEvents().get(0).getPropertyName());
+    assertNull("Previous value should have been null", handler.getEvents().get(0).getOldValue());
+    assertEquals("Wrong property value in event", "second", handler.getEvents().get(0).getNewValue());
+    assertEquals("Wrong property name in event", "name", handler.getEvents().get(1).getPropertyName());
+  }
+
+  @Test
+  public void testBatchedChangeBackToOriginalValueFiresNoEvent() {
+    final MockHandler handler = new MockHandler();
+
+    final TextBox textBox = new TextBox();
+    final DataBinder<TestModel> binder = DataBinder.forType(TestModel.class).bind(textBox, "value");
+    binder.addPropertyChangeHandler(handler);
+
+    binder.beginBatch();
+    binder.beginBatch();
+    binder.getModel().setValue("changed");
+    binder.commitBatch();
+    assertEquals("Nested batch should not propagate changes", 0, handler.getEvents().size());
+
+    binder.getModel().setValue(null);
+    binder.commitBatch();
+    assertEquals("Should not have received property change events", 0, handler.getEvents().size());
+
+    try {
+      binder.commitBatch();
+      fail("Committing without a batch should fail");
+    }
+    catch (final IllegalStateException e) {
+      // expected
+    }
+  }
+
   @Test
   public void testDeclarativePropertyChangeHandler() throws Exception {
     final ModelWithDeclarativeHandler unwrapped = new ModelWithDeclarativeHandler();
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2011 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.client.api;
+
+/**
+ * A message part value which has already been marshalled. The envelope marshallers write its JSON as it is, so a
+ * value which is sent over and over again, like a cached RPC result, is only marshalled once.
+ * <p/>
+ * The JSON has to be marshalled in a session of its own, as it can't refer to objects elsewhere in the message.
+ */
+public final class EncodedValue {
+  private final String json;
+
+  public EncodedValue(final String json) {
+    this.json = json;
+  }
+
+  public String getJson() {
+    return json;
+  }
+
+  @Override
+  public String toString() {
+    return json;
+  }
+}
@@ -21,6 +21,7 @@ import java.util.Map;
 
 import org.jboss.errai.common.client.protocols.MessageParts;
 import org.jboss.errai.marshalling.client.Marshalling;
+import org.jboss.errai.marshalling.client.api.EncodedValue;
 import org.jboss.errai.marshalling.client.api.Marshaller;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
 import org.jboss.errai.marshalling.client.api.json.EJObject;
@@ -77,9 +78,18 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
   @Override
   public String marshall(final Map<String, Object> o, final MarshallingSession ctx) {
     final StringBuilder buf = new StringBuilder();
+    marshall(o, ctx, buf::append);
+    return buf.toString();
+  }
 
-    buf.append("{");
-    Object key, val;
+  /**
+   * Marshals the envelope piece by piece into the specified {@link JsonSink}, so that callers can encode it without
+   * first building the whole envelope as one String.
+   */
+  public void marshall(final Map<String, Object> o, final MarshallingSession ctx, final JsonSink out) {
+    out.append("{");
+    String key;
+    Object val;
     int i = 0;
     for (final Map.Entry<String, Object> entry : o.entrySet()) {
       key = entry.getKey();
@@ -89,14 +99,19 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
         continue;
 
       if (i++ > 0) {
-        buf.append(",");
+        out.append(",");
       }
 
       final Marshaller<Object> valueMarshaller;
-      buf.append("\"").append(key).append("\"").append(":");
+      out.append("\"");
+      out.append(key);
+      out.append("\":");
 
       if (val == null) {
-        buf.append("null");
+        out.append("null");
+      }
+      else if (val instanceof EncodedValue) {
+        out.append(((EncodedValue) val).getJson());
       }
       else {
         if (Marshalling.needsQualification(val)) {
@@ -105,12 +120,12 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
         else {
           valueMarshaller = MarshallUtil.getMarshaller(val, ctx);
         }
-        
-        buf.append(valueMarshaller.marshall(MarshallUtil.maybeUnwrap(val), ctx));
+
+        out.append(valueMarshaller.marshall(MarshallUtil.maybeUnwrap(val), ctx));
       }
     }
 
-    return buf.append("}").toString();
+    out.append("}");
   }
 
   @Override
@@ -118,4 +133,10 @@ public class ErraiProtocolEnvelopeMarshaller implements Marshaller<Map<String, O
     throw new UnsupportedOperationException("Not implemented!");
   }
 
+  /**
+   * Receives the JSON of an envelope as it is marshalled.
+   */
+  public interface JsonSink {
+    void append(String json);
+  }
 }
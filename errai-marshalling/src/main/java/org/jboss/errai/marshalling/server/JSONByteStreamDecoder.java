@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.server;
+
+import org.jboss.errai.common.client.protocols.MessageParts;
+import org.jboss.errai.common.client.protocols.SerializationParts;
+import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder.ArrayContext;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder.Context;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder.ObjectContext;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder.OuterContext;
+import org.jboss.errai.marshalling.server.json.impl.ErraiJSONValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * A byte-level variant of {@link JSONStreamDecoder} which decodes UTF-8 directly from the underlying stream rather
+ * than going through an <tt>InputStreamReader</tt> and <tt>BufferedReader</tt>. It accepts exactly the same
+ * (lenient) grammar and produces the same object graph as {@link JSONStreamDecoder}.
+ * <p/>
+ * To keep per-message garbage down, the input buffer and the character buffer used to accumulate string
+ * literals are pooled per thread, and short strings (such as the {@link MessageParts} keys and the
+ * {@link SerializationParts} markers which appear in every message) are interned through a small per-thread
+ * cache so that repeated keys resolve to the same <tt>String</tt> instance. Integral numbers are parsed without
+ * going through an intermediate <tt>String</tt>.
+ */
+public class JSONByteStreamDecoder {
+  private static final int INPUT_BUFFER_SIZE = 1024 * 8;
+  private static final int INITIAL_CHAR_BUFFER_SIZE = 256;
+
+  /**
+   * Pooled character buffers which have grown beyond this size are shrunk back on reuse, so that one very large
+   * string literal does not pin its memory to the thread forever.
+   */
+  private static final int MAX_RETAINED_CHAR_BUFFER_SIZE = 1024 * 256;
+
+  private static final int STRING_CACHE_SIZE = 512;
+  private static final int MAX_CACHED_STRING_LENGTH = 64;
+
+  /**
+   * The maximum number of digits of an integral literal which is guaranteed to be exactly representable as a
+   * <tt>double</tt>, and can therefore be accumulated into a <tt>long</tt> instead of parsed from a string.
+   */
+  private static final int MAX_FAST_INT_DIGITS = 15;
+
+  private static final ThreadLocal<Scratch> scratchPool = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  private final InputStream inStream;
+  private final Scratch scratch;
+  private final byte[] in;
+
+  private int pos;
+  private int limit;
+
+  private char carry;
+  private char pendingLowSurrogate;
+
+  private JSONByteStreamDecoder(final InputStream inStream, final Scratch scratch) {
+    this.inStream = inStream;
+    this.scratch = scratch;
+    this.in = scratch.in;
+  }
+
+  /**
+   * Decodes the JSON payload by reading from the given stream of UTF-8 encoded characters. Reads to the end of
+   * the input stream unless there are errors.
+   *
+   * @param inStream
+   *          The input stream to read from. It must contain character data encoded as UTF-8, and it must be
+   *          positioned to read from the start of the JSON message to be parsed.
+   */
+  public static EJValue decode(final InputStream inStream) throws IOException {
+    Scratch scratch = scratchPool.get();
+    if (scratch.inUse) {
+      // re-entrant decode on the same thread (for instance, from within a marshaller). Don't trample the
+      // buffers of the outer decode.
+      scratch = new Scratch();
+    }
+
+    scratch.acquire();
+    try {
+      return new JSONByteStreamDecoder(inStream, scratch).parse();
+    }
+    finally {
+      scratch.release();
+    }
+  }
+
+  private EJValue parse() {
+    try {
+      return new ErraiJSONValue(_parse(new OuterContext()));
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private boolean fill() throws IOException {
+    final int read = inStream.read(in, 0, in.length);
+    pos = 0;
+    if (read <= 0) {
+      limit = 0;
+      return false;
+    }
+    limit = read;
+    return true;
+  }
+
+  private int nextByte() throws IOException {
+    if (pos == limit && !fill()) {
+      return -1;
+    }
+    return in[pos++] & 0xFF;
+  }
+
+  private char read() throws IOException {
+    if (carry != 0) {
+      final char oldCarry = carry;
+      carry = 0;
+      return oldCarry;
+    }
+    if (pendingLowSurrogate != 0) {
+      final char low = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+      return low;
+    }
+
+    final int b = nextByte();
+    if (b == -1) {
+      return 0;
+    }
+    else if (b < 0x80) {
+      return (char) b;
+    }
+    else {
+      return decodeMultiByte(b);
+    }
+  }
+
+  /**
+   * Decodes the remainder of a multi-byte UTF-8 sequence which starts with the given lead byte. Characters
+   * outside of the BMP are returned as a surrogate pair over two calls to {@link #read()}. Malformed sequences
+   * decode to U+FFFD, as they would through an <tt>InputStreamReader</tt>.
+   */
+  private char decodeMultiByte(final int lead) throws IOException {
+    if ((lead & 0xE0) == 0xC0) {
+      final int b1 = continuation();
+      if (b1 < 0) return '\uFFFD';
+      return (char) (((lead & 0x1F) << 6) | b1);
+    }
+    else if ((lead & 0xF0) == 0xE0) {
+      final int b1 = continuation();
+      if (b1 < 0) return '\uFFFD';
+      final int b2 = continuation();
+      if (b2 < 0) return '\uFFFD';
+      return (char) (((lead & 0x0F) << 12) | (b1 << 6) | b2);
+    }
+    else if ((lead & 0xF8) == 0xF0) {
+      final int b1 = continuation();
+      if (b1 < 0) return '\uFFFD';
+      final int b2 = continuation();
+      if (b2 < 0) return '\uFFFD';
+      final int b3 = continuation();
+      if (b3 < 0) return '\uFFFD';
+
+      final int codePoint = ((lead & 0x07) << 18) | (b1 << 12) | (b2 << 6) | b3;
+      if (!Character.isSupplementaryCodePoint(codePoint)) {
+        return '\uFFFD';
+      }
+      pendingLowSurrogate = Character.lowSurrogate(codePoint);
+      return Character.highSurrogate(codePoint);
+    }
+    else {
+      return '\uFFFD';
+    }
+  }
+
+  /**
+   * @return the low six bits of the next byte if it is a UTF-8 continuation byte, otherwise -1 (in which case the
+   *         byte is not consumed).
+   */
+  private int continuation() throws IOException {
+    if (pos == limit && !fill()) {
+      return -1;
+    }
+    final int b = in[pos] & 0xFF;
+    if ((b & 0xC0) != 0x80) {
+      return -1;
+    }
+    pos++;
+    return b & 0x3F;
+  }
+
+  private Object _parse(final Context ctx) throws IOException {
+    char c;
+    while ((c = read()) != 0) {
+      switch (c) {
+        case '[':
+          ctx.addValue(_parse(new ArrayContext(new ArrayList<Object>())));
+          break;
+
+        case '{':
+          ctx.addValue(_parse(new ObjectContext(new LinkedHashMap<Object, Object>())));
+          break;
+
+        case ']':
+        case '}':
+          return ctx.record();
+
+        case ',':
+          ctx.record();
+          break;
+
+        case '"':
+        case '\'':
+          ctx.addValue(parseString(c));
+          break;
+
+        case ':':
+          continue;
+
+        default:
+          if (isNumberStart(c)) {
+            carry = c;
+            ctx.addValue(parseDouble());
+          }
+          else if (Character.isJavaIdentifierPart(c)) {
+            ctx.addValue(parseIdentifier(c));
+          }
+      }
+    }
+
+    return ctx.record();
+  }
+
+  private String parseString(final char term) throws IOException {
+    char[] chars = scratch.chars;
+    int len = 0;
+    char c;
+
+    for (;;) {
+      // fast path: copy plain ASCII bytes straight out of the input buffer.
+      if (pendingLowSurrogate == 0) {
+        final byte[] in = this.in;
+        while (pos < limit) {
+          final byte b = in[pos];
+          if (b < 0 || b == '"' || b == '\'' || b == '\\') {
+            break;
+          }
+          if (len == chars.length) {
+            chars = scratch.growChars();
+          }
+          chars[len++] = (char) b;
+          pos++;
+        }
+      }
+
+      if ((c = read()) == 0) {
+        throw new RuntimeException("unterminated string literal");
+      }
+      else if (c == term) {
+        return toString(chars, len);
+      }
+      else if (c == '\\') {
+        c = handleEscapeSequence();
+      }
+
+      if (len == chars.length) {
+        chars = scratch.growChars();
+      }
+      chars[len++] = c;
+    }
+  }
+
+  private Object parseIdentifier(char c) throws IOException {
+    char[] chars = scratch.chars;
+    int len = 0;
+
+    do {
+      if (len == chars.length) {
+        chars = scratch.growChars();
+      }
+      chars[len++] = c;
+    }
+    while (((c = read()) != 0) && Character.isJavaIdentifierPart(c));
+
+    if (c != 0) carry = c;
+
+    switch (len) {
+      case 4:
+        if (chars[0] == 'n' && chars[1] == 'u' && chars[2] == 'l' && chars[3] == 'l') {
+          return null;
+        }
+        else if (chars[0] == 't' && chars[1] == 'r' && chars[2] == 'u' && chars[3] == 'e') {
+          return Boolean.TRUE;
+        }
+        break;
+      case 5:
+        if (chars[0] == 'f' && chars[1] == 'a' && chars[2] == 'l' && chars[3] == 's' && chars[4] == 'e') {
+          return Boolean.FALSE;
+        }
+        break;
+    }
+
+    return toString(chars, len);
+  }
+
+  private String toString(final char[] chars, final int len) {
+    if (len > MAX_CACHED_STRING_LENGTH) {
+      return new String(chars, 0, len);
+    }
+
+    int hash = 0;
+    for (int i = 0; i < len; i++) {
+      hash = 31 * hash + chars[i];
+    }
+
+    final String[] cache = scratch.stringCache;
+    final int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+    final String cached = cache[slot];
+
+    if (cached != null && cached.length() == len && cached.hashCode() == hash && matches(cached, chars, len)) {
+      return cached;
+    }
+
+    final String s = new String(chars, 0, len);
+    cache[slot] = s;
+    return s;
+  }
+
+  private static boolean matches(final String s, final char[] chars, final int len) {
+    for (int i = 0; i < len; i++) {
+      if (s.charAt(i) != chars[i]) return false;
+    }
+    return true;
+  }
+
+  private char handleEscapeSequence() throws IOException {
+    char c;
+    switch (c = read()) {
+      case '\\':
+        return '\\';
+      case '/':
+        return '/';
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 't':
+        return '\t';
+      case 'r':
+        return '\r';
+      case 'n':
+        return '\n';
+      case '\'':
+        return '\'';
+      case '"':
+        return '\"';
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          final int digit = Character.digit(read(), 16);
+          if (digit == -1) {
+            throw new RuntimeException("illegal unicode escape sequence: expected 4 hex characters after \\u");
+          }
+          value = (value << 4) | digit;
+        }
+        return (char) value;
+
+      default:
+        throw new RuntimeException("illegal escape sequence: " + c);
+    }
+  }
+
+  /**
+   * Parses a JSON numeric literal, consuming characters from the input up until a character is encountered that
+   * cannot be used to form a JSON number. The grammar is exactly that of {@link JSONStreamDecoder}, but literals
+   * which consist of up to {@value #MAX_FAST_INT_DIGITS} digits (and an optional sign) are accumulated directly
+   * rather than handed to {@link Double#parseDouble(String)}.
+   */
+  private double parseDouble() throws IOException {
+    char[] chars = scratch.chars;
+    int len = 0;
+
+    boolean integral = true;
+    boolean negative = false;
+    int digits = 0;
+    long value = 0;
+
+    // 0 = sign, 1 = int, 2 = frac, 3 = exp sign, 4 = exp; see JSONStreamDecoder.State
+    int state = 0;
+    char c;
+
+    recognize:
+    while ((c = read()) != 0) {
+      switch (state) {
+        case 0:
+          if (c == '-') {
+            negative = true;
+          }
+          else if ('0' <= c && c <= '9') {
+            value = c - '0';
+            digits++;
+          }
+          else {
+            throw new NumberFormatException("Found '" + c + "' but expected '-' or a digit 1-9");
+          }
+          state = 1;
+          break;
+
+        case 1:
+          if ('0' <= c && c <= '9') {
+            value = value * 10 + (c - '0');
+            digits++;
+          }
+          else if (c == '.') {
+            integral = false;
+            state = 2;
+          }
+          else if (c == 'E' || c == 'e') {
+            integral = false;
+            state = 3;
+          }
+          else {
+            carry = c;
+            break recognize;
+          }
+          break;
+
+        case 2:
+          if (c == 'E' || c == 'e') {
+            state = 3;
+          }
+          else if (c < '0' || c > '9') {
+            carry = c;
+            break recognize;
+          }
+          break;
+
+        case 3:
+          if (c == '-' || c == '+' || ('0' <= c && c <= '9')) {
+            state = 4;
+          }
+          else {
+            throw new NumberFormatException("The numeric literal \"" + new String(chars, 0, len)
+                + "\" is malformed (can't end with e or E)");
+          }
+          break;
+
+        case 4:
+          if (c < '0' || c > '9') {
+            carry = c;
+            break recognize;
+          }
+          break;
+      }
+
+      if (len == chars.length) {
+        chars = scratch.growChars();
+      }
+      chars[len++] = c;
+    }
+
+    if (integral && digits > 0 && digits <= MAX_FAST_INT_DIGITS) {
+      return negative ? -(double) value : (double) value;
+    }
+
+    return Double.parseDouble(new String(chars, 0, len));
+  }
+
+  private static boolean isNumberStart(final char c) {
+    switch (c) {
+      case '.':
+      case '-':
+      case '0':
+      case '1':
+      case '2':
+      case '3':
+      case '4':
+      case '5':
+      case '6':
+      case '7':
+      case '8':
+      case '9':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The per-thread buffers used by a decode.
+   */
+  private static final class Scratch {
+    private final byte[] in = new byte[INPUT_BUFFER_SIZE];
+    private final String[] stringCache = new String[STRING_CACHE_SIZE];
+    private char[] chars = new char[INITIAL_CHAR_BUFFER_SIZE];
+    private boolean inUse;
+
+    private Scratch() {
+      for (final MessageParts part : MessageParts.values()) {
+        seed(part.name());
+      }
+      seed(SerializationParts.MARSHALLED_TYPES);
+      seed(SerializationParts.ENCODED_TYPE);
+      seed(SerializationParts.OBJECT_ID);
+      seed(SerializationParts.INSTANTIATE_ONLY);
+      seed(SerializationParts.NUMERIC_VALUE);
+      seed(SerializationParts.NULL_VALUE);
+      seed(SerializationParts.QUALIFIED_VALUE);
+      seed(SerializationParts.ENUM_STRING_VALUE);
+    }
+
+    private void seed(final String s) {
+      final int hash = s.hashCode();
+      stringCache[(hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1)] = s;
+    }
+
+    private char[] growChars() {
+      return chars = Arrays.copyOf(chars, chars.length << 1);
+    }
+
+    private void acquire() {
+      inUse = true;
+    }
+
+    private void release() {
+      if (chars.length > MAX_RETAINED_CHAR_BUFFER_SIZE) {
+        chars = new char[INITIAL_CHAR_BUFFER_SIZE];
+      }
+      inUse = false;
+    }
+  }
+}
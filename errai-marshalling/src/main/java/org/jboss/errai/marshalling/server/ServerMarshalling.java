@@ -19,6 +19,7 @@ package org.jboss.errai.marshalling.server;
 import org.jboss.errai.marshalling.client.Marshalling;
 import org.jboss.errai.marshalling.client.MarshallingSessionProviderFactory;
 import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.api.json.EJValue;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -27,10 +28,37 @@ import java.io.InputStream;
  * @author Mike Brock
  */
 public abstract class ServerMarshalling extends Marshalling {
+  private static volatile boolean useByteStreamDecoder;
+
+  /**
+   * Selects the decoder used by {@link #decode(InputStream)}: the {@link JSONByteStreamDecoder} if <tt>true</tt>,
+   * otherwise the reader-based {@link JSONStreamDecoder}. The server bus sets this from the
+   * <tt>errai.bus.json_decoder</tt> configuration attribute.
+   */
+  public static void setUseByteStreamDecoder(final boolean useByteStreamDecoder) {
+    ServerMarshalling.useByteStreamDecoder = useByteStreamDecoder;
+  }
+
+  public static boolean isUseByteStreamDecoder() {
+    return useByteStreamDecoder;
+  }
+
+  /**
+   * Decodes a UTF-8 encoded JSON payload from the given stream, using the configured decoder.
+   */
+  public static EJValue decode(final InputStream inputStream) throws IOException {
+    if (useByteStreamDecoder) {
+      return JSONByteStreamDecoder.decode(inputStream);
+    }
+    else {
+      return JSONStreamDecoder.decode(inputStream);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public static <T> T fromJSON(final InputStream inputStream, final Class<T> type) throws IOException {
     final MarshallingSession session = MarshallingSessionProviderFactory.getDecoding();
-    return (T) session.getMarshallerInstance(type.getName()).demarshall(JSONStreamDecoder.decode(inputStream), session);
+    return (T) session.getMarshallerInstance(type.getName()).demarshall(decode(inputStream), session);
   }
 
   public static Object fromJSON(final InputStream inputStream) throws IOException {
@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.server.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.server.JSONByteStreamDecoder;
+import org.jboss.errai.marshalling.server.json.impl.ErraiJSONValue;
+
+/**
+ * A compact binary encoding of the Errai JSON protocol. It carries exactly the same object graph as the JSON
+ * encoding (objects, arrays, strings, numbers, booleans and nulls), so that everything downstream of the decoder
+ * (in particular the {@link org.jboss.errai.marshalling.client.marshallers.ErraiProtocolEnvelopeMarshaller}) is
+ * shared between both encodings.
+ * <p/>
+ * A frame is laid out as:
+ * <pre>
+ *   [version:1 byte][body length:varint][body]
+ * </pre>
+ * where the body is a single tagged value. The version byte can never start a JSON payload, so a reader can tell a
+ * binary frame from a JSON payload. Integral numbers are written as zig-zag varints. Strings are written
+ * once per frame and then referenced by index: every string up to {@link #MAX_DICTIONARY_STRING_LENGTH} bytes is
+ * added to the frame's dictionary the first time it is written. The dictionary of each frame starts out seeded
+ * with the {@link org.jboss.errai.common.client.protocols.MessageParts} names, the
+ * {@link org.jboss.errai.common.client.protocols.SerializationParts} markers and a few common type names, so
+ * those are never spelled out at all.
+ * <p/>
+ * The dictionary does not span frames, so every frame can be decoded on its own.
+ * <p/>
+ * This is a codec only: the bus transports do not negotiate it, and the GWT client has no decoder for it.
+ */
+public final class ErraiBinaryProtocol {
+  private static final int VERSION = 1;
+
+  private static final int TAG_NULL = 0;
+  private static final int TAG_TRUE = 1;
+  private static final int TAG_FALSE = 2;
+  private static final int TAG_INT = 3;
+  private static final int TAG_DOUBLE = 4;
+  private static final int TAG_STRING = 5;
+  private static final int TAG_STRING_DEF = 6;
+  private static final int TAG_STRING_REF = 7;
+  private static final int TAG_OBJECT = 8;
+  private static final int TAG_ARRAY = 9;
+
+  /**
+   * Strings longer than this (in UTF-8 bytes) are written without being added to the dictionary.
+   */
+  private static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+
+  /**
+   * The largest magnitude of an integral <tt>double</tt> which is written as a varint.
+   */
+  private static final long MAX_EXACT_INTEGRAL = 1L << 53;
+
+  private static final int INITIAL_FRAME_SIZE = 1024 * 8;
+
+  /**
+   * Pooled frame buffers which have grown beyond this size are shrunk back on reuse, so that one very large
+   * message does not pin its memory to the thread forever.
+   */
+  private static final int MAX_RETAINED_FRAME_SIZE = 1024 * 512;
+
+  /**
+   * The strings every frame's dictionary starts out with. This list is part of the wire format: it may only be
+   * changed together with {@link #VERSION}.
+   */
+  private static final String[] SEED_DICTIONARY = {
+      // MessageParts
+      "CommandType", "Subject", "SubjectsList", "RemoteServices", "CapabilitiesFlags", "PollFrequency", "Value",
+      "SessionID", "MessageText", "ReplyTo", "ToSubject", "ErrorMessage", "AdditionalDetails", "ErrorTo",
+      "Throwable", "StackTrace", "Reason", "PriorityProcessing", "ConnectionSessionKey", "WebSocketURL",
+      "WebSocketToken",
+
+      // SerializationParts
+      "^MarshalledTypes", "^EncodedType", "^ObjectID", "^InstantiateOnly", "^NumVal", "^NullVal", "^Value",
+      "^EnumStringValue",
+
+      // common types and subjects
+      "java.lang.String", "java.lang.Integer", "java.lang.Long", "java.lang.Double", "java.lang.Float",
+      "java.lang.Short", "java.lang.Byte", "java.lang.Boolean", "java.lang.Character", "java.util.ArrayList",
+      "java.util.LinkedList", "java.util.HashMap", "java.util.LinkedHashMap", "java.util.HashSet",
+      "java.util.Date", "java.math.BigDecimal", "java.math.BigInteger", "ClientBus", "ServerBus",
+      "ClientBusErrors", "1", "2", "3"
+  };
+
+  private static final Map<String, Integer> SEED_INDEX = new HashMap<String, Integer>();
+
+  static {
+    for (int i = 0; i < SEED_DICTIONARY.length; i++) {
+      SEED_INDEX.put(SEED_DICTIONARY[i], i);
+    }
+  }
+
+  private static volatile int maxFrameSize = 65536;
+
+  private static final ThreadLocal<Frame> framePool = new ThreadLocal<Frame>() {
+    @Override
+    protected Frame initialValue() {
+      return new Frame();
+    }
+  };
+
+  private ErraiBinaryProtocol() {
+  }
+
+  /**
+   * Sets the largest frame body, in bytes, which {@link #decode(InputStream)} accepts. Larger frames are rejected
+   * before any memory is allocated for them.
+   */
+  public static void setMaxFrameSize(final int maxFrameSize) {
+    ErraiBinaryProtocol.maxFrameSize = maxFrameSize;
+  }
+
+  public static int getMaxFrameSize() {
+    return maxFrameSize;
+  }
+
+  /**
+   * Re-encodes a UTF-8 encoded JSON payload as a single binary frame.
+   *
+   * @param json
+   *     the stream to read the JSON from. It is read to the end.
+   * @param out
+   *     the stream to write the frame to.
+   */
+  public static void transcode(final InputStream json, final OutputStream out) throws IOException {
+    encode(JSONByteStreamDecoder.decode(json).getRawValue(), out);
+  }
+
+  /**
+   * Encodes a decoded JSON object graph (as produced by the JSON decoders: maps, lists, strings, numbers, booleans
+   * and nulls) as a single binary frame.
+   */
+  public static void encode(final Object value, final OutputStream out) throws IOException {
+    final Frame frame = framePool.get();
+    frame.reset();
+
+    writeValue(frame, new HashMap<String, Integer>(), value);
+
+    out.write(VERSION);
+    writeVarint(out, frame.count);
+    out.write(frame.buf, 0, frame.count);
+  }
+
+  /**
+   * Decodes a single binary frame from the given stream into the same {@link EJValue} that the JSON decoders would
+   * have produced for the equivalent JSON payload.
+   */
+  public static EJValue decode(final InputStream in) throws IOException {
+    final int version = in.read();
+    if (version == -1) {
+      throw new EOFException("no binary frame in stream");
+    }
+    if (version != VERSION) {
+      throw new IOException("unsupported binary frame version: " + version);
+    }
+
+    final long length = readVarint(in);
+    if (length < 0 || length > maxFrameSize) {
+      throw new IOException("illegal binary frame length: " + length);
+    }
+    final Frame frame = framePool.get();
+    frame.reset();
+    frame.ensureCapacity((int) length);
+    frame.readFully(in, (int) length);
+
+    final Object value = readValue(frame, new ArrayList<String>());
+    if (frame.pos != length) {
+      throw new IOException("malformed binary frame: " + (length - frame.pos) + " trailing bytes");
+    }
+    return new ErraiJSONValue(value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void writeValue(final Frame frame, final Map<String, Integer> dictionary, final Object value) {
+    if (value == null) {
+      frame.write(TAG_NULL);
+    }
+    else if (value instanceof String) {
+      writeString(frame, dictionary, (String) value);
+    }
+    else if (value instanceof Map) {
+      final Map<String, Object> map = (Map<String, Object>) value;
+      frame.write(TAG_OBJECT);
+      frame.writeVarint(map.size());
+      for (final Map.Entry<String, Object> entry : map.entrySet()) {
+        writeString(frame, dictionary, entry.getKey());
+        writeValue(frame, dictionary, entry.getValue());
+      }
+    }
+    else if (value instanceof List) {
+      final List<Object> list = (List<Object>) value;
+      frame.write(TAG_ARRAY);
+      frame.writeVarint(list.size());
+      for (final Object element : list) {
+        writeValue(frame, dictionary, element);
+      }
+    }
+    else if (value instanceof Boolean) {
+      frame.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+    }
+    else if (value instanceof Number) {
+      final double d = ((Number) value).doubleValue();
+      if (isExactIntegral(d)) {
+        frame.write(TAG_INT);
+        final long l = (long) d;
+        frame.writeVarint((l << 1) ^ (l >> 63));
+      }
+      else {
+        frame.write(TAG_DOUBLE);
+        frame.writeLong(Double.doubleToRawLongBits(d));
+      }
+    }
+    else {
+      throw new IllegalArgumentException("cannot encode value of type: " + value.getClass().getName());
+    }
+  }
+
+  private static boolean isExactIntegral(final double d) {
+    return d == Math.rint(d) && Math.abs(d) <= MAX_EXACT_INTEGRAL
+        && !(d == 0.0d && Double.doubleToRawLongBits(d) != 0L);
+  }
+
+  /**
+   * Writes a string, either as a reference into the seed dictionary or the strings already defined in this frame,
+   * or as a literal. Indexes of the strings defined in the frame start after the seed dictionary.
+   */
+  private static void writeString(final Frame frame, final Map<String, Integer> dictionary, final String value) {
+    Integer index = SEED_INDEX.get(value);
+    if (index == null) {
+      index = dictionary.get(value);
+    }
+    if (index != null) {
+      frame.write(TAG_STRING_REF);
+      frame.writeVarint(index);
+      return;
+    }
+
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length <= MAX_DICTIONARY_STRING_LENGTH) {
+      dictionary.put(value, SEED_DICTIONARY.length + dictionary.size());
+      frame.write(TAG_STRING_DEF);
+    }
+    else {
+      frame.write(TAG_STRING);
+    }
+    frame.writeVarint(bytes.length);
+    frame.write(bytes);
+  }
+
+  private static Object readValue(final Frame frame, final List<String> dictionary) throws IOException {
+    final int tag = frame.read();
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+
+      case TAG_TRUE:
+        return Boolean.TRUE;
+
+      case TAG_FALSE:
+        return Boolean.FALSE;
+
+      case TAG_INT: {
+        final long zigZag = frame.readVarint();
+        return (double) ((zigZag >>> 1) ^ -(zigZag & 1));
+      }
+
+      case TAG_DOUBLE:
+        return Double.longBitsToDouble(frame.readLong());
+
+      case TAG_STRING:
+        return frame.readString();
+
+      case TAG_STRING_DEF: {
+        final String value = frame.readString();
+        dictionary.add(value);
+        return value;
+      }
+
+      case TAG_STRING_REF: {
+        final long index = frame.readVarint();
+        if (index < SEED_DICTIONARY.length) {
+          return SEED_DICTIONARY[(int) index];
+        }
+        else if (index - SEED_DICTIONARY.length < dictionary.size()) {
+          return dictionary.get((int) (index - SEED_DICTIONARY.length));
+        }
+        throw new IOException("malformed binary frame: undefined string reference " + index);
+      }
+
+      case TAG_OBJECT: {
+        // every entry takes at least two bytes, and the collections are not presized from the untrusted count.
+        final int size = frame.readCount(2);
+        final Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < size; i++) {
+          final Object key = readValue(frame, dictionary);
+          if (!(key instanceof String)) {
+            throw new IOException("malformed binary frame: object key is not a string");
+          }
+          map.put((String) key, readValue(frame, dictionary));
+        }
+        return map;
+      }
+
+      case TAG_ARRAY: {
+        final int size = frame.readCount(1);
+        final List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < size; i++) {
+          list.add(readValue(frame, dictionary));
+        }
+        return list;
+      }
+
+      default:
+        throw new IOException("malformed binary frame: unknown tag " + tag);
+    }
+  }
+
+  private static void writeVarint(final OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long readVarint(final InputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final int b = in.read();
+      if (b == -1) {
+        throw new EOFException("unexpected end of binary frame");
+      }
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed varint in binary frame");
+  }
+
+  /**
+   * A growable byte buffer holding the body of the frame being written or read. One instance is pooled per thread.
+   */
+  private static final class Frame {
+    private byte[] buf = new byte[INITIAL_FRAME_SIZE];
+    private int count;
+    private int pos;
+
+    private void reset() {
+      if (buf.length > MAX_RETAINED_FRAME_SIZE) {
+        buf = new byte[INITIAL_FRAME_SIZE];
+      }
+      count = 0;
+      pos = 0;
+    }
+
+    private void ensureCapacity(final int extra) {
+      if (count + extra > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+      }
+    }
+
+    private void write(final int b) {
+      ensureCapacity(1);
+      buf[count++] = (byte) b;
+    }
+
+    private void write(final byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buf, count, bytes.length);
+      count += bytes.length;
+    }
+
+    private void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buf[count++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buf[count++] = (byte) value;
+    }
+
+    private void writeLong(final long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buf[count++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void readFully(final InputStream in, final int length) throws IOException {
+      while (count < length) {
+        final int read = in.read(buf, count, length - count);
+        if (read == -1) {
+          throw new EOFException("unexpected end of binary frame");
+        }
+        count += read;
+      }
+    }
+
+    private void require(final int bytes) throws IOException {
+      if (pos + bytes > count) {
+        throw new EOFException("unexpected end of binary frame");
+      }
+    }
+
+    private int read() throws IOException {
+      require(1);
+      return buf[pos++] & 0xFF;
+    }
+
+    private long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final int b = read();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("malformed varint in binary frame");
+    }
+
+    private long readLong() throws IOException {
+      require(8);
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (buf[pos++] & 0xFF);
+      }
+      return value;
+    }
+
+    /**
+     * Reads the number of elements of a container, which cannot be more than the remaining bytes of the frame allow.
+     */
+    private int readCount(final int minBytesPerElement) throws IOException {
+      final long size = readVarint();
+      if (size < 0 || size > (count - pos) / minBytesPerElement) {
+        throw new IOException("malformed binary frame: element count " + size + " exceeds frame");
+      }
+      return (int) size;
+    }
+
+    private String readString() throws IOException {
+      final long length = readVarint();
+      if (length < 0 || length > count - pos) {
+        throw new IOException("malformed binary frame: string length " + length + " exceeds frame");
+      }
+      final String value = new String(buf, pos, (int) length, StandardCharsets.UTF_8);
+      pos += (int) length;
+      return value;
+    }
+  }
+}
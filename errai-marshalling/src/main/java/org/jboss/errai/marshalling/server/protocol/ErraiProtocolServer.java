@@ -22,7 +22,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.jboss.errai.marshalling.client.Marshalling;
+import org.jboss.errai.marshalling.client.MarshallingSessionProviderFactory;
+import org.jboss.errai.marshalling.client.api.EncodedValue;
+import org.jboss.errai.marshalling.client.api.Marshaller;
+import org.jboss.errai.marshalling.client.api.MarshallingSession;
+import org.jboss.errai.marshalling.client.marshallers.ErraiProtocolEnvelopeMarshaller;
 import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.client.util.MarshallUtil;
+import org.jboss.errai.marshalling.server.util.Utf8PayloadStream;
 
 /**
  * @author Mike Brock
@@ -42,6 +50,52 @@ public class ErraiProtocolServer extends ErraiProtocol {
     }
   }
 
+  /**
+   * Encodes a standard Errai Protocol payload as UTF-8 directly into the calling thread's pooled
+   * {@link Utf8PayloadStream}, without building an intermediate <tt>String</tt> for the whole payload. The returned
+   * stream is only valid until the next call to this method on the same thread.
+   *
+   * @param payload
+   *     A map of the key-value pairs to be encoded.
+   *
+   * @return the pooled stream containing the encoded JSON.
+   */
+  public static Utf8PayloadStream encodePayloadToPooledStream(final Map<String, Object> payload) {
+    // Process the payload before the encoding process.
+    preprocessors.forEach(preprocessor -> preprocessor.process(payload));
+
+    final Utf8PayloadStream stream = Utf8PayloadStream.getPooled();
+    ErraiProtocolEnvelopeMarshaller.INSTANCE.marshall(payload, MarshallingSessionProviderFactory.getEncoding(),
+        stream::appendUtf8);
+
+    return stream;
+  }
+
+  /**
+   * Marshals a single message part value, so that it can be sent in any number of messages without being marshalled
+   * again.
+   *
+   * @param value
+   *     the value, which may be null.
+   *
+   * @return the marshalled value.
+   */
+  public static EncodedValue encodeValue(final Object value) {
+    if (value == null) {
+      return new EncodedValue("null");
+    }
+
+    final MarshallingSession ctx = MarshallingSessionProviderFactory.getEncoding();
+    final Marshaller<Object> valueMarshaller;
+    if (Marshalling.needsQualification(value)) {
+      valueMarshaller = MarshallUtil.getQualifiedNumberMarshaller(value);
+    }
+    else {
+      valueMarshaller = MarshallUtil.getMarshaller(value, ctx);
+    }
+    return new EncodedValue(valueMarshaller.marshall(MarshallUtil.maybeUnwrap(value), ctx));
+  }
+
   public static void addPreprocessor(PayloadPreprocessor preprocessor) {
     preprocessors.add(preprocessor);
   }
@@ -18,7 +18,8 @@ package org.jboss.errai.marshalling.server.protocol;
 import java.util.Map;
 
 /**
- * A payload preprocessor interface used in {@link ErraiProtocolServer#encodePayloadToByteArrayInputStream(Map)}.
+ * A payload preprocessor interface used in {@link ErraiProtocolServer#encodePayloadToByteArrayInputStream(Map)} and
+ * {@link ErraiProtocolServer#encodePayloadToPooledStream(Map)}.
  *
  * @see ErraiProtocolServer#addPreprocessor(PayloadPreprocessor)
  *
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.server.util;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer which encodes character data as UTF-8 as it is appended, and which can then be consumed
+ * as an {@link InputStream}. One instance is pooled per thread (see {@link #getPooled()}) so that encoding an
+ * outbound payload does not allocate a full-size <tt>String</tt>, <tt>byte[]</tt> and <tt>ByteArrayInputStream</tt>
+ * for every message.
+ * <p/>
+ * A pooled instance is only valid until the next call to {@link #getPooled()} on the same thread.
+ */
+public final class Utf8PayloadStream extends InputStream {
+  private static final int INITIAL_CAPACITY = 1024 * 8;
+
+  /**
+   * Pooled buffers which have grown beyond this size are shrunk back on reuse, so that one very large message
+   * does not pin its memory to the thread forever.
+   */
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 512;
+
+  private static final ThreadLocal<Utf8PayloadStream> pool = new ThreadLocal<Utf8PayloadStream>() {
+    @Override
+    protected Utf8PayloadStream initialValue() {
+      return new Utf8PayloadStream();
+    }
+  };
+
+  private byte[] buf;
+  private int count;
+  private int readPos;
+
+  public Utf8PayloadStream() {
+    this.buf = new byte[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Returns the calling thread's pooled instance, emptied and ready for writing.
+   */
+  public static Utf8PayloadStream getPooled() {
+    final Utf8PayloadStream stream = pool.get();
+    stream.clear();
+    return stream;
+  }
+
+  private void clear() {
+    if (buf.length > MAX_RETAINED_CAPACITY) {
+      buf = new byte[INITIAL_CAPACITY];
+    }
+    count = 0;
+    readPos = 0;
+  }
+
+  /**
+   * Appends the specified characters, encoded as UTF-8. Unpaired surrogates are encoded as <tt>'?'</tt>, which is
+   * consistent with {@link String#getBytes(String)}.
+   */
+  public Utf8PayloadStream appendUtf8(final CharSequence chars) {
+    final int length = chars.length();
+
+    // worst case is 3 bytes per char (surrogate pairs take 4 bytes for 2 chars).
+    ensureCapacity(length * 3);
+
+    final byte[] b = buf;
+    int pos = count;
+
+    for (int i = 0; i < length; i++) {
+      final char c = chars.charAt(i);
+
+      if (c < 0x80) {
+        b[pos++] = (byte) c;
+      }
+      else if (c < 0x800) {
+        b[pos++] = (byte) (0xC0 | (c >> 6));
+        b[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+      else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        b[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        b[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        b[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        b[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+      else if (Character.isSurrogate(c)) {
+        b[pos++] = (byte) '?';
+      }
+      else {
+        b[pos++] = (byte) (0xE0 | (c >> 12));
+        b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        b[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+
+    count = pos;
+    return this;
+  }
+
+  private void ensureCapacity(final int additional) {
+    final int required = count + additional;
+    if (required > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length << 1, required));
+    }
+  }
+
+  /**
+   * @return the number of encoded bytes in this buffer.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * @return the backing array of this buffer. Only the first {@link #size()} bytes are valid.
+   */
+  public byte[] getBuffer() {
+    return buf;
+  }
+
+  @Override
+  public int read() {
+    return readPos < count ? buf[readPos++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) {
+    if (readPos >= count) {
+      return -1;
+    }
+
+    final int toRead = Math.min(len, count - readPos);
+    System.arraycopy(buf, readPos, b, off, toRead);
+    readPos += toRead;
+    return toRead;
+  }
+
+  @Override
+  public int available() {
+    return count - readPos;
+  }
+
+  @Override
+  public String toString() {
+    return new String(buf, 0, count, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.errai.marshalling.server.JSONStreamDecoder;
+import org.jboss.errai.marshalling.server.protocol.ErraiBinaryProtocol;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link ErraiBinaryProtocol} carries exactly the same object graph as the JSON encoding.
+ */
+public class ErraiBinaryProtocolTest {
+
+  private static final String TYPICAL_MESSAGE = "{\"ToSubject\":\"SomeService\",\"CommandType\":\"Hello\"," +
+      "\"Value\":{\"^EncodedType\":\"org.jboss.errai.Foo\",\"^ObjectID\":\"1\",\"name\":\"caf\u00e9\"," +
+      "\"count\":{\"^EncodedType\":\"java.lang.Integer\",\"^ObjectID\":\"2\",\"^NumVal\":42}," +
+      "\"ratio\":0.25,\"tags\":[\"a\",\"b\",\"c\"],\"flag\":true,\"missing\":null}}";
+
+  private static byte[] transcode(final String json) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ErraiBinaryProtocol.transcode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out);
+    return out.toByteArray();
+  }
+
+  private static Object decodeJson(final String json) throws IOException {
+    return JSONStreamDecoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).getRawValue();
+  }
+
+  private static void assertRoundTrip(final String json) throws IOException {
+    assertEquals(decodeJson(json),
+        ErraiBinaryProtocol.decode(new ByteArrayInputStream(transcode(json))).getRawValue());
+  }
+
+  @Test
+  public void testStructuresAndLiterals() throws Exception {
+    assertRoundTrip("{ \"myValue\": [ \"string\", 123.456, {}, [], true, false, null ] }");
+    assertRoundTrip("[]");
+    assertRoundTrip("{}");
+    assertRoundTrip("[[[1],[2,3]],{\"a\":{\"b\":[]}}]");
+    assertRoundTrip("\"just a string\"");
+    assertRoundTrip(TYPICAL_MESSAGE);
+  }
+
+  @Test
+  public void testNumbers() throws Exception {
+    assertRoundTrip("[0,1,-1,42,123456789012345,1234567890123456789,-1234567890123456789]");
+    assertRoundTrip("[1.5,-0.125,1e10,1E-3,2.5e+7,9007199254740993,1e300]");
+    final List<?> negativeZero = (List<?>) ErraiBinaryProtocol.decode(new ByteArrayInputStream(transcode("[-0]")))
+        .getRawValue();
+    assertEquals(-0.0d, negativeZero.get(0));
+  }
+
+  @Test
+  public void testStrings() throws Exception {
+    final char[] longString = new char[1000];
+    Arrays.fill(longString, '\u00e9');
+    assertRoundTrip("[\"\\u00E9\\u4E2D\",\"\",\"" + new String(longString) + "\",\"" + new String(longString) + "\"]");
+    assertRoundTrip("[\"repeated\",\"repeated\",{\"repeated\":\"repeated\"}]");
+  }
+
+  @Test
+  public void testMultiMessagePayloadIsMuchSmallerThanJson() throws Exception {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 50; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"ToSubject\":\"StockTicker\",\"CommandType\":\"PriceUpdate\",\"Value\":{")
+          .append("\"^EncodedType\":\"org.jboss.errai.demo.stock.client.shared.StockUpdate\",\"^ObjectID\":\"1\",")
+          .append("\"symbol\":\"SYM").append(i % 5).append("\",\"sequence\":").append(100000 + i)
+          .append(",\"price\":{\"^EncodedType\":\"java.lang.Double\",\"^ObjectID\":\"2\",\"^NumVal\":")
+          .append(i).append("}}}");
+    }
+    json.append(']');
+
+    final byte[] binary = transcode(json.toString());
+    assertTrue("binary frame is " + binary.length + " bytes, JSON is " + json.length(),
+        binary.length * 3 < json.length());
+    assertRoundTrip(json.toString());
+  }
+
+  @Test
+  public void testFramesAreSelfDelimiting() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(transcode("[1,2,3]"));
+    out.write(transcode(TYPICAL_MESSAGE));
+
+    final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    assertEquals(decodeJson("[1,2,3]"), ErraiBinaryProtocol.decode(in).getRawValue());
+    assertEquals(decodeJson(TYPICAL_MESSAGE), ErraiBinaryProtocol.decode(in).getRawValue());
+    assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void testMalformedFramesAreRejected() throws Exception {
+    final byte[] frame = transcode(TYPICAL_MESSAGE);
+
+    try {
+      ErraiBinaryProtocol.decode(new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 1)));
+      fail("truncated frame was accepted");
+    }
+    catch (IOException e) {
+      // expected
+    }
+
+    final byte[] wrongVersion = frame.clone();
+    wrongVersion[0] = '[';
+    try {
+      ErraiBinaryProtocol.decode(new ByteArrayInputStream(wrongVersion));
+      fail("JSON payload was accepted as a binary frame");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testHostileLengthsAreRejected() throws Exception {
+    // a frame body larger than the maximum frame size.
+    assertRejected(new byte[] { 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F });
+
+    // a frame body length which decodes to a negative number.
+    assertRejected(new byte[] { 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01 });
+
+    // an array claiming far more elements than the frame holds.
+    assertRejected(new byte[] { 1, 6, 9, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F, 0 });
+
+    // an object claiming far more entries than the frame holds.
+    assertRejected(new byte[] { 1, 6, 8, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F, 0 });
+
+    // a string longer than the rest of the frame.
+    assertRejected(new byte[] { 1, 3, 5, 0x7F, 'a' });
+
+    // a string length which decodes to a negative number.
+    assertRejected(new byte[] { 1, 11, 5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01 });
+  }
+
+  private static void assertRejected(final byte[] frame) {
+    try {
+      ErraiBinaryProtocol.decode(new ByteArrayInputStream(frame));
+      fail("malformed frame was accepted");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.marshalling.client.api.json.EJValue;
+import org.jboss.errai.marshalling.server.JSONByteStreamDecoder;
+import org.jboss.errai.marshalling.server.JSONStreamDecoder;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link JSONByteStreamDecoder} produces exactly the same results as the {@link JSONStreamDecoder}.
+ */
+public class JSONByteStreamDecoderTest {
+
+  private static final String TYPICAL_MESSAGE = "{\"ToSubject\":\"SomeService\",\"CommandType\":\"Hello\"," +
+      "\"Value\":{\"^EncodedType\":\"org.jboss.errai.Foo\",\"^ObjectID\":\"1\",\"name\":\"caf\u00e9\"," +
+      "\"count\":{\"^EncodedType\":\"java.lang.Integer\",\"^ObjectID\":\"2\",\"^NumVal\":42}," +
+      "\"ratio\":0.25,\"tags\":[\"a\",\"b\",\"c\"],\"flag\":true,\"missing\":null}}";
+
+  private static EJValue decodeWithStream(final String json) throws IOException {
+    return JSONStreamDecoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static EJValue decodeWithBytes(final String json) throws IOException {
+    return JSONByteStreamDecoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static void assertSameResult(final String json) throws IOException {
+    assertEquals(decodeWithStream(json).getRawValue(), decodeWithBytes(json).getRawValue());
+  }
+
+  @Test
+  public void testStructuresAndLiterals() throws Exception {
+    assertSameResult("{ \"myValue\": [ \"string\", 123.456, {}, [], true, false, null ] }");
+    assertSameResult("[]");
+    assertSameResult("{}");
+    assertSameResult("[[[1],[2,3]],{\"a\":{\"b\":[]}}]");
+    assertSameResult("\"just a string\"");
+    assertSameResult(TYPICAL_MESSAGE);
+  }
+
+  @Test
+  public void testLenientSyntax() throws Exception {
+    assertSameResult("{'single':'quoted \"inner\"', \"double\":\"it's\"}");
+    assertSameResult("{bare:identifier, other: nullish, t: trueish}");
+    assertSameResult("[null,true,false,nulls,falsey]");
+  }
+
+  @Test
+  public void testNumbers() throws Exception {
+    assertSameResult("[0,-0,1,-1,42,123456789012345,1234567890123456789,-1234567890123456789]");
+    assertSameResult("[1.5,-0.125,1e10,1E-3,2.5e+7,9007199254740993]");
+    assertEquals(-0.0d, ((List<?>) decodeWithBytes("[-0]").getRawValue()).get(0));
+  }
+
+  @Test
+  public void testEscapesAndNonAsciiCharacters() throws Exception {
+    assertSameResult("[\"\\\\ \\/ \\b \\f \\t \\r \\n \\' \\\"\",\"\\u00E9\\u4E2D\"]");
+    assertSameResult("[\"\u00e9\u00e8 latin\",\"\u4e2d\u6587 cjk\",\"\ud83d\ude00 emoji\"]");
+  }
+
+  @Test
+  public void testMultiByteCharactersSplitAcrossReads() throws Exception {
+    final StringBuilder sb = new StringBuilder("[\"");
+    for (int i = 0; i < 10000; i++) {
+      sb.append("x\u00e9\u4e2d\ud83d\ude00");
+    }
+    final String json = sb.append("\"]").toString();
+
+    // hand the decoder a few bytes at a time so multi-byte sequences straddle buffer refills.
+    final InputStream trickle = new FilterInputStream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))) {
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        return super.read(b, off, Math.min(len, 3));
+      }
+    };
+
+    assertEquals(decodeWithStream(json).getRawValue(), JSONByteStreamDecoder.decode(trickle).getRawValue());
+  }
+
+  @Test
+  public void testCommonKeysAreShared() throws Exception {
+    final Map<?, ?> first = (Map<?, ?>) decodeWithBytes(TYPICAL_MESSAGE).getRawValue();
+    final Map<?, ?> second = (Map<?, ?>) decodeWithBytes(TYPICAL_MESSAGE).getRawValue();
+
+    final Object firstKey = first.keySet().iterator().next();
+    final Object secondKey = second.keySet().iterator().next();
+    assertEquals("ToSubject", firstKey);
+    assertSame(firstKey, secondKey);
+  }
+
+  @Test
+  public void testUnterminatedString() throws Exception {
+    try {
+      decodeWithBytes("[\"never ends");
+      fail("expected an exception");
+    }
+    catch (RuntimeException e) {
+      assertTrue(String.valueOf(e.getCause()), e.getCause().getMessage().contains("unterminated string literal"));
+    }
+  }
+
+  /**
+   * Compares decoding throughput of the reader-based and byte-level decoders.
+   */
+  @Test
+  @Ignore
+  public void testDecodeThroughput() throws Exception {
+    final byte[] bytes = TYPICAL_MESSAGE.getBytes(StandardCharsets.UTF_8);
+    final int iterations = 2000000;
+    final NumberFormat nf = new DecimalFormat("###,###.###");
+
+    for (int run = 0; run < 3; run++) {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < iterations; i++) {
+        JSONStreamDecoder.decode(new ByteArrayInputStream(bytes));
+      }
+      final long streamTime = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      for (int i = 0; i < iterations; i++) {
+        JSONByteStreamDecoder.decode(new ByteArrayInputStream(bytes));
+      }
+      final long bytesTime = System.currentTimeMillis() - start;
+
+      System.out.println("JSONStreamDecoder     : " + nf.format(iterations / (streamTime / 1000d)) + " messages per second.");
+      System.out.println("JSONByteStreamDecoder : " + nf.format(iterations / (bytesTime / 1000d)) + " messages per second.");
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.errai.marshalling.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jboss.errai.marshalling.client.protocols.ErraiProtocol;
+import org.jboss.errai.marshalling.server.protocol.ErraiProtocolServer;
+import org.jboss.errai.marshalling.server.util.Utf8PayloadStream;
+import org.junit.Test;
+
+/**
+ * Tests for the pooled UTF-8 payload encoding path used by the server bus.
+ */
+public class Utf8PayloadStreamTest {
+
+  private static byte[] encodedBytes(final Utf8PayloadStream stream) {
+    return Arrays.copyOf(stream.getBuffer(), stream.size());
+  }
+
+  @Test
+  public void testAsciiAndMultiByteCharactersMatchStringGetBytes() {
+    final String s = "plain ascii, \u00e9\u00e8 latin, \u4e2d\u6587 cjk, \ud83d\ude00 emoji";
+
+    final Utf8PayloadStream stream = Utf8PayloadStream.getPooled().appendUtf8(s);
+
+    assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), encodedBytes(stream));
+  }
+
+  @Test
+  public void testUnpairedSurrogatesMatchStringGetBytes() {
+    final String s = "a\ud83db\ude00c\ud83d";
+
+    final Utf8PayloadStream stream = Utf8PayloadStream.getPooled().appendUtf8(s);
+
+    assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), encodedBytes(stream));
+  }
+
+  @Test
+  public void testGrowsBeyondInitialCapacityAndReadsBack() {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      sb.append("\u00e9x");
+    }
+    final String s = sb.toString();
+
+    final Utf8PayloadStream stream = Utf8PayloadStream.getPooled().appendUtf8(s);
+    assertEquals(s.getBytes(StandardCharsets.UTF_8).length, stream.available());
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] chunk = new byte[100];
+    int read;
+    while ((read = stream.read(chunk, 0, chunk.length)) != -1) {
+      out.write(chunk, 0, read);
+    }
+
+    assertEquals(s, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    assertEquals(-1, stream.read());
+  }
+
+  @Test
+  public void testPooledInstanceIsReusedPerThread() {
+    final Utf8PayloadStream first = Utf8PayloadStream.getPooled().appendUtf8("first");
+    final Utf8PayloadStream second = Utf8PayloadStream.getPooled();
+
+    assertSame(first, second);
+    assertEquals(0, second.size());
+  }
+
+  @Test
+  public void testPooledPayloadEncodingMatchesStringEncoding() {
+    final Map<String, Object> payload = new LinkedHashMap<String, Object>();
+    payload.put("ToSubject", "SomeService");
+    payload.put("CommandType", "Hello");
+    payload.put("Value", "caf\u00e9 \u4e2d\u6587 \"quoted\"");
+    payload.put("Number", 42);
+    payload.put("Nothing", null);
+
+    final byte[] expected = ErraiProtocol.encodePayload(payload).getBytes(StandardCharsets.UTF_8);
+    final byte[] actual = encodedBytes(ErraiProtocolServer.encodePayloadToPooledStream(payload));
+
+    assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+    assertArrayEquals(expected, actual);
+  }
+}
@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Function;
 
 import javax.enterprise.context.Dependent;
 
@@ -29,6 +30,7 @@ import org.jboss.errai.common.client.ui.ValueChangeManager;
 import org.jboss.errai.common.client.util.CreationalCallback;
 import org.jboss.errai.databinding.client.BindableListWrapper;
 import org.jboss.errai.databinding.client.api.handler.list.BindableListChangeHandler;
+import org.jboss.errai.databinding.client.components.KeyedListDiff;
 import org.jboss.errai.databinding.client.components.ListComponent;
 import org.jboss.errai.ioc.client.container.IOC;
 import org.jboss.errai.ioc.client.container.SyncToAsyncBeanManagerAdapter;
@@ -79,6 +81,7 @@ public abstract class ListWidget<M, C extends HasModel<M>> extends Composite
 
   private final List<ComponentCreationalCallback> callbacks = new LinkedList<>();
   private int pendingCallbacks;
+  private Function<? super M, ?> keyExtractor;
 
   private final ValueChangeManager<List<M>, ListWidget<M, C>> valueChangeManager = new ValueChangeManager<>(this);
 
@@ -161,6 +164,23 @@ public abstract class ListWidget<M, C extends HasModel<M>> extends Composite
     }
   }
 
+  /**
+   * Enables or disables the reconciliation of item components by key. By default, all item components are destroyed
+   * and re-created when a new list is set. With a key extractor, the component of a model with the same key as a model
+   * of the new list is kept and moved to the new position of the model, and only the components of added or removed
+   * models are created or destroyed.
+   * <p>
+   * Components are only reused if the panel implements {@link InsertPanel.ForIsWidget} and the synchronous bean
+   * manager is used. Otherwise, all of them are re-created.
+   *
+   * @param keyExtractor
+   *          a function returning a key which identifies a model among the models in the list (e.g. its id), or null
+   *          to re-create all components when a new list is set.
+   */
+  public void setKeyExtractor(final Function<? super M, ?> keyExtractor) {
+    this.keyExtractor = keyExtractor;
+  }
+
   private void initializeHandlers() {
     for (final HandlerRegistration reg : registrations) {
       reg.removeHandler();
@@ -185,6 +205,12 @@ public abstract class ListWidget<M, C extends HasModel<M>> extends Composite
     callbacks.clear();
     pendingCallbacks = 0;
 
+    if (keyExtractor != null && items != null && bm instanceof SyncToAsyncBeanManagerAdapter
+            && panel instanceof InsertPanel.ForIsWidget) {
+      reconcile(bm);
+      return;
+    }
+
     // clean up the old widgets before we add new ones (this will eventually
     // become a feature of the framework: ERRAI-375)
     Iterator<Widget> it = panel.iterator();
@@ -209,6 +235,70 @@ public abstract class ListWidget<M, C extends HasModel<M>> extends Composite
     }
   }
 
+  /**
+   * Displays the current items by reusing the components of models with the same key, instead of re-creating every
+   * component. Must only be called with the synchronous bean manager, which creates new components right away.
+   */
+  private void reconcile(final AsyncBeanManager bm) {
+    final List<C> oldComponents = new ArrayList<>(panel.getWidgetCount());
+    final List<Object> oldKeys = new ArrayList<>(panel.getWidgetCount());
+    for (final Widget widget : panel) {
+      final C component = getComponentFromWidget(widget);
+      oldComponents.add(component);
+      oldKeys.add(keyExtractor.apply(component.getModel()));
+    }
+    final List<Object> newKeys = new ArrayList<>(items.size());
+    for (final M item : items) {
+      newKeys.add(keyExtractor.apply(item));
+    }
+    final KeyedListDiff diff = KeyedListDiff.compute(oldKeys, newKeys);
+
+    for (int i = oldComponents.size() - 1; i >= 0; i--) {
+      if (diff.isRemoved(i)) {
+        panel.remove(i);
+        bm.destroyBean(oldComponents.get(i));
+      }
+    }
+
+    final AsyncBeanDef<C> itemBeanDef = bm.lookupBean(getItemComponentType());
+    if (!itemBeanDef.getScope().equals(Dependent.class))
+      throw new InvalidBeanScopeException("ListWidget cannot contain ApplicationScoped widgets");
+
+    // Going backwards, every widget is placed in front of its successor, which is already in place.
+    final InsertPanel.ForIsWidget insertPanel = (InsertPanel.ForIsWidget) panel;
+    final List<C> created = new ArrayList<>(1);
+    Widget successor = null;
+    for (int i = items.size() - 1; i >= 0; i--) {
+      final M item = items.get(i);
+      final C component;
+      if (diff.isInserted(i)) {
+        created.clear();
+        itemBeanDef.getInstance(new CreationalCallback<C>() {
+          @Override
+          public void callback(C beanInstance) {
+            created.add(beanInstance);
+          }
+        });
+        component = created.get(0);
+        component.setModel(item);
+      }
+      else {
+        component = oldComponents.get(diff.getSource(i));
+        if (component.getModel() != item) {
+          component.setModel(item);
+        }
+      }
+
+      final Widget widget = getWidgetForComponent(component).asWidget();
+      if (diff.isInserted(i) || diff.isMoved(i)) {
+        insertPanel.insert(widget, (successor == null) ? panel.getWidgetCount() : panel.getWidgetIndex(successor));
+      }
+      successor = widget;
+    }
+
+    onItemsRendered(items);
+  }
+
   /**
    * Returns the component at the specified index.
    *
@@ -481,6 +481,49 @@ public class ListWidgetBindingTest extends AbstractErraiCDITest {
     assertItemsRendered(listWidget);
   }
 
+  @Test
+  public void testKeyedListBindingReusesComponentsWhenItemsAreSet() {
+    BindingTemplateTestApp app = IOC.getBeanManager().lookupBean(BindingTemplateTestApp.class).getInstance();
+    keyedSetItemsAssertions(app.getCompositeTemplate().getListWidget());
+    keyedSetItemsAssertions(app.getNonCompositeTemplate().getListWidget());
+  }
+
+  private void keyedSetItemsAssertions(BindingListWidget<?> listWidget) {
+    listWidget.setKeyExtractor(TestModel::getId);
+
+    List<TestModel> modelList = new ArrayList<TestModel>();
+    modelList.add(new TestModel(1, "1"));
+    modelList.add(new TestModel(2, "2"));
+    modelList.add(new TestModel(3, "3"));
+    listWidget.setItems(modelList);
+
+    BindingItem one = listWidget.getComponent(0);
+    BindingItem two = listWidget.getComponent(1);
+    BindingItem three = listWidget.getComponent(2);
+
+    // a refreshed copy of the list, reordered, with one model removed and one added
+    List<TestModel> refreshedList = new ArrayList<TestModel>();
+    refreshedList.add(new TestModel(3, "3-refreshed"));
+    refreshedList.add(new TestModel(1, "1-refreshed"));
+    refreshedList.add(new TestModel(4, "4"));
+    listWidget.setItems(refreshedList);
+
+    assertEquals(3, listWidget.getComponentCount());
+    assertSame("Component of kept model was re-created", three, listWidget.getComponent(0));
+    assertSame("Component of kept model was re-created", one, listWidget.getComponent(1));
+    assertNotSame(two, listWidget.getComponent(2));
+    assertEquals("3-refreshed", listWidget.getComponent(0).getModel().getName());
+    assertEquals("1-refreshed", listWidget.getComponent(1).getModel().getName());
+    assertEquals(Integer.valueOf(4), listWidget.getComponent(2).getModel().getId());
+
+    //BindingItemWidget.getNum() is incremented in a pre-destroy method
+    assertEquals("Component of removed model was not destroyed", 1, two.getNum());
+    assertEquals(0, one.getNum());
+    assertEquals(0, three.getNum());
+    assertEquals("Reused component was not rendered correctly!", "3-refreshed",
+        listWidget.getComponent(0).getTextBox().getText());
+  }
+
   @Test
   public void testListBindingAndRemoveItem() {
     BindingTemplateTestApp app = IOC.getBeanManager().lookupBean(BindingTemplateTestApp.class).getInstance();